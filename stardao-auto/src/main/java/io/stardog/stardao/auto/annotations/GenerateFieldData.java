@@ -0,0 +1,15 @@
+package io.stardog.stardao.auto.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates the field data of a model class at compile time, as a class named after the model with a "_FieldData"
+ * suffix. FieldScanner picks it up automatically, so no reflection scan is needed when a Dao for the model starts.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateFieldData {
+}
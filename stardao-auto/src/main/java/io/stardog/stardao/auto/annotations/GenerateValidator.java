@@ -0,0 +1,16 @@
+package io.stardog.stardao.auto.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a plain-Java validator for the Bean Validation constraints of a model class, as a class named after the
+ * model with a "_Validator" suffix. ModelValidator picks it up automatically. If the class also has @AutoPartial, a
+ * validator is generated for the partial as well.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateValidator {
+}
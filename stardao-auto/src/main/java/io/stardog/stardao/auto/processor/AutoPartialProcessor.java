@@ -9,6 +9,7 @@ import com.google.auto.service.AutoService;
 import com.google.auto.value.AutoValue;
 import com.squareup.javapoet.*;
 import io.stardog.stardao.auto.annotations.AutoPartial;
+import io.stardog.stardao.auto.annotations.GenerateValidator;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Processor;
@@ -99,7 +100,7 @@ public class AutoPartialProcessor extends AbstractProcessor {
                 .addAnnotation(AnnotationSpec.builder(AutoValue.Builder.class).build())
                 .addAnnotation(AnnotationSpec.builder(JsonPOJOBuilder.class).addMember("withPrefix", "\"\"").build())
                 .build();
-        TypeSpec partialClass = TypeSpec.classBuilder(generateClassName)
+        TypeSpec.Builder partialClassBuilder = TypeSpec.classBuilder(generateClassName)
                 .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
                 .addMethods(generatedMethods)
                 .addMethod(ofMethod)
@@ -108,8 +109,12 @@ public class AutoPartialProcessor extends AbstractProcessor {
                 .addType(builderClass)
                 .addAnnotation(AnnotationSpec.builder(AutoValue.class).build())
                 .addAnnotation(AnnotationSpec.builder(JsonInclude.class).addMember("value", "JsonInclude.Include.NON_ABSENT").build())
-                .addAnnotation(AnnotationSpec.builder(JsonDeserialize.class).addMember("builder", "AutoValue_" + generateClassName + ".Builder.class").build())
-                .build();
+                .addAnnotation(AnnotationSpec.builder(JsonDeserialize.class).addMember("builder", "AutoValue_" + generateClassName + ".Builder.class").build());
+        // partials get a generated validator too, since they are what creates and updates are validated against
+        if (type.getAnnotation(GenerateValidator.class) != null) {
+            partialClassBuilder.addAnnotation(GenerateValidator.class);
+        }
+        TypeSpec partialClass = partialClassBuilder.build();
         JavaFile javaFile = JavaFile.builder(packageName, partialClass).build();
 //        System.out.println(javaFile.toString());
 
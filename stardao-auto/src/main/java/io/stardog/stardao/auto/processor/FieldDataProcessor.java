@@ -0,0 +1,223 @@
+package io.stardog.stardao.auto.processor;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableMap;
+import com.squareup.javapoet.*;
+import io.stardog.stardao.annotations.*;
+import io.stardog.stardao.auto.annotations.GenerateFieldData;
+import io.stardog.stardao.core.field.Field;
+import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.field.FieldScanner;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Generates the field data of @GenerateFieldData classes at compile time, following the same rules as
+ * FieldScanner.scanAnnotations(), so that Daos over those classes can start without scanning them by reflection.
+ */
+@AutoService(Processor.class)
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedAnnotationTypes({"io.stardog.stardao.auto.annotations.GenerateFieldData"})
+public class FieldDataProcessor extends AbstractProcessor {
+    private static final List<Class<? extends Annotation>> SPECIAL_ANNOTATIONS = Arrays.asList(
+            Id.class, CreatedAt.class, CreatedBy.class, UpdatedAt.class, UpdatedBy.class, Version.class);
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Collection<? extends Element> annotatedElements =
+                roundEnv.getElementsAnnotatedWith(GenerateFieldData.class);
+        List<TypeElement> types = ElementFilter.typesIn(annotatedElements);
+        for (TypeElement type : types) {
+            try {
+                processType(type);
+            } catch (Exception e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void processType(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS) {
+            throw new ProcessorException("@GenerateFieldData may only be used on classes", type);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String generateClassName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + FieldScanner.PRECOMPUTED_SUFFIX;
+
+        // fields first, then any getters whose field was not already seen, as FieldScanner does
+        Map<String,Element> fields = new LinkedHashMap<>();
+        Map<String,Boolean> optional = new HashMap<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String fieldName = field.getSimpleName().toString();
+            fields.put(fieldName, field);
+            optional.put(fieldName, isFieldOptional(type, field));
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            String fieldName = toFieldName(method);
+            if (fieldName != null && !fields.containsKey(fieldName)) {
+                fields.put(fieldName, method);
+                optional.put(fieldName, isOptional(method.getReturnType()));
+            }
+        }
+
+        CodeBlock.Builder body = CodeBlock.builder();
+        CodeBlock.Builder map = CodeBlock.builder()
+                .add("$T.<$T,$T>builder()", ImmutableMap.class, String.class, Field.class);
+        Map<Class<? extends Annotation>,String> found = new HashMap<>();
+        Map<Class<? extends Annotation>,String> foundNames = new HashMap<>();
+        String idVar = null;
+        int i = 0;
+        for (Map.Entry<String,Element> e : fields.entrySet()) {
+            String fieldName = e.getKey();
+            Element element = e.getValue();
+            if (element.getAnnotation(JsonIgnore.class) != null) {
+                continue;
+            }
+            StorageName storageName = element.getAnnotation(StorageName.class);
+            String var = "field" + (i++);
+            body.addStatement("$T $L = $T.builder().name($S).storageName($S).optional($L).creatable($L).updatable($L).build()",
+                    Field.class, var, Field.class, fieldName,
+                    storageName != null ? storageName.value() : fieldName,
+                    optional.get(fieldName),
+                    element.getAnnotation(Creatable.class) != null,
+                    element.getAnnotation(Updatable.class) != null);
+            map.add(".put($S, $L)", fieldName, var);
+
+            for (Class<? extends Annotation> annotation : SPECIAL_ANNOTATIONS) {
+                if (element.getAnnotation(annotation) != null) {
+                    if (found.containsKey(annotation)) {
+                        throw new ProcessorException("Multiple @" + annotation.getSimpleName() + " annotations present on "
+                                + foundNames.get(annotation) + " and " + fieldName, type);
+                    }
+                    found.put(annotation, var);
+                    foundNames.put(annotation, fieldName);
+                }
+            }
+            // assume that fields named "id" are the id unless it's explicitly specified otherwise
+            if (fieldName.equals("id") && !found.containsKey(Id.class)) {
+                idVar = var;
+            }
+        }
+        if (found.containsKey(Id.class)) {
+            idVar = found.get(Id.class);
+        }
+
+        CodeBlock.Builder fieldData = CodeBlock.builder().add("return $T.builder()", FieldData.class);
+        if (idVar != null) {
+            fieldData.add(".id($L)", idVar);
+        }
+        addSpecialField(fieldData, "createdAt", found.get(CreatedAt.class));
+        addSpecialField(fieldData, "createdBy", found.get(CreatedBy.class));
+        addSpecialField(fieldData, "updatedAt", found.get(UpdatedAt.class));
+        addSpecialField(fieldData, "updatedBy", found.get(UpdatedBy.class));
+        addSpecialField(fieldData, "version", found.get(Version.class));
+        fieldData.add(".map($L.build())", map.build());
+        body.addStatement("$L.build()", fieldData.build());
+
+        MethodSpec getMethod = MethodSpec.methodBuilder("get")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(FieldData.class)
+                .addCode(body.build())
+                .build();
+        TypeSpec fieldDataClass = TypeSpec.classBuilder(generateClassName)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(ParameterizedTypeName.get(Supplier.class, FieldData.class))
+                .addMethod(getMethod)
+                .build();
+        JavaFile javaFile = JavaFile.builder(packageName, fieldDataClass).build();
+
+        writeSourceFile(packageName.isEmpty() ? generateClassName : packageName + "." + generateClassName,
+                javaFile.toString(), type);
+    }
+
+    private void addSpecialField(CodeBlock.Builder fieldData, String name, String var) {
+        if (var != null) {
+            fieldData.add(".$L($L)", name, var);
+        }
+    }
+
+    /**
+     * Given a method, returns the field name, or null if the method does not appear to be a getter. This must match
+     * FieldScanner.toFieldName().
+     */
+    protected String toFieldName(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        if (!((ExecutableType)method.asType()).getParameterTypes().isEmpty() || name.equals("get") || name.equals("is")) {
+            return null;
+        }
+        if (name.startsWith("get")) {
+            String field = name.substring(3);
+            return field.substring(0, 1).toLowerCase() + field.substring(1);
+        } else if (name.startsWith("is")) {
+            String field = name.substring(2);
+            return field.substring(0, 1).toLowerCase() + field.substring(1);
+        } else {
+            return null;
+        }
+    }
+
+    protected boolean isFieldOptional(TypeElement type, VariableElement field) {
+        // Kotlin properties declared with a nullable type are optional; their backing fields are annotated @Nullable
+        if (hasAnnotation(type, "kotlin.Metadata") && hasAnnotation(field, "org.jetbrains.annotations.Nullable")) {
+            return true;
+        }
+        return isOptional(field.asType());
+    }
+
+    protected boolean isOptional(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((DeclaredType)type).asElement().getSimpleName().contentEquals("Optional");
+    }
+
+    private boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement)mirror.getAnnotationType().asElement();
+            if (annotation.getQualifiedName().contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeSourceFile(String className, String text, TypeElement originatingType) {
+        try {
+            JavaFileObject sourceFile =
+                    processingEnv.getFiler().createSourceFile(className, originatingType);
+            Writer writer = sourceFile.openWriter();
+            try {
+                writer.write(text);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write generated class " + className + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package io.stardog.stardao.auto.processor;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableSet;
+import com.squareup.javapoet.*;
+import io.stardog.stardao.auto.annotations.GenerateValidator;
+import io.stardog.stardao.validation.Constraints;
+import io.stardog.stardao.validation.GeneratedValidator;
+import io.stardog.stardao.validation.ModelValidator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import javax.validation.groups.Default;
+import javax.validation.valueextraction.Unwrapping;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Generates a GeneratedValidator for @GenerateValidator classes. Constraints on getters are checked with plain Java
+ * code for @NotNull, @NotEmpty, @NotBlank, @Size, @Pattern (with the regex compiled once), @Min, @Max and @Email,
+ * using the same default messages as Hibernate Validator. Any other constraint, or one with a custom interpolated
+ * message, marks its property as unsupported so that it is left to Bean Validation.
+ */
+@AutoService(Processor.class)
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedAnnotationTypes({"io.stardog.stardao.auto.annotations.GenerateValidator"})
+public class ValidatorProcessor extends AbstractProcessor {
+    private static final String CONSTRAINT = "javax.validation.Constraint";
+    private static final String VALID = "javax.validation.Valid";
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Collection<? extends Element> annotatedElements =
+                roundEnv.getElementsAnnotatedWith(GenerateValidator.class);
+        List<TypeElement> types = ElementFilter.typesIn(annotatedElements);
+        for (TypeElement type : types) {
+            try {
+                processType(type);
+            } catch (Exception e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    private void processType(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS) {
+            throw new ProcessorException("@GenerateValidator may only be used on classes", type);
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String generateClassName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + ModelValidator.GENERATED_SUFFIX;
+        TypeName modelType = TypeName.get(processingEnv.getTypeUtils().erasure(type.asType()));
+
+        ValidatorBuilder builder = new ValidatorBuilder(modelType);
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            if (isConstraint(annotation) || isValid(annotation)) {
+                // class-level constraints can only be checked by validating the whole object
+                builder.complete = false;
+            }
+        }
+        for (Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (member.getEnclosingElement().toString().equals(Object.class.getName())) {
+                continue;
+            }
+            if (member.getKind() == ElementKind.FIELD && hasConstraints(member)) {
+                // field constraints are left to Bean Validation, since the field may not be accessible
+                builder.unsupported.add(member.getSimpleName().toString());
+                builder.complete = false;
+            } else if (member.getKind() == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement)member;
+                String propertyName = toPropertyName(method);
+                if (propertyName != null && hasConstraints(method)) {
+                    processGetter(builder, propertyName, method);
+                }
+            }
+        }
+
+        TypeSpec validatorClass = builder.build(generateClassName);
+        JavaFile javaFile = JavaFile.builder(packageName, validatorClass).build();
+        writeSourceFile(packageName.isEmpty() ? generateClassName : packageName + "." + generateClassName,
+                javaFile.toString(), type);
+    }
+
+    private void processGetter(ValidatorBuilder builder, String propertyName, ExecutableElement getter) {
+        TypeMirror returnType = getter.getReturnType();
+        TypeMirror valueType = returnType;
+        boolean optional = isType(returnType, Optional.class);
+        if (optional) {
+            List<? extends TypeMirror> args = ((DeclaredType)returnType).getTypeArguments();
+            valueType = args.isEmpty() ? processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType() : args.get(0);
+        }
+
+        CodeBlock.Builder body = CodeBlock.builder();
+        if (optional) {
+            body.addStatement("$T raw = object.$L()", TypeName.get(returnType), getter.getSimpleName());
+            body.addStatement("$T value = raw != null ? raw.orElse(null) : null", TypeName.get(valueType));
+        } else {
+            body.addStatement("$T value = object.$L()", TypeName.get(returnType), getter.getSimpleName());
+        }
+
+        for (AnnotationMirror annotation : getter.getAnnotationMirrors()) {
+            if (isValid(annotation)) {
+                builder.complete = false;
+                continue;
+            }
+            if (!isConstraint(annotation)) {
+                continue;
+            }
+            // @NotNull applies to the Optional itself unless it asks to be unwrapped; other constraints are not
+            // applicable to an Optional, so Hibernate Validator always checks them against its contents
+            String rawExpr = optional && !isUnwrapped(annotation) ? "raw" : "value";
+            CodeBlock check = toCheck(builder, annotation, getter, rawExpr, valueType);
+            if (check == null) {
+                builder.unsupported.add(propertyName);
+                builder.complete = false;
+                return;
+            }
+            if (check.isEmpty()) {
+                continue;
+            }
+            body.beginControlFlow("if ($L && $L)", toGroupCondition(annotation), check)
+                    .addStatement("return $S", toMessage(annotation))
+                    .endControlFlow();
+        }
+        body.addStatement("return null");
+
+        builder.addProperty(propertyName, body.build());
+    }
+
+    /**
+     * Build the condition under which a constraint is violated, or return null if the constraint is not supported.
+     */
+    private CodeBlock toCheck(ValidatorBuilder builder, AnnotationMirror annotation, ExecutableElement getter,
+                              String rawExpr, TypeMirror valueType) {
+        if (toMessage(annotation) == null) {
+            return null;
+        }
+        String name = annotationName(annotation);
+        boolean primitive = valueType.getKind().isPrimitive();
+
+        if (name.equals(NotNull.class.getName())) {
+            // a primitive can never be null
+            return primitive ? CodeBlock.builder().build() : CodeBlock.of("$L == null", rawExpr);
+        } else if (name.equals(NotEmpty.class.getName())) {
+            CodeBlock length = toLength(valueType);
+            return length == null ? null : CodeBlock.of("(value == null || $L == 0)", length);
+        } else if (name.equals(NotBlank.class.getName())) {
+            return isCharSequence(valueType) ? CodeBlock.of("(value == null || value.toString().trim().isEmpty())") : null;
+        } else if (name.equals(Size.class.getName())) {
+            CodeBlock length = toLength(valueType);
+            if (length == null) {
+                return null;
+            }
+            Size size = getter.getAnnotation(Size.class);
+            return CodeBlock.of("(value != null && ($L < $L || $L > $L))", length, size.min(), length, size.max());
+        } else if (name.equals(Pattern.class.getName())) {
+            if (!isCharSequence(valueType)) {
+                return null;
+            }
+            Pattern pattern = getter.getAnnotation(Pattern.class);
+            int flags = 0;
+            for (Pattern.Flag flag : pattern.flags()) {
+                flags |= flag.getValue();
+            }
+            String field = builder.addPattern(pattern.regexp(), flags);
+            return CodeBlock.of("(value != null && !$L.matcher(value).matches())", field);
+        } else if (name.equals(Email.class.getName())) {
+            Email email = getter.getAnnotation(Email.class);
+            if (!isCharSequence(valueType) || !email.regexp().equals(".*") || email.flags().length > 0) {
+                return null;
+            }
+            return CodeBlock.of("!$T.isEmail(value)", Constraints.class);
+        } else if (name.equals(Min.class.getName())) {
+            return toCompare(valueType, getter.getAnnotation(Min.class).value(), "<");
+        } else if (name.equals(Max.class.getName())) {
+            return toCompare(valueType, getter.getAnnotation(Max.class).value(), ">");
+        }
+        return null;
+    }
+
+    /**
+     * Whether a constraint has the Unwrapping.Unwrap payload, so that it is checked against the contents of a
+     * container such as an Optional.
+     */
+    private boolean isUnwrapped(AnnotationMirror annotation) {
+        for (Map.Entry<? extends ExecutableElement,? extends AnnotationValue> e : annotation.getElementValues().entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals("payload")) {
+                for (Object value : (List<?>)e.getValue().getValue()) {
+                    if (isType((TypeMirror)((AnnotationValue)value).getValue(), Unwrapping.Unwrap.class)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private CodeBlock toLength(TypeMirror valueType) {
+        if (isCharSequence(valueType)) {
+            return CodeBlock.of("value.length()");
+        } else if (isType(valueType, Collection.class) || isType(valueType, Map.class)) {
+            return CodeBlock.of("value.size()");
+        } else if (valueType.getKind() == TypeKind.ARRAY) {
+            return CodeBlock.of("value.length");
+        }
+        return null;
+    }
+
+    private CodeBlock toCompare(TypeMirror valueType, long bound, String operator) {
+        Types types = processingEnv.getTypeUtils();
+        TypeKind kind = valueType.getKind().isPrimitive() ? valueType.getKind() : null;
+        if (kind == null && valueType.getKind() == TypeKind.DECLARED) {
+            try {
+                kind = types.unboxedType(valueType).getKind();
+            } catch (IllegalArgumentException e) {
+                kind = null;
+            }
+        }
+        if (kind == TypeKind.INT || kind == TypeKind.LONG || kind == TypeKind.SHORT || kind == TypeKind.BYTE) {
+            return valueType.getKind().isPrimitive()
+                    ? CodeBlock.of("value $L $LL", operator, bound)
+                    : CodeBlock.of("(value != null && value $L $LL)", operator, bound);
+        } else if (isType(valueType, BigDecimal.class) || isType(valueType, BigInteger.class)) {
+            return CodeBlock.of("(value != null && value.compareTo($T.valueOf($LL)) $L 0)",
+                    TypeName.get(types.erasure(valueType)), bound, operator);
+        }
+        return null;
+    }
+
+    /**
+     * Build the condition under which a constraint applies to the group being validated. A constraint applies when
+     * the group is one of its groups or extends one, as in Bean Validation.
+     */
+    private CodeBlock toGroupCondition(AnnotationMirror annotation) {
+        List<TypeMirror> groups = new ArrayList<>();
+        for (Map.Entry<? extends ExecutableElement,? extends AnnotationValue> e : annotation.getElementValues().entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals("groups")) {
+                for (Object value : (List<?>)e.getValue().getValue()) {
+                    groups.add((TypeMirror)((AnnotationValue)value).getValue());
+                }
+            }
+        }
+        if (groups.isEmpty()) {
+            return CodeBlock.of("$T.class.isAssignableFrom(group)", Default.class);
+        }
+        CodeBlock.Builder condition = CodeBlock.builder().add("(");
+        for (int i = 0; i < groups.size(); i++) {
+            condition.add(i == 0 ? "$T.class.isAssignableFrom(group)" : " || $T.class.isAssignableFrom(group)",
+                    TypeName.get(processingEnv.getTypeUtils().erasure(groups.get(i))));
+        }
+        return condition.add(")").build();
+    }
+
+    /**
+     * Return the message of a constraint as Hibernate Validator would interpolate it with its default (English)
+     * messages, or null if the message cannot be determined at compile time.
+     */
+    private String toMessage(AnnotationMirror annotation) {
+        String name = annotationName(annotation);
+        String message = null;
+        Map<String,Object> values = new HashMap<>();
+        for (Map.Entry<? extends ExecutableElement,? extends AnnotationValue> e :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            values.put(e.getKey().getSimpleName().toString(), e.getValue().getValue());
+        }
+        Object customMessage = values.get("message");
+        if (customMessage != null && !customMessage.equals("{" + name + ".message}")) {
+            String text = customMessage.toString();
+            return text.contains("{") || text.contains("$") ? null : text;
+        }
+        if (name.equals(NotNull.class.getName())) {
+            message = "must not be null";
+        } else if (name.equals(NotEmpty.class.getName())) {
+            message = "must not be empty";
+        } else if (name.equals(NotBlank.class.getName())) {
+            message = "must not be blank";
+        } else if (name.equals(Size.class.getName())) {
+            message = "size must be between " + values.get("min") + " and " + values.get("max");
+        } else if (name.equals(Pattern.class.getName())) {
+            message = "must match \"" + values.get("regexp") + "\"";
+        } else if (name.equals(Email.class.getName())) {
+            message = "must be a well-formed email address";
+        } else if (name.equals(Min.class.getName())) {
+            message = "must be greater than or equal to " + values.get("value");
+        } else if (name.equals(Max.class.getName())) {
+            message = "must be less than or equal to " + values.get("value");
+        }
+        return message;
+    }
+
+    private boolean hasConstraints(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (isConstraint(annotation) || isValid(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isConstraint(AnnotationMirror annotation) {
+        String name = annotationName(annotation);
+        if (name.startsWith("javax.validation.constraints.") || name.startsWith("org.hibernate.validator.constraints.")) {
+            return true;
+        }
+        for (AnnotationMirror meta : annotation.getAnnotationType().asElement().getAnnotationMirrors()) {
+            if (annotationName(meta).equals(CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isValid(AnnotationMirror annotation) {
+        return annotationName(annotation).equals(VALID);
+    }
+
+    private String annotationName(AnnotationMirror annotation) {
+        return ((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private boolean isCharSequence(TypeMirror type) {
+        return isType(type, CharSequence.class);
+    }
+
+    private boolean isType(TypeMirror type, Class<?> cls) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(cls.getCanonicalName());
+        return element != null && types.isAssignable(types.erasure(type), types.erasure(element.asType()));
+    }
+
+    /**
+     * Given a method, returns the property name, or null if the method does not appear to be a getter.
+     */
+    protected String toPropertyName(ExecutableElement method) {
+        if (method.getModifiers().contains(Modifier.STATIC) || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        String property;
+        if (name.startsWith("get") && name.length() > 3) {
+            property = name.substring(3);
+        } else if (name.startsWith("is") && name.length() > 2) {
+            property = name.substring(2);
+        } else {
+            return null;
+        }
+        return property.substring(0, 1).toLowerCase() + property.substring(1);
+    }
+
+    private void writeSourceFile(String className, String text, TypeElement originatingType) {
+        try {
+            JavaFileObject sourceFile =
+                    processingEnv.getFiler().createSourceFile(className, originatingType);
+            Writer writer = sourceFile.openWriter();
+            try {
+                writer.write(text);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write generated class " + className + ": " + e);
+        }
+    }
+
+    /**
+     * Collects the per-property check methods and precompiled patterns of the generated class.
+     */
+    private static class ValidatorBuilder {
+        private final TypeName modelType;
+        private final Map<String,MethodSpec> checks = new LinkedHashMap<>();
+        private final Set<String> unsupported = new LinkedHashSet<>();
+        private final List<FieldSpec> patterns = new ArrayList<>();
+        private boolean complete = true;
+
+        ValidatorBuilder(TypeName modelType) {
+            this.modelType = modelType;
+        }
+
+        String addPattern(String regexp, int flags) {
+            String name = "PATTERN_" + patterns.size();
+            patterns.add(FieldSpec.builder(java.util.regex.Pattern.class, name, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.compile($S, $L)", java.util.regex.Pattern.class, regexp, flags)
+                    .build());
+            return name;
+        }
+
+        void addProperty(String propertyName, CodeBlock body) {
+            checks.put(propertyName, MethodSpec.methodBuilder("validate" + propertyName.substring(0, 1).toUpperCase() + propertyName.substring(1))
+                    .addModifiers(Modifier.PRIVATE)
+                    .returns(String.class)
+                    .addParameter(modelType, "object")
+                    .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)), "group")
+                    .addCode(body)
+                    .build());
+        }
+
+        TypeSpec build(String className) {
+            TypeName stringSet = ParameterizedTypeName.get(Set.class, String.class);
+            checks.keySet().removeAll(unsupported);
+
+            MethodSpec.Builder getPropertyError = MethodSpec.methodBuilder("getPropertyError")
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .returns(String.class)
+                    .addParameter(modelType, "object")
+                    .addParameter(String.class, "property")
+                    .addParameter(ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)), "group")
+                    .beginControlFlow("switch (property)");
+            for (Map.Entry<String,MethodSpec> e : checks.entrySet()) {
+                getPropertyError.addStatement("case $S: return $N(object, group)", e.getKey(), e.getValue());
+            }
+            getPropertyError.addStatement("default: throw new $T($S + property)", IllegalArgumentException.class, "Property is not validated: ")
+                    .endControlFlow();
+
+            return TypeSpec.classBuilder(className)
+                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                    .addSuperinterface(ParameterizedTypeName.get(ClassName.get(GeneratedValidator.class), modelType))
+                    .addFields(patterns)
+                    .addField(FieldSpec.builder(stringSet, "VALIDATED", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                            .initializer("$T.of($L)", ImmutableSet.class, toLiterals(checks.keySet()))
+                            .build())
+                    .addField(FieldSpec.builder(stringSet, "UNSUPPORTED", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                            .initializer("$T.of($L)", ImmutableSet.class, toLiterals(unsupported))
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("getValidatedProperties")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(stringSet)
+                            .addStatement("return VALIDATED")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("getUnsupportedProperties")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(stringSet)
+                            .addStatement("return UNSUPPORTED")
+                            .build())
+                    .addMethod(MethodSpec.methodBuilder("isComplete")
+                            .addAnnotation(Override.class)
+                            .addModifiers(Modifier.PUBLIC)
+                            .returns(boolean.class)
+                            .addStatement("return $L", complete && unsupported.isEmpty())
+                            .build())
+                    .addMethod(getPropertyError.build())
+                    .addMethods(checks.values())
+                    .build();
+        }
+
+        private CodeBlock toLiterals(Collection<String> names) {
+            CodeBlock.Builder literals = CodeBlock.builder();
+            int i = 0;
+            for (String name : names) {
+                literals.add(i++ == 0 ? "$S" : ", $S", name);
+            }
+            return literals.build();
+        }
+    }
+}
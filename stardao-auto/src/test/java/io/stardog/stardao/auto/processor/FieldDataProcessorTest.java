@@ -0,0 +1,24 @@
+package io.stardog.stardao.auto.processor;
+
+import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.field.FieldScanner;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FieldDataProcessorTest {
+    @Test
+    public void testGeneratedFieldData() throws Exception {
+        FieldData fieldData = new TestUser_FieldData().get();
+        assertEquals(new FieldScanner().scanAnnotations(TestUser.class), fieldData);
+        assertEquals("id", fieldData.getId().getName());
+        assertTrue(fieldData.getMap().get("email").isOptional());
+        assertFalse(fieldData.getMap().containsKey("ok"));
+        assertFalse(fieldData.getMap().containsKey("MAX_AGE"));
+    }
+
+    @Test
+    public void testGetFieldDataUsesGenerated() throws Exception {
+        assertEquals(new TestUser_FieldData().get(), FieldScanner.getFieldData(TestUser.class));
+    }
+}
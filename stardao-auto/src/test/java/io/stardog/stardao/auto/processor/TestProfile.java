@@ -0,0 +1,29 @@
+package io.stardog.stardao.auto.processor;
+
+import com.google.auto.value.AutoValue;
+import io.stardog.stardao.auto.annotations.GenerateValidator;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.valueextraction.Unwrapping;
+import java.util.Optional;
+
+@AutoValue
+@GenerateValidator
+public abstract class TestProfile {
+    @NotNull
+    public abstract Optional<String> getTitle();
+
+    @NotNull(payload = Unwrapping.Unwrap.class)
+    public abstract Optional<String> getNickname();
+
+    public static Builder builder() {
+        return new AutoValue_TestProfile.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder title(String title);
+        public abstract Builder nickname(String nickname);
+        public abstract TestProfile build();
+    }
+}
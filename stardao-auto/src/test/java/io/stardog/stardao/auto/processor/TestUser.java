@@ -3,19 +3,32 @@ package io.stardog.stardao.auto.processor;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.auto.value.AutoValue;
 import io.stardog.stardao.auto.annotations.AutoPartial;
+import io.stardog.stardao.auto.annotations.GenerateFieldData;
+import io.stardog.stardao.auto.annotations.GenerateValidator;
 import org.bson.types.ObjectId;
 
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
 import java.time.LocalDate;
 import java.util.Optional;
 
 @AutoValue
 @AutoPartial
+@GenerateFieldData
+@GenerateValidator
 public abstract class TestUser {
+    public static final int MAX_AGE = 150;
+
     public abstract ObjectId getId();
+    @Size(min = 1, max = 100)
     public abstract String getName();
+
+    @Min(0)
     public abstract int getAge();
 
     @TestAnnotation
+    @Email
     public abstract Optional<String> getEmail();
 
     public static Builder builder() {
@@ -0,0 +1,54 @@
+package io.stardog.stardao.auto.processor;
+
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.validation.GeneratedValidator;
+import io.stardog.stardao.validation.ModelValidator;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import javax.validation.groups.Default;
+
+import static org.junit.Assert.*;
+
+public class ValidatorProcessorTest {
+    @Test
+    public void testGeneratedValidator() throws Exception {
+        TestUser_Validator validator = new TestUser_Validator();
+        assertEquals(ImmutableSet.of("name", "age", "email"), validator.getValidatedProperties());
+        assertTrue(validator.getUnsupportedProperties().isEmpty());
+        assertTrue(validator.isComplete());
+
+        TestUser user = TestUser.builder().id(new ObjectId()).name("").age(-1).email("invalid").build();
+        assertEquals("size must be between 1 and 100", validator.getPropertyError(user, "name", Default.class));
+        assertEquals("must be greater than or equal to 0", validator.getPropertyError(user, "age", Default.class));
+        assertEquals("must be a well-formed email address", validator.getPropertyError(user, "email", Default.class));
+
+        user = TestUser.builder().id(new ObjectId()).name("Bob").age(42).email("example@example.com").build();
+        assertNull(validator.getPropertyError(user, "name", Default.class));
+        assertNull(validator.getPropertyError(user, "age", Default.class));
+        assertNull(validator.getPropertyError(user, "email", Default.class));
+    }
+
+    @Test
+    public void testGeneratedPartialValidator() throws Exception {
+        GeneratedValidator<Object> validator = ModelValidator.getGeneratedValidator(PartialTestUser.builder().build().getClass());
+        assertNotNull(validator);
+
+        PartialTestUser partial = PartialTestUser.builder().email("invalid").build();
+        assertEquals("must be a well-formed email address", validator.getPropertyError(partial, "email", Default.class));
+        assertNull(validator.getPropertyError(partial, "name", Default.class));
+    }
+
+    @Test
+    public void testGeneratedOptionalNotNull() throws Exception {
+        // @NotNull checks the Optional itself, unless it has the Unwrapping.Unwrap payload
+        TestProfile_Validator validator = new TestProfile_Validator();
+        TestProfile profile = TestProfile.builder().build();
+        assertNull(validator.getPropertyError(profile, "title", Default.class));
+        assertEquals("must not be null", validator.getPropertyError(profile, "nickname", Default.class));
+
+        profile = TestProfile.builder().title("Dr").nickname("Bob").build();
+        assertNull(validator.getPropertyError(profile, "title", Default.class));
+        assertNull(validator.getPropertyError(profile, "nickname", Default.class));
+    }
+}
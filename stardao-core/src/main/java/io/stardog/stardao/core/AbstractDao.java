@@ -1,25 +1,86 @@
 package io.stardog.stardao.core;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.RateLimiter;
+import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
 import io.stardog.stardao.core.field.FieldScanner;
+import io.stardog.stardao.core.field.FieldSet;
+import io.stardog.stardao.core.guard.GuardAction;
+import io.stardog.stardao.core.guard.Guardrails;
+import io.stardog.stardao.core.guard.ResultGuard;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.OperationTimer;
+import io.stardog.stardao.core.metrics.OperationType;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.exceptions.DataConflictException;
+import io.stardog.stardao.exceptions.DataLimitException;
 import io.stardog.stardao.exceptions.DataNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 public abstract class AbstractDao<M,P,K,I> implements Dao<M,P,K> {
     private final Class<M> modelClass;
     private final Class<P> partialClass;
     private final FieldData fieldData;
+    private final long startNanos;
+    private final String metricsName;
+    private Duration startupTime;
+    private volatile Guardrails guardrails = Guardrails.NONE;
+    private volatile RateLimiter scanRateLimiter;
+    private final static Logger LOGGER = LoggerFactory.getLogger(AbstractDao.class);
 
     public AbstractDao(Class<M> modelClass, Class<P> partialClass) {
+        this.startNanos = System.nanoTime();
         this.modelClass = modelClass;
         this.partialClass = partialClass;
         this.fieldData = generateFieldData();
+        this.metricsName = getClass().getSimpleName().isEmpty() ? getDisplayModelName() + "Dao" : getClass().getSimpleName();
+        this.startupTime = Duration.ofNanos(System.nanoTime() - startNanos);
     }
 
+    /**
+     * Generate the field data for the model. By default this is shared process-wide for each model class (see
+     * FieldScanner.getFieldData()), so constructing many Daos over the same model only scans it once.
+     * @return  field data
+     */
     protected FieldData generateFieldData() {
-        return new FieldScanner().scanAnnotations(modelClass);
+        return FieldScanner.getFieldData(modelClass);
+    }
+
+    /**
+     * Record that construction of the Dao is complete. The database-specific superclasses call this at the end of
+     * their constructors, so that the startup time covers building the mappers as well as the field data.
+     */
+    protected void recordStartup() {
+        startupTime = Duration.ofNanos(System.nanoTime() - startNanos);
+        LOGGER.debug("Initialized {} in {}us", getClass().getName(), startupTime.toNanos() / 1000);
+    }
+
+    /**
+     * How long the Dao took to construct, from the start of the AbstractDao constructor until startup was recorded.
+     * @return  startup time
+     */
+    public Duration getStartupTime() {
+        return startupTime;
     }
 
     @Override
@@ -36,10 +97,207 @@ public abstract class AbstractDao<M,P,K,I> implements Dao<M,P,K> {
         return fieldData;
     }
 
+    /**
+     * Validate a selection of fields, such as the fields a client asked for, for use as a projection with
+     * loadOpt(id, fields) and the projected query methods of the database-specific superclasses. The id field is
+     * always included, so that projected objects can still be told apart.
+     * @param fields    names of top-level fields
+     * @return  field set holding the selected fields and the id field
+     * @throws IllegalArgumentException if a name is not a field of the model
+     */
+    public FieldSet selectFields(Iterable<String> fields) {
+        FieldSet.Builder builder = FieldSet.builder(fieldData);
+        if (fieldData.getId() != null) {
+            builder.add(fieldData.getId().getName());
+        }
+        for (String field : fields) {
+            builder.add(field);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the name that a model field is stored under in the database, taking @StorageName into account. Field
+     * names that do not appear in the field data are returned unchanged. For a dotted path, only the top-level field
+     * is renamed.
+     * @param fieldName name of the field on the model, or a dotted path
+     * @return  storage name of the field
+     */
+    protected String toStorageName(String fieldName) {
+        int dot = fieldName.indexOf('.');
+        if (dot > 0) {
+            return toStorageName(fieldName.substring(0, dot)) + fieldName.substring(dot);
+        }
+        Field field = fieldData.getMap().get(fieldName);
+        return field != null ? field.getStorageName() : fieldName;
+    }
+
+    /**
+     * Check that every dotted path in an update exists in the structure of the model class.
+     * @param update    update data
+     * @throws IllegalArgumentException if a path does not exist on the model
+     */
+    protected void checkUpdatePaths(Update<P> update) {
+        for (String field : update.getUpdateFields()) {
+            if (field.indexOf('.') > 0 && FieldScanner.getCachedPathType(modelClass, field) == null) {
+                throw new IllegalArgumentException("Update path does not exist on " + getDisplayModelName() + ": " + field);
+            }
+        }
+    }
+
     public String getDisplayModelName() {
         return getModelClass().getSimpleName();
     }
 
+    /**
+     * The name this Dao reports its operations under to DaoListeners: the simple name of its class.
+     * @return  metrics name
+     */
+    public String getMetricsName() {
+        return metricsName;
+    }
+
+    /**
+     * Start timing a database operation, for the DaoListeners registered with DaoMetrics. The database-specific
+     * superclasses call this around the body of each operation, with try-with-resources.
+     * @param type  type of operation
+     * @param name  name of the dao method
+     * @return  timer to close when the operation completes
+     */
+    protected OperationTimer startOperation(OperationType type, String name) {
+        return DaoMetrics.startOperation(metricsName, type, name);
+    }
+
+    /**
+     * Make a lazy result whose reads are timed as a single operation, for the DaoListeners registered with
+     * DaoMetrics. Each iterator is timed while it is read, and reported when it is exhausted or closed; see
+     * DaoMetrics.timeIteration().
+     * @param type  type of operation
+     * @param name  name of the dao method
+     * @param iterable  lazy result
+     * @param <T>   type of object read
+     * @return  timed lazy result
+     */
+    protected <T> DaoIterable<T> timeIteration(OperationType type, String name, Iterable<T> iterable) {
+        return new DaoIterable<>(() -> DaoMetrics.timeIteration(metricsName, type, name, iterable::iterator));
+    }
+
+    /**
+     * Set limits on how much a single call to this Dao may read; see Guardrails.
+     * @param guardrails    guardrails, or Guardrails.NONE to remove all limits
+     */
+    public void setGuardrails(Guardrails guardrails) {
+        this.scanRateLimiter = guardrails.getMaxScanRate() != null ? RateLimiter.create(guardrails.getMaxScanRate()) : null;
+        this.guardrails = guardrails;
+    }
+
+    public Guardrails getGuardrails() {
+        return guardrails;
+    }
+
+    /**
+     * Start counting the objects read into a Results, to enforce the result limits of the Guardrails. The
+     * database-specific superclasses call add() on the guard for each stored document or item they read.
+     * @param operation name of the dao method
+     * @return  guard for the call, which does nothing if there are no result limits
+     */
+    protected ResultGuard guardResults(String operation) {
+        Guardrails guardrails = this.guardrails;
+        if (!guardrails.hasResultLimits()) {
+            return ResultGuard.NONE;
+        }
+        return new ResultGuard(metricsName, operation, guardrails, this::getCallSite);
+    }
+
+    /**
+     * Check that a full scan of the table or collection is allowed by the Guardrails, warning or rejecting it
+     * according to the full scan action.
+     * @param operation name of the dao method
+     * @throws DataLimitException   if full scans are rejected
+     */
+    protected void checkFullScan(String operation) {
+        GuardAction action = guardrails.getFullScanAction();
+        if (action == GuardAction.ALLOW) {
+            return;
+        }
+        String message = "Full scan by " + metricsName + "." + operation + " at " + getCallSite();
+        if (action == GuardAction.REJECT) {
+            throw new DataLimitException(message);
+        }
+        LOGGER.warn(message);
+    }
+
+    /**
+     * Wait, if needed, to keep full scans within the max scan rate of the Guardrails. Called for each object read
+     * by a full scan.
+     */
+    protected void throttleScan() {
+        RateLimiter limiter = scanRateLimiter;
+        if (limiter != null) {
+            limiter.acquire();
+        }
+    }
+
+    /**
+     * Throttle an iterator over the results of a full scan to the max scan rate of the Guardrails.
+     * @param iterator  iterator over the scan
+     * @param <T>   type of object
+     * @return  iterator that waits as needed before returning each object
+     */
+    protected <T> Iterator<T> throttleScan(Iterator<T> iterator) {
+        if (scanRateLimiter == null) {
+            return iterator;
+        }
+        return Iterators.transform(iterator, item -> {
+            throttleScan();
+            return item;
+        });
+    }
+
+    /**
+     * Find the code that called this Dao: the first stack frame outside of the Dao's superclasses, their nested
+     * classes, the subpackages of their packages (such as the Mongo query monitor) and the libraries they call into.
+     * Only used when a guardrail is broken, since walking the stack is slow.
+     * @return  call site, such as "com.example.UserResource.list(UserResource.java:42)"
+     */
+    protected String getCallSite() {
+        Set<String> skip = new HashSet<>();
+        List<String> skipPrefixes = new ArrayList<>();
+        for (Class<?> type = getClass().getSuperclass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            skip.add(type.getName());
+            skipPrefixes.add(type.getName() + "$");
+            if (type.getPackage() != null) {
+                skipPrefixes.add(type.getPackage().getName() + ".");
+            }
+        }
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (!skip.contains(className) && !isLibraryClass(className)
+                    && skipPrefixes.stream().noneMatch(prefix -> isInPrefix(className, prefix))) {
+                return element.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Check whether a class is nested in a class, or in a subpackage of a package, given as a prefix ending in "$"
+     * or "." respectively. Classes directly in the package itself, such as the application's own daos, do not match.
+     */
+    private static boolean isInPrefix(String className, String prefix) {
+        if (!className.startsWith(prefix)) {
+            return false;
+        }
+        return prefix.endsWith("$") || className.indexOf('.', prefix.length()) >= 0;
+    }
+
+    private static boolean isLibraryClass(String className) {
+        return className.startsWith("java.") || className.startsWith("sun.") || className.startsWith("jdk.")
+                || className.startsWith("com.google.common.") || className.startsWith("com.mongodb.")
+                || className.startsWith("com.amazonaws.") || className.startsWith(ResultGuard.class.getPackage().getName())
+                || className.equals(Results.class.getName()) || className.contains("$$Lambda");
+    }
+
     @Override
     public M load(K id) {
         return loadOpt(id)
@@ -67,6 +325,39 @@ public abstract class AbstractDao<M,P,K,I> implements Dao<M,P,K> {
 
     public abstract M create(P partial, Instant createAt, I createBy);
 
+    public List<M> createAll(List<P> partials) {
+        return createAll(partials, Instant.now(), null);
+    }
+
+    public List<M> createAll(List<P> partials, I createBy) {
+        return createAll(partials, Instant.now(), createBy);
+    }
+
+    /**
+     * Create several objects at once. By default this creates them one at a time; the database-specific superclasses
+     * write them in bulk where they can.
+     * @param partials  objects to create
+     * @param createAt  create timestamp
+     * @param createBy  creator id, or null
+     * @return  the newly created objects, in the same order
+     * @throws DataBulkCreateException if any of the objects could not be created; the others still are
+     */
+    public List<M> createAll(List<P> partials, Instant createAt, I createBy) {
+        List<M> created = new ArrayList<>();
+        Map<Integer,String> errors = new LinkedHashMap<>();
+        for (int i = 0; i < partials.size(); i++) {
+            try {
+                created.add(create(partials.get(i), createAt, createBy));
+            } catch (RuntimeException e) {
+                errors.put(i, e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new DataBulkCreateException(errors, created);
+        }
+        return created;
+    }
+
     /**
      * Update an object
      * @param id    id of the object to update
@@ -105,6 +396,124 @@ public abstract class AbstractDao<M,P,K,I> implements Dao<M,P,K> {
      */
     public abstract void update(K id, Update<P> update, Instant updateAt, I updateBy);
 
+    /**
+     * Start building an update for this model. Field names are checked as they are added, and the field sets are
+     * stored as compact FieldSets, so there is no need to serialize the partial (as updateOf() does) to find them.
+     * @return  update builder
+     */
+    public Update.FieldBuilder<P> updateBuilder() {
+        return Update.builder(fieldData);
+    }
+
+    /**
+     * Perform a read-modify-write update with optimistic concurrency, using the model's @Version field. The object is
+     * loaded, the updater computes an update from it, and the update is applied only if the version has not changed
+     * in the meantime. On a conflict, the whole cycle is retried with exponential backoff. An object stored before the
+     * model had a @Version field is updated on condition that it still has no version.
+     * @param id    id of the object to update
+     * @param updater   function computing an update from the current state of the object
+     * @return  the state of the object that the applied update was computed from
+     * @throws DataConflictException if the object was still being modified concurrently after every retry
+     */
+    public M update(K id, Function<M,Update<P>> updater) {
+        Field versionField = fieldData.getVersion();
+        if (versionField == null) {
+            throw new IllegalStateException(getDisplayModelName() + " does not have a @Version field");
+        }
+        for (int attempt = 1; ; attempt++) {
+            M model = load(id);
+            Long version = getVersionValue(model, versionField);
+            Update<P> update = updater.apply(model)
+                    .toBuilder()
+                    .expectedVersion(version != null ? version : Update.UNVERSIONED)
+                    .build();
+            try {
+                update(id, update);
+                return model;
+            } catch (DataConflictException e) {
+                if (attempt >= getMaxVersionRetries()) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * The number of attempts that update(id, updater) makes before giving up on a conflict.
+     * @return  maximum number of attempts
+     */
+    protected int getMaxVersionRetries() {
+        return 5;
+    }
+
+    /**
+     * Sleep before retrying a conflicting update, for a random time up to 10ms * 2^attempt.
+     * @param attempt   the number of the attempt that failed, starting at 1
+     */
+    protected void backoff(int attempt) {
+        long maxMillis = 10L << Math.min(attempt, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis / 2, maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataConflictException("Interrupted while retrying update of " + getDisplayModelName());
+        }
+    }
+
+    /**
+     * Read the value of the @Version field from a model. By default this calls its getter, which may be named
+     * getVersion(), isVersion() or version(), or else reads the Java field itself; the database-specific superclasses
+     * read it through their model mapper instead.
+     * @param model model object
+     * @param versionField  the @Version field
+     * @return  version, or null if it is not set
+     */
+    protected Long getVersionValue(M model, Field versionField) {
+        String name = versionField.getName();
+        try {
+            Object value = readProperty(model, name);
+            if (value instanceof Optional) {
+                value = ((Optional<?>) value).orElse(null);
+            }
+            return value != null ? ((Number) value).longValue() : null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Unable to read @Version field " + name + " of " + getDisplayModelName(), e);
+        }
+    }
+
+    private Object readProperty(M model, String name) throws ReflectiveOperationException {
+        String suffix = name.substring(0, 1).toUpperCase() + name.substring(1);
+        for (String getter : Arrays.asList("get" + suffix, "is" + suffix, name)) {
+            try {
+                return modelClass.getMethod(getter).invoke(model);
+            } catch (NoSuchMethodException e) {
+                // try the next naming convention
+            }
+        }
+        for (Class<?> c = modelClass; c != null; c = c.getSuperclass()) {
+            try {
+                java.lang.reflect.Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(model);
+            } catch (NoSuchFieldException e) {
+                // try the superclass
+            }
+        }
+        throw new NoSuchMethodException("No getter or field for " + name + " in " + modelClass.getName());
+    }
+
+    /**
+     * Check that an update does not touch the @Version field itself, which is maintained automatically.
+     * @param update    update data
+     */
+    protected void checkVersionNotUpdated(Update<P> update) {
+        Field versionField = fieldData.getVersion();
+        if (versionField != null && update.isUpdateField(versionField.getName())) {
+            throw new IllegalArgumentException("@Version field is updated automatically: " + versionField.getName());
+        }
+    }
+
     @Override
     public M updateAndReturn(K id, Update<P> update) {
         return updateAndReturn(id, update, Instant.now(), null);
@@ -142,6 +551,268 @@ public abstract class AbstractDao<M,P,K,I> implements Dao<M,P,K> {
      */
     public abstract M updateAndReturn(K id, Update<P> update, Instant updateAt, I updateBy);
 
+    @Override
+    public M updateAndReturnNew(K id, Update<P> update) {
+        return updateAndReturnNew(id, update, Instant.now(), null);
+    }
+
+    /**
+     * Update an object and return the state of the object after modification
+     * @param id    id of the object to update
+     * @param update    update data
+     * @param updateBy    user id of the user who performed the update
+     * @return  state of the object after modification
+     */
+    public M updateAndReturnNew(K id, Update<P> update, I updateBy) {
+        return updateAndReturnNew(id, update, Instant.now(), updateBy);
+    }
+
+    /**
+     * Update an object and return the state of the object after modification, in a single round trip to the
+     * database.
+     * @param id    id of the object to update
+     * @param update    update data
+     * @param updateAt    timestamp of the update
+     * @param updateBy    user id of the user who performed the update
+     * @return  state of the object after modification
+     */
+    public abstract M updateAndReturnNew(K id, Update<P> update, Instant updateAt, I updateBy);
+
+    /**
+     * Update an object and return the new values of just the fields that were updated
+     * @param id    id of the object to update
+     * @param update    update data
+     * @return  partial containing the updated fields
+     */
+    public P updateAndReturnUpdated(K id, Update<P> update) {
+        return updateAndReturnUpdated(id, update, Instant.now(), null);
+    }
+
+    /**
+     * Update an object and return the new values of just the fields that were updated
+     * @param id    id of the object to update
+     * @param update    update data
+     * @param updateBy    user id of the user who performed the update
+     * @return  partial containing the updated fields
+     */
+    public P updateAndReturnUpdated(K id, Update<P> update, I updateBy) {
+        return updateAndReturnUpdated(id, update, Instant.now(), updateBy);
+    }
+
+    /**
+     * Update an object and return the new values of just the fields that were updated (including the automatically
+     * maintained @UpdatedAt, @UpdatedBy and @Version fields), in a single round trip to the database. Removed fields
+     * are absent from the partial. This is cheaper than returning the whole object when only the changed values are
+     * needed, such as the result of an increment.
+     * @param id    id of the object to update
+     * @param update    update data
+     * @param updateAt    timestamp of the update
+     * @param updateBy    user id of the user who performed the update
+     * @return  partial containing the updated fields
+     */
+    public abstract P updateAndReturnUpdated(K id, Update<P> update, Instant updateAt, I updateBy);
+
+    /**
+     * Update an object, only if it currently matches a condition, in a single round trip to the database.
+     * @param id    id of the object to update
+     * @param condition condition the object must match
+     * @param update    update data
+     * @return  true if the object matched the condition and the update was applied
+     */
+    public boolean updateIf(K id, Condition condition, Update<P> update) {
+        return updateIf(id, condition, update, Instant.now(), null);
+    }
+
+    /**
+     * Update an object, only if it currently matches a condition, in a single round trip to the database.
+     * @param id    id of the object to update
+     * @param condition condition the object must match
+     * @param update    update data
+     * @param updateBy    user id of the user who performed the update
+     * @return  true if the object matched the condition and the update was applied
+     */
+    public boolean updateIf(K id, Condition condition, Update<P> update, I updateBy) {
+        return updateIf(id, condition, update, Instant.now(), updateBy);
+    }
+
+    /**
+     * Update an object, only if it currently matches a condition, in a single round trip to the database. If the
+     * object does not exist, the update is not applied.
+     * @param id    id of the object to update
+     * @param condition condition the object must match
+     * @param update    update data
+     * @param updateAt    timestamp of the update
+     * @param updateBy    user id of the user who performed the update
+     * @return  true if the object matched the condition and the update was applied
+     */
+    public abstract boolean updateIf(K id, Condition condition, Update<P> update, Instant updateAt, I updateBy);
+
+    /**
+     * Check that every field referenced by a condition is a field of the model.
+     * @param condition condition
+     * @throws IllegalArgumentException if a field is unknown
+     */
+    protected void checkConditionFields(Condition condition) {
+        for (String field : condition.getFields()) {
+            int dot = field.indexOf('.');
+            if (!fieldData.getMap().containsKey(dot > 0 ? field.substring(0, dot) : field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+    }
+
+    /**
+     * Create an object if it does not exist, otherwise update it, in a single round trip to the database.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @return  result indicating whether the object was inserted
+     */
+    public UpsertResult<M> upsert(K id, P partial, Update<P> update) {
+        return upsert(id, partial, update, Instant.now(), null);
+    }
+
+    /**
+     * Create an object if it does not exist, otherwise update it, in a single round trip to the database.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  result indicating whether the object was inserted
+     */
+    public UpsertResult<M> upsert(K id, P partial, Update<P> update, I upsertBy) {
+        return upsert(id, partial, update, Instant.now(), upsertBy);
+    }
+
+    /**
+     * Create an object if it does not exist, otherwise update it, in a single round trip to the database. When the
+     * object is created, it is given the partial's fields (other than those touched by the update), the @CreatedAt
+     * and @CreatedBy fields, and then the update is applied on top. When it already exists, only the update is
+     * applied.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  result indicating whether the object was inserted
+     */
+    public abstract UpsertResult<M> upsert(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy);
+
+    /**
+     * Upsert an object, and return the state of the object after the upsert.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @return  result indicating whether the object was inserted, containing the model
+     */
+    public UpsertResult<M> upsertAndReturn(K id, P partial, Update<P> update) {
+        return upsertAndReturn(id, partial, update, Instant.now(), null);
+    }
+
+    /**
+     * Upsert an object, and return the state of the object after the upsert. By default this costs one more read by
+     * id, which may see changes made by others after the upsert; the Mongo and DynamoDB daos override it to return
+     * the object from the write itself.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  result indicating whether the object was inserted, containing the model
+     */
+    public UpsertResult<M> upsertAndReturn(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        UpsertResult<M> result = upsert(id, partial, update, upsertAt, upsertBy);
+        return UpsertResult.of(result.isInserted(), load(id));
+    }
+
+    /**
+     * Returns true if an update touches a stored field, or any dotted path beneath it. Such fields must be left out
+     * of the insert-only data of an upsert.
+     * @param update    update data
+     * @param storageName   storage name of a top-level field
+     * @return  true if the update touches the field
+     */
+    protected boolean isTouchedByUpdate(Update<P> update, String storageName) {
+        for (String field : update.getUpdateFields()) {
+            String path = toStorageName(field);
+            if (path.equals(storageName) || path.startsWith(storageName + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build an update containing only the differences between the stored forms (documents or items) of two versions
+     * of an object. Fields whose values are structurally equal are left out, fields missing from the new version are
+     * removed, and embedded maps are compared key by key so that a change to one key becomes a dotted-path update.
+     * Lists and other values are replaced whole if they differ. The id and the automatically maintained fields are
+     * never included.
+     * @param after the new version of the object
+     * @param beforeValues  stored form of the old version, keyed by storage name
+     * @param afterValues   stored form of the new version, keyed by storage name
+     * @return  update that turns the old version into the new one
+     */
+    protected Update<P> toDiffUpdate(P after, Map<String,Object> beforeValues, Map<String,Object> afterValues) {
+        Set<String> managed = new HashSet<>();
+        for (Field field : Arrays.asList(fieldData.getId(), fieldData.getCreatedAt(), fieldData.getCreatedBy(),
+                fieldData.getUpdatedAt(), fieldData.getUpdatedBy(), fieldData.getVersion())) {
+            if (field != null) {
+                managed.add(field.getStorageName());
+            }
+        }
+        Map<String,String> fieldNames = new HashMap<>();
+        for (Field field : fieldData.getMap().values()) {
+            fieldNames.put(field.getStorageName(), field.getName());
+        }
+
+        Set<String> keys = new LinkedHashSet<>(afterValues.keySet());
+        keys.addAll(beforeValues.keySet());
+        ImmutableSet.Builder<String> setFields = ImmutableSet.builder();
+        ImmutableSet.Builder<String> removeFields = ImmutableSet.builder();
+        for (String key : keys) {
+            if (!managed.contains(key)) {
+                diffValue(fieldNames.getOrDefault(key, key), beforeValues.get(key), afterValues.get(key),
+                        setFields, removeFields);
+            }
+        }
+        return Update.<P>builder()
+                .partial(after)
+                .setFields(setFields.build())
+                .removeFields(removeFields.build())
+                .build();
+    }
+
+    private void diffValue(String path, Object before, Object after,
+                           ImmutableSet.Builder<String> setFields, ImmutableSet.Builder<String> removeFields) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (after == null) {
+            removeFields.add(path);
+        } else if (before instanceof Map && after instanceof Map && isPathSafe(((Map<?,?>)before).keySet())
+                && isPathSafe(((Map<?,?>)after).keySet())) {
+            Set<Object> keys = new LinkedHashSet<>(((Map<?,?>)after).keySet());
+            keys.addAll(((Map<?,?>)before).keySet());
+            for (Object key : keys) {
+                diffValue(path + "." + key, ((Map<?,?>)before).get(key), ((Map<?,?>)after).get(key),
+                        setFields, removeFields);
+            }
+        } else {
+            setFields.add(path);
+        }
+    }
+
+    private boolean isPathSafe(Set<?> keys) {
+        for (Object key : keys) {
+            String str = String.valueOf(key);
+            if (str.isEmpty() || str.contains(".") || str.startsWith("$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Drop the backing table and re-initialize. Useful as a shortcut for tests.
      */
@@ -0,0 +1,68 @@
+package io.stardog.stardao.core;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * A backend-neutral predicate on the fields of a model, used to make an update conditional on the current state of
+ * the object. Field names are model field names (or dotted paths), and are converted to storage names by the Dao.
+ * Values are model values, such as an Instant or an enum, and are converted the same way the Dao converts fields.
+ */
+@AutoValue
+public abstract class Condition {
+    public enum Operator { EQUAL_TO, LESS_THAN, EXISTS, NOT_EXISTS, AND }
+
+    public abstract Operator getOperator();
+    @Nullable
+    public abstract String getField();
+    @Nullable
+    public abstract Object getValue();
+    public abstract List<Condition> getConditions();
+
+    public static Condition equalTo(String field, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Condition value for " + field + " is null, use notExists()");
+        }
+        return new AutoValue_Condition(Operator.EQUAL_TO, field, value, ImmutableList.of());
+    }
+
+    public static Condition lessThan(String field, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Condition value for " + field + " is null");
+        }
+        return new AutoValue_Condition(Operator.LESS_THAN, field, value, ImmutableList.of());
+    }
+
+    public static Condition exists(String field) {
+        return new AutoValue_Condition(Operator.EXISTS, field, null, ImmutableList.of());
+    }
+
+    public static Condition notExists(String field) {
+        return new AutoValue_Condition(Operator.NOT_EXISTS, field, null, ImmutableList.of());
+    }
+
+    public static Condition and(Condition... conditions) {
+        if (conditions.length == 0) {
+            throw new IllegalArgumentException("and() requires at least one condition");
+        }
+        return new AutoValue_Condition(Operator.AND, null, null, ImmutableList.copyOf(conditions));
+    }
+
+    /**
+     * Return every field referenced by this condition, including those of nested conditions.
+     * @return  referenced fields
+     */
+    public List<String> getFields() {
+        if (getOperator() != Operator.AND) {
+            return ImmutableList.of(getField());
+        }
+        ImmutableList.Builder<String> fields = ImmutableList.builder();
+        for (Condition condition : getConditions()) {
+            fields.addAll(condition.getFields());
+        }
+        return fields.build();
+    }
+}
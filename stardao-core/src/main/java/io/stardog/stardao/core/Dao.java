@@ -51,6 +51,18 @@ public interface Dao<M,P,K> {
      */
     public M updateAndReturn(K id, Update<P> update);
 
+    /**
+     * Update an object and return the state of the object after modification. By default this updates the object
+     * and then loads it; implementations that can return the object from the update itself override it.
+     * @param id    id of the object to update
+     * @param update    update data
+     * @return  state of the object after modification
+     */
+    public default M updateAndReturnNew(K id, Update<P> update) {
+        update(id, update);
+        return load(id);
+    }
+
     /**
      * Delete an object by id
      * @param id    id of the object to delete
@@ -0,0 +1,28 @@
+package io.stardog.stardao.core;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * A lazy iterable read from a Dao, such as the one returned by iterateAll(). Each call to iterator() opens a new
+ * cursor, which is read as the iterator is walked; if the iterator is AutoCloseable, closing it releases the cursor.
+ * Writers that stream results (such as the StreamingResultsWriter in stardao-jersey) use this type to tell a lazy
+ * read apart from any other Iterable.
+ * @param <M>   the class being iterated
+ */
+public class DaoIterable<M> implements Iterable<M> {
+    private final Supplier<Iterator<M>> iterators;
+
+    public DaoIterable(Supplier<Iterator<M>> iterators) {
+        this.iterators = iterators;
+    }
+
+    public static <M> DaoIterable<M> of(Iterable<M> iterable) {
+        return new DaoIterable<>(iterable::iterator);
+    }
+
+    @Override
+    public Iterator<M> iterator() {
+        return iterators.get();
+    }
+}
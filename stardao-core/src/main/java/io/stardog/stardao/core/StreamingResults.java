@@ -0,0 +1,35 @@
+package io.stardog.stardao.core;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Like Results, but the data is a lazy iterable (such as a database cursor) that is only walked once, while it is
+ * being written out, rather than being copied into a list first. Because the "next" value often depends on the last
+ * object returned, it is supplied lazily and only asked for after the data has been iterated.
+ * @param <M>   the model class being used
+ * @param <N>   the value to query to return the next set of results
+ */
+@AutoValue
+public abstract class StreamingResults<M,N> {
+    public abstract Iterable<M> getData();
+    abstract Supplier<N> getNextSupplier();
+
+    /**
+     * Return the next value. This should only be called once the data has been iterated.
+     * @return  next value, or empty if the results are exhausted
+     */
+    public Optional<N> getNext() {
+        return Optional.ofNullable(getNextSupplier().get());
+    }
+
+    public static <M,N> StreamingResults<M,N> of(Iterable<M> data) {
+        return new AutoValue_StreamingResults<M, N>(data, () -> null);
+    }
+
+    public static <M,N> StreamingResults<M,N> of(Iterable<M> data, Supplier<N> next) {
+        return new AutoValue_StreamingResults<M, N>(data, next);
+    }
+}
@@ -3,38 +3,317 @@ package io.stardog.stardao.core;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.field.FieldSet;
 import io.stardog.stardao.jackson.UpdateDeserializer;
 import io.stardog.stardao.jackson.UpdateSerializer;
 
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * A partial update to an object. The partial holds the values for every field being touched, and the field sets
+ * describe what to do with each one:
+ *   - set fields are overwritten with the partial's value
+ *   - remove fields are unset
+ *   - increment fields are atomically incremented by the partial's value (use a negative value to decrement)
+ *   - append fields have the elements of the partial's collection appended to them
+ *   - add-to-set fields have the elements of the partial's collection added, if not already present
+ *   - pull fields have every occurrence of the elements of the partial's collection removed
+ * A field may only appear in one of the sets. Fields may also be dotted paths into an embedded object or map, such as
+ * "address.city", in which case only that property is changed; the partial holds the embedded object with just that
+ * property present. A path may not overlap another field in the same update.
+ *
+ * If the model has a @Version field, the update may carry the expected version of the object; it is then only applied
+ * if the stored version still matches. An expected version of UNVERSIONED matches only an object stored before the
+ * model had a @Version field, which has no version at all.
+ *
+ * The field sets are ordinary sets of names, but an update built with builder(FieldData) (or converted with
+ * withFieldSets()) holds them as FieldSets, compact bitsets over the model's field ordinals. Those updates are
+ * checked and combined with bit operations instead of hashing strings.
+ * @param <P>   the partial class
+ */
 @AutoValue
 @JsonDeserialize(using = UpdateDeserializer.class)
 @JsonSerialize(using = UpdateSerializer.class)
 public abstract class Update<P> {
+    /**
+     * Expected version of an object that has no version yet. Objects are created at version 1, so this never matches
+     * a stored version; the update is applied only while the version field is absent, and sets it to 1.
+     */
+    public static final long UNVERSIONED = 0L;
+
     public abstract P getPartial();
     public abstract Set<String> getSetFields();
     public abstract Set<String> getRemoveFields();
+    public abstract Set<String> getIncrementFields();
+    public abstract Set<String> getAppendFields();
+    public abstract Set<String> getAddToSetFields();
+    public abstract Set<String> getPullFields();
+    @Nullable
+    public abstract Long getExpectedVersion();
+
+    public abstract Builder<P> toBuilder();
+    public static <T> Builder<T> builder() {
+        return new AutoValue_Update.Builder<T>()
+                .setFields(ImmutableSet.of())
+                .removeFields(ImmutableSet.of())
+                .incrementFields(ImmutableSet.of())
+                .appendFields(ImmutableSet.of())
+                .addToSetFields(ImmutableSet.of())
+                .pullFields(ImmutableSet.of());
+    }
+
+    /**
+     * Start building an update whose field sets are FieldSets over the given field data. Each field name is checked
+     * against the model as it is added, so a typo fails immediately, and no serialization of the partial is needed.
+     * @param fieldData field data of the model
+     * @param <T>   the partial class
+     * @return  builder
+     */
+    public static <T> FieldBuilder<T> builder(FieldData fieldData) {
+        return new FieldBuilder<>(fieldData);
+    }
 
     public static <T> Update<T> of(T setObject, Set<String> setFields) {
-        return new AutoValue_Update<>(setObject, setFields, ImmutableSet.of());
+        return Update.<T>builder().partial(setObject).setFields(setFields).build();
     }
 
     public static <T> Update<T> of(T setObject, Set<String> setFields, Set<String> removeFields) {
-        return new AutoValue_Update<>(setObject, setFields, removeFields);
+        return Update.<T>builder().partial(setObject).setFields(setFields).removeFields(removeFields).build();
     }
 
     public boolean isEmpty() {
-        return getSetFields().isEmpty() && getRemoveFields().isEmpty();
+        for (Set<String> fields : getFieldSets()) {
+            if (!fields.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    @Memoized
     public Set<String> getUpdateFields() {
-        return Sets.union(getSetFields(), getRemoveFields());
+        if (getFieldData() != null) {
+            FieldSet fields = (FieldSet)getSetFields();
+            for (Set<String> fieldSet : getFieldSets()) {
+                fields = fields.union((FieldSet)fieldSet);
+            }
+            return fields;
+        }
+        ImmutableSet.Builder<String> fields = ImmutableSet.builder();
+        for (Set<String> fieldSet : getFieldSets()) {
+            fields.addAll(fieldSet);
+        }
+        return fields.build();
     }
 
     public boolean isUpdateField(String field) {
-        return getSetFields().contains(field) || getRemoveFields().contains(field);
+        for (Set<String> fields : getFieldSets()) {
+            if (fields.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the fields whose partial value is an operand (an increment, or collection elements) rather than the
+     * value that will be stored.
+     * @return  the increment, append, add-to-set and pull fields
+     */
+    @Memoized
+    public Set<String> getOperatorFields() {
+        return ImmutableSet.<String>builder()
+                .addAll(getIncrementFields())
+                .addAll(getAppendFields())
+                .addAll(getAddToSetFields())
+                .addAll(getPullFields())
+                .build();
+    }
+
+    /**
+     * Return an equal update whose field sets are FieldSets over the given field data, if every field is a top-level
+     * field of the model. Otherwise (for instance, if the update has dotted paths), the update is returned unchanged.
+     * @param fieldData field data of the model
+     * @return  equivalent update backed by FieldSets, or this update
+     */
+    public Update<P> withFieldSets(FieldData fieldData) {
+        if (getFieldData() == fieldData) {
+            return this;
+        }
+        for (Set<String> fields : getFieldSets()) {
+            if (!FieldSet.canRepresent(fieldData, fields)) {
+                return this;
+            }
+        }
+        return toBuilder()
+                .setFields(FieldSet.of(fieldData, getSetFields()))
+                .removeFields(FieldSet.of(fieldData, getRemoveFields()))
+                .incrementFields(FieldSet.of(fieldData, getIncrementFields()))
+                .appendFields(FieldSet.of(fieldData, getAppendFields()))
+                .addToSetFields(FieldSet.of(fieldData, getAddToSetFields()))
+                .pullFields(FieldSet.of(fieldData, getPullFields()))
+                .build();
+    }
+
+    @Memoized
+    List<Set<String>> getFieldSets() {
+        return ImmutableList.of(getSetFields(), getRemoveFields(), getIncrementFields(),
+                getAppendFields(), getAddToSetFields(), getPullFields());
+    }
+
+    /**
+     * Return the field data that all of the field sets are FieldSets over, if they are.
+     * @return  shared field data, or null if any field set is a plain set
+     */
+    @Nullable
+    @Memoized
+    FieldData getFieldData() {
+        FieldData fieldData = null;
+        for (Set<String> fields : getFieldSets()) {
+            if (!(fields instanceof FieldSet)) {
+                return null;
+            }
+            FieldData setData = ((FieldSet)fields).getFieldData();
+            if (fieldData != null && setData != fieldData) {
+                return null;
+            }
+            fieldData = setData;
+        }
+        return fieldData;
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder<P> {
+        public abstract Builder<P> partial(P partial);
+        public abstract Builder<P> setFields(Set<String> fields);
+        public abstract Builder<P> removeFields(Set<String> fields);
+        public abstract Builder<P> incrementFields(Set<String> fields);
+        public abstract Builder<P> appendFields(Set<String> fields);
+        public abstract Builder<P> addToSetFields(Set<String> fields);
+        public abstract Builder<P> pullFields(Set<String> fields);
+        public abstract Builder<P> expectedVersion(Long version);
+        abstract Update<P> autoBuild();
+
+        public Update<P> build() {
+            Update<P> update = autoBuild();
+            if (update.getFieldData() != null) {
+                // field sets hold no dotted paths, so only direct overlaps need checking
+                List<Set<String>> fieldSets = update.getFieldSets();
+                for (int i = 0; i < fieldSets.size(); i++) {
+                    for (int j = i + 1; j < fieldSets.size(); j++) {
+                        FieldSet a = (FieldSet)fieldSets.get(i);
+                        FieldSet b = (FieldSet)fieldSets.get(j);
+                        if (a.intersects(b)) {
+                            for (String field : a) {
+                                if (b.contains(field)) {
+                                    throw new IllegalArgumentException("Field appears in more than one update operation: " + field);
+                                }
+                            }
+                        }
+                    }
+                }
+                return update;
+            }
+            Set<String> seen = new HashSet<>();
+            for (Set<String> fields : update.getFieldSets()) {
+                for (String field : fields) {
+                    if (!seen.add(field)) {
+                        throw new IllegalArgumentException("Field appears in more than one update operation: " + field);
+                    }
+                }
+            }
+            for (String field : seen) {
+                for (int i = field.indexOf('.'); i > 0; i = field.indexOf('.', i + 1)) {
+                    if (seen.contains(field.substring(0, i))) {
+                        throw new IllegalArgumentException("Update paths overlap: " + field.substring(0, i) + ", " + field);
+                    }
+                }
+            }
+            return update;
+        }
+    }
+
+    /**
+     * Builds an update with FieldSets over a model's field data. Create one with Update.builder(FieldData).
+     * @param <P>   the partial class
+     */
+    public static class FieldBuilder<P> {
+        private final FieldSet.Builder setFields;
+        private final FieldSet.Builder removeFields;
+        private final FieldSet.Builder incrementFields;
+        private final FieldSet.Builder appendFields;
+        private final FieldSet.Builder addToSetFields;
+        private final FieldSet.Builder pullFields;
+        private P partial;
+        private Long expectedVersion;
+
+        FieldBuilder(FieldData fieldData) {
+            this.setFields = FieldSet.builder(fieldData);
+            this.removeFields = FieldSet.builder(fieldData);
+            this.incrementFields = FieldSet.builder(fieldData);
+            this.appendFields = FieldSet.builder(fieldData);
+            this.addToSetFields = FieldSet.builder(fieldData);
+            this.pullFields = FieldSet.builder(fieldData);
+        }
+
+        public FieldBuilder<P> partial(P partial) {
+            this.partial = partial;
+            return this;
+        }
+
+        public FieldBuilder<P> set(String... fields) {
+            setFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> remove(String... fields) {
+            removeFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> increment(String... fields) {
+            incrementFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> append(String... fields) {
+            appendFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> addToSet(String... fields) {
+            addToSetFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> pull(String... fields) {
+            pullFields.addAll(fields);
+            return this;
+        }
+
+        public FieldBuilder<P> expectedVersion(Long version) {
+            this.expectedVersion = version;
+            return this;
+        }
+
+        public Update<P> build() {
+            return Update.<P>builder()
+                    .partial(partial)
+                    .setFields(setFields.build())
+                    .removeFields(removeFields.build())
+                    .incrementFields(incrementFields.build())
+                    .appendFields(appendFields.build())
+                    .addToSetFields(addToSetFields.build())
+                    .pullFields(pullFields.build())
+                    .expectedVersion(expectedVersion)
+                    .build();
+        }
     }
 }
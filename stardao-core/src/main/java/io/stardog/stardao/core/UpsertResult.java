@@ -0,0 +1,24 @@
+package io.stardog.stardao.core;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Optional;
+
+/**
+ * The result of an upsert: whether a new object was inserted (rather than an existing one updated), and optionally
+ * the state of the object after the upsert.
+ * @param <M>   the model class being used
+ */
+@AutoValue
+public abstract class UpsertResult<M> {
+    public abstract boolean isInserted();
+    public abstract Optional<M> getModel();
+
+    public static <M> UpsertResult<M> of(boolean inserted) {
+        return new AutoValue_UpsertResult<>(inserted, Optional.empty());
+    }
+
+    public static <M> UpsertResult<M> of(boolean inserted, M model) {
+        return new AutoValue_UpsertResult<>(inserted, Optional.ofNullable(model));
+    }
+}
@@ -1,8 +1,14 @@
 package io.stardog.stardao.core.field;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 import javax.annotation.Nullable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @AutoValue
@@ -17,8 +23,68 @@ public abstract class FieldData {
     public abstract Field getUpdatedAt();
     @Nullable
     public abstract Field getUpdatedBy();
+    @Nullable
+    public abstract Field getVersion();
     public abstract Map<String,Field> getMap();
 
+    /**
+     * The names of every field, in ordinal order. A field's ordinal is its position in this list, and is what
+     * FieldSet uses to represent it as a single bit.
+     * @return  field names
+     */
+    @Memoized
+    public ImmutableList<String> getFieldNames() {
+        return ImmutableList.copyOf(getMap().keySet());
+    }
+
+    @Memoized
+    ImmutableMap<String,Integer> getOrdinals() {
+        ImmutableMap.Builder<String,Integer> ordinals = ImmutableMap.builder();
+        ImmutableList<String> names = getFieldNames();
+        for (int i = 0; i < names.size(); i++) {
+            ordinals.put(names.get(i), i);
+        }
+        return ordinals.build();
+    }
+
+    /**
+     * The fields that are stored under a name different from their field name.
+     * @return  map of field name to storage name
+     */
+    @Memoized
+    public Map<String,String> getStorageRenames() {
+        Map<String,String> renames = new LinkedHashMap<>();
+        for (Field field : getMap().values()) {
+            if (!field.getStorageName().equals(field.getName())) {
+                renames.put(field.getName(), field.getStorageName());
+            }
+        }
+        return Collections.unmodifiableMap(renames);
+    }
+
+    /**
+     * The inverse of getStorageRenames().
+     * @return  map of storage name to field name
+     */
+    @Memoized
+    public Map<String,String> getFieldRenames() {
+        Map<String,String> renames = new LinkedHashMap<>();
+        for (Map.Entry<String,String> e : getStorageRenames().entrySet()) {
+            renames.put(e.getValue(), e.getKey());
+        }
+        return Collections.unmodifiableMap(renames);
+    }
+
+    /**
+     * Return the ordinal of a field.
+     * @param fieldName name of the field
+     * @return  ordinal, or -1 if there is no such field
+     */
+    public int getOrdinal(String fieldName) {
+        Integer ordinal = getOrdinals().get(fieldName);
+        return ordinal != null ? ordinal : -1;
+    }
+
     public abstract Builder toBuilder();
     public static FieldData.Builder builder() {
         return new AutoValue_FieldData.Builder();
@@ -31,6 +97,7 @@ public abstract class FieldData {
         public abstract Builder createdBy(Field field);
         public abstract Builder updatedAt(Field field);
         public abstract Builder updatedBy(Field field);
+        public abstract Builder version(Field field);
         public abstract Builder map(Map<String,Field> fields);
         public abstract FieldData build();
     }
@@ -10,12 +10,91 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class FieldScanner {
+    /**
+     * Suffix of the class name that the stardao-auto @GenerateFieldData processor gives to a model's precomputed
+     * field data, e.g. "User_FieldData" for "User".
+     */
+    public static final String PRECOMPUTED_SUFFIX = "_FieldData";
+
+    private static final ClassValue<FieldData> FIELD_DATA = new ClassValue<FieldData>() {
+        @Override
+        protected FieldData computeValue(Class<?> modelClass) {
+            FieldData precomputed = loadPrecomputedFieldData(modelClass);
+            return precomputed != null ? precomputed : new FieldScanner().scanAnnotations(modelClass);
+        }
+    };
+
+    // paths below a Map can hold any key, so only so many are remembered per class
+    private static final int MAX_CACHED_PATHS = 1000;
+    private static final ClassValue<Map<String,Optional<Type>>> PATH_TYPES = new ClassValue<Map<String,Optional<Type>>>() {
+        @Override
+        protected Map<String,Optional<Type>> computeValue(Class<?> modelClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Return the field data for a model class. The result is cached for the life of the class, so the class is only
+     * examined once per process no matter how many Daos use it. If stardao-auto generated precomputed field data for
+     * the class, that is used and no reflection scan is done at all.
+     * @param modelClass    model class
+     * @return  field data for the class
+     */
+    public static FieldData getFieldData(Class<?> modelClass) {
+        return FIELD_DATA.get(modelClass);
+    }
+
+    /**
+     * Resolve the type of a dotted field path on a class, as getPathType() does. The result is cached per class and
+     * path, so the getters are only walked the first time a path is seen, rather than on every write.
+     * @param modelClass    class that the path starts from
+     * @param path  dotted field path
+     * @return  the type at the end of the path, or null if the path does not exist on the class
+     */
+    public static Type getCachedPathType(Class<?> modelClass, String path) {
+        Map<String,Optional<Type>> pathTypes = PATH_TYPES.get(modelClass);
+        Optional<Type> type = pathTypes.get(path);
+        if (type == null) {
+            type = Optional.ofNullable(new FieldScanner().getPathType(modelClass, path));
+            if (pathTypes.size() < MAX_CACHED_PATHS) {
+                pathTypes.put(path, type);
+            }
+        }
+        return type.orElse(null);
+    }
+
+    /**
+     * Load the precomputed field data generated for a model class, if there is any.
+     * @param modelClass    model class
+     * @return  precomputed field data, or null if none was generated
+     */
+    static FieldData loadPrecomputedFieldData(Class<?> modelClass) {
+        Class<?> generated;
+        try {
+            generated = Class.forName(modelClass.getName() + PRECOMPUTED_SUFFIX, true, modelClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            Object supplier = generated.getDeclaredConstructor().newInstance();
+            return supplier instanceof Supplier ? (FieldData) ((Supplier<?>) supplier).get() : null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load precomputed field data " + generated.getName(), e);
+        }
+    }
+
     /**
      * Scan a model class, looking for annotations
      * @param modelClass    model class
@@ -29,6 +108,10 @@ public class FieldScanner {
         Set<String> scannedFields = new HashSet<>();
 
         for (java.lang.reflect.Field field : modelClass.getDeclaredFields()) {
+            // constants and compiler or agent generated fields (such as jacoco's $jacocoData) are not model fields
+            if (field.isSynthetic() || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
             String fieldName = field.getName();
             addToMap(builder, fieldMap, found, fieldName, field, isFieldOptional(field));
             scannedFields.add(fieldName);
@@ -105,6 +188,73 @@ public class FieldScanner {
             found.put(UpdatedBy.class, field);
             builder.updatedBy(field);
         }
+        if (method.isAnnotationPresent(Version.class)) {
+            Field prev = found.get(Version.class);
+            if (prev != null) {
+                throw new IllegalStateException("Multiple @Version annotations present on " + prev.getName() + " and " + field.getName());
+            }
+            found.put(Version.class, field);
+            builder.version(field);
+        }
+    }
+
+    /**
+     * Resolve the type of a dotted field path, such as "address.city", by walking the getters of each embedded
+     * class. Optional values are unwrapped, and any key is accepted below a Map.
+     * @param type  class (or generic type) that the path starts from
+     * @param path  dotted field path
+     * @return  the type at the end of the path, or null if the path does not exist on the type
+     */
+    public Type getPathType(Type type, String path) {
+        for (String part : path.split("\\.", -1)) {
+            type = unwrapOptional(type);
+            Class<?> rawType = toRawClass(type);
+            if (rawType == null || part.isEmpty()) {
+                return null;
+            }
+            if (Map.class.isAssignableFrom(rawType)) {
+                type = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[1] : Object.class;
+                continue;
+            }
+            Method getter = getGetter(rawType, part);
+            if (getter == null) {
+                return null;
+            }
+            type = getter.getGenericReturnType();
+        }
+        return type;
+    }
+
+    /**
+     * Find the public getter of a field, following the same naming rules as the scan (getName() or isName()).
+     * @param type  class to look on
+     * @param fieldName name of the field
+     * @return  the getter, or null if the class has no public, non-ignored getter for the field
+     */
+    public Method getGetter(Class<?> type, String fieldName) {
+        for (Method method : type.getMethods()) {
+            if (method.getDeclaringClass() != Object.class && fieldName.equals(toFieldName(method))
+                    && !method.isAnnotationPresent(JsonIgnore.class)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private Type unwrapOptional(Type type) {
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == Optional.class) {
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        return type;
+    }
+
+    private Class<?> toRawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
     }
 
     /**
@@ -113,7 +263,7 @@ public class FieldScanner {
      * @return  derived field name
      */
     protected String toFieldName(Method method) {
-        if (method.getParameterCount() > 0) {
+        if (method.getParameterCount() > 0 || method.getName().equals("get") || method.getName().equals("is")) {
             return null;
         }
         if (method.getName().startsWith("get")) {
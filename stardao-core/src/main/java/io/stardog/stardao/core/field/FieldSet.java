@@ -0,0 +1,233 @@
+package io.stardog.stardao.core.field;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of top-level field names, stored as a bitset over the field ordinals of a FieldData. It is a
+ * regular Set&lt;String&gt;, so it can be used anywhere the string-set API of Update is expected, and compares equal to
+ * any other set holding the same names. Membership tests, unions and overlap checks are bit operations, so they do not
+ * hash strings or allocate.
+ *
+ * Only fields known to the FieldData can be stored; dotted paths cannot.
+ */
+public final class FieldSet extends AbstractSet<String> {
+    private final FieldData fieldData;
+    private final long[] words;
+    private final int size;
+
+    FieldSet(FieldData fieldData, long[] words) {
+        this.fieldData = fieldData;
+        this.words = words;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.size = count;
+    }
+
+    /**
+     * Return an empty set over the fields of a FieldData.
+     * @param fieldData field data
+     * @return  empty field set
+     */
+    public static FieldSet empty(FieldData fieldData) {
+        return new FieldSet(fieldData, new long[wordCount(fieldData)]);
+    }
+
+    /**
+     * Convert a collection of field names to a FieldSet.
+     * @param fieldData field data
+     * @param fields    names of top-level fields
+     * @return  field set holding the same names
+     * @throws IllegalArgumentException if a name is not a field of the FieldData
+     */
+    public static FieldSet of(FieldData fieldData, Collection<String> fields) {
+        if (fields instanceof FieldSet && ((FieldSet)fields).fieldData == fieldData) {
+            return (FieldSet)fields;
+        }
+        long[] words = new long[wordCount(fieldData)];
+        for (String field : fields) {
+            setBit(words, ordinalOf(fieldData, field));
+        }
+        return new FieldSet(fieldData, words);
+    }
+
+    /**
+     * Check whether every name in a collection is a field of a FieldData, so that it can be converted to a FieldSet.
+     * @param fieldData field data
+     * @param fields    field names
+     * @return  true if the collection can be represented as a FieldSet
+     */
+    public static boolean canRepresent(FieldData fieldData, Collection<String> fields) {
+        for (String field : fields) {
+            if (fieldData.getOrdinal(field) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Builder builder(FieldData fieldData) {
+        return new Builder(fieldData);
+    }
+
+    public FieldData getFieldData() {
+        return fieldData;
+    }
+
+    /**
+     * Return a set that also contains the given field.
+     * @param field field name
+     * @return  new field set, or this one if the field is already present
+     */
+    public FieldSet with(String field) {
+        int ordinal = ordinalOf(fieldData, field);
+        if (isSet(words, ordinal)) {
+            return this;
+        }
+        long[] copy = words.clone();
+        setBit(copy, ordinal);
+        return new FieldSet(fieldData, copy);
+    }
+
+    /**
+     * Return the union of this set and another over the same FieldData.
+     * @param other another field set
+     * @return  union of the two sets
+     */
+    public FieldSet union(FieldSet other) {
+        checkSameFieldData(other);
+        long[] union = words.clone();
+        for (int i = 0; i < union.length; i++) {
+            union[i] |= other.words[i];
+        }
+        return new FieldSet(fieldData, union);
+    }
+
+    /**
+     * Check whether this set shares any field with another over the same FieldData.
+     * @param other another field set
+     * @return  true if any field is in both sets
+     */
+    public boolean intersects(FieldSet other) {
+        checkSameFieldData(other);
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        int ordinal = fieldData.getOrdinal((String)o);
+        return ordinal >= 0 && isSet(words, ordinal);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                String field = fieldData.getFieldNames().get(next);
+                next = nextSetBit(next + 1);
+                return field;
+            }
+        };
+    }
+
+    private int nextSetBit(int from) {
+        int i = from >>> 6;
+        if (i >= words.length) {
+            return -1;
+        }
+        long word = words[i] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++i == words.length) {
+                return -1;
+            }
+            word = words[i];
+        }
+    }
+
+    private void checkSameFieldData(FieldSet other) {
+        if (other.fieldData != fieldData) {
+            throw new IllegalArgumentException("FieldSets are over different FieldData");
+        }
+    }
+
+    static int wordCount(FieldData fieldData) {
+        return (fieldData.getFieldNames().size() + 63) >>> 6;
+    }
+
+    static int ordinalOf(FieldData fieldData, String field) {
+        int ordinal = fieldData.getOrdinal(field);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown field: " + field);
+        }
+        return ordinal;
+    }
+
+    static void setBit(long[] words, int ordinal) {
+        words[ordinal >>> 6] |= 1L << ordinal;
+    }
+
+    static boolean isSet(long[] words, int ordinal) {
+        return (words[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Mutable builder that collects field names into a bitset; each name is checked against the FieldData as it is
+     * added.
+     */
+    public static final class Builder {
+        private final FieldData fieldData;
+        private final long[] words;
+
+        private Builder(FieldData fieldData) {
+            this.fieldData = fieldData;
+            this.words = new long[wordCount(fieldData)];
+        }
+
+        public Builder add(String field) {
+            setBit(words, ordinalOf(fieldData, field));
+            return this;
+        }
+
+        public Builder addAll(String... fields) {
+            for (String field : fields) {
+                add(field);
+            }
+            return this;
+        }
+
+        public FieldSet build() {
+            return new FieldSet(fieldData, words.clone());
+        }
+    }
+}
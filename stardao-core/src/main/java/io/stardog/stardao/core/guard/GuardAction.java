@@ -0,0 +1,13 @@
+package io.stardog.stardao.core.guard;
+
+/**
+ * What a Dao does when an operation breaks one of its Guardrails.
+ */
+public enum GuardAction {
+    /** Carry on as normal. */
+    ALLOW,
+    /** Log a warning, with the call site, and carry on. */
+    WARN,
+    /** Throw a DataLimitException, with the call site. */
+    REJECT
+}
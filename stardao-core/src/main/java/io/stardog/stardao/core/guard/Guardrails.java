@@ -0,0 +1,97 @@
+package io.stardog.stardao.core.guard;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * Limits on how much a single Dao call may read, set on a Dao with setGuardrails(). Calls that materialize Results
+ * (such as scan, findByIndex and findByQuery) may be limited in the number of objects or bytes they read; full
+ * table scans may be warned about or rejected outright; and full scans may be throttled to a maximum rate of
+ * objects per second, shared by every scan made by the Dao. With the default of NONE nothing is checked.
+ */
+@AutoValue
+public abstract class Guardrails {
+    public static final Guardrails NONE = Guardrails.builder().build();
+
+    /**
+     * Maximum number of objects read into a single Results.
+     * @return  max items, or null for no limit
+     */
+    @Nullable
+    public abstract Integer getMaxResultItems();
+
+    /**
+     * Maximum size, in bytes of stored documents or items, read into a single Results.
+     * @return  max bytes, or null for no limit
+     */
+    @Nullable
+    public abstract Long getMaxResultBytes();
+
+    /**
+     * Maximum rate, in objects per second, at which full scans read from the database.
+     * @return  max scan rate, or null for no limit
+     */
+    @Nullable
+    public abstract Double getMaxScanRate();
+
+    /**
+     * What to do when a full table scan is made.
+     * @return  action
+     */
+    public abstract GuardAction getFullScanAction();
+
+    /**
+     * What to do when a Results goes over the max items or bytes. REJECT stops reading as soon as the limit is passed.
+     * @return  action
+     */
+    public abstract GuardAction getLimitAction();
+
+    public boolean hasResultLimits() {
+        return getMaxResultItems() != null || getMaxResultBytes() != null;
+    }
+
+    public abstract Builder toBuilder();
+
+    public static Guardrails.Builder builder() {
+        return new AutoValue_Guardrails.Builder()
+                .fullScanAction(GuardAction.ALLOW)
+                .limitAction(GuardAction.REJECT);
+    }
+
+    /**
+     * Guardrails for production: full scans are rejected, and Results are limited to maxResultItems.
+     * @param maxResultItems    maximum number of objects read into a single Results
+     * @return  guardrails
+     */
+    public static Guardrails production(int maxResultItems) {
+        return builder()
+                .maxResultItems(maxResultItems)
+                .fullScanAction(GuardAction.REJECT)
+                .build();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder maxResultItems(Integer maxResultItems);
+        public abstract Builder maxResultBytes(Long maxResultBytes);
+        public abstract Builder maxScanRate(Double maxScanRate);
+        public abstract Builder fullScanAction(GuardAction action);
+        public abstract Builder limitAction(GuardAction action);
+        abstract Guardrails autoBuild();
+
+        public Guardrails build() {
+            Guardrails guardrails = autoBuild();
+            if (guardrails.getMaxResultItems() != null && guardrails.getMaxResultItems() < 0) {
+                throw new IllegalArgumentException("maxResultItems must not be negative");
+            }
+            if (guardrails.getMaxResultBytes() != null && guardrails.getMaxResultBytes() < 0) {
+                throw new IllegalArgumentException("maxResultBytes must not be negative");
+            }
+            if (guardrails.getMaxScanRate() != null && guardrails.getMaxScanRate() <= 0) {
+                throw new IllegalArgumentException("maxScanRate must be positive");
+            }
+            return guardrails;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.stardog.stardao.core.guard;
+
+import io.stardog.stardao.exceptions.DataLimitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counts the objects, and optionally the bytes, read into a single Results, acting on the Dao's Guardrails once a
+ * limit is passed. Obtained from AbstractDao.guardResults(); when the Dao has no result limits, NONE is returned,
+ * whose add() does nothing.
+ */
+public class ResultGuard {
+    public static final ResultGuard NONE = new ResultGuard(null, null, null, null);
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultGuard.class);
+
+    private final String daoName;
+    private final String operation;
+    private final Guardrails guardrails;
+    private final Supplier<String> callSite;
+    private final long maxItems;
+    private final long maxBytes;
+    private long items;
+    private long bytes;
+    private boolean warned;
+
+    /**
+     * Create a guard for one call.
+     * @param daoName   name of the dao
+     * @param operation name of the dao method
+     * @param guardrails    guardrails of the dao
+     * @param callSite  supplies the call site to report, only when a limit is passed
+     */
+    public ResultGuard(String daoName, String operation, Guardrails guardrails, Supplier<String> callSite) {
+        this.daoName = daoName;
+        this.operation = operation;
+        this.guardrails = guardrails;
+        this.callSite = callSite;
+        this.maxItems = guardrails != null && guardrails.getMaxResultItems() != null ? guardrails.getMaxResultItems() : Long.MAX_VALUE;
+        this.maxBytes = guardrails != null && guardrails.getMaxResultBytes() != null ? guardrails.getMaxResultBytes() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Count an object read from the database, before it is mapped.
+     * @param stored    stored document or item
+     * @param sizer function to measure the stored size, only called if there is a byte limit
+     * @param <T>   type of the stored document or item
+     * @throws DataLimitException   if a limit is passed and the limit action is REJECT
+     */
+    public <T> void add(T stored, ToLongFunction<T> sizer) {
+        if (this == NONE) {
+            return;
+        }
+        items++;
+        if (maxBytes != Long.MAX_VALUE) {
+            bytes += sizer.applyAsLong(stored);
+        }
+        if ((items > maxItems || bytes > maxBytes) && !warned) {
+            String message = daoName + "." + operation + " read more than "
+                    + (items > maxItems ? maxItems + " items" : maxBytes + " bytes") + " at " + callSite.get();
+            if (guardrails.getLimitAction() == GuardAction.REJECT) {
+                throw new DataLimitException(message);
+            } else if (guardrails.getLimitAction() == GuardAction.WARN) {
+                LOGGER.warn(message);
+            }
+            warned = true;
+        }
+    }
+
+    public long getItems() {
+        return items;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,25 @@
+package io.stardog.stardao.core.metrics;
+
+/**
+ * Receives the operations performed by every Dao, once registered with DaoMetrics. Listeners are called on the
+ * thread that performed the operation, so they should be quick and must be thread-safe if registered globally.
+ */
+public interface DaoListener {
+    /**
+     * Called when a Dao operation completes, successfully or not. Operations made from within another operation
+     * (such as the load inside a versioned update) are counted as part of the outer one. Methods returning a lazy
+     * iterable or stream are reported when the iterable or stream is created, so only its setup is timed.
+     * @param operation operation
+     */
+    void onOperation(DaoOperation operation);
+
+    /**
+     * Called when objects are mapped outside of any operation, which happens when a lazy iterable or stream returned
+     * by a Dao is consumed.
+     * @param daoName   name of the dao
+     * @param nanos mapping time in nanoseconds
+     * @param itemCount number of objects read
+     */
+    default void onMapping(String daoName, long nanos, int itemCount) {
+    }
+}
@@ -0,0 +1,170 @@
+package io.stardog.stardao.core.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Dispatches the operations of every Dao to DaoListeners. Listeners are either global, seeing every operation in the
+ * process, or scoped to the current thread with listen(), which suits per-request or per-test accounting:
+ *
+ *    try (DaoMetrics.Scope scope = DaoMetrics.listen(listener)) {
+ *        ... everything the Daos do on this thread is reported to listener ...
+ *    }
+ *
+ * When no listener is registered, operations are not timed at all.
+ */
+public final class DaoMetrics {
+    private static final List<DaoListener> GLOBAL_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Deque<DaoListener>> SCOPED_LISTENERS = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<OperationTimer> CURRENT = new ThreadLocal<>();
+
+    private DaoMetrics() {
+    }
+
+    /**
+     * Register a listener for the operations of every thread.
+     * @param listener  listener, which must be thread-safe
+     */
+    public static void addListener(DaoListener listener) {
+        GLOBAL_LISTENERS.add(listener);
+    }
+
+    public static void removeListener(DaoListener listener) {
+        GLOBAL_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Register a listener for the operations of the current thread, until the returned scope is closed. Scopes may be
+     * nested; every open scope sees the operation.
+     * @param listener  listener
+     * @return  scope to close, on the same thread, to remove the listener; closing it on any other thread does nothing
+     */
+    public static Scope listen(DaoListener listener) {
+        Deque<DaoListener> listeners = SCOPED_LISTENERS.get();
+        listeners.push(listener);
+        return new Scope(listeners, listener);
+    }
+
+    /**
+     * Check whether any listener would see an operation made on the current thread.
+     * @return  true if operations are being listened to
+     */
+    public static boolean isEnabled() {
+        return !GLOBAL_LISTENERS.isEmpty() || !SCOPED_LISTENERS.get().isEmpty();
+    }
+
+    /**
+     * Start timing an operation. If another operation is already in progress on this thread, the new one is counted
+     * as part of it, and the returned timer does nothing.
+     * @param daoName   name of the dao
+     * @param type  type of operation
+     * @param name  name of the dao method
+     * @return  timer to close when the operation completes
+     */
+    public static OperationTimer startOperation(String daoName, OperationType type, String name) {
+        if (CURRENT.get() != null || !isEnabled()) {
+            return OperationTimer.NOOP;
+        }
+        OperationTimer timer = new OperationTimer(daoName, type, name, System.nanoTime());
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    /**
+     * Time the reads of a lazy result, such as a Dao's iterateAll(), as a single operation. Only the time spent
+     * opening the iterator and in its hasNext() and next() is counted (reading from the database and mapping), not
+     * the caller's work in between, and the operation is reported once the iterator is exhausted, fails or is
+     * closed. An iterator opened inside another operation is counted as part of it instead.
+     * @param daoName   name of the dao
+     * @param type  type of operation
+     * @param name  name of the dao method
+     * @param iterators opens the iterator
+     * @param <T>   type of object read
+     * @return  iterator; if it is AutoCloseable, closing it also closes the underlying iterator
+     */
+    public static <T> Iterator<T> timeIteration(String daoName, OperationType type, String name, Supplier<Iterator<T>> iterators) {
+        if (CURRENT.get() != null || !isEnabled()) {
+            return iterators.get();
+        }
+        return new TimedIterator<>(new OperationTimer(daoName, type, name, 0, true), iterators);
+    }
+
+    /**
+     * Make a call that is part of a lazy operation, adding its time (and any mapping done during it) to the timer.
+     */
+    static <R> R timeCall(OperationTimer timer, Supplier<R> call) {
+        OperationTimer outer = CURRENT.get();
+        CURRENT.set(timer);
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.addNanos(System.nanoTime() - start);
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Record time spent mapping objects. Inside an operation it is added to the operation; otherwise (while a lazy
+     * result is being consumed) it is reported to the listeners on its own.
+     * @param daoName   name of the dao
+     * @param nanos mapping time in nanoseconds
+     * @param itemCount number of objects read
+     */
+    public static void recordMapping(String daoName, long nanos, int itemCount) {
+        OperationTimer timer = CURRENT.get();
+        if (timer != null) {
+            timer.addMapping(nanos, itemCount);
+            return;
+        }
+        for (DaoListener listener : GLOBAL_LISTENERS) {
+            listener.onMapping(daoName, nanos, itemCount);
+        }
+        for (DaoListener listener : SCOPED_LISTENERS.get()) {
+            listener.onMapping(daoName, nanos, itemCount);
+        }
+    }
+
+    static void finishOperation(OperationTimer timer, DaoOperation operation) {
+        if (CURRENT.get() == timer) {
+            CURRENT.remove();
+        }
+        for (DaoListener listener : GLOBAL_LISTENERS) {
+            listener.onOperation(operation);
+        }
+        for (DaoListener listener : SCOPED_LISTENERS.get()) {
+            listener.onOperation(operation);
+        }
+    }
+
+    /**
+     * A thread-scoped listener registration, removed when closed on the thread that opened it. The listeners of a
+     * thread are not thread-safe, so closing the scope on any other thread does nothing.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Deque<DaoListener> listeners;
+        private final DaoListener listener;
+        private final Thread thread;
+
+        private Scope(Deque<DaoListener> listeners, DaoListener listener) {
+            this.listeners = listeners;
+            this.listener = listener;
+            this.thread = Thread.currentThread();
+        }
+
+        @Override
+        public void close() {
+            if (Thread.currentThread() == thread) {
+                listeners.remove(listener);
+            }
+        }
+    }
+}
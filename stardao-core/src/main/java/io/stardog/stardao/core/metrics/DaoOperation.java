@@ -0,0 +1,65 @@
+package io.stardog.stardao.core.metrics;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A database operation performed by a Dao, as reported to DaoListeners once it completes (or fails).
+ */
+@AutoValue
+public abstract class DaoOperation {
+    /**
+     * Name of the Dao, normally its simple class name.
+     * @return  dao name
+     */
+    public abstract String getDaoName();
+    public abstract OperationType getType();
+
+    /**
+     * Name of the Dao method, such as "loadOpt" or "findWithRangedPagination".
+     * @return  method name
+     */
+    public abstract String getName();
+
+    /**
+     * Total time spent in the operation, including mapping.
+     * @return  elapsed time in nanoseconds
+     */
+    public abstract long getNanos();
+
+    /**
+     * Time spent within the operation converting between objects and database documents or items.
+     * @return  mapping time in nanoseconds
+     */
+    public abstract long getMapperNanos();
+
+    /**
+     * Number of objects read from the database and mapped within the operation.
+     * @return  item count
+     */
+    public abstract int getItemCount();
+
+    /**
+     * Time spent within the operation outside of mapping, which is mostly time waiting on the database.
+     * @return  backend time in nanoseconds
+     */
+    public long getBackendNanos() {
+        return Math.max(0, getNanos() - getMapperNanos());
+    }
+
+    public static Builder builder() {
+        return new AutoValue_DaoOperation.Builder()
+                .mapperNanos(0)
+                .itemCount(0);
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder daoName(String daoName);
+        public abstract Builder type(OperationType type);
+        public abstract Builder name(String name);
+        public abstract Builder nanos(long nanos);
+        public abstract Builder mapperNanos(long nanos);
+        public abstract Builder itemCount(int count);
+        public abstract DaoOperation build();
+    }
+}
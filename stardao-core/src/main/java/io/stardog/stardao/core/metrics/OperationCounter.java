@@ -0,0 +1,151 @@
+package io.stardog.stardao.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counts the Dao operations made on the current thread between start() and close(), so that tests can assert a
+ * budget and catch N+1 regressions:
+ *
+ *    try (OperationCounter counter = OperationCounter.start()) {
+ *        resource.listOrgs();
+ *        counter.assertMaxReads(3);
+ *    }
+ *
+ * Operations made from within another operation are counted once, as the outer operation, so the counts are the
+ * Dao calls made by the code under test. It counts calls against any Dao, including the Fongo and DynamoDBEmbedded
+ * backed daos used in tests, without mocking.
+ */
+public class OperationCounter implements DaoListener, AutoCloseable {
+    private static final Set<OperationType> READS = EnumSet.of(OperationType.LOAD, OperationType.QUERY);
+
+    private final List<DaoOperation> operations = Collections.synchronizedList(new ArrayList<>());
+    private final DaoMetrics.Scope scope;
+
+    private OperationCounter() {
+        this.scope = DaoMetrics.listen(this);
+    }
+
+    /**
+     * Start counting the operations made on the current thread.
+     * @return  counter, to be closed on the same thread
+     */
+    public static OperationCounter start() {
+        return new OperationCounter();
+    }
+
+    @Override
+    public void onOperation(DaoOperation operation) {
+        operations.add(operation);
+    }
+
+    /**
+     * The operations counted so far, in the order they completed.
+     * @return  operations
+     */
+    public List<DaoOperation> getOperations() {
+        synchronized (operations) {
+            return new ArrayList<>(operations);
+        }
+    }
+
+    public int getCount() {
+        return operations.size();
+    }
+
+    public int getCount(OperationType type) {
+        return count(EnumSet.of(type), null);
+    }
+
+    /**
+     * Count the operations of a type made by one Dao.
+     * @param daoName   name of the dao, as returned by getMetricsName()
+     * @param type  type of operation
+     * @return  number of operations
+     */
+    public int getCount(String daoName, OperationType type) {
+        return count(EnumSet.of(type), daoName);
+    }
+
+    /**
+     * Count the operations that read from the database: loads and queries.
+     * @return  number of reads
+     */
+    public int getReads() {
+        return count(READS, null);
+    }
+
+    /**
+     * Count the operations that write to the database: creates, updates, upserts and deletes.
+     * @return  number of writes
+     */
+    public int getWrites() {
+        return count(EnumSet.complementOf(EnumSet.copyOf(READS)), null);
+    }
+
+    /**
+     * Forget the operations counted so far, for instance after setting up test data.
+     */
+    public void reset() {
+        operations.clear();
+    }
+
+    /**
+     * Check that no more than a number of operations of a type were made.
+     * @param type  type of operation
+     * @param max   maximum number of operations
+     * @throws AssertionError   if more operations were made, listing them
+     */
+    public void assertMax(OperationType type, int max) {
+        check(EnumSet.of(type), max, type.toString());
+    }
+
+    /**
+     * Check that no more than a number of reads (loads and queries) were made.
+     * @param max   maximum number of reads
+     * @throws AssertionError   if more reads were made, listing them
+     */
+    public void assertMaxReads(int max) {
+        check(READS, max, "read");
+    }
+
+    /**
+     * Check that no more than a number of writes were made.
+     * @param max   maximum number of writes
+     * @throws AssertionError   if more writes were made, listing them
+     */
+    public void assertMaxWrites(int max) {
+        check(EnumSet.complementOf(EnumSet.copyOf(READS)), max, "write");
+    }
+
+    @Override
+    public void close() {
+        scope.close();
+    }
+
+    private int count(Set<OperationType> types, String daoName) {
+        int count = 0;
+        for (DaoOperation op : getOperations()) {
+            if (types.contains(op.getType()) && (daoName == null || daoName.equals(op.getDaoName()))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void check(Set<OperationType> types, int max, String description) {
+        List<String> matched = new ArrayList<>();
+        for (DaoOperation op : getOperations()) {
+            if (types.contains(op.getType())) {
+                matched.add(op.getDaoName() + "." + op.getName());
+            }
+        }
+        if (matched.size() > max) {
+            throw new AssertionError("Expected at most " + max + " " + description + " operations but there were "
+                    + matched.size() + ": " + matched);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.stardog.stardao.core.metrics;
+
+/**
+ * Times a single Dao operation, started by DaoMetrics.startOperation(). Closing the timer reports the operation to
+ * the listeners; it is meant to be used with try-with-resources around the body of the operation. The timer of a lazy
+ * result (see DaoMetrics.timeIteration()) instead counts only the time added to it while the result is being read.
+ */
+public class OperationTimer implements AutoCloseable {
+    static final OperationTimer NOOP = new OperationTimer(null, null, null, 0);
+
+    private final String daoName;
+    private final OperationType type;
+    private final String name;
+    private final long startNanos;
+    private final boolean lazy;
+    private long lazyNanos;
+    private long mapperNanos;
+    private int itemCount;
+
+    OperationTimer(String daoName, OperationType type, String name, long startNanos) {
+        this(daoName, type, name, startNanos, false);
+    }
+
+    OperationTimer(String daoName, OperationType type, String name, long startNanos, boolean lazy) {
+        this.daoName = daoName;
+        this.type = type;
+        this.name = name;
+        this.startNanos = startNanos;
+        this.lazy = lazy;
+    }
+
+    void addNanos(long nanos) {
+        lazyNanos += nanos;
+    }
+
+    void addMapping(long nanos, int items) {
+        mapperNanos += nanos;
+        itemCount += items;
+    }
+
+    @Override
+    public void close() {
+        if (this == NOOP) {
+            return;
+        }
+        DaoMetrics.finishOperation(this, DaoOperation.builder()
+                .daoName(daoName)
+                .type(type)
+                .name(name)
+                .nanos(lazy ? lazyNanos : System.nanoTime() - startNanos)
+                .mapperNanos(mapperNanos)
+                .itemCount(itemCount)
+                .build());
+    }
+}
@@ -0,0 +1,15 @@
+package io.stardog.stardao.core.metrics;
+
+/**
+ * The kind of database operation a Dao performed.
+ */
+public enum OperationType {
+    /** Load of a single object, by id or by query. */
+    LOAD,
+    /** Query, scan or page returning any number of objects. */
+    QUERY,
+    CREATE,
+    UPDATE,
+    UPSERT,
+    DELETE
+}
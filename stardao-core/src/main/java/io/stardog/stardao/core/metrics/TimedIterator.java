@@ -0,0 +1,68 @@
+package io.stardog.stardao.core.metrics;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * An iterator over a lazy result whose reads are timed as a single operation, created by DaoMetrics.timeIteration().
+ * Like QueryMonitor's iterator in stardao-mongodb, it reports once the underlying iterator is exhausted, fails or is
+ * closed.
+ * @param <T>   type of object read
+ */
+final class TimedIterator<T> implements Iterator<T>, AutoCloseable {
+    private final OperationTimer timer;
+    private final Iterator<T> iterator;
+    private boolean finished;
+
+    TimedIterator(OperationTimer timer, Supplier<Iterator<T>> iterators) {
+        this.timer = timer;
+        this.iterator = time(iterators);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return iterator.hasNext();
+        }
+        boolean hasNext = time(iterator::hasNext);
+        if (!hasNext) {
+            finish();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (finished) {
+            return iterator.next();
+        }
+        return time(iterator::next);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            if (iterator instanceof AutoCloseable) {
+                ((AutoCloseable) iterator).close();
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    private <R> R time(Supplier<R> call) {
+        try {
+            return DaoMetrics.timeCall(timer, call);
+        } catch (RuntimeException e) {
+            finish();
+            throw e;
+        }
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            timer.close();
+        }
+    }
+}
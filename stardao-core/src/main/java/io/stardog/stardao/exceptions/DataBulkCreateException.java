@@ -0,0 +1,35 @@
+package io.stardog.stardao.exceptions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown by createAll() when some of the objects could not be created. Every object that is not listed in the errors
+ * was created.
+ */
+public class DataBulkCreateException extends DataException {
+    private final Map<Integer,String> errors;
+    private final List<?> created;
+
+    public DataBulkCreateException(Map<Integer,String> errors, List<?> created) {
+        super(errors.size() + " of " + (errors.size() + created.size()) + " objects could not be created");
+        this.errors = errors;
+        this.created = created;
+    }
+
+    /**
+     * The objects that could not be created.
+     * @return  map of position in the list passed to createAll() to error message
+     */
+    public Map<Integer,String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * The objects that were created, in the order they were passed in.
+     * @return  created models
+     */
+    public List<?> getCreated() {
+        return created;
+    }
+}
@@ -0,0 +1,7 @@
+package io.stardog.stardao.exceptions;
+
+public class DataConflictException extends DataException {
+    public DataConflictException(String message) {
+        super(message);
+    }
+}
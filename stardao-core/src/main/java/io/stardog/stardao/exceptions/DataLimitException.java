@@ -0,0 +1,11 @@
+package io.stardog.stardao.exceptions;
+
+/**
+ * Thrown when a Dao operation breaks one of the Dao's Guardrails, such as reading more results than allowed or
+ * scanning a whole table when full scans are rejected.
+ */
+public class DataLimitException extends DataException {
+    public DataLimitException(String message) {
+        super(message);
+    }
+}
@@ -1,24 +1,32 @@
 package io.stardog.stardao.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
-import com.fasterxml.jackson.databind.node.NullNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.collect.ImmutableSet;
 import io.stardog.stardao.core.Update;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
+/**
+ * Deserializes an Update in a single streaming pass. As each field is read, nulls and empty strings are recorded as
+ * removes, and every other value is copied straight into a token buffer that holds the partial object, which is then
+ * deserialized once into the partial class. Dotted paths are the exception: their values are collected into small
+ * trees, so that several paths under the same parent end up in one nested object.
+ */
 public class UpdateDeserializer extends JsonDeserializer<Update<?>> implements ContextualDeserializer {
     private JavaType valueType;
 
@@ -34,29 +42,151 @@ public class UpdateDeserializer extends JsonDeserializer<Update<?>> implements C
 
     @Override
     public Update<?> deserialize(JsonParser parser, DeserializationContext ctx) throws IOException {
-        ObjectMapper mapper = (ObjectMapper) parser.getCodec();
-
-        JsonNode node = mapper.readTree(parser);
-
         ImmutableSet.Builder<String> setFields = ImmutableSet.builder();
         ImmutableSet.Builder<String> removeFields = ImmutableSet.builder();
-        Map<String,JsonNode> setNodes = new HashMap<>();
+        ImmutableSet.Builder<String> incrementFields = ImmutableSet.builder();
+        ImmutableSet.Builder<String> appendFields = ImmutableSet.builder();
+        ImmutableSet.Builder<String> addToSetFields = ImmutableSet.builder();
+        ImmutableSet.Builder<String> pullFields = ImmutableSet.builder();
+        PartialBuffer partial = new PartialBuffer(parser, ctx);
+        Long expectedVersion = null;
 
-        Iterator<String> iter = node.fieldNames();
-        while (iter.hasNext()) {
-            String field = iter.next();
-            JsonNode value = node.get(field);
-            if (value instanceof NullNode) {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (field.equals(UpdateSerializer.VERSION)) {
+                if (valueToken != JsonToken.VALUE_NUMBER_INT) {
+                    throw JsonMappingException.from(parser, UpdateSerializer.VERSION + " must be an integer");
+                }
+                expectedVersion = parser.getLongValue();
+            } else if (field.equals(UpdateSerializer.INCREMENT)) {
+                readOperatorFields(parser, field, incrementFields, partial);
+            } else if (field.equals(UpdateSerializer.APPEND)) {
+                readOperatorFields(parser, field, appendFields, partial);
+            } else if (field.equals(UpdateSerializer.ADD_TO_SET)) {
+                readOperatorFields(parser, field, addToSetFields, partial);
+            } else if (field.equals(UpdateSerializer.PULL)) {
+                readOperatorFields(parser, field, pullFields, partial);
+            } else if (valueToken == JsonToken.VALUE_NULL) {
                 removeFields.add(field);
-            } else if (value instanceof TextNode && value.toString().equals("\"\"")) {
+            } else if (valueToken == JsonToken.VALUE_STRING && parser.getTextLength() == 0) {
                 removeFields.add(field);
             } else {
                 setFields.add(field);
-                setNodes.put(field, value);
+                partial.put(field);
             }
         }
-        Object setObject = mapper.convertValue(setNodes, valueType);
+        if (token != JsonToken.END_OBJECT) {
+            throw JsonMappingException.from(parser, "Update must be an object");
+        }
+        Object setObject = partial.toObject(valueType);
+
+        try {
+            return Update.builder()
+                    .partial(setObject)
+                    .setFields(setFields.build())
+                    .removeFields(removeFields.build())
+                    .incrementFields(incrementFields.build())
+                    .appendFields(appendFields.build())
+                    .addToSetFields(addToSetFields.build())
+                    .pullFields(pullFields.build())
+                    .expectedVersion(expectedVersion)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw JsonMappingException.from(parser, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read an operator object such as {"$inc": {"count": 1}}, adding each of its fields to the operation's field set
+     * and its value to the partial.
+     */
+    private void readOperatorFields(JsonParser parser, String operator, ImmutableSet.Builder<String> fields,
+                                    PartialBuffer partial) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, operator + " must be an object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            fields.add(field);
+            partial.put(field);
+        }
+    }
+
+    /**
+     * Accumulates the values that make up the partial. Top-level values are copied token by token into a buffer as
+     * they are read; values of dotted paths such as "address.city" are expanded into nested objects, so that the
+     * partial holds an address with only the city present, and are appended to the buffer at the end.
+     */
+    private static class PartialBuffer {
+        private final JsonParser parser;
+        private final DeserializationContext ctx;
+        private final TokenBuffer buffer;
+        private final Set<String> fields = new HashSet<>();
+        private Map<String,ObjectNode> pathRoots;
 
-        return Update.of(setObject, setFields.build(), removeFields.build());
+        PartialBuffer(JsonParser parser, DeserializationContext ctx) throws IOException {
+            this.parser = parser;
+            this.ctx = ctx;
+            this.buffer = new TokenBuffer(parser, ctx);
+            buffer.writeStartObject();
+        }
+
+        /**
+         * Add the value at the parser's current token to the partial, under a field name or dotted path.
+         */
+        void put(String field) throws IOException {
+            int dot = field.indexOf('.');
+            if (dot < 0) {
+                if (pathRoots != null && pathRoots.containsKey(field)) {
+                    throw JsonMappingException.from(parser, "Update paths overlap: " + field);
+                }
+                if (!fields.add(field)) {
+                    throw JsonMappingException.from(parser, "Field appears in more than one update operation: " + field);
+                }
+                buffer.writeFieldName(field);
+                buffer.copyCurrentStructure(parser);
+                return;
+            }
+
+            String root = field.substring(0, dot);
+            if (fields.contains(root)) {
+                throw JsonMappingException.from(parser, "Update paths overlap: " + field);
+            }
+            if (pathRoots == null) {
+                pathRoots = new LinkedHashMap<>();
+            }
+            JsonNode parent = pathRoots.computeIfAbsent(root, k -> JsonNodeFactory.instance.objectNode());
+            String[] parts = field.substring(dot + 1).split("\\.", -1);
+            for (int i = 0; i < parts.length - 1; i++) {
+                JsonNode child = parent.get(parts[i]);
+                if (child == null) {
+                    child = ((ObjectNode) parent).putObject(parts[i]);
+                } else if (!(child instanceof ObjectNode)) {
+                    throw JsonMappingException.from(parser, "Update paths overlap: " + field);
+                }
+                parent = child;
+            }
+            JsonNode value = parser.readValueAsTree();
+            ((ObjectNode) parent).set(parts[parts.length - 1], value);
+        }
+
+        Object toObject(JavaType valueType) throws IOException {
+            if (pathRoots != null) {
+                for (Map.Entry<String,ObjectNode> e : pathRoots.entrySet()) {
+                    buffer.writeFieldName(e.getKey());
+                    buffer.writeTree(e.getValue());
+                }
+            }
+            buffer.writeEndObject();
+            JsonParser bufferParser = buffer.asParser(parser.getCodec());
+            bufferParser.nextToken();
+            return ctx.readValue(bufferParser, valueType);
+        }
     }
 }
@@ -1,27 +1,112 @@
 package io.stardog.stardao.jackson;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
 import io.stardog.stardao.core.Update;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Serializes an Update by writing each field's value straight from the partial, using the partial's own property
+ * serializers (so per-property annotations such as @JsonFormat still apply), rather than first converting the whole
+ * partial into a map.
+ */
 public class UpdateSerializer extends JsonSerializer<Update<?>> {
+    public static final String INCREMENT = "$inc";
+    public static final String APPEND = "$push";
+    public static final String ADD_TO_SET = "$addToSet";
+    public static final String PULL = "$pull";
+    public static final String VERSION = "$version";
+
     @Override
-    public void serialize(Update<?> update, JsonGenerator jsonGen, SerializerProvider serializerProvider) throws IOException {
-        ObjectMapper mapper = (ObjectMapper) jsonGen.getCodec();
-        Map<String,Object> partial = mapper.convertValue(update.getPartial(), new TypeReference<Map<String,Object>>() { });
+    public void serialize(Update<?> update, JsonGenerator jsonGen, SerializerProvider provider) throws IOException {
+        Object partial = update.getPartial();
 
         jsonGen.writeStartObject();
         for (String field : update.getSetFields()) {
-            jsonGen.writeObjectField(field, partial.get(field));
+            jsonGen.writeFieldName(field);
+            writePathValue(jsonGen, provider, partial, field);
         }
         for (String field : update.getRemoveFields()) {
             jsonGen.writeNullField(field);
         }
+        writeOperatorFields(jsonGen, provider, INCREMENT, update.getIncrementFields(), partial);
+        writeOperatorFields(jsonGen, provider, APPEND, update.getAppendFields(), partial);
+        writeOperatorFields(jsonGen, provider, ADD_TO_SET, update.getAddToSetFields(), partial);
+        writeOperatorFields(jsonGen, provider, PULL, update.getPullFields(), partial);
+        if (update.getExpectedVersion() != null) {
+            jsonGen.writeNumberField(VERSION, update.getExpectedVersion());
+        }
 
         jsonGen.writeEndObject();
     }
+
+    private void writeOperatorFields(JsonGenerator jsonGen, SerializerProvider provider, String operator,
+                                     Set<String> fields, Object partial) throws IOException {
+        if (fields.isEmpty()) {
+            return;
+        }
+        jsonGen.writeObjectFieldStart(operator);
+        for (String field : fields) {
+            jsonGen.writeFieldName(field);
+            writePathValue(jsonGen, provider, partial, field);
+        }
+        jsonGen.writeEndObject();
+    }
+
+    /**
+     * Write the value at a field name or dotted path of an object, walking through embedded objects and maps.
+     * Missing values are written as null.
+     */
+    private void writePathValue(JsonGenerator jsonGen, SerializerProvider provider, Object object, String path) throws IOException {
+        int dot = path.indexOf('.');
+        String name = dot < 0 ? path : path.substring(0, dot);
+        if (object instanceof Map) {
+            Object value = ((Map<?,?>) object).get(name);
+            if (dot < 0) {
+                provider.defaultSerializeValue(value, jsonGen);
+            } else {
+                writePathValue(jsonGen, provider, unwrapOptional(value), path.substring(dot + 1));
+            }
+            return;
+        }
+        BeanPropertyWriter property = object != null ? findProperty(provider, object.getClass(), name) : null;
+        if (property == null) {
+            jsonGen.writeNull();
+            return;
+        }
+        try {
+            if (dot < 0) {
+                property.serializeAsElement(object, jsonGen, provider);
+            } else {
+                writePathValue(jsonGen, provider, unwrapOptional(property.get(object)), path.substring(dot + 1));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw JsonMappingException.from(jsonGen, "Unable to serialize " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private BeanPropertyWriter findProperty(SerializerProvider provider, Class<?> type, String name) throws JsonMappingException {
+        JsonSerializer<Object> serializer = provider.findValueSerializer(type);
+        Iterator<PropertyWriter> properties = serializer.properties();
+        while (properties.hasNext()) {
+            PropertyWriter property = properties.next();
+            if (property.getName().equals(name) && property instanceof BeanPropertyWriter) {
+                return (BeanPropertyWriter) property;
+            }
+        }
+        return null;
+    }
+
+    private Object unwrapOptional(Object value) {
+        return value instanceof Optional ? ((Optional<?>) value).orElse(null) : value;
+    }
 }
@@ -0,0 +1,59 @@
+package io.stardog.stardao.validation;
+
+import java.net.IDN;
+import java.util.regex.Pattern;
+
+/**
+ * Runtime checks used by generated validators, for constraints that are too involved to write inline.
+ */
+public final class Constraints {
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_DOMAIN_PART_LENGTH = 255;
+
+    private static final String LOCAL_PART_ATOM = "[a-z0-9!#$%&'*+/=?^_`{|}~\u0080-\uFFFF-]";
+    private static final String LOCAL_PART_INSIDE_QUOTES_ATOM = "([a-z0-9!#$%&'*.(),<>\\[\\]:;  @+/=?^_`{|}~\u0080-\uFFFF-]|\\\\\\\\|\\\\\\\")";
+    private static final Pattern LOCAL_PART_PATTERN = Pattern.compile(
+            "(" + LOCAL_PART_ATOM + "+|\"" + LOCAL_PART_INSIDE_QUOTES_ATOM + "+\")"
+                    + "(\\.(" + LOCAL_PART_ATOM + "+|\"" + LOCAL_PART_INSIDE_QUOTES_ATOM + "+\"))*",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String DOMAIN_CHARS_WITHOUT_DASH = "[a-z\u0080-\uFFFF0-9!#$%&'*+/=?^_`{|}~]";
+    private static final String DOMAIN_LABEL = "(" + DOMAIN_CHARS_WITHOUT_DASH + "-*)*" + DOMAIN_CHARS_WITHOUT_DASH + "+";
+    private static final String DOMAIN = DOMAIN_LABEL + "+(\\." + DOMAIN_LABEL + "+)*";
+    private static final String IP_DOMAIN = "[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}\\.[0-9]{1,3}";
+    private static final String IP_V6_DOMAIN = "[0-9a-f:.]+";
+    private static final Pattern DOMAIN_PATTERN = Pattern.compile(
+            DOMAIN + "|\\[" + IP_DOMAIN + "\\]|\\[IPv6:" + IP_V6_DOMAIN + "\\]", Pattern.CASE_INSENSITIVE);
+
+    private Constraints() {
+    }
+
+    /**
+     * Check whether a value is a well-formed email address, following the same rules as Hibernate Validator's @Email.
+     * @param value value to check
+     * @return  true if the value is null, empty or a well-formed email address
+     */
+    public static boolean isEmail(CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return true;
+        }
+        String email = value.toString();
+        int at = email.lastIndexOf('@');
+        if (at < 0) {
+            return false;
+        }
+        String localPart = email.substring(0, at);
+        String domainPart = email.substring(at + 1);
+        if (localPart.length() > MAX_LOCAL_PART_LENGTH || !LOCAL_PART_PATTERN.matcher(localPart).matches()) {
+            return false;
+        }
+        if (domainPart.endsWith(".") || !DOMAIN_PATTERN.matcher(domainPart).matches()) {
+            return false;
+        }
+        try {
+            return IDN.toASCII(domainPart).length() <= MAX_DOMAIN_PART_LENGTH;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
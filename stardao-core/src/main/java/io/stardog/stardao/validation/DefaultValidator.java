@@ -9,7 +9,7 @@ import io.stardog.stardao.core.Update;
 import javax.validation.Validation;
 
 public class DefaultValidator {
-    private static final ModelValidator VALIDATOR = new ModelValidator(Validation.buildDefaultValidatorFactory().getValidator(),
+    private static final ModelValidator VALIDATOR = new ModelValidator(() -> Validation.buildDefaultValidatorFactory().getValidator(),
             new ObjectMapper()
                     .registerModule(new Jdk8Module())
                     .setSerializationInclusion(JsonInclude.Include.NON_ABSENT));
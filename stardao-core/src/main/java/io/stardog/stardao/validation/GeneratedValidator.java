@@ -0,0 +1,41 @@
+package io.stardog.stardao.validation;
+
+import java.util.Set;
+
+/**
+ * A validator for one model class, generated at compile time by the stardao-auto @GenerateValidator processor. It
+ * checks the common Bean Validation constraints with plain Java code, producing the same messages as Hibernate
+ * Validator's default (English) messages, so that ModelValidator does not have to go through Bean Validation for them.
+ * Properties with constraints it cannot check are reported by getUnsupportedProperties(), and are still validated
+ * with Bean Validation.
+ * @param <T>   model class
+ */
+public interface GeneratedValidator<T> {
+    /**
+     * The properties whose constraints are all checked by this validator.
+     * @return  property names
+     */
+    Set<String> getValidatedProperties();
+
+    /**
+     * The properties that have at least one constraint this validator cannot check.
+     * @return  property names
+     */
+    Set<String> getUnsupportedProperties();
+
+    /**
+     * Whether this validator checks every constraint on the class, including class-level constraints and cascaded
+     * (@Valid) properties, so that validating a whole object does not need Bean Validation at all.
+     * @return  true if the validator is complete
+     */
+    boolean isComplete();
+
+    /**
+     * Check a single property against the constraints in a validation group.
+     * @param object    object to validate
+     * @param property  name of a property in getValidatedProperties()
+     * @param group     validation group, such as Default.class
+     * @return  message of the first constraint that is violated, or null if the property is valid
+     */
+    String getPropertyError(T object, String property, Class<?> group);
+}
@@ -1,28 +1,69 @@
 package io.stardog.stardao.validation;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
-import io.stardog.stardao.annotations.Required;
+import com.google.common.collect.ImmutableSet;
 import io.stardog.stardao.core.Update;
 import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.field.FieldScanner;
 import io.stardog.stardao.exceptions.DataValidationException;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import javax.validation.groups.Default;
+import javax.validation.metadata.PropertyDescriptor;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class ModelValidator {
-    private final Validator validator;
+    /**
+     * Suffix of the class name that the stardao-auto @GenerateValidator processor gives to a model's generated
+     * validator, e.g. "User_Validator" for "User".
+     */
+    public static final String GENERATED_SUFFIX = "_Validator";
+
+    private static final ClassValue<Optional<GeneratedValidator<Object>>> GENERATED_VALIDATORS =
+            new ClassValue<Optional<GeneratedValidator<Object>>>() {
+                @Override
+                protected Optional<GeneratedValidator<Object>> computeValue(Class<?> type) {
+                    return Optional.ofNullable(loadGeneratedValidator(type));
+                }
+            };
+
+    private final Supplier<Validator> validator;
     private final ObjectMapper mapper;
+    private final Map<Class<?>,Set<String>> constrainedProperties = new ConcurrentHashMap<>();
+    private final Map<Class<?>,Optional<List<BeanPropertyWriter>>> beanProperties = new ConcurrentHashMap<>();
 
     public ModelValidator(Validator validator, ObjectMapper mapper) {
-        this.validator = validator;
+        this(() -> validator, mapper);
+    }
+
+    /**
+     * Create a ModelValidator whose Bean Validation validator is only built when it is first needed. If every model
+     * it sees has a generated validator covering all of its constraints, it is never built at all.
+     * @param validator supplier of the Bean Validation validator
+     * @param mapper    object mapper
+     */
+    public ModelValidator(Supplier<Validator> validator, ObjectMapper mapper) {
+        this.validator = Suppliers.memoize(validator::get);
         this.mapper = mapper;
     }
 
@@ -30,7 +71,18 @@ public class ModelValidator {
         if (object == null) {
             return ImmutableList.of(ValidationError.of("", "object is null"));
         }
-        Set<ConstraintViolation<Object>> violations = validator.validate(object, validationGroup);
+        GeneratedValidator<Object> generated = getGeneratedValidator(object.getClass());
+        if (generated != null && generated.isComplete()) {
+            ImmutableList.Builder<ValidationError> errors = ImmutableList.builder();
+            for (String field : generated.getValidatedProperties()) {
+                String message = generated.getPropertyError(object, field, validationGroup);
+                if (message != null) {
+                    errors.add(ValidationError.of(field, message));
+                }
+            }
+            return errors.build();
+        }
+        Set<ConstraintViolation<Object>> violations = validator.get().validate(object, validationGroup);
         Set<String> errorFields = new HashSet<>();
         ImmutableList.Builder<ValidationError> errors = ImmutableList.builder();
         for (ConstraintViolation<Object> v : violations) {
@@ -58,7 +110,7 @@ public class ModelValidator {
         }
 
         ImmutableList.Builder<ValidationError> errors = ImmutableList.builder();
-        Map<String,Object> createMap = mapper.convertValue(create, new TypeReference<Map<String,Object>>() { });
+        Map<String,Object> createMap = getPresentValues(create);
         Set<String> createFields = createMap.keySet();
         for (String fieldName : createFields) {
             Field field = fieldData.getMap().get(fieldName);
@@ -74,21 +126,15 @@ public class ModelValidator {
                 errors.add(ValidationError.of(field.getName(), "is required"));
             }
         }
-        Set<ConstraintViolation<Object>> violations = validator.validate(create, Default.class);
-        Set<String> errorFields = new HashSet<>();
-        for (ConstraintViolation<?> cv : violations) {
-            String field = cv.getPropertyPath().toString();
-            if (createFields.contains(field) && !errorFields.contains(field)) {
-                errors.add(ValidationError.of(field, cv.getMessage()));
-                errorFields.add(field);
-            }
+        for (String field : createFields) {
+            addPropertyError(errors, create, field);
         }
         return errors.build();
     }
 
     /**
      * Validate an user-sourced update. Ensure that:
-     *   - the update is only touching @Updatable fields
+     *   - the update is only touching @Updatable fields, and any dotted paths exist on the model
      *   - the update is not unsetting any non-optional fields
      *   - the fields that are being touched all validate properly
      * @param update    update
@@ -102,32 +148,191 @@ public class ModelValidator {
         ImmutableList.Builder<ValidationError> errors = ImmutableList.builder();
         Set<String> updateFields = update.getUpdateFields();
 
-        // ensure we are only touching @Updatable fields
+        // ensure we are only touching @Updatable fields; a dotted path is governed by its top-level field, and must
+        // exist in the structure of the embedded object
         for (String fieldName : updateFields) {
-            Field field = fieldData.getMap().get(fieldName);
-            if (field == null) {
+            int dot = fieldName.indexOf('.');
+            Field field = fieldData.getMap().get(dot > 0 ? fieldName.substring(0, dot) : fieldName);
+            if (field == null || (dot > 0 && FieldScanner.getCachedPathType(update.getPartial().getClass(), fieldName) == null)) {
                 errors.add(ValidationError.of(fieldName, "does not exist"));
             } else if (!field.isUpdatable()) {
                 errors.add(ValidationError.of(fieldName, "is not updatable"));
-            } else if (!field.isOptional() && update.getRemoveFields().contains(fieldName)) {
+            } else if (dot < 0 && !field.isOptional() && update.getRemoveFields().contains(fieldName)) {
                 errors.add(ValidationError.of(fieldName, "is required"));
             }
         }
 
-        // validate the model -- but ignore fields that aren't being touched
-        Set<ConstraintViolation<Object>> violations = validator.validate(update.getPartial(), Default.class);
-        Set<String> errorFields = new HashSet<>();
-        for (ConstraintViolation<?> cv : violations) {
-            String field = cv.getPropertyPath().toString();
-            if (updateFields.contains(field) && !errorFields.contains(field)) {
-                errors.add(ValidationError.of(field, cv.getMessage()));
-                errorFields.add(field);
+        // validate only the touched fields -- but not operator fields (increments and collection element changes),
+        // since their partial value is an operand rather than the resulting value
+        Object partial = update.getPartial();
+        Set<String> pathFields = new HashSet<>();
+        for (String field : updateFields) {
+            if (update.getOperatorFields().contains(field)) {
+                continue;
+            } else if (field.indexOf('.') > 0) {
+                pathFields.add(field);
+            } else {
+                addPropertyError(errors, partial, field);
+            }
+        }
+
+        // a dotted path can only be checked by validating the embedded objects, so fall back to the whole partial
+        if (!pathFields.isEmpty()) {
+            Set<ConstraintViolation<Object>> violations = validator.get().validate(partial, Default.class);
+            Set<String> errorFields = new HashSet<>();
+            for (ConstraintViolation<?> cv : violations) {
+                String field = cv.getPropertyPath().toString();
+                if (pathFields.contains(field) && !errorFields.contains(field)) {
+                    errors.add(ValidationError.of(field, cv.getMessage()));
+                    errorFields.add(field);
+                }
             }
         }
 
         return errors.build();
     }
 
+    /**
+     * Validate a single property, adding the first violation, if there is one, as a validation error. The model's
+     * generated validator is used if it covers the property; otherwise Bean Validation is used.
+     */
+    private void addPropertyError(ImmutableList.Builder<ValidationError> errors, Object object, String field) {
+        GeneratedValidator<Object> generated = getGeneratedValidator(object.getClass());
+        if (generated != null && generated.getValidatedProperties().contains(field)) {
+            String message = generated.getPropertyError(object, field, Default.class);
+            if (message != null) {
+                errors.add(ValidationError.of(field, message));
+            }
+            return;
+        }
+        if (generated != null && !generated.getUnsupportedProperties().contains(field)) {
+            return;
+        }
+        if (getConstrainedProperties(object.getClass()).contains(field)) {
+            Set<ConstraintViolation<Object>> violations = validator.get().validateProperty(object, field, Default.class);
+            if (!violations.isEmpty()) {
+                ConstraintViolation<Object> cv = violations.iterator().next();
+                errors.add(ValidationError.of(cv.getPropertyPath().toString(), cv.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Return the generated validator for a class, or for the model class of an AutoValue implementation. A validator
+     * is never inherited by any other subclass, since it would not check the subclass's own constraints.
+     * @param type  class of the object being validated
+     * @return  generated validator, or null if there is none
+     */
+    public static GeneratedValidator<Object> getGeneratedValidator(Class<?> type) {
+        return GENERATED_VALIDATORS.get(type).orElse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static GeneratedValidator<Object> loadGeneratedValidator(Class<?> type) {
+        Class<?> modelType = type;
+        while (isAutoValueImplementation(modelType)) {
+            modelType = modelType.getSuperclass();
+        }
+        Class<?> generated;
+        try {
+            generated = Class.forName(modelType.getName() + GENERATED_SUFFIX, true, modelType.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            Object instance = generated.getDeclaredConstructor().newInstance();
+            return instance instanceof GeneratedValidator ? (GeneratedValidator<Object>) instance : null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load generated validator " + generated.getName(), e);
+        }
+    }
+
+    /**
+     * Whether a class was generated by AutoValue, such as AutoValue_User, or $AutoValue_User when extensions are
+     * in use; these add no constraints to the model class they extend.
+     */
+    private static boolean isAutoValueImplementation(Class<?> type) {
+        Class<?> superclass = type.getSuperclass();
+        return superclass != null && superclass != Object.class
+                && type.getSimpleName().matches("\\$*AutoValue_.*");
+    }
+
+    /**
+     * Return the names of the properties of a class that have constraints, looked up once per class.
+     * @param type  class
+     * @return  names of constrained properties
+     */
+    protected Set<String> getConstrainedProperties(Class<?> type) {
+        return constrainedProperties.computeIfAbsent(type, t -> {
+            ImmutableSet.Builder<String> names = ImmutableSet.builder();
+            for (PropertyDescriptor property : validator.get().getConstraintsForClass(t).getConstrainedProperties()) {
+                names.add(property.getPropertyName());
+            }
+            return names.build();
+        });
+    }
+
+    /**
+     * Return the properties of an object that are present (neither null nor an empty Optional), keyed by their JSON
+     * name. For plain beans the values are read through the mapper's cached bean properties, so the object is not
+     * converted to a map; Optional values are unwrapped. Objects that Jackson does not write as plain beans (those
+     * with a custom serializer, @JsonValue or @JsonAnyGetter) are converted to a map instead.
+     * @param object    object
+     * @return  map of property name to value
+     */
+    protected Map<String,Object> getPresentValues(Object object) {
+        Optional<List<BeanPropertyWriter>> properties = getBeanProperties(object.getClass());
+        if (!properties.isPresent()) {
+            Map<String,Object> values = mapper.convertValue(object, new TypeReference<Map<String,Object>>() { });
+            values.values().removeIf(Objects::isNull);
+            return values;
+        }
+
+        Map<String,Object> values = new LinkedHashMap<>();
+        for (BeanPropertyWriter property : properties.get()) {
+            Object value;
+            try {
+                value = property.get(object);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Unable to read " + property.getName() + ": " + e.getMessage(), e);
+            }
+            if (value instanceof Optional) {
+                value = ((Optional<?>) value).orElse(null);
+            }
+            if (value != null) {
+                values.put(property.getName(), value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Return the bean properties that the mapper writes for a class, or empty if it is not written as a plain bean,
+     * in which case its properties do not cover everything that is serialized.
+     */
+    private Optional<List<BeanPropertyWriter>> getBeanProperties(Class<?> type) {
+        return beanProperties.computeIfAbsent(type, t -> {
+            ImmutableList.Builder<BeanPropertyWriter> properties = ImmutableList.builder();
+            try {
+                JsonSerializer<Object> serializer = mapper.getSerializerProviderInstance().findValueSerializer(t);
+                if (!(serializer instanceof BeanSerializerBase)
+                        || mapper.getSerializationConfig().introspect(mapper.constructType(t)).findAnyGetter() != null) {
+                    return Optional.empty();
+                }
+                Iterator<PropertyWriter> writers = serializer.properties();
+                while (writers.hasNext()) {
+                    PropertyWriter writer = writers.next();
+                    if (writer instanceof BeanPropertyWriter) {
+                        properties.add((BeanPropertyWriter) writer);
+                    }
+                }
+            } catch (JsonMappingException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Optional.of(properties.build());
+        });
+    }
+
     public boolean validateModel(Object model) {
         List<ValidationError> errors = getModelValidationErrors(model, Default.class);
         if (!errors.isEmpty()) {
@@ -1,9 +1,26 @@
 package io.stardog.stardao.core;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.core.field.Field;
+import io.stardog.stardao.core.field.FieldSet;
+import io.stardog.stardao.core.guard.GuardAction;
+import io.stardog.stardao.core.guard.Guardrails;
+import io.stardog.stardao.core.guard.ResultGuard;
+import io.stardog.stardao.exceptions.DataLimitException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AbstractDaoTest {
     private TestDao dao;
@@ -17,4 +34,114 @@ public class AbstractDaoTest {
     public void testGetModelClass() throws Exception {
         assertEquals(TestModel.class, dao.getModelClass());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetFieldData() throws Exception {
+        assertSame(dao.getFieldData(), new TestDao(TestModel.class).getFieldData());
+        assertNotNull(dao.getStartupTime());
+    }
+
+    @Test
+    public void testGetMetricsName() throws Exception {
+        assertEquals("TestDao", dao.getMetricsName());
+    }
+
+    @Test
+    public void testGetVersionValue() throws Exception {
+        Field versionField = dao.getFieldData().getVersion();
+        assertEquals(new Long(3), dao.getVersionValue(TestModel.builder().version(3L).build(), versionField));
+        assertNull(dao.getVersionValue(TestModel.builder().build(), versionField));
+    }
+
+    @Test
+    public void testSelectFields() throws Exception {
+        FieldSet fields = dao.selectFields(ImmutableList.of("name", "email"));
+        assertEquals(ImmutableSet.of("id", "name", "email"), fields);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectFieldsUnknown() throws Exception {
+        dao.selectFields(ImmutableList.of("name", "password"));
+    }
+
+    @Test
+    public void testCheckFullScan() throws Exception {
+        dao.checkFullScan("scan");
+
+        dao.setGuardrails(Guardrails.production(100));
+        try {
+            dao.checkFullScan("scan");
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Full scan by TestDao.scan at io.stardog.stardao.core.AbstractDaoTest.testCheckFullScan("));
+        }
+
+        dao.setGuardrails(Guardrails.builder().fullScanAction(GuardAction.WARN).build());
+        dao.checkFullScan("scan");
+    }
+
+    @Test
+    public void testGuardResults() throws Exception {
+        assertSame(ResultGuard.NONE, dao.guardResults("scan"));
+        dao.setGuardrails(Guardrails.builder().maxScanRate(1000.0).build());
+        assertSame(ResultGuard.NONE, dao.guardResults("scan"));
+        dao.setGuardrails(Guardrails.builder().maxResultItems(10).build());
+        assertNotSame(ResultGuard.NONE, dao.guardResults("scan"));
+    }
+
+    @Test
+    public void testToDiffUpdate() throws Exception {
+        Map<String,Object> before = ImmutableMap.of(
+                "id", "1",
+                "name", "Ian",
+                "email", "ian@example.com",
+                "tags", ImmutableList.of("a", "b"),
+                "settings", ImmutableMap.of("theme", "dark", "lang", "en"));
+        Map<String,Object> after = ImmutableMap.of(
+                "id", "1",
+                "name", "Ian",
+                "tags", ImmutableList.of("a", "c"),
+                "settings", ImmutableMap.of("theme", "light", "tz", "UTC"),
+                "updateAt", 123L);
+
+        Update<TestModel> update = dao.toDiffUpdate(TestModel.builder().build(), before, after);
+        assertEquals(ImmutableSet.of("tags", "settings.theme", "settings.tz"), update.getSetFields());
+        assertEquals(ImmutableSet.of("email", "settings.lang"), update.getRemoveFields());
+    }
+
+    @Test
+    public void testUpdateBuilder() throws Exception {
+        TestModel partial = TestModel.builder().name("Ian").count(1).build();
+        Update<TestModel> update = dao.updateBuilder()
+                .partial(partial)
+                .set("name")
+                .increment("count")
+                .remove("email")
+                .build();
+
+        Update<TestModel> plain = Update.<TestModel>builder()
+                .partial(partial)
+                .setFields(ImmutableSet.of("name"))
+                .incrementFields(ImmutableSet.of("count"))
+                .removeFields(ImmutableSet.of("email"))
+                .build();
+        assertEquals(plain, update);
+        assertEquals(ImmutableSet.of("name", "count", "email"), update.getUpdateFields());
+        assertEquals(update, plain.withFieldSets(dao.getFieldData()));
+        assertTrue(plain.withFieldSets(dao.getFieldData()).getSetFields() instanceof FieldSet);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateBuilderUnknownField() throws Exception {
+        dao.updateBuilder().set("bogus");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateBuilderConflictingOperations() throws Exception {
+        dao.updateBuilder()
+                .partial(TestModel.builder().count(1).build())
+                .set("count")
+                .increment("count")
+                .build();
+    }
+}
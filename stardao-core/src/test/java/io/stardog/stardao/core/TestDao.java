@@ -39,6 +39,26 @@ public class TestDao extends AbstractDao<TestModel,TestModel,UUID,UUID> {
         return null;
     }
 
+    @Override
+    public TestModel updateAndReturnNew(UUID id, Update<TestModel> update, Instant updateAt, UUID updateBy) {
+        return null;
+    }
+
+    @Override
+    public TestModel updateAndReturnUpdated(UUID id, Update<TestModel> update, Instant updateAt, UUID updateBy) {
+        return null;
+    }
+
+    @Override
+    public boolean updateIf(UUID id, Condition condition, Update<TestModel> update, Instant updateAt, UUID updateBy) {
+        return false;
+    }
+
+    @Override
+    public UpsertResult<TestModel> upsert(UUID id, TestModel partial, Update<TestModel> update, Instant upsertAt, UUID upsertBy) {
+        return null;
+    }
+
     @Override
     public void delete(UUID id) {
 
@@ -12,6 +12,7 @@ import io.stardog.stardao.annotations.Required;
 import io.stardog.stardao.annotations.Updatable;
 import io.stardog.stardao.annotations.UpdatedAt;
 import io.stardog.stardao.annotations.UpdatedBy;
+import io.stardog.stardao.annotations.Version;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotEmpty;
 
@@ -19,6 +20,8 @@ import javax.annotation.Nullable;
 import javax.validation.constraints.Pattern;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @AutoValue
@@ -54,6 +57,18 @@ public abstract class TestModel {
     @Updatable
     public abstract Boolean getActive();
 
+    @Nullable
+    @Updatable
+    public abstract Integer getCount();
+
+    @Nullable
+    @Updatable
+    public abstract List<String> getTags();
+
+    @Nullable
+    @Updatable
+    public abstract Map<String,String> getSettings();
+
     @Nullable
     @CreatedBy
     public abstract UUID getCreateId();
@@ -70,6 +85,10 @@ public abstract class TestModel {
     @UpdatedAt
     public abstract Instant getUpdateAt();
 
+    @Nullable
+    @Version
+    public abstract Long getVersion();
+
     @Nullable
     public abstract Instant getLoginAt();
 
@@ -91,10 +110,14 @@ public abstract class TestModel {
         public abstract Builder country(String state);
         public abstract Builder birthday(LocalDate state);
         public abstract Builder active(Boolean active);
+        public abstract Builder count(Integer count);
+        public abstract Builder tags(List<String> tags);
+        public abstract Builder settings(Map<String,String> settings);
         public abstract Builder createAt(Instant at);
         public abstract Builder createId(UUID id);
         public abstract Builder updateAt(Instant at);
         public abstract Builder updateId(UUID id);
+        public abstract Builder version(Long version);
         public abstract Builder loginAt(Instant at);
         public abstract TestModel build();
     }
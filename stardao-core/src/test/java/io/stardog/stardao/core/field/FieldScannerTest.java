@@ -19,6 +19,22 @@ public class FieldScannerTest {
         assertEquals("updateAt", data.getUpdatedAt().getName());
         assertEquals("createId", data.getCreatedBy().getName());
         assertEquals("createAt", data.getCreatedAt().getName());
+        assertEquals("version", data.getVersion().getName());
+    }
+
+    @Test
+    public void testScanAnnotationsSkipsStaticFields() throws Exception {
+        FieldData data = new FieldScanner().scanAnnotations(ConstantModel.class);
+        assertEquals(1, data.getMap().size());
+        assertTrue(data.getMap().containsKey("name"));
+    }
+
+    @Test
+    public void testGetFieldData() throws Exception {
+        FieldData data = FieldScanner.getFieldData(TestModel.class);
+        assertEquals(new FieldScanner().scanAnnotations(TestModel.class), data);
+        assertSame(data, FieldScanner.getFieldData(TestModel.class));
+        assertNull(FieldScanner.loadPrecomputedFieldData(TestModel.class));
     }
 
     @Test
@@ -28,4 +44,36 @@ public class FieldScannerTest {
         assertEquals("loginAt", scanner.toFieldName(TestModel.class.getDeclaredMethod("getLoginAt")));
         assertNull(scanner.toFieldName(TestModel.class.getDeclaredMethod("getLoginAt", long.class)));
     }
+
+    @Test
+    public void testGetGetter() throws Exception {
+        FieldScanner scanner = new FieldScanner();
+        assertEquals(TestModel.class.getDeclaredMethod("getLoginAt"), scanner.getGetter(TestModel.class, "loginAt"));
+        assertNull(scanner.getGetter(TestModel.class, "bogus"));
+        assertNull(scanner.getGetter(TestModel.class, "class"));
+    }
+
+    @Test
+    public void testGetPathType() throws Exception {
+        FieldScanner scanner = new FieldScanner();
+
+        assertEquals(int.class, scanner.getPathType(TestModel.class, "birthday.year"));
+        assertEquals(String.class, scanner.getPathType(TestModel.class, "settings.theme"));
+        assertNull(scanner.getPathType(TestModel.class, "birthday.bogus"));
+        assertNull(scanner.getPathType(TestModel.class, "name.class"));
+        assertNull(scanner.getPathType(TestModel.class, "settings..theme"));
+    }
+
+    @Test
+    public void testGetCachedPathType() throws Exception {
+        assertEquals(int.class, FieldScanner.getCachedPathType(TestModel.class, "birthday.year"));
+        assertEquals(int.class, FieldScanner.getCachedPathType(TestModel.class, "birthday.year"));
+        assertNull(FieldScanner.getCachedPathType(TestModel.class, "birthday.bogus"));
+        assertNull(FieldScanner.getCachedPathType(TestModel.class, "birthday.bogus"));
+    }
+
+    static class ConstantModel {
+        static final String TABLE = "constants";
+        private String name;
+    }
 }
@@ -0,0 +1,64 @@
+package io.stardog.stardao.core.field;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.core.TestModel;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FieldSetTest {
+    private final FieldData fieldData = new FieldScanner().scanAnnotations(TestModel.class);
+
+    @Test
+    public void testOf() throws Exception {
+        Set<String> names = ImmutableSet.of("name", "email", "tags");
+        FieldSet fields = FieldSet.of(fieldData, names);
+
+        assertEquals(3, fields.size());
+        assertTrue(fields.contains("email"));
+        assertFalse(fields.contains("country"));
+        assertFalse(fields.contains("bogus"));
+        assertEquals(names, fields);
+        assertEquals(fields, names);
+        assertEquals(names.hashCode(), fields.hashCode());
+        assertEquals(names, ImmutableSet.copyOf(fields));
+        assertSame(fields, FieldSet.of(fieldData, fields));
+    }
+
+    @Test
+    public void testIteratesInOrdinalOrder() throws Exception {
+        FieldSet fields = FieldSet.of(fieldData, ImmutableSet.of("tags", "name", "email"));
+        ImmutableList.Builder<String> expected = ImmutableList.builder();
+        for (String name : fieldData.getFieldNames()) {
+            if (fields.contains(name)) {
+                expected.add(name);
+            }
+        }
+        assertEquals(expected.build(), ImmutableList.copyOf(fields));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfUnknownField() throws Exception {
+        FieldSet.of(fieldData, ImmutableSet.of("settings.theme"));
+    }
+
+    @Test
+    public void testCanRepresent() throws Exception {
+        assertTrue(FieldSet.canRepresent(fieldData, ImmutableSet.of("name", "settings")));
+        assertFalse(FieldSet.canRepresent(fieldData, ImmutableSet.of("name", "settings.theme")));
+    }
+
+    @Test
+    public void testUnionAndIntersects() throws Exception {
+        FieldSet a = FieldSet.builder(fieldData).addAll("name", "email").build();
+        FieldSet b = FieldSet.empty(fieldData).with("count");
+
+        assertFalse(a.intersects(b));
+        assertEquals(ImmutableSet.of("name", "email", "count"), a.union(b));
+        assertTrue(a.intersects(b.with("email")));
+        assertSame(b, b.with("count"));
+    }
+}
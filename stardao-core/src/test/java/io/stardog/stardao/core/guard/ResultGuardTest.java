@@ -0,0 +1,61 @@
+package io.stardog.stardao.core.guard;
+
+import io.stardog.stardao.exceptions.DataLimitException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultGuardTest {
+    @Test
+    public void testMaxItems() throws Exception {
+        ResultGuard guard = new ResultGuard("TestDao", "scan", Guardrails.builder().maxResultItems(2).build(), () -> "here");
+        guard.add("a", String::length);
+        guard.add("b", String::length);
+        assertEquals(2, guard.getItems());
+        assertEquals(0, guard.getBytes());
+        try {
+            guard.add("c", String::length);
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertEquals("TestDao.scan read more than 2 items at here", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMaxBytesWarn() throws Exception {
+        Guardrails guardrails = Guardrails.builder()
+                .maxResultBytes(5L)
+                .limitAction(GuardAction.WARN)
+                .build();
+        ResultGuard guard = new ResultGuard("TestDao", "scan", guardrails, () -> "here");
+        guard.add("abc", String::length);
+        guard.add("def", String::length);
+        guard.add("ghi", String::length);
+        assertEquals(3, guard.getItems());
+        assertEquals(9, guard.getBytes());
+    }
+
+    @Test
+    public void testNone() throws Exception {
+        ResultGuard.NONE.add("a", s -> {
+            throw new AssertionError("should not measure");
+        });
+        assertEquals(0, ResultGuard.NONE.getItems());
+    }
+
+    @Test
+    public void testGuardrails() throws Exception {
+        assertFalse(Guardrails.NONE.hasResultLimits());
+        assertEquals(GuardAction.ALLOW, Guardrails.NONE.getFullScanAction());
+
+        Guardrails production = Guardrails.production(1000);
+        assertTrue(production.hasResultLimits());
+        assertEquals(GuardAction.REJECT, production.getFullScanAction());
+        assertEquals(GuardAction.REJECT, production.getLimitAction());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidScanRate() throws Exception {
+        Guardrails.builder().maxScanRate(0.0).build();
+    }
+}
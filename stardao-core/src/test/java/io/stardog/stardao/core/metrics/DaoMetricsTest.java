@@ -0,0 +1,140 @@
+package io.stardog.stardao.core.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DaoMetricsTest {
+    @Test
+    public void testListen() throws Exception {
+        List<DaoOperation> operations = new ArrayList<>();
+        assertFalse(DaoMetrics.isEnabled());
+        assertSame(OperationTimer.NOOP, DaoMetrics.startOperation("TestDao", OperationType.LOAD, "loadOpt"));
+
+        try (DaoMetrics.Scope scope = DaoMetrics.listen(operations::add)) {
+            assertTrue(DaoMetrics.isEnabled());
+            try (OperationTimer timer = DaoMetrics.startOperation("TestDao", OperationType.LOAD, "loadOpt")) {
+                DaoMetrics.recordMapping("TestDao", 5, 1);
+            }
+        }
+        assertFalse(DaoMetrics.isEnabled());
+
+        assertEquals(1, operations.size());
+        DaoOperation op = operations.get(0);
+        assertEquals("TestDao", op.getDaoName());
+        assertEquals(OperationType.LOAD, op.getType());
+        assertEquals("loadOpt", op.getName());
+        assertEquals(5, op.getMapperNanos());
+        assertEquals(1, op.getItemCount());
+        assertEquals(op.getNanos() - 5, op.getBackendNanos());
+    }
+
+    @Test
+    public void testCloseOnOtherThread() throws Exception {
+        DaoMetrics.Scope scope = DaoMetrics.listen(operation -> { });
+        Thread other = new Thread(scope::close);
+        other.start();
+        other.join();
+        assertTrue(DaoMetrics.isEnabled());
+
+        scope.close();
+        assertFalse(DaoMetrics.isEnabled());
+    }
+
+    @Test
+    public void testNestedOperation() throws Exception {
+        List<DaoOperation> operations = new ArrayList<>();
+        try (DaoMetrics.Scope scope = DaoMetrics.listen(operations::add)) {
+            try (OperationTimer timer = DaoMetrics.startOperation("TestDao", OperationType.UPSERT, "upsertAndReturn")) {
+                try (OperationTimer inner = DaoMetrics.startOperation("TestDao", OperationType.UPSERT, "upsert")) {
+                    assertSame(OperationTimer.NOOP, inner);
+                }
+                DaoMetrics.recordMapping("TestDao", 10, 1);
+            }
+            try (OperationTimer timer = DaoMetrics.startOperation("TestDao", OperationType.DELETE, "delete")) {
+            }
+        }
+        assertEquals(2, operations.size());
+        assertEquals("upsertAndReturn", operations.get(0).getName());
+        assertEquals(1, operations.get(0).getItemCount());
+        assertEquals("delete", operations.get(1).getName());
+    }
+
+    @Test
+    public void testMappingOutsideOperation() throws Exception {
+        List<String> mappings = new ArrayList<>();
+        DaoListener listener = new DaoListener() {
+            @Override
+            public void onOperation(DaoOperation operation) {
+                fail("unexpected operation");
+            }
+
+            @Override
+            public void onMapping(String daoName, long nanos, int itemCount) {
+                mappings.add(daoName + ":" + nanos + ":" + itemCount);
+            }
+        };
+        DaoMetrics.addListener(listener);
+        try {
+            DaoMetrics.recordMapping("TestDao", 7, 1);
+        } finally {
+            DaoMetrics.removeListener(listener);
+        }
+        DaoMetrics.recordMapping("TestDao", 8, 1);
+        assertEquals(1, mappings.size());
+        assertEquals("TestDao:7:1", mappings.get(0));
+    }
+
+    @Test
+    public void testTimeIteration() throws Exception {
+        List<DaoOperation> operations = new ArrayList<>();
+        try (DaoMetrics.Scope scope = DaoMetrics.listen(operations::add)) {
+            Iterator<String> source = Arrays.asList("a", "b").iterator();
+            Iterator<String> iterator = DaoMetrics.timeIteration("TestDao", OperationType.QUERY, "iterateAll", () -> new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return source.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    DaoMetrics.recordMapping("TestDao", 3, 1);
+                    return source.next();
+                }
+            });
+            assertTrue(operations.isEmpty());
+            while (iterator.hasNext()) {
+                iterator.next();
+                try (OperationTimer timer = DaoMetrics.startOperation("TestDao", OperationType.LOAD, "load")) {
+                }
+            }
+        }
+
+        assertEquals(3, operations.size());
+        assertEquals("load", operations.get(0).getName());
+        assertEquals("load", operations.get(1).getName());
+        DaoOperation op = operations.get(2);
+        assertEquals("iterateAll", op.getName());
+        assertEquals(2, op.getItemCount());
+        assertEquals(6, op.getMapperNanos());
+    }
+
+    @Test
+    public void testTimeIterationClosed() throws Exception {
+        List<DaoOperation> operations = new ArrayList<>();
+        try (DaoMetrics.Scope scope = DaoMetrics.listen(operations::add)) {
+            Iterator<String> iterator = DaoMetrics.timeIteration("TestDao", OperationType.QUERY, "iterateAll",
+                    () -> Arrays.asList("a", "b").iterator());
+            iterator.next();
+            ((AutoCloseable) iterator).close();
+            ((AutoCloseable) iterator).close();
+        }
+        assertEquals(1, operations.size());
+        assertEquals("iterateAll", operations.get(0).getName());
+    }
+}
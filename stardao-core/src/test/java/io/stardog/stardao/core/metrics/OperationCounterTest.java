@@ -0,0 +1,51 @@
+package io.stardog.stardao.core.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OperationCounterTest {
+    @Test
+    public void testCounts() throws Exception {
+        try (OperationCounter counter = OperationCounter.start()) {
+            run("UserDao", OperationType.QUERY, "findByQuery");
+            run("UserDao", OperationType.LOAD, "loadOpt");
+            run("OrgDao", OperationType.LOAD, "loadOpt");
+            run("OrgDao", OperationType.UPDATE, "update");
+
+            assertEquals(4, counter.getCount());
+            assertEquals(2, counter.getCount(OperationType.LOAD));
+            assertEquals(1, counter.getCount("OrgDao", OperationType.LOAD));
+            assertEquals(3, counter.getReads());
+            assertEquals(1, counter.getWrites());
+
+            counter.reset();
+            assertEquals(0, counter.getCount());
+        }
+        run("UserDao", OperationType.LOAD, "loadOpt");
+        assertFalse(DaoMetrics.isEnabled());
+    }
+
+    @Test
+    public void testAssertMax() throws Exception {
+        try (OperationCounter counter = OperationCounter.start()) {
+            run("UserDao", OperationType.LOAD, "loadOpt");
+            run("UserDao", OperationType.LOAD, "loadOpt");
+            counter.assertMaxReads(2);
+            counter.assertMaxWrites(0);
+            counter.assertMax(OperationType.QUERY, 0);
+            try {
+                counter.assertMax(OperationType.LOAD, 1);
+                fail("expected AssertionError");
+            } catch (AssertionError e) {
+                assertEquals("Expected at most 1 LOAD operations but there were 2: [UserDao.loadOpt, UserDao.loadOpt]",
+                        e.getMessage());
+            }
+        }
+    }
+
+    private void run(String daoName, OperationType type, String name) {
+        try (OperationTimer timer = DaoMetrics.startOperation(daoName, type, name)) {
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package io.stardog.stardao.jackson;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.stardog.stardao.core.TestModel;
 import io.stardog.stardao.core.Update;
@@ -39,4 +42,106 @@ public class UpdateDeserializerTest {
         Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
         assertTrue(update.getPartial().getActive());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDeserializeIncrement() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"name\":\"Marty\",\"$inc\":{\"count\":-2}}";
+        Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals("Marty", update.getPartial().getName());
+        assertEquals(new Integer(-2), update.getPartial().getCount());
+        assertEquals(ImmutableSet.of("name"), update.getSetFields());
+        assertEquals(ImmutableSet.of("count"), update.getIncrementFields());
+        assertEquals(ImmutableSet.of("name", "count"), update.getUpdateFields());
+    }
+
+    @Test
+    public void testDeserializeCollectionOperations() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"$push\":{\"tags\":[\"a\",\"b\"]}}";
+        Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableList.of("a", "b"), update.getPartial().getTags());
+        assertEquals(ImmutableSet.of("tags"), update.getAppendFields());
+
+        json = "{\"$addToSet\":{\"tags\":[\"a\"]}}";
+        update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableSet.of("tags"), update.getAddToSetFields());
+
+        json = "{\"$pull\":{\"tags\":[\"a\"]}}";
+        update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableSet.of("tags"), update.getPullFields());
+        assertEquals(ImmutableSet.of("tags"), update.getUpdateFields());
+    }
+
+    @Test
+    public void testDeserializeNestedPath() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"settings.theme\":\"dark\",\"settings.lang\":null}";
+        Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableMap.of("theme", "dark"), update.getPartial().getSettings());
+        assertEquals(ImmutableSet.of("settings.theme"), update.getSetFields());
+        assertEquals(ImmutableSet.of("settings.lang"), update.getRemoveFields());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testDeserializeOverlappingPaths() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"settings\":{\"theme\":\"dark\"},\"settings.lang\":\"en\"}";
+        mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testDeserializeConflictingOperations() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        String json = "{\"count\":1,\"$inc\":{\"count\":1}}";
+        mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+    }
+
+    @Test
+    public void testDeserializeExpectedVersion() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"name\":\"Marty\",\"$version\":3}";
+        Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableSet.of("name"), update.getSetFields());
+        assertEquals(new Long(3), update.getExpectedVersion());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testDeserializeInvalidExpectedVersion() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        String json = "{\"name\":\"Marty\",\"$version\":\"3\"}";
+        mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+    }
+
+    @Test
+    public void testDeserializeSiblingNestedPaths() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String json = "{\"settings.theme\":\"dark\",\"name\":\"Marty\",\"settings.lang\":\"en\",\"tags\":[\"a\",\"b\"]}";
+        Update<TestModel> update = mapper.readValue(json, new TypeReference<Update<TestModel>>() {});
+        assertEquals(ImmutableSet.of("settings.theme", "name", "settings.lang", "tags"), update.getSetFields());
+        assertEquals(ImmutableMap.of("theme", "dark", "lang", "en"), update.getPartial().getSettings());
+        assertEquals(ImmutableList.of("a", "b"), update.getPartial().getTags());
+        assertEquals("Marty", update.getPartial().getName());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testDeserializeNotAnObject() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        mapper.readValue("[\"name\"]", new TypeReference<Update<TestModel>>() {});
+    }
+}
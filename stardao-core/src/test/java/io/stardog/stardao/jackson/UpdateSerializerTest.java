@@ -2,6 +2,8 @@ package io.stardog.stardao.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.stardog.stardao.core.TestModel;
 import io.stardog.stardao.core.Update;
@@ -28,4 +30,61 @@ public class UpdateSerializerTest {
         String json = mapper.writeValueAsString(update);
         assertEquals("{\"email\":\"test@example.com\",\"birthday\":\"2017-03-01\",\"country\":null}", json);
     }
+
+    @Test
+    public void serializeIncrement() throws Exception {
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().name("Test").count(3).build())
+                .setFields(ImmutableSet.of("name"))
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule());
+
+        String json = mapper.writeValueAsString(update);
+        assertEquals("{\"name\":\"Test\",\"$inc\":{\"count\":3}}", json);
+    }
+
+    @Test
+    public void serializeCollectionOperations() throws Exception {
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().tags(ImmutableList.of("a")).build())
+                .pullFields(ImmutableSet.of("tags"))
+                .build();
+
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule());
+
+        String json = mapper.writeValueAsString(update);
+        assertEquals("{\"$pull\":{\"tags\":[\"a\"]}}", json);
+    }
+
+    @Test
+    public void serializeNestedPath() throws Exception {
+        Update<TestModel> update = Update.of(
+                TestModel.builder().settings(ImmutableMap.of("theme", "dark")).build(),
+                ImmutableSet.of("settings.theme"));
+
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule());
+
+        String json = mapper.writeValueAsString(update);
+        assertEquals("{\"settings.theme\":\"dark\"}", json);
+    }
+
+    @Test
+    public void serializeExpectedVersion() throws Exception {
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().name("Test").build())
+                .setFields(ImmutableSet.of("name"))
+                .expectedVersion(3L)
+                .build();
+
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule());
+
+        String json = mapper.writeValueAsString(update);
+        assertEquals("{\"name\":\"Test\",\"$version\":3}", json);
+    }
 }
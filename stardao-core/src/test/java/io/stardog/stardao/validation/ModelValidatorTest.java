@@ -1,8 +1,18 @@
 package io.stardog.stardao.validation;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.annotations.Creatable;
 import io.stardog.stardao.core.TestModel;
 import io.stardog.stardao.core.Update;
 import io.stardog.stardao.core.field.FieldData;
@@ -12,10 +22,18 @@ import io.stardog.stardao.jackson.JsonHelper;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
+import javax.validation.constraints.NotNull;
 import javax.validation.groups.Default;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -72,6 +90,19 @@ public class ModelValidatorTest {
         assertEquals("is not creatable", errors.get(0).getMessage());
     }
 
+    @Test
+    public void testGetCreateValidationErrorsNotBean() throws Exception {
+        // objects that are not written as plain beans are still seen with all of their serialized properties
+        for (Object create : ImmutableList.of(new SerializedModel("Ian"), new ValueModel("Ian"), new AnyGetterModel("Ian"))) {
+            FieldData createFieldData = new FieldScanner().scanAnnotations(create.getClass());
+            assertEquals(ImmutableList.of(), validator.getCreateValidationErrors(create, createFieldData));
+        }
+
+        FieldData createFieldData = new FieldScanner().scanAnnotations(ValueModel.class);
+        List<ValidationError> errors = validator.getCreateValidationErrors(new ValueModel(null), createFieldData);
+        assertEquals(ImmutableList.of(ValidationError.of("name", "is required")), errors);
+    }
+
     @Test
     public void testGetUpdateValidationErrors() throws Exception {
         List<ValidationError> errors = validator.getUpdateValidationErrors(null, fieldData);
@@ -93,6 +124,23 @@ public class ModelValidatorTest {
         errors = validator.getUpdateValidationErrors(update, fieldData);
         assertEquals(1, errors.size());
         assertEquals("email: is required", errors.get(0).toString());
+
+        // increments must also only touch @Updatable fields
+        update = JsonHelper.update("{$inc:{type:1}}", TestValidateModel.class);
+        errors = validator.getUpdateValidationErrors(update, fieldData);
+        assertEquals(1, errors.size());
+        assertEquals("type: is not updatable", errors.get(0).toString());
+
+        // fields that aren't being touched are not validated
+        update = Update.of(TestValidateModel.builder().email("bad").nickname("Bob").build(), ImmutableSet.of("nickname"));
+        errors = validator.getUpdateValidationErrors(update, fieldData);
+        assertEquals(0, errors.size());
+
+        // dotted paths must exist in the structure of the model
+        update = Update.of(TestValidateModel.builder().build(), ImmutableSet.of("email.bogus"));
+        errors = validator.getUpdateValidationErrors(update, fieldData);
+        assertEquals(1, errors.size());
+        assertEquals("email.bogus: does not exist", errors.get(0).toString());
     }
 
     @Test
@@ -132,4 +180,113 @@ public class ModelValidatorTest {
 
     }
 
+    @Test
+    public void testGeneratedValidator() throws Exception {
+        // every constraint on TestGeneratedModel is covered by its generated validator, so Bean Validation is not used
+        ModelValidator generatedValidator = new ModelValidator(() -> {
+            throw new AssertionError("Bean Validation should not be needed");
+        }, new ObjectMapper().registerModule(new Jdk8Module()));
+        FieldData generatedFieldData = new FieldScanner().scanAnnotations(TestGeneratedModel.class);
+
+        TestGeneratedModel model = TestGeneratedModel.builder().name("abcdefghijklmnopqrstu").email("bad").count(-1).build();
+        List<ValidationError> errors = generatedValidator.getModelValidationErrors(model, Default.class);
+        assertEquals(ImmutableList.of(
+                ValidationError.of("name", "size must be between 1 and 20"),
+                ValidationError.of("email", "must be a well-formed email address"),
+                ValidationError.of("nickname", "must not be null"),
+                ValidationError.of("count", "must be greater than or equal to 0")), errors);
+
+        // the errors match Bean Validation, which only checks the contents of an Optional against @NotNull when
+        // asked to unwrap it
+        Set<String> beanErrors = new HashSet<>();
+        for (ConstraintViolation<TestGeneratedModel> cv : Validation.buildDefaultValidatorFactory().getValidator().validate(model)) {
+            beanErrors.add(cv.getPropertyPath() + ": " + cv.getMessage());
+        }
+        assertEquals(errors.stream().map(ValidationError::toString).collect(Collectors.toSet()), beanErrors);
+
+        errors = generatedValidator.getCreateValidationErrors(model, generatedFieldData);
+        assertEquals(ImmutableList.of(
+                ValidationError.of("name", "size must be between 1 and 20"),
+                ValidationError.of("email", "must be a well-formed email address"),
+                ValidationError.of("count", "must be greater than or equal to 0")), errors);
+        model = TestGeneratedModel.builder().name("Ian").email("ok@example.com").nickname("Bob").count(1).build();
+        assertEquals(0, generatedValidator.getModelValidationErrors(model, Default.class).size());
+        assertEquals(0, generatedValidator.getCreateValidationErrors(model, generatedFieldData).size());
+
+        Update<TestGeneratedModel> update = Update.of(
+                TestGeneratedModel.builder().name("").email("bad").build(), ImmutableSet.of("email"));
+        errors = generatedValidator.getUpdateValidationErrors(update, generatedFieldData);
+        assertEquals(ImmutableList.of(ValidationError.of("email", "must be a well-formed email address")), errors);
+        update = Update.of(TestGeneratedModel.builder().name("Ian").count(2).build(), ImmutableSet.of("name", "count"));
+        assertEquals(0, generatedValidator.getUpdateValidationErrors(update, generatedFieldData).size());
+    }
+
+    @Test
+    public void testGetGeneratedValidator() throws Exception {
+        Class<?> implementation = TestGeneratedModel.builder().name("Ian").build().getClass();
+        assertEquals(TestGeneratedModel_Validator.class, ModelValidator.getGeneratedValidator(implementation).getClass());
+        assertEquals(TestGeneratedModel_Validator.class, ModelValidator.getGeneratedValidator(TestGeneratedModel.class).getClass());
+        assertNull(ModelValidator.getGeneratedValidator(TestValidateModel.class));
+
+        // a subclass may add constraints of its own, so it does not use its parent's validator
+        assertNull(ModelValidator.getGeneratedValidator(ExtendedGeneratedModel.class));
+    }
+
+    abstract static class ExtendedGeneratedModel extends TestGeneratedModel {
+        @NotNull
+        public abstract String getExtra();
+    }
+
+    @JsonSerialize(using = SerializedModel.Serializer.class)
+    static class SerializedModel {
+        @Creatable
+        private final String name;
+
+        SerializedModel(String name) {
+            this.name = name;
+        }
+
+        static class Serializer extends StdSerializer<SerializedModel> {
+            Serializer() {
+                super(SerializedModel.class);
+            }
+
+            @Override
+            public void serialize(SerializedModel value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+                gen.writeStartObject();
+                gen.writeStringField("name", value.name);
+                gen.writeEndObject();
+            }
+        }
+    }
+
+    static class ValueModel {
+        @Creatable
+        private final String name;
+
+        ValueModel(String name) {
+            this.name = name;
+        }
+
+        @JsonValue
+        public Map<String,Object> toMap() {
+            Map<String,Object> map = new HashMap<>();
+            map.put("name", name);
+            return map;
+        }
+    }
+
+    static class AnyGetterModel {
+        @Creatable
+        private final String name;
+
+        AnyGetterModel(String name) {
+            this.name = name;
+        }
+
+        @JsonAnyGetter
+        public Map<String,Object> getProperties() {
+            return ImmutableMap.of("name", name);
+        }
+    }
 }
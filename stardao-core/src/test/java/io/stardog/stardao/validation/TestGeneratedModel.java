@@ -0,0 +1,64 @@
+package io.stardog.stardao.validation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.google.auto.value.AutoValue;
+import io.stardog.stardao.annotations.Id;
+import io.stardog.stardao.annotations.Updatable;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.validation.valueextraction.Unwrapping;
+import java.util.Optional;
+import java.util.UUID;
+
+@AutoValue
+@JsonInclude(JsonInclude.Include.NON_ABSENT)
+@JsonDeserialize(builder=AutoValue_TestGeneratedModel.Builder.class)
+public abstract class TestGeneratedModel {
+    @Nullable
+    @Id
+    public abstract UUID getId();
+
+    @Size(min = 1, max = 20)
+    @Updatable
+    public abstract String getName();
+
+    @Nullable
+    @Email
+    @Updatable
+    public abstract String getEmail();
+
+    @NotNull(payload = Unwrapping.Unwrap.class)
+    @Updatable
+    public abstract Optional<String> getNickname();
+
+    @NotNull
+    @Updatable
+    public abstract Optional<String> getTitle();
+
+    @Nullable
+    @Min(0)
+    @Updatable
+    public abstract Integer getCount();
+
+    public static TestGeneratedModel.Builder builder() {
+        return new AutoValue_TestGeneratedModel.Builder();
+    }
+
+    @AutoValue.Builder
+    @JsonPOJOBuilder(withPrefix = "")
+    public abstract static class Builder {
+        public abstract Builder id(UUID id);
+        public abstract Builder name(String name);
+        public abstract Builder email(String email);
+        public abstract Builder nickname(String nickname);
+        public abstract Builder title(String title);
+        public abstract Builder count(Integer count);
+        public abstract TestGeneratedModel build();
+    }
+}
@@ -0,0 +1,86 @@
+package io.stardog.stardao.validation;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.validation.groups.Default;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The validator that the stardao-auto @GenerateValidator processor generates for TestGeneratedModel, written out by
+ * hand since stardao-core cannot run a processor that depends on it.
+ */
+public final class TestGeneratedModel_Validator implements GeneratedValidator<TestGeneratedModel> {
+    private static final Set<String> VALIDATED = ImmutableSet.of("name", "email", "nickname", "title", "count");
+
+    private static final Set<String> UNSUPPORTED = ImmutableSet.of();
+
+    @Override
+    public Set<String> getValidatedProperties() {
+        return VALIDATED;
+    }
+
+    @Override
+    public Set<String> getUnsupportedProperties() {
+        return UNSUPPORTED;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return true;
+    }
+
+    @Override
+    public String getPropertyError(TestGeneratedModel object, String property, Class<?> group) {
+        switch (property) {
+            case "name": return validateName(object, group);
+            case "email": return validateEmail(object, group);
+            case "nickname": return validateNickname(object, group);
+            case "title": return validateTitle(object, group);
+            case "count": return validateCount(object, group);
+            default: throw new IllegalArgumentException("Property is not validated: " + property);
+        }
+    }
+
+    private String validateName(TestGeneratedModel object, Class<?> group) {
+        String value = object.getName();
+        if (Default.class.isAssignableFrom(group) && (value != null && (value.length() < 1 || value.length() > 20))) {
+            return "size must be between 1 and 20";
+        }
+        return null;
+    }
+
+    private String validateEmail(TestGeneratedModel object, Class<?> group) {
+        String value = object.getEmail();
+        if (Default.class.isAssignableFrom(group) && !Constraints.isEmail(value)) {
+            return "must be a well-formed email address";
+        }
+        return null;
+    }
+
+    private String validateNickname(TestGeneratedModel object, Class<?> group) {
+        Optional<String> raw = object.getNickname();
+        String value = raw != null ? raw.orElse(null) : null;
+        if (Default.class.isAssignableFrom(group) && value == null) {
+            return "must not be null";
+        }
+        return null;
+    }
+
+    private String validateTitle(TestGeneratedModel object, Class<?> group) {
+        Optional<String> raw = object.getTitle();
+        String value = raw != null ? raw.orElse(null) : null;
+        if (Default.class.isAssignableFrom(group) && raw == null) {
+            return "must not be null";
+        }
+        return null;
+    }
+
+    private String validateCount(TestGeneratedModel object, Class<?> group) {
+        Integer value = object.getCount();
+        if (Default.class.isAssignableFrom(group) && (value != null && value < 0L)) {
+            return "must be greater than or equal to 0";
+        }
+        return null;
+    }
+}
@@ -1,14 +1,23 @@
 package io.stardog.stardao.dynamodb;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DeleteItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.GetItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.Index;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.ItemCollection;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
 import com.amazonaws.services.dynamodbv2.document.PrimaryKey;
+import com.amazonaws.services.dynamodbv2.document.PutItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.QueryOutcome;
+import com.amazonaws.services.dynamodbv2.document.ScanOutcome;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
 import com.amazonaws.services.dynamodbv2.document.UpdateItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.spec.BatchWriteItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.DeleteItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
@@ -18,6 +27,9 @@ import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
 import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.CreateGlobalSecondaryIndexAction;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
@@ -26,22 +38,39 @@ import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.amazonaws.services.dynamodbv2.util.TableUtils;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.Condition;
 import io.stardog.stardao.core.Results;
 import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.UpsertResult;
 import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.guard.ResultGuard;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.OperationTimer;
+import io.stardog.stardao.core.metrics.OperationType;
 import io.stardog.stardao.dynamodb.mapper.ItemMapper;
 import io.stardog.stardao.dynamodb.mapper.JacksonItemMapper;
+import io.stardog.stardao.dynamodb.mapper.MeasuredItemMapper;
+import io.stardog.stardao.dynamodb.monitor.CapacityMonitor;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.exceptions.DataConflictException;
 import io.stardog.stardao.exceptions.DataNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 
@@ -51,7 +80,11 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
     protected final AmazonDynamoDB db;
     protected final Table table;
     protected final String tableName;
+    private CapacityMonitor capacityMonitor;
     private final static Logger LOGGER = LoggerFactory.getLogger(AbstractDynamoDao.class);
+    private final static int MAX_BATCH_WRITE_ITEMS = 25;
+    private final static int MAX_BATCH_WRITE_ATTEMPTS = 8;
+    private final static String VALIDATION_ERROR_CODE = "ValidationException";
 
     public AbstractDynamoDao(Class<M> modelClass, Class<P> partialClass, AmazonDynamoDB db, String tableName) {
         super(modelClass, partialClass);
@@ -60,6 +93,7 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         this.modelMapper = new JacksonItemMapper<>(modelClass, getFieldData());
         this.partialMapper = new JacksonItemMapper<>(partialClass, getFieldData());
         this.table = new DynamoDB(db).getTable(tableName);
+        recordStartup();
     }
 
     public AbstractDynamoDao(Class<M> modelClass, Class<P> partialClass, AmazonDynamoDB db, String tableName, ItemMapper<M> modelMapper, ItemMapper<P> partialMapper) {
@@ -69,6 +103,7 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         this.modelMapper = modelMapper;
         this.partialMapper = partialMapper;
         this.table = new DynamoDB(db).getTable(tableName);
+        recordStartup();
     }
 
     /**
@@ -87,6 +122,52 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         return table;
     }
 
+    /**
+     * Set a monitor to record the read and write capacity consumed by this dao's calls, and the sizes of the items
+     * it reads and writes. While a monitor is set, every request asks DynamoDB to return its consumed capacity.
+     * @param capacityMonitor   capacity monitor, or null to stop monitoring
+     */
+    public void setCapacityMonitor(CapacityMonitor capacityMonitor) {
+        this.capacityMonitor = capacityMonitor;
+    }
+
+    public CapacityMonitor getCapacityMonitor() {
+        return capacityMonitor;
+    }
+
+    /**
+     * Returns how much consumed capacity requests should ask DynamoDB to return: a breakdown by index while a
+     * capacity monitor is set, and none otherwise.
+     * @return  return consumed capacity setting
+     */
+    protected ReturnConsumedCapacity getReturnConsumedCapacity() {
+        return capacityMonitor != null ? ReturnConsumedCapacity.INDEXES : ReturnConsumedCapacity.NONE;
+    }
+
+    /**
+     * Record the capacity consumed by a call with the capacity monitor, if there is one.
+     * @param operation name of the dao method
+     * @param write true if the call was a write, false if a read
+     * @param consumed  consumed capacity returned by DynamoDB, or null
+     */
+    protected void recordCapacity(String operation, boolean write, ConsumedCapacity consumed) {
+        if (capacityMonitor != null) {
+            capacityMonitor.recordCapacity(getMetricsName(), operation, write, consumed);
+        }
+    }
+
+    /**
+     * Record the size of an item read or written in full with the capacity monitor, if there is one.
+     * @param item  item, or null
+     */
+    protected void recordItemSize(Item item) {
+        if (capacityMonitor != null && item != null) {
+            Field id = getFieldData().getId();
+            Object key = id != null ? item.get(id.getStorageName()) : null;
+            capacityMonitor.recordItemSize(getMetricsName(), key, getItemSize(item));
+        }
+    }
+
     /**
      * Returns the item modelMapper used to convert POJOs to Items and vice versa
      * @return  the item modelMapper
@@ -103,6 +184,14 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         return partialMapper;
     }
 
+    /**
+     * Wrap a mapper to report its mapping time, and the number of items read, to DaoMetrics, if anything is
+     * listening. The mappers themselves are kept as given, so getModelMapper() returns the mapper passed in.
+     */
+    private <T> ItemMapper<T> measured(ItemMapper<T> mapper) {
+        return DaoMetrics.isEnabled() ? new MeasuredItemMapper<>(mapper, getMetricsName()) : mapper;
+    }
+
     /**
      * Generate a new primary key. Defaults to generating random UUIDs. If you are not using UUIDs, you must override
      * this method.
@@ -139,39 +228,125 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         }
     }
 
+    /**
+     * Convert a collection of elements to a set that DynamoDB will store as a string or number set.
+     * @param val   collection of elements
+     * @return  the elements, as a set
+     */
+    protected Set<Object> toStorageSet(Object val) {
+        if (!(val instanceof Collection)) {
+            throw new IllegalArgumentException("Expected a collection of set elements, got: " + val);
+        }
+        Set<Object> set = new LinkedHashSet<>();
+        for (Object element : (Collection<?>) val) {
+            set.add(toStorageValue(element));
+        }
+        return set;
+    }
+
     /**
      * Load an object by its primary key id.
      * @param id    id of the object
      * @return  optional containing the object, or empty if not found
      */
     public Optional<M> loadOpt(K id) {
-        GetItemSpec spec = new GetItemSpec()
-                .withPrimaryKey(toPrimaryKey(id));
-        Item item = getTable().getItem(spec);
-        return Optional.ofNullable(modelMapper.toObject(item));
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadOpt")) {
+            GetItemSpec spec = new GetItemSpec()
+                    .withPrimaryKey(toPrimaryKey(id))
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            GetItemOutcome outcome = getTable().getItemOutcome(spec);
+            recordCapacity("loadOpt", false, outcome.getGetItemResult().getConsumedCapacity());
+            recordItemSize(outcome.getItem());
+            return Optional.ofNullable(measured(modelMapper).toObject(outcome.getItem()));
+        }
     }
 
     public Optional<P> loadOpt(K id, Iterable<String> fields) {
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadOpt")) {
+            NameMap nameMap = new NameMap();
+            GetItemSpec spec = new GetItemSpec()
+                    .withPrimaryKey(toPrimaryKey(id))
+                    .withProjectionExpression(toProjectionExpression(fields, nameMap))
+                    .withNameMap(nameMap)
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            GetItemOutcome outcome = getTable().getItemOutcome(spec);
+            recordCapacity("loadOpt", false, outcome.getGetItemResult().getConsumedCapacity());
+            return Optional.ofNullable(measured(partialMapper).toObject(outcome.getItem()));
+        }
+    }
+
+    /**
+     * Estimate the stored size of an item the way DynamoDB counts it against the 400KB item limit and read / write
+     * capacity: the UTF-8 length of each attribute name plus the size of its value.
+     * @param item  item
+     * @return  size in bytes
+     */
+    protected long getItemSize(Item item) {
+        long size = 0;
+        for (Map.Entry<String,Object> attribute : item.attributes()) {
+            size += utf8Length(attribute.getKey()) + getValueSize(attribute.getValue());
+        }
+        return size;
+    }
+
+    private static long getValueSize(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof String) {
+            return utf8Length((String)value);
+        } else if (value instanceof Number) {
+            // numbers are stored as up to 38 significant digits, two to a byte, plus a byte
+            String digits = new BigDecimal(value.toString()).unscaledValue().abs().toString();
+            return (digits.length() + 1) / 2 + 1;
+        } else if (value instanceof byte[]) {
+            return ((byte[])value).length;
+        } else if (value instanceof ByteBuffer) {
+            return ((ByteBuffer)value).remaining();
+        } else if (value instanceof Map) {
+            long size = 3;
+            for (Map.Entry<?,?> e : ((Map<?,?>)value).entrySet()) {
+                size += utf8Length(String.valueOf(e.getKey())) + getValueSize(e.getValue()) + 1;
+            }
+            return size;
+        } else if (value instanceof List) {
+            long size = 3;
+            for (Object element : (List<?>)value) {
+                size += getValueSize(element) + 1;
+            }
+            return size;
+        } else if (value instanceof Set) {
+            long size = 0;
+            for (Object element : (Set<?>)value) {
+                size += getValueSize(element);
+            }
+            return size;
+        }
+        return utf8Length(value.toString());
+    }
+
+    private static long utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Convert a set of model field names, such as the result of selectFields(), into a projection expression,
+     * adding the storage names of the fields to the name map.
+     * @param fields    names of top-level fields
+     * @param nameMap   name map of the expression
+     * @return  projection expression
+     * @throws IllegalArgumentException if a name is not a field of the model
+     */
+    protected String toProjectionExpression(Iterable<String> fields, NameMap nameMap) {
         FieldData fieldData = getFieldData();
-        NameMap nameMap = new NameMap();
         StringJoiner sj = new StringJoiner(",");
         for (String fieldName : fields) {
             Field field = fieldData.getMap().get(fieldName);
             if (field == null) {
                 throw new IllegalArgumentException("Unknown field: " + fieldName);
             }
-            String storageName = field.getStorageName();
-            sj.add("#"+storageName);
-            nameMap.put("#"+storageName, storageName);
+            sj.add(toPathExpression(field.getStorageName(), nameMap));
         }
-        String projectionExpression = sj.toString();
-
-        GetItemSpec spec = new GetItemSpec()
-                .withPrimaryKey(toPrimaryKey(id))
-                .withProjectionExpression(projectionExpression)
-                .withNameMap(nameMap);
-        Item item = getTable().getItem(spec);
-        return Optional.ofNullable(partialMapper.toObject(item));
+        return sj.toString();
     }
 
     /**
@@ -194,17 +369,25 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  object
      */
     protected Optional<M> loadByIndexOpt(String indexName, String key, Object value) {
-        QuerySpec spec = new QuerySpec()
-                .withKeyConditionExpression("#key = :value")
-                .withNameMap(new NameMap().with("#key", key))
-                .withValueMap(new ValueMap().with(":value", value));
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadByIndexOpt")) {
+            QuerySpec spec = new QuerySpec()
+                    .withKeyConditionExpression("#key = :value")
+                    .withNameMap(new NameMap().with("#key", key))
+                    .withValueMap(new ValueMap().with(":value", value))
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
 
-        Index index = getTable().getIndex(indexName);
-        ItemCollection<QueryOutcome> items = index.query(spec);
-        for (Item i : items) {
-            return Optional.of(modelMapper.toObject(i));
+            Index index = getTable().getIndex(indexName);
+            ItemCollection<QueryOutcome> items = index.query(spec);
+            try {
+                for (Item i : items) {
+                    recordItemSize(i);
+                    return Optional.of(measured(modelMapper).toObject(i));
+                }
+                return Optional.empty();
+            } finally {
+                recordCapacity("loadByIndexOpt", false, items.getAccumulatedConsumedCapacity());
+            }
         }
-        return Optional.empty();
     }
 
     /**
@@ -213,7 +396,24 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      */
     @Override
     public Iterable<M> iterateAll() {
-        return () -> new DynamoIterator<>(getTable().scan().iterator(), modelMapper);
+        checkFullScan("iterateAll");
+        return timeIteration(OperationType.QUERY, "iterateAll",
+                () -> new DynamoIterator<>(throttleScan(getTable().scan().iterator()), measured(modelMapper)));
+    }
+
+    /**
+     * Iterate all records in the table, reading only some of their fields.
+     * @param fields    names of the fields to read
+     * @return  Iterator that lets you traverse partials of all of the records in the table
+     */
+    public Iterable<P> iterateAll(Iterable<String> fields) {
+        NameMap nameMap = new NameMap();
+        ScanSpec spec = new ScanSpec()
+                .withProjectionExpression(toProjectionExpression(fields, nameMap))
+                .withNameMap(nameMap);
+        checkFullScan("iterateAll");
+        return timeIteration(OperationType.QUERY, "iterateAll",
+                () -> new DynamoIterator<>(throttleScan(getTable().scan(spec).iterator()), measured(partialMapper)));
     }
 
     /**
@@ -230,11 +430,45 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results object containing the results of the scan
      */
     protected Results<M,K> scan(ScanSpec spec) {
-        List<M> results = new ArrayList<>();
-        for (Item item : getTable().scan(spec)) {
-            results.add(modelMapper.toObject(item));
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "scan")) {
+            checkFullScan("scan");
+            ResultGuard guard = guardResults("scan");
+            List<M> results = new ArrayList<>();
+            ItemCollection<ScanOutcome> items = getTable().scan(spec.withReturnConsumedCapacity(getReturnConsumedCapacity()));
+            for (Item item : items) {
+                throttleScan();
+                guard.add(item, this::getItemSize);
+                recordItemSize(item);
+                results.add(measured(modelMapper).toObject(item));
+            }
+            recordCapacity("scan", false, items.getAccumulatedConsumedCapacity());
+            return Results.of(results);
+        }
+    }
+
+    /**
+     * Scan the table, given a spec containing conditions, reading only some of the fields of each record. The
+     * projection is added to the spec, alongside any names the spec already uses.
+     * @param spec  spec for the scan
+     * @param fields    names of the fields to read
+     * @return  results object containing partials of the results of the scan
+     */
+    protected Results<P,K> scan(ScanSpec spec, Iterable<String> fields) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "scan")) {
+            NameMap nameMap = toNameMap(spec.getNameMap());
+            spec.withProjectionExpression(toProjectionExpression(fields, nameMap)).withNameMap(nameMap);
+            checkFullScan("scan");
+            ResultGuard guard = guardResults("scan");
+            List<P> results = new ArrayList<>();
+            ItemCollection<ScanOutcome> items = getTable().scan(spec.withReturnConsumedCapacity(getReturnConsumedCapacity()));
+            for (Item item : items) {
+                throttleScan();
+                guard.add(item, this::getItemSize);
+                results.add(measured(partialMapper).toObject(item));
+            }
+            recordCapacity("scan", false, items.getAccumulatedConsumedCapacity());
+            return Results.of(results);
         }
-        return Results.of(results);
     }
 
     /**
@@ -244,12 +478,53 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results object containing the results of the query
      */
     protected Results<M,K> findByIndex(String indexName, QuerySpec spec) {
-        Index index = getTable().getIndex(indexName);
-        List<M> results = new ArrayList<>();
-        for (Item item : index.query(spec)) {
-            results.add(modelMapper.toObject(item));
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findByIndex")) {
+            Index index = getTable().getIndex(indexName);
+            ResultGuard guard = guardResults("findByIndex");
+            List<M> results = new ArrayList<>();
+            ItemCollection<QueryOutcome> items = index.query(spec.withReturnConsumedCapacity(getReturnConsumedCapacity()));
+            for (Item item : items) {
+                guard.add(item, this::getItemSize);
+                recordItemSize(item);
+                results.add(measured(modelMapper).toObject(item));
+            }
+            recordCapacity("findByIndex", false, items.getAccumulatedConsumedCapacity());
+            return Results.of(results);
         }
-        return Results.of(results);
+    }
+
+    /**
+     * Query a particular index for results, reading only some of the fields of each record. The projection is added
+     * to the spec, alongside any names the spec already uses. For an index that does not project every attribute,
+     * the fields should be ones the index holds, or DynamoDB rejects the query.
+     * @param indexName name of the index to search
+     * @param spec  spec for the query
+     * @param fields    names of the fields to read
+     * @return  results object containing partials of the results of the query
+     */
+    protected Results<P,K> findByIndex(String indexName, QuerySpec spec, Iterable<String> fields) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findByIndex")) {
+            NameMap nameMap = toNameMap(spec.getNameMap());
+            spec.withProjectionExpression(toProjectionExpression(fields, nameMap)).withNameMap(nameMap);
+            Index index = getTable().getIndex(indexName);
+            ResultGuard guard = guardResults("findByIndex");
+            List<P> results = new ArrayList<>();
+            ItemCollection<QueryOutcome> items = index.query(spec.withReturnConsumedCapacity(getReturnConsumedCapacity()));
+            for (Item item : items) {
+                guard.add(item, this::getItemSize);
+                results.add(measured(partialMapper).toObject(item));
+            }
+            recordCapacity("findByIndex", false, items.getAccumulatedConsumedCapacity());
+            return Results.of(results);
+        }
+    }
+
+    private NameMap toNameMap(Map<String,String> names) {
+        NameMap nameMap = new NameMap();
+        if (names != null) {
+            nameMap.putAll(names);
+        }
+        return nameMap;
     }
 
     /**
@@ -261,23 +536,31 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  true if the field value is unique, false if it is not unique
      */
     protected boolean checkUniqueField(String indexName, String field, Object value, K excludeId) {
-        Index index = getTable().getIndex(indexName);
-        QuerySpec spec = new QuerySpec()
-                .withKeyConditionExpression("#field = :value")
-                .withNameMap(new NameMap()
-                                .with("#field", field)
-                )
-                .withValueMap(new ValueMap()
-                                .with(":value", value)
-                );
-        Object excludeIdValue = toStorageValue(excludeId);
-        for (Item item : index.query(spec)) {
-            Object itemId = toStorageValue(item.get(getFieldData().getId().getStorageName()));
-            if (!itemId.equals(excludeIdValue)) {
-                return false;
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "checkUniqueField")) {
+            Index index = getTable().getIndex(indexName);
+            QuerySpec spec = new QuerySpec()
+                    .withKeyConditionExpression("#field = :value")
+                    .withNameMap(new NameMap()
+                                    .with("#field", field)
+                    )
+                    .withValueMap(new ValueMap()
+                                    .with(":value", value)
+                    )
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            Object excludeIdValue = toStorageValue(excludeId);
+            ItemCollection<QueryOutcome> items = index.query(spec);
+            try {
+                for (Item item : items) {
+                    Object itemId = toStorageValue(item.get(getFieldData().getId().getStorageName()));
+                    if (!itemId.equals(excludeIdValue)) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                recordCapacity("checkUniqueField", false, items.getAccumulatedConsumedCapacity());
             }
         }
-        return true;
     }
 
     /**
@@ -289,18 +572,156 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      */
     @Override
     public M create(P partial, Instant createAt, I creatorId) {
-        Item item = toCreateItem(partial, createAt, creatorId);
-        PutItemSpec spec = new PutItemSpec()
-                .withItem(item);
-        if (getFieldData().getId() != null) {
-            spec = spec.withConditionExpression("attribute_not_exists(#id)")
-                    .withNameMap(new NameMap()
-                                    .with("#id", getFieldData().getId().getStorageName())
-                    );
+        try (OperationTimer timer = startOperation(OperationType.CREATE, "create")) {
+            Item item = toCreateItem(partial, createAt, creatorId);
+            PutItemSpec spec = new PutItemSpec()
+                    .withItem(item)
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            if (getFieldData().getId() != null) {
+                spec = spec.withConditionExpression("attribute_not_exists(#id)")
+                        .withNameMap(new NameMap()
+                                        .with("#id", getFieldData().getId().getStorageName())
+                        );
+            }
+            M model = measured(modelMapper).toObject(item);
+            PutItemOutcome outcome = getTable().putItem(spec);
+            recordCapacity("create", true, outcome.getPutItemResult().getConsumedCapacity());
+            recordItemSize(item);
+            return model;
+        }
+    }
+
+    /**
+     * Create several objects. Objects whose ids are generated are written with BatchWriteItem, up to 25 at a time.
+     * A batch put cannot carry the attribute_not_exists condition that create() relies on, so objects that already
+     * have an id are created one at a time with the usual conditional put, as is every object in a batch that
+     * DynamoDB rejects as invalid, so that the failing ones can be reported. Unprocessed or throttled items are sent
+     * again with backoff, up to 8 attempts per batch; objects still not written after that are reported as errors.
+     * @param partials  objects to create
+     * @param createAt  create timestamp
+     * @param createBy  creator id, or null
+     * @return  the newly created objects, in the same order
+     * @throws DataBulkCreateException if any of the objects could not be created; the others still are
+     */
+    @Override
+    public List<M> createAll(List<P> partials, Instant createAt, I createBy) {
+        try (OperationTimer timer = startOperation(OperationType.CREATE, "createAll")) {
+            Field idField = getFieldData().getId();
+            List<M> models = new ArrayList<>(Collections.nCopies(partials.size(), (M)null));
+            Map<Integer,String> errors = new TreeMap<>();
+            List<Integer> batch = new ArrayList<>();
+            List<Item> batchItems = new ArrayList<>();
+            for (int i = 0; i < partials.size(); i++) {
+                Item item = measured(partialMapper).toItem(partials.get(i));
+                if (idField != null && item.get(idField.getStorageName()) != null) {
+                    createOne(partials, i, createAt, createBy, models, errors);
+                    continue;
+                }
+                item = withCreateFields(item, createAt, createBy);
+                models.set(i, measured(modelMapper).toObject(item));
+                batch.add(i);
+                batchItems.add(item);
+                if (batch.size() == MAX_BATCH_WRITE_ITEMS) {
+                    writeBatch(partials, batch, batchItems, createAt, createBy, models, errors);
+                    batch.clear();
+                    batchItems.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(partials, batch, batchItems, createAt, createBy, models, errors);
+            }
+
+            if (!errors.isEmpty()) {
+                List<M> created = new ArrayList<>();
+                for (int i = 0; i < models.size(); i++) {
+                    if (!errors.containsKey(i)) {
+                        created.add(models.get(i));
+                    }
+                }
+                throw new DataBulkCreateException(errors, created);
+            }
+            return models;
+        }
+    }
+
+    private void writeBatch(List<P> partials, List<Integer> batch, List<Item> items, Instant createAt, I createBy,
+                            List<M> models, Map<Integer,String> errors) {
+        DynamoDB dynamoDB = new DynamoDB(db);
+        Map<Integer,Item> pending = new LinkedHashMap<>();
+        for (int j = 0; j < batch.size(); j++) {
+            pending.put(batch.get(j), items.get(j));
+        }
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_BATCH_WRITE_ATTEMPTS) {
+                for (int i : pending.keySet()) {
+                    errors.put(i, "Not written to " + tableName + " after " + MAX_BATCH_WRITE_ATTEMPTS + " attempts");
+                }
+                return;
+            }
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(Math.min(1000, 50L << Math.min(attempt, 5)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while writing batch to " + tableName, e);
+                }
+            }
+            BatchWriteItemOutcome outcome;
+            try {
+                outcome = dynamoDB.batchWriteItem(new BatchWriteItemSpec()
+                        .withTableWriteItems(new TableWriteItems(tableName).withItemsToPut(pending.values()))
+                        .withReturnConsumedCapacity(getReturnConsumedCapacity()));
+            } catch (ProvisionedThroughputExceededException e) {
+                // the whole batch was throttled and nothing was written, so back off and send it again
+                LOGGER.debug("Batch write to " + tableName + " throttled on attempt " + attempt);
+                continue;
+            } catch (AmazonServiceException e) {
+                if (!VALIDATION_ERROR_CODE.equals(e.getErrorCode())) {
+                    throw e;
+                }
+                // nothing in an invalid batch is written, so create them one by one to find the failing ones
+                LOGGER.debug("Batch write to " + tableName + " rejected, creating items individually: " + e.getMessage());
+                for (int i : pending.keySet()) {
+                    createOne(partials, i, createAt, createBy, models, errors);
+                }
+                return;
+            }
+            if (capacityMonitor != null) {
+                capacityMonitor.recordCapacity(getMetricsName(), "createAll", true,
+                        outcome.getBatchWriteItemResult().getConsumedCapacity());
+            }
+            // unprocessed items are resent with the pending ones, so work out which positions they came from
+            Set<Map<String,AttributeValue>> unprocessedKeys = new HashSet<>();
+            for (List<WriteRequest> requests : outcome.getUnprocessedItems().values()) {
+                for (WriteRequest request : requests) {
+                    unprocessedKeys.add(toKeyAttributes(request.getPutRequest().getItem()));
+                }
+            }
+            Iterator<Item> iterator = pending.values().iterator();
+            while (iterator.hasNext()) {
+                Item item = iterator.next();
+                if (!unprocessedKeys.contains(toKeyAttributes(ItemUtils.toAttributeValues(item)))) {
+                    recordItemSize(item);
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private Map<String,AttributeValue> toKeyAttributes(Map<String,AttributeValue> attributes) {
+        Map<String,AttributeValue> key = new HashMap<>();
+        for (KeySchemaElement element : getKeySchema()) {
+            key.put(element.getAttributeName(), attributes.get(element.getAttributeName()));
+        }
+        return key;
+    }
+
+    private void createOne(List<P> partials, int i, Instant createAt, I createBy, List<M> models, Map<Integer,String> errors) {
+        try {
+            models.set(i, create(partials.get(i), createAt, createBy));
+        } catch (RuntimeException e) {
+            errors.put(i, e.getMessage());
         }
-        M model = modelMapper.toObject(item);
-        getTable().putItem(spec);
-        return model;
     }
 
     /**
@@ -311,8 +732,10 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  item that can be stored in DynamoDB
      */
     protected Item toCreateItem(P partial, Instant createAt, I creatorId) {
-        Item item = partialMapper.toItem(partial);
+        return withCreateFields(measured(partialMapper).toItem(partial), createAt, creatorId);
+    }
 
+    private Item withCreateFields(Item item, Instant createAt, I creatorId) {
         // add the @Id field (primary key)
         Field id = getFieldData().getId();
         if (id != null && item.get(id.getStorageName()) == null) {
@@ -337,6 +760,11 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         if (updatedAtField != null && !updatedAtField.isOptional() && item.get(updatedAtField.getStorageName()) == null && createAt != null) {
             item.with(updatedAtField.getStorageName(), toStorageValue(createAt));
         }
+        // objects start at version 1, so that the first update can be checked
+        Field versionField = getFieldData().getVersion();
+        if (versionField != null && item.get(versionField.getStorageName()) == null) {
+            item.with(versionField.getStorageName(), 1L);
+        }
 
         return item;
     }
@@ -349,8 +777,16 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @param updaterId id of the user performing the update
      */
     public void update(K id, Update<P> update, Instant updateAt, I updaterId) {
-        UpdateItemSpec spec = toUpdateItemSpec(id, update, updateAt, updaterId);
-        getTable().updateItem(spec);
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "update")) {
+            UpdateItemSpec spec = toUpdateItemSpec(id, update, updateAt, updaterId)
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            try {
+                UpdateItemOutcome outcome = getTable().updateItem(spec);
+                recordCapacity("update", true, outcome.getUpdateItemResult().getConsumedCapacity());
+            } catch (ConditionalCheckFailedException e) {
+                throw toConflictException(id, update);
+            }
+        }
     }
 
     /**
@@ -360,14 +796,250 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  the model
      */
     public M updateAndReturn(K id, Update<P> update, Instant updateAt, I updaterId) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturn")) {
+            Item item = updateItem("updateAndReturn", id, update, updateAt, updaterId, ReturnValue.ALL_OLD);
+            return measured(modelMapper).toObject(item);
+        }
+    }
+
+    /**
+     * Update an existing object, returning a model containing the state of the object after update
+     * @param id    id of object
+     * @param update    update data
+     * @return  the model
+     */
+    @Override
+    public M updateAndReturnNew(K id, Update<P> update, Instant updateAt, I updaterId) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturnNew")) {
+            Item item = updateItem("updateAndReturnNew", id, update, updateAt, updaterId, ReturnValue.ALL_NEW);
+            return measured(modelMapper).toObject(item);
+        }
+    }
+
+    /**
+     * Update an existing object, returning a partial containing only the updated attributes
+     * @param id    id of object
+     * @param update    update data
+     * @return  the partial
+     */
+    @Override
+    public P updateAndReturnUpdated(K id, Update<P> update, Instant updateAt, I updaterId) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturnUpdated")) {
+            Item item = updateItem("updateAndReturnUpdated", id, update, updateAt, updaterId, ReturnValue.UPDATED_NEW);
+            return measured(partialMapper).toObject(item);
+        }
+    }
+
+    private Item updateItem(String operation, K id, Update<P> update, Instant updateAt, I updaterId, ReturnValue returnValue) {
         UpdateItemSpec spec = toUpdateItemSpec(id, update, updateAt, updaterId);
-        spec = spec.withReturnValues(ReturnValue.ALL_OLD);
-        UpdateItemOutcome outcome = getTable().updateItem(spec);
+        spec = spec.withReturnValues(returnValue)
+                .withReturnConsumedCapacity(getReturnConsumedCapacity());
+        UpdateItemOutcome outcome;
+        try {
+            outcome = getTable().updateItem(spec);
+        } catch (ConditionalCheckFailedException e) {
+            throw toConflictException(id, update);
+        }
+        recordCapacity(operation, true, outcome.getUpdateItemResult().getConsumedCapacity());
         Item item = outcome.getItem();
+        if (returnValue == ReturnValue.ALL_NEW) {
+            recordItemSize(item);
+        }
         if (item == null) {
             item = new Item();
         }
-        return modelMapper.toObject(item);
+        return item;
+    }
+
+    private DataConflictException toConflictException(K id, Update<P> update) {
+        return new DataConflictException(getDisplayModelName() + " " + id + " does not exist or is not at version "
+                + update.getExpectedVersion());
+    }
+
+    /**
+     * Read the value of the @Version field from a model through the model mapper, so that it is found however the
+     * model names its getter.
+     * @param model model object
+     * @param versionField  the @Version field
+     * @return  version, or null if it is not set
+     */
+    @Override
+    protected Long getVersionValue(M model, Field versionField) {
+        Object value = measured(modelMapper).toItem(model).get(versionField.getStorageName());
+        return value != null ? ((Number)value).longValue() : null;
+    }
+
+    @Override
+    public boolean updateIf(K id, Condition condition, Update<P> update, Instant updateAt, I updaterId) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateIf")) {
+            UpdateItemSpec spec = toUpdateItemSpec(id, update, updateAt, updaterId);
+            NameMap nameMap = new NameMap();
+            nameMap.putAll(spec.getNameMap());
+            ValueMap valueMap = new ValueMap();
+            if (spec.getValueMap() != null) {
+                valueMap.putAll(spec.getValueMap());
+            }
+            // require the item to exist, so that a failed condition never turns into an insert
+            String idPath = toPathExpression(getFieldData().getId().getStorageName(), nameMap);
+            String conditionExpression = "attribute_exists(" + idPath + ") AND (" + toConditionExpression(condition, nameMap, valueMap) + ")";
+            if (spec.getConditionExpression() != null) {
+                conditionExpression += " AND (" + spec.getConditionExpression() + ")";
+            }
+            spec = spec.withConditionExpression(conditionExpression)
+                    .withNameMap(nameMap)
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            if (!valueMap.isEmpty()) {
+                spec = spec.withValueMap(valueMap);
+            }
+            try {
+                UpdateItemOutcome outcome = getTable().updateItem(spec);
+                recordCapacity("updateIf", true, outcome.getUpdateItemResult().getConsumedCapacity());
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Compile a backend-neutral condition into a DynamoDB condition expression, using the storage names of the
+     * fields, and adding the names and values it uses to the maps.
+     * @param condition condition
+     * @param nameMap   name map of the expression
+     * @param valueMap  value map of the expression
+     * @return  condition expression
+     */
+    protected String toConditionExpression(Condition condition, NameMap nameMap, ValueMap valueMap) {
+        checkConditionFields(condition);
+        if (condition.getOperator() == Condition.Operator.AND) {
+            StringJoiner sj = new StringJoiner(" AND ");
+            for (Condition c : condition.getConditions()) {
+                sj.add("(" + toConditionExpression(c, nameMap, valueMap) + ")");
+            }
+            return sj.toString();
+        }
+        String path = toPathExpression(toStorageName(condition.getField()), nameMap);
+        switch (condition.getOperator()) {
+            case EQUAL_TO:
+                return path + " = " + toValuePlaceholder(toStorageValue(condition.getValue()), valueMap);
+            case LESS_THAN:
+                return path + " < " + toValuePlaceholder(toStorageValue(condition.getValue()), valueMap);
+            case EXISTS:
+                return "attribute_exists(" + path + ")";
+            case NOT_EXISTS:
+                return "attribute_not_exists(" + path + ")";
+            default:
+                throw new IllegalArgumentException("Unsupported condition: " + condition.getOperator());
+        }
+    }
+
+    @Override
+    public UpsertResult<M> upsert(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPSERT, "upsert")) {
+            UpdateItemSpec spec = toUpsertItemSpec(id, partial, update, upsertAt, upsertBy)
+                    .withReturnValues(ReturnValue.ALL_OLD)
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            UpdateItemOutcome outcome = getTable().updateItem(spec);
+            recordCapacity("upsert", true, outcome.getUpdateItemResult().getConsumedCapacity());
+            return UpsertResult.of(outcome.getItem() == null);
+        }
+    }
+
+    /**
+     * Upsert an object, and return the state of the object after the upsert, as written rather than read back
+     * afterwards. The upsert is first sent on condition that the item exists, and then, if it does not, on condition
+     * that it still does not, so that each write returns the new item and says exactly whether it was inserted. An
+     * existing item costs one write; a new one costs a failed conditional write and the insert.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  result indicating whether the object was inserted, containing the model
+     */
+    @Override
+    public UpsertResult<M> upsertAndReturn(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPSERT, "upsertAndReturn")) {
+            Item item = upsertItemIf(id, partial, update, upsertAt, upsertBy, true);
+            if (item != null) {
+                return UpsertResult.of(false, measured(modelMapper).toObject(item));
+            }
+            item = upsertItemIf(id, partial, update, upsertAt, upsertBy, false);
+            if (item != null) {
+                return UpsertResult.of(true, measured(modelMapper).toObject(item));
+            }
+            // created by someone else since the first attempt
+            item = upsertItemIf(id, partial, update, upsertAt, upsertBy, true);
+            if (item != null) {
+                return UpsertResult.of(false, measured(modelMapper).toObject(item));
+            }
+            throw toConflictException(id, update);
+        }
+    }
+
+    /**
+     * Send an upsert on condition that the item does (or does not) already exist, along with any version condition of
+     * the update.
+     * @return  the item after the upsert, or null if the condition failed
+     */
+    private Item upsertItemIf(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy, boolean exists) {
+        UpdateItemSpec spec = toUpsertItemSpec(id, partial, update, upsertAt, upsertBy);
+        NameMap nameMap = new NameMap();
+        nameMap.putAll(spec.getNameMap());
+        String idPath = toPathExpression(getFieldData().getId().getStorageName(), nameMap);
+        String conditionExpression = (exists ? "attribute_exists(" : "attribute_not_exists(") + idPath + ")";
+        if (spec.getConditionExpression() != null) {
+            conditionExpression += " AND (" + spec.getConditionExpression() + ")";
+        }
+        spec = spec.withConditionExpression(conditionExpression)
+                .withNameMap(nameMap)
+                .withReturnValues(ReturnValue.ALL_NEW)
+                .withReturnConsumedCapacity(getReturnConsumedCapacity());
+        try {
+            UpdateItemOutcome outcome = getTable().updateItem(spec);
+            recordCapacity("upsertAndReturn", true, outcome.getUpdateItemResult().getConsumedCapacity());
+            recordItemSize(outcome.getItem());
+            return outcome.getItem();
+        } catch (ConditionalCheckFailedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Convert an upsert into an UpdateItemSpec. The update is converted as usual, and the partial's attributes
+     * (other than the key and any attributes touched by the update), along with @CreatedAt and @CreatedBy, are
+     * set with if_not_exists so that they only take effect when the item is created.
+     * @param id    id of object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update data
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  spec containing the DynamoDB update
+     */
+    protected UpdateItemSpec toUpsertItemSpec(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        Map<String,Object> insertOnly = new LinkedHashMap<>();
+        Item item = partial != null ? measured(partialMapper).toItem(partial) : new Item();
+        Set<String> keyNames = new HashSet<>();
+        for (KeySchemaElement key : getKeySchema()) {
+            keyNames.add(key.getAttributeName());
+        }
+        if (getFieldData().getVersion() != null) {
+            keyNames.add(getFieldData().getVersion().getStorageName());
+        }
+        for (Map.Entry<String,Object> attr : item.attributes()) {
+            if (!keyNames.contains(attr.getKey()) && !isTouchedByUpdate(update, attr.getKey())) {
+                insertOnly.put(attr.getKey(), attr.getValue());
+            }
+        }
+        Field createdByField = getFieldData().getCreatedBy();
+        if (createdByField != null && upsertBy != null && insertOnly.get(createdByField.getStorageName()) == null) {
+            insertOnly.put(createdByField.getStorageName(), toStorageValue(upsertBy));
+        }
+        Field createdAtField = getFieldData().getCreatedAt();
+        if (createdAtField != null && upsertAt != null && insertOnly.get(createdAtField.getStorageName()) == null) {
+            insertOnly.put(createdAtField.getStorageName(), toStorageValue(upsertAt));
+        }
+        return toUpdateItemSpec(id, update, upsertAt, upsertBy, insertOnly);
     }
 
     /**
@@ -379,14 +1051,31 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  spec containing the DynamoDB update
      */
     protected UpdateItemSpec toUpdateItemSpec(K id, Update<P> update, Instant updateAt, I updaterId) {
+        return toUpdateItemSpec(id, update, updateAt, updaterId, ImmutableMap.of());
+    }
+
+    /**
+     * Convert an id and update object into an UpdateItemSpec, along with attributes that are only set if they are
+     * not already present on the item (used by upserts).
+     * @param id    id of object
+     * @param update    update data
+     * @param updateAt    timestamp of update
+     * @param updaterId    user id of updater
+     * @param insertOnly    storage names and values of attributes to set with if_not_exists
+     * @return  spec containing the DynamoDB update
+     */
+    protected UpdateItemSpec toUpdateItemSpec(K id, Update<P> update, Instant updateAt, I updaterId, Map<String,Object> insertOnly) {
+        checkUpdatePaths(update);
+        checkVersionNotUpdated(update);
         String updateExpression = "";
         NameMap nameMap = new NameMap();
         ValueMap valueMap = new ValueMap();
 
-        Item setFields = partialMapper.toItem(update.getPartial());
+        Item setFields = measured(partialMapper).toItem(update.getPartial());
         Map<String,Object> set = new LinkedHashMap<>();
         for (String field : update.getSetFields()) {
-            set.put(field, setFields.get(field));
+            String storageName = toStorageName(field);
+            set.put(storageName, getPathValue(setFields, storageName));
         }
 
         // add the @UpdatedBy and @UpdatedAt fields
@@ -400,10 +1089,27 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         }
 
         for (Map.Entry<String,Object> e : set.entrySet()) {
+            String value = toValuePlaceholder(toStorageValue(e.getValue()), valueMap);
+            updateExpression += toPathExpression(e.getKey(), nameMap) + " = " + value + ", ";
+        }
+
+        for (Map.Entry<String,Object> e : insertOnly.entrySet()) {
             String key = e.getKey();
-            nameMap.put("#" + key, key);
-            valueMap.put(":" + key, toStorageValue(e.getValue()));
-            updateExpression += "#" + key + " = :" + key + ", ";
+            if (set.containsKey(key)) {
+                continue;
+            }
+            String path = toPathExpression(key, nameMap);
+            String value = toValuePlaceholder(toStorageValue(e.getValue()), valueMap);
+            updateExpression += path + " = if_not_exists(" + path + ", " + value + "), ";
+        }
+
+        // appends are also SET expressions; if_not_exists lets them start a list that has never been set
+        for (String field : update.getAppendFields()) {
+            String key = toStorageName(field);
+            String path = toPathExpression(key, nameMap);
+            String value = toValuePlaceholder(toStorageValue(getPathValue(setFields, key)), valueMap);
+            valueMap.put(":__empty_list", ImmutableList.of());
+            updateExpression += path + " = list_append(if_not_exists(" + path + ", :__empty_list), " + value + "), ";
         }
         if (updateExpression.length() > 0) {
             updateExpression = "SET " + updateExpression.substring(0, updateExpression.length()-2);
@@ -411,26 +1117,134 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
 
         if (update.getRemoveFields().size() > 0) {
             updateExpression += " REMOVE ";
-            for (String key : update.getRemoveFields()) {
-                nameMap.put("#" + key, key);
-                updateExpression += "#" + key + ", ";
+            for (String field : update.getRemoveFields()) {
+                updateExpression += toPathExpression(toStorageName(field), nameMap) + ", ";
             }
             updateExpression = updateExpression.substring(0, updateExpression.length()-2);
         }
+
+        // ADD treats a missing attribute as zero, so increments work on fields that have never been set. ADD on
+        // collections only works against DynamoDB set attributes (string or number sets), so the elements are sent
+        // as a set; ADD creates the set if the attribute is missing
+        StringJoiner adds = new StringJoiner(", ");
+        for (String field : update.getIncrementFields()) {
+            String key = toStorageName(field);
+            String value = toValuePlaceholder(toStorageValue(getPathValue(setFields, key)), valueMap);
+            adds.add(toPathExpression(key, nameMap) + " " + value);
+        }
+        for (String field : update.getAddToSetFields()) {
+            String key = toStorageName(field);
+            String value = toValuePlaceholder(toStorageSet(getPathValue(setFields, key)), valueMap);
+            adds.add(toPathExpression(key, nameMap) + " " + value);
+        }
+        Field versionField = getFieldData().getVersion();
+        if (versionField != null) {
+            valueMap.put(":__version_inc", 1L);
+            adds.add(toPathExpression(versionField.getStorageName(), nameMap) + " :__version_inc");
+        }
+        if (adds.length() > 0) {
+            updateExpression += " ADD " + adds;
+        }
+
+        if (update.getPullFields().size() > 0) {
+            updateExpression += " DELETE ";
+            for (String field : update.getPullFields()) {
+                String key = toStorageName(field);
+                String value = toValuePlaceholder(toStorageSet(getPathValue(setFields, key)), valueMap);
+                updateExpression += toPathExpression(key, nameMap) + " " + value + ", ";
+            }
+            updateExpression = updateExpression.substring(0, updateExpression.length()-2);
+        }
+        updateExpression = updateExpression.trim();
         UpdateItemSpec spec = new UpdateItemSpec()
                 .withPrimaryKey(toPrimaryKey(id))
-                .withUpdateExpression(updateExpression)
-                .withNameMap(nameMap);
+                .withUpdateExpression(updateExpression);
+        if (versionField != null && update.getExpectedVersion() != null) {
+            String versionPath = toPathExpression(versionField.getStorageName(), nameMap);
+            if (update.getExpectedVersion() == Update.UNVERSIONED) {
+                spec = spec.withConditionExpression("attribute_not_exists(" + versionPath + ")");
+            } else {
+                valueMap.put(":__version", update.getExpectedVersion());
+                spec = spec.withConditionExpression(versionPath + " = :__version");
+            }
+        }
+        spec = spec.withNameMap(nameMap);
         if (!valueMap.isEmpty()) {
             spec = spec.withValueMap(valueMap);
         }
         return spec;
     }
 
+    /**
+     * Convert a storage name or dotted path into an expression path, such as "#n0.#n1", adding each part of the path
+     * to the name map. Placeholders are numbered per expression rather than derived from the names, since attribute
+     * names (such as map keys) may contain characters that are not valid in a placeholder; a name that is already
+     * in the map reuses its placeholder.
+     * @param path  storage name or dotted path
+     * @param nameMap   name map of the expression
+     * @return  expression path
+     */
+    protected String toPathExpression(String path, NameMap nameMap) {
+        StringJoiner expression = new StringJoiner(".");
+        for (String part : path.split("\\.")) {
+            expression.add(toNamePlaceholder(part, nameMap));
+        }
+        return expression.toString();
+    }
+
+    private String toNamePlaceholder(String name, NameMap nameMap) {
+        for (Map.Entry<String,String> e : nameMap.entrySet()) {
+            if (e.getValue().equals(name)) {
+                return e.getKey();
+            }
+        }
+        String placeholder = nextPlaceholder("#n", nameMap);
+        nameMap.put(placeholder, name);
+        return placeholder;
+    }
+
+    /**
+     * Add a value to the value map of an expression under the next numbered placeholder, such as ":v0".
+     * @param value storage value
+     * @param valueMap  value map of the expression
+     * @return  value placeholder
+     */
+    protected String toValuePlaceholder(Object value, ValueMap valueMap) {
+        String placeholder = nextPlaceholder(":v", valueMap);
+        valueMap.put(placeholder, value);
+        return placeholder;
+    }
+
+    private static String nextPlaceholder(String prefix, Map<String,?> map) {
+        int i = map.size();
+        while (map.containsKey(prefix + i)) {
+            i++;
+        }
+        return prefix + i;
+    }
+
+    /**
+     * Return the value at a dotted path within an item, navigating through map attributes.
+     * @param item  item
+     * @param path  storage name or dotted path
+     * @return  value, or null if any part of the path is not present
+     */
+    protected Object getPathValue(Item item, String path) {
+        String[] parts = path.split("\\.");
+        Object value = item.get(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?,?>)value).get(parts[i]);
+        }
+        return value;
+    }
+
     public Update<P> updateOf(P partial) {
         ImmutableSet.Builder<String> attribs = ImmutableSet.builder();
         if (partial != null) {
-            Item item = partialMapper.toItem(partial);
+            Item item = measured(partialMapper).toItem(partial);
             for (Map.Entry<String, Object> attr : item.attributes()) {
                 attribs.add(attr.getKey());
             }
@@ -441,7 +1255,7 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
     public Update<P> updateOf(P partial, Iterable<String> removeFields) {
         ImmutableSet.Builder<String> attribs = ImmutableSet.builder();
         if (partial != null) {
-            Item item = partialMapper.toItem(partial);
+            Item item = measured(partialMapper).toItem(partial);
             for (Map.Entry<String, Object> attr : item.attributes()) {
                 attribs.add(attr.getKey());
             }
@@ -449,15 +1263,33 @@ public abstract class AbstractDynamoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         return Update.of(partial, attribs.build(), ImmutableSet.copyOf(removeFields));
     }
 
+    /**
+     * Build an update containing only the attributes that differ between the current state of an object and its new
+     * state, instead of rewriting every attribute as updateOf() does. Attributes missing from the new state are
+     * removed, and map attributes are compared key by key.
+     * @param before    current state of the object
+     * @param after new state of the object
+     * @return  minimal update
+     */
+    public Update<P> diff(M before, P after) {
+        Item beforeItem = before != null ? measured(modelMapper).toItem(before) : new Item();
+        Item afterItem = after != null ? measured(partialMapper).toItem(after) : new Item();
+        return toDiffUpdate(after, beforeItem.asMap(), afterItem.asMap());
+    }
+
     /**
      * Delete a particular object, by id.
      * @param id    object id
      */
     @Override
     public void delete(K id) {
-        DeleteItemSpec spec = new DeleteItemSpec();
-        spec.withPrimaryKey(toPrimaryKey(id));
-        getTable().deleteItem(spec);
+        try (OperationTimer timer = startOperation(OperationType.DELETE, "delete")) {
+            DeleteItemSpec spec = new DeleteItemSpec();
+            spec.withPrimaryKey(toPrimaryKey(id))
+                    .withReturnConsumedCapacity(getReturnConsumedCapacity());
+            DeleteItemOutcome outcome = getTable().deleteItem(spec);
+            recordCapacity("delete", true, outcome.getDeleteItemResult().getConsumedCapacity());
+        }
     }
 
     /**
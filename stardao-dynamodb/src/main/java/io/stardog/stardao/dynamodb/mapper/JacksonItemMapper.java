@@ -7,17 +7,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class JacksonItemMapper<M> implements ItemMapper<M> {
+    public final static ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, true)
+            .configure(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, false)
+            .configure(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, false)
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule());
+
     private final Class<M> modelClass;
     private final FieldData fieldData;
     private final ObjectMapper objectMapper;
@@ -25,27 +31,15 @@ public class JacksonItemMapper<M> implements ItemMapper<M> {
     private final Map<String,String> itemToObjectFieldRenames;
 
     public JacksonItemMapper(Class<M> modelClass, FieldData fieldData) {
-        this(modelClass, fieldData, new ObjectMapper()
-                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, true)
-                .configure(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, false)
-                .configure(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS, false)
-                .registerModule(new Jdk8Module())
-                .registerModule(new JavaTimeModule()));
+        this(modelClass, fieldData, DEFAULT_OBJECT_MAPPER);
     }
 
     public JacksonItemMapper(Class<M> modelClass, FieldData fieldData, ObjectMapper objectMapper) {
         this.modelClass = modelClass;
         this.fieldData = fieldData;
         this.objectMapper = objectMapper;
-        this.objectToItemFieldRenames = new HashMap<>();
-        this.itemToObjectFieldRenames = new HashMap<>();
-        for (Field field : fieldData.getMap().values()) {
-            if (!field.getStorageName().equals(field.getName())) {
-                objectToItemFieldRenames.put(field.getName(), field.getStorageName());
-                itemToObjectFieldRenames.put(field.getStorageName(), field.getName());
-            }
-        }
+        this.objectToItemFieldRenames = fieldData.getStorageRenames();
+        this.itemToObjectFieldRenames = fieldData.getFieldRenames();
     }
 
     public ObjectMapper getObjectMapper() {
@@ -0,0 +1,45 @@
+package io.stardog.stardao.dynamodb.mapper;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+
+/**
+ * Wraps the mappers of a Dao to report mapping time, and the number of items read, to DaoMetrics. The Dao only
+ * wraps its mappers while something is listening, and getModelMapper() still returns the mapper it was given.
+ * @param <M>   class being mapped
+ */
+public class MeasuredItemMapper<M> implements ItemMapper<M> {
+    private final ItemMapper<M> mapper;
+    private final String daoName;
+
+    public MeasuredItemMapper(ItemMapper<M> mapper, String daoName) {
+        this.mapper = mapper;
+        this.daoName = daoName;
+    }
+
+    public ItemMapper<M> getMapper() {
+        return mapper;
+    }
+
+    @Override
+    public M toObject(Item item) {
+        if (!DaoMetrics.isEnabled()) {
+            return mapper.toObject(item);
+        }
+        long start = System.nanoTime();
+        M object = mapper.toObject(item);
+        DaoMetrics.recordMapping(daoName, System.nanoTime() - start, object != null ? 1 : 0);
+        return object;
+    }
+
+    @Override
+    public Item toItem(M object) {
+        if (!DaoMetrics.isEnabled()) {
+            return mapper.toItem(object);
+        }
+        long start = System.nanoTime();
+        Item item = mapper.toItem(object);
+        DaoMetrics.recordMapping(daoName, System.nanoTime() - start, 0);
+        return item;
+    }
+}
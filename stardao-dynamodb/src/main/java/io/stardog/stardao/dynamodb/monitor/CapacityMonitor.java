@@ -0,0 +1,282 @@
+package io.stardog.stardao.dynamodb.monitor;
+
+import com.amazonaws.services.dynamodbv2.model.Capacity;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An opt-in monitor for the capacity consumed by Dynamo daos, set on each dao with setCapacityMonitor(). While a
+ * monitor is set, the dao asks DynamoDB to return the consumed capacity of every request, broken down by index, and
+ * records it against the dao method that made the request; it also records the size of every item it reads or
+ * writes, and logs a warning for items approaching the 400KB item limit. getCapacityStats() and getItemSizeStats()
+ * snapshot the figures so far, which can be exported to a metrics system or checked in tests.
+ *
+ * Item sizes are estimated from the stored items, with AbstractDynamoDao.getItemSize().
+ */
+public class CapacityMonitor {
+    public static final long MAX_ITEM_BYTES = 400 * 1024L;
+    public static final long DEFAULT_LARGE_ITEM_BYTES = 350 * 1024L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CapacityMonitor.class);
+
+    private final long largeItemBytes;
+    private final Map<CapacityKey,CapacityCounts> capacity = new ConcurrentHashMap<>();
+    private final Map<String,SizeCounts> sizes = new ConcurrentHashMap<>();
+
+    public CapacityMonitor() {
+        this(DEFAULT_LARGE_ITEM_BYTES);
+    }
+
+    /**
+     * Create a monitor.
+     * @param largeItemBytes    items of at least this many bytes are counted as large, and logged
+     */
+    public CapacityMonitor(long largeItemBytes) {
+        if (largeItemBytes < 1 || largeItemBytes > MAX_ITEM_BYTES) {
+            throw new IllegalArgumentException("largeItemBytes must be between 1 and " + MAX_ITEM_BYTES);
+        }
+        this.largeItemBytes = largeItemBytes;
+    }
+
+    public long getLargeItemBytes() {
+        return largeItemBytes;
+    }
+
+    /**
+     * Record the capacity consumed by a dao call, as returned by DynamoDB. Capacity consumed on global and local
+     * secondary indexes is recorded against each index, and the rest against the table; if DynamoDB only returned a
+     * total, it is all recorded against the table.
+     * @param daoName   name of the dao
+     * @param operation name of the dao method that made the call
+     * @param write true if the call was a write, false if a read
+     * @param consumed  consumed capacity, or null if none was returned
+     */
+    public void recordCapacity(String daoName, String operation, boolean write, ConsumedCapacity consumed) {
+        if (consumed == null) {
+            return;
+        }
+        boolean hasBreakdown = consumed.getTable() != null
+                || consumed.getGlobalSecondaryIndexes() != null || consumed.getLocalSecondaryIndexes() != null;
+        if (!hasBreakdown) {
+            recordCapacity(daoName, operation, null, write, units(consumed.getCapacityUnits()));
+            return;
+        }
+        if (consumed.getTable() != null) {
+            recordCapacity(daoName, operation, null, write, units(consumed.getTable().getCapacityUnits()));
+        }
+        recordIndexes(daoName, operation, write, consumed.getGlobalSecondaryIndexes());
+        recordIndexes(daoName, operation, write, consumed.getLocalSecondaryIndexes());
+    }
+
+    /**
+     * Record the capacity consumed by a call that returns one figure per table, such as a batch write.
+     * @param daoName   name of the dao
+     * @param operation name of the dao method that made the call
+     * @param write true if the call was a write, false if a read
+     * @param consumed  consumed capacities, or null if none were returned
+     */
+    public void recordCapacity(String daoName, String operation, boolean write, List<ConsumedCapacity> consumed) {
+        if (consumed == null) {
+            return;
+        }
+        for (ConsumedCapacity c : consumed) {
+            recordCapacity(daoName, operation, write, c);
+        }
+    }
+
+    /**
+     * Record capacity units consumed on the table or one of its indexes.
+     * @param daoName   name of the dao
+     * @param operation name of the dao method that made the call
+     * @param indexName name of the index, or null for the table
+     * @param write true if the units are write units, false if read units
+     * @param units capacity units consumed
+     */
+    public void recordCapacity(String daoName, String operation, String indexName, boolean write, double units) {
+        capacity.computeIfAbsent(new CapacityKey(daoName, operation, indexName), CapacityCounts::new).add(write, units);
+    }
+
+    /**
+     * Record the size of an item read or written by a dao.
+     * @param daoName   name of the dao
+     * @param key   description of the item's key, used when logging large items
+     * @param bytes size of the item, in bytes
+     */
+    public void recordItemSize(String daoName, Object key, long bytes) {
+        boolean large = bytes >= largeItemBytes;
+        sizes.computeIfAbsent(daoName, SizeCounts::new).add(bytes, large);
+        if (large) {
+            LOGGER.warn("{} item {} is {} bytes, approaching the {} byte item limit", daoName, key, bytes, MAX_ITEM_BYTES);
+        }
+    }
+
+    /**
+     * Snapshot the capacity consumed by every dao method, on the table and each index, most units first.
+     * @return  capacity statistics
+     */
+    public List<CapacityStats> getCapacityStats() {
+        List<CapacityStats> list = new ArrayList<>();
+        for (CapacityCounts counts : capacity.values()) {
+            list.add(counts.toSnapshot());
+        }
+        list.sort(Comparator.comparingDouble(CapacityStats::getTotalUnits).reversed());
+        return list;
+    }
+
+    /**
+     * Snapshot the capacity consumed by one dao.
+     * @param daoName   name of the dao
+     * @return  capacity statistics of the dao, most units first
+     */
+    public List<CapacityStats> getCapacityStats(String daoName) {
+        List<CapacityStats> list = new ArrayList<>();
+        for (CapacityStats stats : getCapacityStats()) {
+            if (stats.getDaoName().equals(daoName)) {
+                list.add(stats);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Snapshot the item sizes seen by every dao.
+     * @return  item size statistics, one per dao
+     */
+    public List<ItemSizeStats> getItemSizeStats() {
+        List<ItemSizeStats> list = new ArrayList<>();
+        for (SizeCounts counts : sizes.values()) {
+            list.add(counts.toSnapshot());
+        }
+        list.sort(Comparator.comparing(ItemSizeStats::getDaoName));
+        return list;
+    }
+
+    /**
+     * Forget all statistics.
+     */
+    public void reset() {
+        capacity.clear();
+        sizes.clear();
+    }
+
+    private void recordIndexes(String daoName, String operation, boolean write, Map<String,Capacity> indexes) {
+        if (indexes == null) {
+            return;
+        }
+        for (Map.Entry<String,Capacity> entry : indexes.entrySet()) {
+            recordCapacity(daoName, operation, entry.getKey(), write, units(entry.getValue().getCapacityUnits()));
+        }
+    }
+
+    private static double units(Double units) {
+        return units != null ? units : 0;
+    }
+
+    private static class CapacityKey {
+        private final String daoName;
+        private final String operation;
+        private final String indexName;
+
+        CapacityKey(String daoName, String operation, String indexName) {
+            this.daoName = daoName;
+            this.operation = operation;
+            this.indexName = indexName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CapacityKey)) {
+                return false;
+            }
+            CapacityKey that = (CapacityKey)o;
+            return daoName.equals(that.daoName) && operation.equals(that.operation)
+                    && Objects.equals(indexName, that.indexName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(daoName, operation, indexName);
+        }
+    }
+
+    private static class CapacityCounts {
+        private final CapacityKey key;
+        private long calls;
+        private double readUnits;
+        private double writeUnits;
+
+        CapacityCounts(CapacityKey key) {
+            this.key = key;
+        }
+
+        synchronized void add(boolean write, double units) {
+            calls++;
+            if (write) {
+                writeUnits += units;
+            } else {
+                readUnits += units;
+            }
+        }
+
+        synchronized CapacityStats toSnapshot() {
+            return CapacityStats.builder()
+                    .daoName(key.daoName)
+                    .operation(key.operation)
+                    .indexName(key.indexName)
+                    .calls(calls)
+                    .readUnits(readUnits)
+                    .writeUnits(writeUnits)
+                    .build();
+        }
+    }
+
+    private static class SizeCounts {
+        private final String daoName;
+        private final long[] buckets = new long[ItemSizeStats.BUCKET_LIMITS.size()];
+        private long count;
+        private long totalBytes;
+        private long maxBytes;
+        private long largeItems;
+
+        SizeCounts(String daoName) {
+            this.daoName = daoName;
+        }
+
+        synchronized void add(long bytes, boolean large) {
+            count++;
+            totalBytes += bytes;
+            maxBytes = Math.max(maxBytes, bytes);
+            if (large) {
+                largeItems++;
+            }
+            int bucket = 0;
+            while (bucket < buckets.length - 1 && bytes > ItemSizeStats.BUCKET_LIMITS.get(bucket)) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        synchronized ItemSizeStats toSnapshot() {
+            return ItemSizeStats.builder()
+                    .daoName(daoName)
+                    .count(count)
+                    .totalBytes(totalBytes)
+                    .maxBytes(maxBytes)
+                    .largeItems(largeItems)
+                    .bucketCounts(ImmutableList.copyOf(Arrays.stream(buckets).boxed().iterator()))
+                    .build();
+        }
+    }
+}
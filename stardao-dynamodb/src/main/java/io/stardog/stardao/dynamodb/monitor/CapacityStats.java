@@ -0,0 +1,55 @@
+package io.stardog.stardao.dynamodb.monitor;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * A snapshot of the capacity consumed by one Dao method on the table or one of its indexes, as recorded by a
+ * CapacityMonitor.
+ */
+@AutoValue
+public abstract class CapacityStats {
+    public abstract String getDaoName();
+
+    /**
+     * Name of the Dao method that made the requests, such as "loadOpt" or "findByIndex".
+     * @return  operation name
+     */
+    public abstract String getOperation();
+
+    /**
+     * Name of the index the capacity was consumed on.
+     * @return  index name, or null for the table itself
+     */
+    @Nullable
+    public abstract String getIndexName();
+
+    /**
+     * Number of dao calls that consumed capacity on the table or index. A query or scan that reads several pages
+     * counts as one call.
+     * @return  call count
+     */
+    public abstract long getCalls();
+    public abstract double getReadUnits();
+    public abstract double getWriteUnits();
+
+    public double getTotalUnits() {
+        return getReadUnits() + getWriteUnits();
+    }
+
+    public static CapacityStats.Builder builder() {
+        return new AutoValue_CapacityStats.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder daoName(String daoName);
+        public abstract Builder operation(String operation);
+        public abstract Builder indexName(String indexName);
+        public abstract Builder calls(long calls);
+        public abstract Builder readUnits(double readUnits);
+        public abstract Builder writeUnits(double writeUnits);
+        public abstract CapacityStats build();
+    }
+}
@@ -0,0 +1,54 @@
+package io.stardog.stardao.dynamodb.monitor;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A snapshot of the sizes of the items read and written by one Dao, as recorded by a CapacityMonitor. Sizes are
+ * counted in a histogram whose buckets end at each of BUCKET_LIMITS; a read costs one read unit per 4KB of item
+ * (half that for an eventually consistent read) and a write one write unit per 1KB.
+ */
+@AutoValue
+public abstract class ItemSizeStats {
+    public static final List<Long> BUCKET_LIMITS = ImmutableList.of(
+            1024L, 4 * 1024L, 16 * 1024L, 64 * 1024L, 256 * 1024L, CapacityMonitor.MAX_ITEM_BYTES);
+
+    public abstract String getDaoName();
+    public abstract long getCount();
+    public abstract long getTotalBytes();
+    public abstract long getMaxBytes();
+
+    /**
+     * Number of items at or over the monitor's large item threshold, approaching the 400KB item limit.
+     * @return  large item count
+     */
+    public abstract long getLargeItems();
+
+    /**
+     * Number of items in each bucket of the histogram: the first counts items up to 1KB, the next items over 1KB up
+     * to 4KB, and so on up to 400KB.
+     * @return  counts, one per entry of BUCKET_LIMITS
+     */
+    public abstract ImmutableList<Long> getBucketCounts();
+
+    public long getMeanBytes() {
+        return getCount() > 0 ? getTotalBytes() / getCount() : 0;
+    }
+
+    public static ItemSizeStats.Builder builder() {
+        return new AutoValue_ItemSizeStats.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder daoName(String daoName);
+        public abstract Builder count(long count);
+        public abstract Builder totalBytes(long totalBytes);
+        public abstract Builder maxBytes(long maxBytes);
+        public abstract Builder largeItems(long largeItems);
+        public abstract Builder bucketCounts(List<Long> bucketCounts);
+        public abstract ItemSizeStats build();
+    }
+}
@@ -17,8 +17,26 @@ import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.core.Condition;
+import io.stardog.stardao.core.DaoIterable;
 import io.stardog.stardao.core.Results;
 import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.UpsertResult;
+import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.guard.GuardAction;
+import io.stardog.stardao.core.guard.Guardrails;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.DaoOperation;
+import io.stardog.stardao.core.metrics.OperationCounter;
+import io.stardog.stardao.core.metrics.OperationType;
+import io.stardog.stardao.dynamodb.mapper.ItemMapper;
+import io.stardog.stardao.dynamodb.mapper.JacksonItemMapper;
+import io.stardog.stardao.dynamodb.monitor.CapacityMonitor;
+import io.stardog.stardao.dynamodb.monitor.CapacityStats;
+import io.stardog.stardao.dynamodb.monitor.ItemSizeStats;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.exceptions.DataConflictException;
+import io.stardog.stardao.exceptions.DataLimitException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -34,7 +52,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AbstractDynamoDaoTest {
     private AmazonDynamoDB dynamodb;
@@ -121,6 +141,28 @@ public class AbstractDynamoDaoTest {
         assertEquals(creatorId, created.getCreateId());
     }
 
+    @Test
+    public void testCreateAll() throws Exception {
+        UUID creatorId = UUID.randomUUID();
+        List<TestModel> created = dao.createAll(ImmutableList.of(
+                TestModel.builder().name("Ian White").build(),
+                TestModel.builder().name("Bob Jones").build()), creatorId);
+        assertEquals(2, created.size());
+        assertEquals(created.get(1), dao.load(created.get(1).getId()));
+        assertEquals(creatorId, created.get(0).getCreateId());
+
+        try {
+            dao.createAll(ImmutableList.of(
+                    TestModel.builder().id(created.get(0).getId()).name("Duplicate").build(),
+                    TestModel.builder().name("Jim Smith").build()));
+            fail("Expected DataBulkCreateException");
+        } catch (DataBulkCreateException e) {
+            assertEquals(ImmutableSet.of(0), e.getErrors().keySet());
+            assertEquals(1, e.getCreated().size());
+        }
+        assertEquals("Ian White", dao.load(created.get(0).getId()).getName());
+    }
+
     @Test
     public void testCreateLoadOpt() throws Exception {
         UUID creatorId = UUID.randomUUID();
@@ -175,6 +217,7 @@ public class AbstractDynamoDaoTest {
             count++;
         }
         assertEquals(2, count);
+        assertTrue(dao.iterateAll() instanceof DaoIterable);
     }
 
     private void populateSampleData() {
@@ -207,6 +250,20 @@ public class AbstractDynamoDaoTest {
         assertEquals(1, results.getData().size());
     }
 
+    @Test
+    public void testScanWithFields() throws Exception {
+        populateSampleData();
+        ScanSpec spec = new ScanSpec()
+                .withFilterExpression("#name = :name")
+                .withNameMap(new NameMap().with("#name", "name"))
+                .withValueMap(new ValueMap().with(":name", "Ian White"));
+        Results<TestModel,UUID> results = dao.scan(spec, dao.selectFields(ImmutableList.of("email")));
+        assertEquals(1, results.getData().size());
+        assertNotNull(results.getData().get(0).getId());
+        assertNull(results.getData().get(0).getName());
+        assertNotNull(results.getData().get(0).getEmail());
+    }
+
     @Test
     public void testFindByIndex() throws Exception {
         populateSampleData();
@@ -227,6 +284,128 @@ public class AbstractDynamoDaoTest {
         assertTrue(dao.checkUniqueField("email", "email", "bob@exmaple.com", bob.getId()));
     }
 
+    @Test
+    public void testOperationCounter() throws Exception {
+        populateSampleData();
+        try (OperationCounter counter = OperationCounter.start()) {
+            Results<TestModel,UUID> results = dao.scanAll();
+            for (TestModel model : results.getData()) {
+                dao.load(model.getId());
+            }
+            dao.update(results.getData().get(0).getId(), dao.updateOf(TestModel.builder().name("Rename").build()));
+
+            assertEquals(4, counter.getCount());
+            assertEquals(1, counter.getCount(OperationType.QUERY));
+            assertEquals(2, counter.getCount("TestDynamoDao", OperationType.LOAD));
+            assertEquals(3, counter.getReads());
+            assertEquals(1, counter.getWrites());
+            assertEquals(2, counter.getOperations().get(0).getItemCount());
+            counter.assertMaxReads(3);
+            try {
+                counter.assertMax(OperationType.LOAD, 1);
+                fail("expected AssertionError");
+            } catch (AssertionError e) {
+                assertTrue(e.getMessage().contains("TestDynamoDao.loadOpt"));
+            }
+        }
+        assertFalse(DaoMetrics.isEnabled());
+    }
+
+    @Test
+    public void testIterateAllTimed() throws Exception {
+        dao.create(TestModel.builder().name("Ian White").email("ian@example.com").build());
+        dao.create(TestModel.builder().name("Bob Smith").email("bob@example.com").build());
+        try (OperationCounter counter = OperationCounter.start()) {
+            for (TestModel model : dao.iterateAll()) {
+                dao.load(model.getId());
+            }
+
+            // the scan is reported once the iterator is exhausted, separately from the loads made in between
+            assertEquals(3, counter.getCount());
+            DaoOperation iterate = counter.getOperations().get(2);
+            assertEquals("iterateAll", iterate.getName());
+            assertEquals(2, iterate.getItemCount());
+        }
+    }
+
+    @Test
+    public void testGetMappers() throws Exception {
+        ItemMapper<TestModel> mapper = new JacksonItemMapper<>(TestModel.class, dao.getFieldData());
+        TestDynamoDao custom = new TestDynamoDao(dynamodb, mapper);
+        assertSame(mapper, custom.getModelMapper());
+        assertSame(mapper, custom.getPartialMapper());
+    }
+
+    @Test
+    public void testGuardrails() throws Exception {
+        populateSampleData();
+        dao.setGuardrails(Guardrails.builder().maxResultItems(1).build());
+        try {
+            dao.scanAll();
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("TestDynamoDao.scan read more than 1 items at "
+                    + AbstractDynamoDaoTest.class.getName() + ".testGuardrails("));
+        }
+
+        dao.setGuardrails(Guardrails.builder().fullScanAction(GuardAction.REJECT).build());
+        try {
+            dao.iterateAll();
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage().startsWith("Full scan by TestDynamoDao.iterateAll"));
+        }
+        QuerySpec spec = new QuerySpec()
+                .withKeyConditionExpression("email = :email")
+                .withValueMap(new ValueMap().with(":email", "bob@example.com"));
+        assertEquals(1, dao.findByIndex("email", spec).getData().size());
+
+        dao.setGuardrails(Guardrails.builder().maxResultBytes(10000L).maxScanRate(1000.0).build());
+        assertEquals(2, dao.scanAll().getData().size());
+    }
+
+    @Test
+    public void testCapacityMonitor() throws Exception {
+        CapacityMonitor monitor = new CapacityMonitor();
+        dao.setCapacityMonitor(monitor);
+        populateSampleData();
+        QuerySpec spec = new QuerySpec()
+                .withKeyConditionExpression("email = :email")
+                .withValueMap(new ValueMap().with(":email", "bob@example.com"));
+        assertEquals(1, dao.findByIndex("email", spec).getData().size());
+
+        List<CapacityStats> stats = monitor.getCapacityStats("TestDynamoDao");
+        CapacityStats create = stats.stream()
+                .filter(s -> s.getOperation().equals("create") && s.getIndexName() == null)
+                .findFirst().get();
+        assertEquals(2, create.getCalls());
+        assertTrue(create.getWriteUnits() >= 2);
+        assertEquals(0, create.getReadUnits(), 0);
+        assertTrue(stats.stream().anyMatch(s -> s.getOperation().equals("findByIndex")));
+
+        ItemSizeStats sizes = monitor.getItemSizeStats().get(0);
+        assertEquals("TestDynamoDao", sizes.getDaoName());
+        assertEquals(3, sizes.getCount());
+        assertEquals(3, (long)sizes.getBucketCounts().get(0));
+        assertEquals(0, sizes.getLargeItems());
+
+        dao.setCapacityMonitor(null);
+        monitor.reset();
+        dao.scanAll();
+        assertTrue(monitor.getCapacityStats().isEmpty());
+    }
+
+    @Test
+    public void testGetItemSize() throws Exception {
+        Item item = new Item()
+                .withString("name", "abc")
+                .withNumber("count", 12345)
+                .withBoolean("flag", true)
+                .withList("tags", "a", "bc");
+        // 4+3, 5+(5+1)/2+1, 4+1, 4+3+(1+1)+(2+1)
+        assertEquals(7 + 9 + 5 + 12, dao.getItemSize(item));
+    }
+
     @Test
     public void testToCreateItem() throws Exception {
         Instant now = Instant.now();
@@ -254,6 +433,28 @@ public class AbstractDynamoDaoTest {
         assertEquals("Rename", change.getName());
     }
 
+    @Test
+    public void testUpdateAndReturnNew() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").email("ian@example.com").build());
+        TestModel next = dao.updateAndReturnNew(model.getId(), dao.updateOf(TestModel.builder().name("Rename").build()));
+        assertEquals(dao.load(model.getId()), next);
+        assertEquals("Rename", next.getName());
+        assertEquals("ian@example.com", next.getEmail());
+    }
+
+    @Test
+    public void testUpdateAndReturnUpdated() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").count(5).build());
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().count(2).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+        TestModel updated = dao.updateAndReturnUpdated(model.getId(), update);
+        assertEquals(new Integer(7), updated.getCount());
+        assertNull(updated.getId());
+        assertNull(updated.getName());
+    }
+
     @Test
     public void testToUpdateItemSpec() throws Exception {
         UUID updateId = UUID.randomUUID();
@@ -264,11 +465,237 @@ public class AbstractDynamoDaoTest {
                 ImmutableSet.of("name", "birthday"),
                 ImmutableSet.of("email"));
         UpdateItemSpec spec = dao.toUpdateItemSpec(updateId, update, now, updaterId);
-        assertEquals("SET #name = :name, #birthday = :birthday, #updateId = :updateId, #updateAt = :updateAt REMOVE #email", spec.getUpdateExpression());
-        assertEquals(updaterId.toString(), spec.getValueMap().get(":updateId"));
-        assertEquals("Test", spec.getValueMap().get(":name"));
-        assertEquals(updaterId.toString(), spec.getValueMap().get(":updateId"));
-        assertEquals(new Long(now.toEpochMilli()), spec.getValueMap().get(":updateAt"));
+        assertEquals("SET #n0 = :v0, #n1 = :v1, #n2 = :v2, #n3 = :v3 REMOVE #n4", spec.getUpdateExpression());
+        assertEquals(ImmutableMap.of("#n0", "name", "#n1", "birthday", "#n2", "updateId", "#n3", "updateAt", "#n4", "email"),
+                spec.getNameMap());
+        assertEquals("Test", spec.getValueMap().get(":v0"));
+        assertEquals(updaterId.toString(), spec.getValueMap().get(":v2"));
+        assertEquals(new Long(now.toEpochMilli()), spec.getValueMap().get(":v3"));
+    }
+
+    @Test
+    public void testUpdateIf() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").count(5).build());
+        Update<TestModel> update = Update.of(TestModel.builder().name("Changed").build(), ImmutableSet.of("name"));
+
+        assertFalse(dao.updateIf(model.getId(), Condition.equalTo("name", "Other"), update));
+        assertEquals("Ian", dao.load(model.getId()).getName());
+
+        assertTrue(dao.updateIf(model.getId(), Condition.and(
+                Condition.equalTo("name", "Ian"),
+                Condition.lessThan("count", 10),
+                Condition.notExists("email")), update));
+        assertEquals("Changed", dao.load(model.getId()).getName());
+
+        // a missing item never matches, and is not created
+        UUID missingId = UUID.randomUUID();
+        assertFalse(dao.updateIf(missingId, Condition.notExists("email"), update));
+        assertFalse(dao.loadOpt(missingId).isPresent());
+    }
+
+    @Test
+    public void testUpdateWithVersion() throws Exception {
+        // treat count as if it were annotated with @Version
+        TestDynamoDao versionDao = new TestDynamoDao(dynamodb) {
+            @Override
+            protected FieldData generateFieldData() {
+                FieldData fieldData = super.generateFieldData();
+                return fieldData.toBuilder().version(fieldData.getMap().get("count")).build();
+            }
+        };
+        TestModel model = versionDao.create(TestModel.builder().name("Ian").build());
+        assertEquals(new Integer(1), versionDao.load(model.getId()).getCount());
+
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().name("Changed").build())
+                .setFields(ImmutableSet.of("name"))
+                .expectedVersion(1L)
+                .build();
+        UpdateItemSpec spec = versionDao.toUpdateItemSpec(model.getId(), update, Instant.now(), null);
+        assertEquals("#n2 = :__version", spec.getConditionExpression());
+        assertEquals("count", spec.getNameMap().get("#n2"));
+
+        versionDao.update(model.getId(), update);
+        assertEquals(new Integer(2), versionDao.load(model.getId()).getCount());
+
+        try {
+            versionDao.update(model.getId(), update);
+            fail("Expected DataConflictException");
+        } catch (DataConflictException e) {
+            assertEquals("Changed", versionDao.load(model.getId()).getName());
+        }
+
+        TestModel before = versionDao.update(model.getId(),
+                m -> Update.of(TestModel.builder().name(m.getName() + "!").build(), ImmutableSet.of("name")));
+        assertEquals("Changed", before.getName());
+        TestModel after = versionDao.load(model.getId());
+        assertEquals("Changed!", after.getName());
+        assertEquals(new Integer(3), after.getCount());
+
+        // objects stored before the version field existed are updated only while they have no version
+        TestModel legacy = dao.create(TestModel.builder().name("Legacy").build());
+        assertNull(dao.load(legacy.getId()).getCount());
+        Update<TestModel> unversioned = update.toBuilder().expectedVersion(Update.UNVERSIONED).build();
+        spec = versionDao.toUpdateItemSpec(legacy.getId(), unversioned, Instant.now(), null);
+        assertEquals("attribute_not_exists(#n2)", spec.getConditionExpression());
+        versionDao.update(legacy.getId(),
+                m -> Update.of(TestModel.builder().name(m.getName() + "!").build(), ImmutableSet.of("name")));
+        assertEquals(new Integer(1), versionDao.load(legacy.getId()).getCount());
+        try {
+            versionDao.update(legacy.getId(), unversioned);
+            fail("Expected DataConflictException");
+        } catch (DataConflictException e) {
+            assertEquals("Legacy!", versionDao.load(legacy.getId()).getName());
+        }
+    }
+
+    @Test
+    public void testUpsert() throws Exception {
+        UUID id = UUID.randomUUID();
+        UUID creator = UUID.randomUUID();
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().count(1).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+
+        UpdateItemSpec spec = dao.toUpsertItemSpec(id, TestModel.builder().name("Ian").build(), update, null, creator);
+        assertEquals("SET #n0 = :v0, #n1 = if_not_exists(#n1, :v1), #n2 = if_not_exists(#n2, :v2) ADD #n3 :v3",
+                spec.getUpdateExpression());
+        assertEquals(ImmutableMap.of("#n0", "updateId", "#n1", "name", "#n2", "createId", "#n3", "count"), spec.getNameMap());
+
+        UpsertResult<TestModel> result = dao.upsertAndReturn(id, TestModel.builder().name("Ian").build(), update, Instant.now(), creator);
+        assertTrue(result.isInserted());
+        TestModel model = result.getModel().get();
+        assertEquals(id, model.getId());
+        assertEquals("Ian", model.getName());
+        assertEquals(new Integer(1), model.getCount());
+        assertEquals(creator, model.getCreateId());
+        assertNotNull(model.getCreateAt());
+
+        result = dao.upsert(id, TestModel.builder().name("Other").build(), update, UUID.randomUUID());
+        assertFalse(result.isInserted());
+        model = dao.load(id);
+        assertEquals("Ian", model.getName());
+        assertEquals(new Integer(2), model.getCount());
+        assertEquals(creator, model.getCreateId());
+
+        // the existing item is updated and returned by the same call
+        result = dao.upsertAndReturn(id, TestModel.builder().name("Other").build(), update, Instant.now(), UUID.randomUUID());
+        assertFalse(result.isInserted());
+        model = result.getModel().get();
+        assertEquals("Ian", model.getName());
+        assertEquals(new Integer(3), model.getCount());
+        assertEquals(creator, model.getCreateId());
+        assertEquals(model, dao.load(id));
+    }
+
+    @Test
+    public void testUpdateIncrement() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").build());
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().count(2).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+
+        UpdateItemSpec spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("ADD #n0 :v0", spec.getUpdateExpression());
+
+        dao.update(model.getId(), update);
+        dao.update(model.getId(), update);
+        assertEquals(new Integer(4), dao.load(model.getId()).getCount());
+    }
+
+    @Test
+    public void testUpdateAppend() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").build());
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().tags(ImmutableList.of("a", "b")).build())
+                .appendFields(ImmutableSet.of("tags"))
+                .build();
+
+        UpdateItemSpec spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("SET #n0 = list_append(if_not_exists(#n0, :__empty_list), :v0)", spec.getUpdateExpression());
+
+        dao.update(model.getId(), update);
+        dao.update(model.getId(), update);
+        assertEquals(ImmutableList.of("a", "b", "a", "b"), dao.load(model.getId()).getTags());
+    }
+
+    @Test
+    public void testUpdateAddToSetAndPull() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").build());
+        Update<TestModel> update = Update.<TestModel>builder()
+                .partial(TestModel.builder().tags(ImmutableList.of("a", "b")).count(1).build())
+                .addToSetFields(ImmutableSet.of("tags"))
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+
+        UpdateItemSpec spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("ADD #n0 :v0, #n1 :v1", spec.getUpdateExpression());
+
+        dao.update(model.getId(), update);
+        dao.update(model.getId(), update);
+        assertEquals(ImmutableSet.of("a", "b"), ImmutableSet.copyOf(dao.load(model.getId()).getTags()));
+
+        update = Update.<TestModel>builder()
+                .partial(TestModel.builder().tags(ImmutableList.of("a")).build())
+                .pullFields(ImmutableSet.of("tags"))
+                .build();
+        spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("DELETE #n0 :v0", spec.getUpdateExpression());
+
+        dao.update(model.getId(), update);
+        assertEquals(ImmutableList.of("b"), dao.load(model.getId()).getTags());
+    }
+
+    @Test
+    public void testUpdateNestedPath() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian")
+                .settings(ImmutableMap.of("theme", "dark", "lang", "en")).build());
+        Update<TestModel> update = Update.of(
+                TestModel.builder().settings(ImmutableMap.of("theme", "light")).build(),
+                ImmutableSet.of("settings.theme"),
+                ImmutableSet.of("settings.lang"));
+
+        UpdateItemSpec spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("SET #n0.#n1 = :v0 REMOVE #n0.#n2", spec.getUpdateExpression());
+        assertEquals(ImmutableMap.of("#n0", "settings", "#n1", "theme", "#n2", "lang"), spec.getNameMap());
+
+        dao.update(model.getId(), update);
+        assertEquals(ImmutableMap.of("theme", "light"), dao.load(model.getId()).getSettings());
+
+        // map keys are not limited to the characters allowed in placeholders
+        update = Update.of(
+                TestModel.builder().settings(ImmutableMap.of("my-key", "a", "my_key", "b")).build(),
+                ImmutableSet.of("settings.my-key", "settings.my_key"));
+        spec = dao.toUpdateItemSpec(model.getId(), update, null, null);
+        assertEquals("SET #n0.#n1 = :v0, #n0.#n2 = :v1", spec.getUpdateExpression());
+        assertEquals(ImmutableMap.of("#n0", "settings", "#n1", "my-key", "#n2", "my_key"), spec.getNameMap());
+
+        dao.update(model.getId(), update);
+        assertEquals(ImmutableMap.of("theme", "light", "my-key", "a", "my_key", "b"), dao.load(model.getId()).getSettings());
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        TestModel model = dao.create(TestModel.builder().name("Ian").email("ian@example.com")
+                .settings(ImmutableMap.of("theme", "dark", "lang", "en")).build());
+        TestModel changed = model.toBuilder()
+                .email(null)
+                .country("US")
+                .settings(ImmutableMap.of("theme", "light", "lang", "en"))
+                .build();
+
+        Update<TestModel> update = dao.diff(model, changed);
+        assertEquals(ImmutableSet.of("country", "settings.theme"), update.getSetFields());
+        assertEquals(ImmutableSet.of("email"), update.getRemoveFields());
+
+        dao.update(model.getId(), update);
+        TestModel load = dao.load(model.getId());
+        assertEquals("Ian", load.getName());
+        assertNull(load.getEmail());
+        assertEquals("US", load.getCountry());
+        assertEquals(ImmutableMap.of("theme", "light", "lang", "en"), load.getSettings());
     }
 
     @Test
@@ -8,6 +8,7 @@ import com.amazonaws.services.dynamodbv2.model.KeyType;
 import com.amazonaws.services.dynamodbv2.model.Projection;
 import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import io.stardog.stardao.dynamodb.mapper.ItemMapper;
 
 import java.util.Arrays;
 import java.util.List;
@@ -20,6 +21,10 @@ public class TestDynamoDao extends AbstractDynamoDao<TestModel,TestModel,UUID,UU
         super(TestModel.class, TestModel.class, db, "test");
     }
 
+    public TestDynamoDao(AmazonDynamoDB db, ItemMapper<TestModel> mapper) {
+        super(TestModel.class, TestModel.class, db, "test", mapper, mapper);
+    }
+
     public void setEmptyIndexes(boolean emptyIndexes) {
         this.emptyIndexes = emptyIndexes;
     }
@@ -19,6 +19,8 @@ import javax.annotation.Nullable;
 import javax.validation.constraints.Pattern;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @AutoValue
@@ -50,6 +52,18 @@ public abstract class TestModel {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern="yyyy-MM-dd")
     public abstract LocalDate getBirthday();
 
+    @Nullable
+    @Updatable
+    public abstract Integer getCount();
+
+    @Nullable
+    @Updatable
+    public abstract List<String> getTags();
+
+    @Nullable
+    @Updatable
+    public abstract Map<String,String> getSettings();
+
     @Nullable
     @CreatedBy
     public abstract UUID getCreateId();
@@ -82,6 +96,9 @@ public abstract class TestModel {
         public abstract Builder email(String email);
         public abstract Builder country(String state);
         public abstract Builder birthday(LocalDate state);
+        public abstract Builder count(Integer count);
+        public abstract Builder tags(List<String> tags);
+        public abstract Builder settings(Map<String,String> settings);
         public abstract Builder createAt(Instant at);
         public abstract Builder createId(UUID id);
         public abstract Builder updateAt(Instant at);
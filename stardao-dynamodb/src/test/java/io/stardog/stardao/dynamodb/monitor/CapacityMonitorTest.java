@@ -0,0 +1,62 @@
+package io.stardog.stardao.dynamodb.monitor;
+
+import com.amazonaws.services.dynamodbv2.model.Capacity;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CapacityMonitorTest {
+    @Test
+    public void testRecordCapacity() throws Exception {
+        CapacityMonitor monitor = new CapacityMonitor();
+        monitor.recordCapacity("UserDao", "findByIndex", false, new ConsumedCapacity()
+                .withCapacityUnits(3.0)
+                .withTable(new Capacity().withCapacityUnits(0.5))
+                .withGlobalSecondaryIndexes(ImmutableMap.of("email", new Capacity().withCapacityUnits(2.5))));
+        monitor.recordCapacity("UserDao", "create", true, new ConsumedCapacity().withCapacityUnits(1.0));
+        monitor.recordCapacity("UserDao", "create", true, new ConsumedCapacity().withCapacityUnits(2.0));
+        monitor.recordCapacity("UserDao", "delete", true, (ConsumedCapacity)null);
+
+        List<CapacityStats> stats = monitor.getCapacityStats();
+        assertEquals(3, stats.size());
+        assertEquals("create", stats.get(0).getOperation());
+        assertNull(stats.get(0).getIndexName());
+        assertEquals(2, stats.get(0).getCalls());
+        assertEquals(3.0, stats.get(0).getWriteUnits(), 0);
+        assertEquals("email", stats.get(1).getIndexName());
+        assertEquals(2.5, stats.get(1).getReadUnits(), 0);
+        assertEquals(0.5, stats.get(2).getReadUnits(), 0);
+        assertTrue(monitor.getCapacityStats("OtherDao").isEmpty());
+
+        monitor.reset();
+        assertTrue(monitor.getCapacityStats().isEmpty());
+    }
+
+    @Test
+    public void testRecordItemSize() throws Exception {
+        CapacityMonitor monitor = new CapacityMonitor(300 * 1024);
+        monitor.recordItemSize("UserDao", "a", 100);
+        monitor.recordItemSize("UserDao", "b", 1024);
+        monitor.recordItemSize("UserDao", "c", 5000);
+        monitor.recordItemSize("UserDao", "d", 380 * 1024);
+
+        ItemSizeStats stats = monitor.getItemSizeStats().get(0);
+        assertEquals(4, stats.getCount());
+        assertEquals(380 * 1024, stats.getMaxBytes());
+        assertEquals(1, stats.getLargeItems());
+        assertEquals(ImmutableList.of(2L, 0L, 1L, 0L, 0L, 1L), stats.getBucketCounts());
+        assertEquals((100 + 1024 + 5000 + 380 * 1024) / 4, stats.getMeanBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLargeItemBytesOverLimit() throws Exception {
+        new CapacityMonitor(CapacityMonitor.MAX_ITEM_BYTES + 1);
+    }
+}
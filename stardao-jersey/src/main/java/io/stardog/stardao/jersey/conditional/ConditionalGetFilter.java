@@ -0,0 +1,50 @@
+package io.stardog.stardao.jersey.conditional;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Adds a weak ETag and a Last-Modified header, taken from the @UpdatedAt field, to every successful GET of a single
+ * model object, and answers If-None-Match and If-Modified-Since requests for which the object has not changed with
+ * a 304 Not Modified. The entity is dropped before it is serialized, so polling clients cost neither the bandwidth
+ * nor the serialization of an unchanged object. To avoid loading the object at all, resource methods can also call
+ * ConditionalRequests.checkNotModified() first.
+ */
+public class ConditionalGetFilter implements ContainerResponseFilter {
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        String method = requestContext.getMethod();
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return;
+        }
+        if (responseContext.getStatus() != Response.Status.OK.getStatusCode() || !responseContext.hasEntity()) {
+            return;
+        }
+        if (responseContext.getHeaders().containsKey(HttpHeaders.ETAG)) {
+            return;
+        }
+        Optional<Instant> updatedAt = ConditionalRequests.getUpdatedAt(responseContext.getEntity());
+        if (!updatedAt.isPresent()) {
+            return;
+        }
+
+        EntityTag tag = ConditionalRequests.getEntityTag(updatedAt.get());
+        Date lastModified = ConditionalRequests.getLastModified(updatedAt.get());
+        responseContext.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+        responseContext.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        Response.ResponseBuilder builder = requestContext.getRequest().evaluatePreconditions(lastModified, tag);
+        if (builder != null) {
+            responseContext.setStatus(builder.build().getStatus());
+            responseContext.setEntity(null);
+        }
+    }
+}
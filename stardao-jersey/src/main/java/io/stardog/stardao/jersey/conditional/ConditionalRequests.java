@@ -0,0 +1,201 @@
+package io.stardog.stardao.jersey.conditional;
+
+import com.google.common.collect.ImmutableList;
+import io.stardog.stardao.annotations.UpdatedAt;
+import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.Condition;
+import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.field.Field;
+import io.stardog.stardao.core.field.FieldScanner;
+import io.stardog.stardao.exceptions.DataNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Helpers for conditional requests based on a model's @UpdatedAt field. The entity tag of an object is a weak tag
+ * holding its update timestamp, and its Last-Modified date is the same timestamp, so both change whenever the Dao
+ * updates the object.
+ */
+public final class ConditionalRequests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConditionalRequests.class);
+
+    private static final ClassValue<Optional<Method>> UPDATED_AT_GETTERS = new ClassValue<Optional<Method>>() {
+        @Override
+        protected Optional<Method> computeValue(Class<?> type) {
+            // AutoValue and similar generated subclasses do not repeat the annotations (and are usually not public),
+            // so look for the getter on the superclass that declares the @UpdatedAt field. Other classes (String,
+            // collections, Results) are never scanned, so they do not fill the FieldData cache.
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                if (!declaresUpdatedAt(c)) {
+                    continue;
+                }
+                try {
+                    Field field = FieldScanner.getFieldData(c).getUpdatedAt();
+                    if (field == null) {
+                        return Optional.empty();
+                    }
+                    return Optional.ofNullable(new FieldScanner().getGetter(c, field.getName()));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to scan {} for an @UpdatedAt field, so it gets no ETag", c.getName(), e);
+                    return Optional.empty();
+                }
+            }
+            return Optional.empty();
+        }
+    };
+
+    private ConditionalRequests() {
+    }
+
+    private static boolean declaresUpdatedAt(Class<?> type) {
+        for (java.lang.reflect.Field field : type.getDeclaredFields()) {
+            if (field.isAnnotationPresent(UpdatedAt.class)) {
+                return true;
+            }
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(UpdatedAt.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the value of the @UpdatedAt field of an object.
+     * @param object    model or partial
+     * @return  the update timestamp, or empty if the object has no @UpdatedAt field or it is not set
+     */
+    public static Optional<Instant> getUpdatedAt(Object object) {
+        Optional<Method> getter = UPDATED_AT_GETTERS.get(object.getClass());
+        if (!getter.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            Object value = getter.get().invoke(object);
+            if (value instanceof Optional) {
+                value = ((Optional<?>) value).orElse(null);
+            }
+            return Optional.ofNullable((Instant) value);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Unable to read " + getter.get().getName() + " of " + object.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Return the weak entity tag for an update timestamp.
+     * @param updatedAt update timestamp
+     * @return  entity tag
+     */
+    public static EntityTag getEntityTag(Instant updatedAt) {
+        return new EntityTag(updatedAt.toString(), true);
+    }
+
+    /**
+     * Return the Last-Modified date for an update timestamp. HTTP dates only have a precision of one second, so the
+     * timestamp is truncated; otherwise an If-Modified-Since echoing it back would always look older.
+     * @param updatedAt update timestamp
+     * @return  last modified date
+     */
+    public static Date getLastModified(Instant updatedAt) {
+        return Date.from(updatedAt.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Parse an entity tag produced by getEntityTag() back into its update timestamp.
+     * @param value header value of a single entity tag, such as W/"2019-01-01T00:00:00.123Z"
+     * @return  update timestamp, or empty if the value is not a tag produced by getEntityTag()
+     */
+    public static Optional<Instant> parseEntityTag(String value) {
+        String tag = value.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Instant.parse(tag.substring(1, tag.length() - 1)));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Check an If-None-Match or If-Modified-Since request against the current update timestamp of an object, before
+     * loading the whole object. Only the @UpdatedAt field is loaded, and if the client's copy is still current, a
+     * 304 Not Modified is thrown, so a resource method can call this first and then load and return the object as
+     * usual. Nothing happens if the model has no @UpdatedAt field or the object does not exist.
+     * @param request   request
+     * @param dao   dao of the object
+     * @param id    id of the object
+     * @param <K>   id class
+     * @throws WebApplicationException with a 304 response if the object has not been modified
+     */
+    public static <K> void checkNotModified(Request request, AbstractDao<?,?,K,?> dao, K id) {
+        Field field = dao.getFieldData().getUpdatedAt();
+        if (field == null) {
+            return;
+        }
+        Optional<Instant> updatedAt = dao.loadOpt(id, ImmutableList.of(field.getName()))
+                .flatMap(ConditionalRequests::getUpdatedAt);
+        if (!updatedAt.isPresent()) {
+            return;
+        }
+        EntityTag tag = getEntityTag(updatedAt.get());
+        Date lastModified = getLastModified(updatedAt.get());
+        Response.ResponseBuilder builder = request.evaluatePreconditions(lastModified, tag);
+        if (builder != null) {
+            throw new WebApplicationException(builder.tag(tag).lastModified(lastModified).build());
+        }
+    }
+
+    /**
+     * Perform an update, conditional on an If-Match header: the update is only applied if the object's update
+     * timestamp still matches the entity tag, so a client cannot overwrite changes it has not seen. Only a single
+     * entity tag is supported. If there is no If-Match header (or it is "*"), the update is applied unconditionally.
+     * @param ifMatch   value of the If-Match header, or null
+     * @param dao   dao of the object
+     * @param id    id of the object
+     * @param update    update to apply
+     * @param updateBy  id of the user making the update, or null
+     * @param <P>   partial class
+     * @param <K>   id class
+     * @param <I>   id class of the updater
+     * @throws WebApplicationException with a 412 response if the object has changed
+     * @throws DataNotFoundException if the object does not exist, as for an unconditional update
+     */
+    public static <P,K,I> void updateIfMatch(String ifMatch, AbstractDao<?,P,K,I> dao, K id, Update<P> update, I updateBy) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            dao.update(id, update, updateBy);
+            return;
+        }
+        Field field = dao.getFieldData().getUpdatedAt();
+        if (field == null) {
+            throw new IllegalArgumentException(dao.getModelClass().getSimpleName() + " has no @UpdatedAt field");
+        }
+        Optional<Instant> updatedAt = parseEntityTag(ifMatch);
+        if (updatedAt.isPresent()
+                && dao.updateIf(id, Condition.equalTo(field.getName(), updatedAt.get()), update, updateBy)) {
+            return;
+        }
+        // a failed condition does not say whether the object has changed or is missing
+        if (!dao.loadOpt(id, ImmutableList.of(field.getName())).isPresent()) {
+            throw new DataNotFoundException(dao.getDisplayModelName() + " not found: " + id);
+        }
+        throw new WebApplicationException("Precondition failed: " + HttpHeaders.IF_MATCH + " " + ifMatch,
+                Response.Status.PRECONDITION_FAILED);
+    }
+}
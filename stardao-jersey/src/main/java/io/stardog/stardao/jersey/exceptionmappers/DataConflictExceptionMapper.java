@@ -0,0 +1,18 @@
+package io.stardog.stardao.jersey.exceptionmappers;
+
+import com.google.common.collect.ImmutableMap;
+import io.stardog.stardao.exceptions.DataConflictException;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+
+public class DataConflictExceptionMapper implements ExceptionMapper<DataConflictException> {
+    @Override
+    public Response toResponse(DataConflictException e) {
+        return Response.status(409)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(ImmutableMap.of("code", 409, "message", e.getMessage()))
+                .build();
+    }
+}
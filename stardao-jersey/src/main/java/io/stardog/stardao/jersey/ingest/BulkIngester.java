@@ -0,0 +1,143 @@
+package io.stardog.stardao.jersey.ingest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.DaoIterable;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.validation.ModelValidator;
+import io.stardog.stardao.validation.ValidationError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Creates the partials of an IngestRequest in batches: each record is validated as a create, and the valid ones in a
+ * batch are written with a single Dao.createAll() call. The results are returned lazily, one per record in the order
+ * they were read, and the next batch is only read once the results of the previous one have been consumed. Returning
+ * them from a resource method that produces application/x-ndjson (with StreamingResultsWriter registered) therefore
+ * streams the outcome of each line back to the client while the upload is still being read, and holds no more than one
+ * batch in memory at a time.
+ * @param <M>   model class
+ * @param <P>   partial class
+ * @param <I>   id class of the creator
+ */
+public class BulkIngester<M,P,I> {
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final AbstractDao<M,P,?,I> dao;
+    private final ModelValidator validator;
+    private final int batchSize;
+
+    public BulkIngester(AbstractDao<M,P,?,I> dao, ModelValidator validator) {
+        this(dao, validator, DEFAULT_BATCH_SIZE);
+    }
+
+    public BulkIngester(AbstractDao<M,P,?,I> dao, ModelValidator validator, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.dao = dao;
+        this.validator = validator;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create the records of a bulk upload.
+     * @param request   records to create
+     * @param createBy  id of the user creating them, or null
+     * @return  lazy iterable of results, one per record
+     */
+    public Iterable<IngestResult<M>> ingest(IngestRequest<P> request, I createBy) {
+        Iterator<IngestRecord<P>> records = request.iterator();
+        return new DaoIterable<>(() -> new ResultIterator(records, createBy));
+    }
+
+    /**
+     * Validate and create one batch of records.
+     * @param batch records read from the request
+     * @param createBy  id of the user creating them, or null
+     * @return  results, in the same order as the records
+     */
+    protected List<IngestResult<M>> ingestBatch(List<IngestRecord<P>> batch, I createBy) {
+        List<IngestResult<M>> results = new ArrayList<>(batch.size());
+        List<P> valid = new ArrayList<>(batch.size());
+        List<Integer> validPositions = new ArrayList<>(batch.size());
+        for (IngestRecord<P> record : batch) {
+            if (record.isError()) {
+                results.add(IngestResult.failed(record.getLine(), ImmutableList.of(ValidationError.of("", record.getError()))));
+                continue;
+            }
+            List<ValidationError> errors = validator.getCreateValidationErrors(record.getPartial(), dao.getFieldData());
+            if (!errors.isEmpty()) {
+                results.add(IngestResult.failed(record.getLine(), errors));
+                continue;
+            }
+            validPositions.add(results.size());
+            valid.add(record.getPartial());
+            results.add(null);
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
+
+        List<?> created;
+        Map<Integer,String> failures = ImmutableMap.of();
+        try {
+            created = dao.createAll(valid, createBy);
+        } catch (DataBulkCreateException e) {
+            created = e.getCreated();
+            failures = e.getErrors();
+        }
+        Iterator<?> createdIterator = created.iterator();
+        for (int i = 0; i < valid.size(); i++) {
+            int position = validPositions.get(i);
+            int line = batch.get(position).getLine();
+            String failure = failures.get(i);
+            if (failure != null) {
+                results.set(position, IngestResult.failed(line, ImmutableList.of(ValidationError.of("", failure))));
+            } else {
+                @SuppressWarnings("unchecked")
+                M model = (M)createdIterator.next();
+                results.set(position, IngestResult.created(line, model));
+            }
+        }
+        return results;
+    }
+
+    private class ResultIterator implements Iterator<IngestResult<M>> {
+        private final Iterator<IngestRecord<P>> records;
+        private final I createBy;
+        private final Deque<IngestResult<M>> pending = new ArrayDeque<>();
+
+        ResultIterator(Iterator<IngestRecord<P>> records, I createBy) {
+            this.records = records;
+            this.createBy = createBy;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending.isEmpty() && records.hasNext()) {
+                List<IngestRecord<P>> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && records.hasNext()) {
+                    batch.add(records.next());
+                }
+                pending.addAll(ingestBatch(batch, createBy));
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public IngestResult<M> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return pending.removeFirst();
+        }
+    }
+}
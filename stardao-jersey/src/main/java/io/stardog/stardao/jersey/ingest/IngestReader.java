@@ -0,0 +1,195 @@
+package io.stardog.stardao.jersey.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.stardog.stardao.jersey.streaming.StreamingResultsWriter;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a bulk upload into an IngestRequest, either as application/x-ndjson (one partial per line) or as an
+ * application/json array of partials. Records are only read from the request body as the IngestRequest is iterated,
+ * so a resource method can pass it straight to a BulkIngester without the upload ever being held in memory.
+ *
+ * A record that cannot be bound to the partial class is returned as an error for its line, and reading carries on
+ * with the next one. If the body itself is malformed, an error is returned for the record being read and reading stops.
+ */
+@Consumes({MediaType.APPLICATION_JSON, StreamingResultsWriter.APPLICATION_NDJSON})
+public class IngestReader implements MessageBodyReader<IngestRequest<?>> {
+    private final ObjectMapper mapper;
+
+    public IngestReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return IngestRequest.class.isAssignableFrom(type)
+                && (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)
+                    || mediaType.isCompatible(StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+    }
+
+    @Override
+    public IngestRequest<?> readFrom(Class<IngestRequest<?>> type, Type genericType, Annotation[] annotations,
+                                     MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream in)
+            throws IOException, WebApplicationException {
+        JavaType partialType = getPartialType(genericType);
+        ObjectReader reader = mapper.readerFor(partialType);
+        if (mediaType.isCompatible(StreamingResultsWriter.APPLICATION_NDJSON_TYPE)) {
+            BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return new IngestRequest<>(new NdjsonIterator(lines, reader));
+        }
+
+        JsonParser parser = mapper.getFactory().createParser(in);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new WebApplicationException("Bulk upload must be a JSON array", 400);
+        }
+        return new IngestRequest<>(new ArrayIterator(parser, reader));
+    }
+
+    private JavaType getPartialType(Type genericType) {
+        JavaType type = mapper.getTypeFactory().constructType(genericType);
+        JavaType[] params = mapper.getTypeFactory().findTypeParameters(type, IngestRequest.class);
+        if (params.length == 0 || params[0].isJavaLangObject()) {
+            throw new IllegalArgumentException("Unable to determine partial class of " + genericType);
+        }
+        return params[0];
+    }
+
+    private static class NdjsonIterator implements Iterator<IngestRecord<Object>> {
+        private final BufferedReader lines;
+        private final ObjectReader reader;
+        private int lineNumber;
+        private String line;
+
+        NdjsonIterator(BufferedReader lines, ObjectReader reader) {
+            this.lines = lines;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (line == null) {
+                    String next = lines.readLine();
+                    if (next == null) {
+                        return false;
+                    }
+                    lineNumber++;
+                    if (!next.trim().isEmpty()) {
+                        line = next;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public IngestRecord<Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String value = line;
+            line = null;
+            try {
+                return IngestRecord.of(lineNumber, reader.readValue(value));
+            } catch (JsonProcessingException e) {
+                return IngestRecord.error(lineNumber, e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class ArrayIterator implements Iterator<IngestRecord<Object>> {
+        private final JsonParser parser;
+        private final ObjectReader reader;
+        private int index;
+        private boolean done;
+        private JsonToken token;
+
+        ArrayIterator(JsonParser parser, ObjectReader reader) {
+            this.parser = parser;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (done) {
+                return false;
+            }
+            if (token == null) {
+                try {
+                    token = parser.nextToken();
+                } catch (JsonProcessingException e) {
+                    token = JsonToken.NOT_AVAILABLE;
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    done = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public IngestRecord<Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            index++;
+            boolean malformed = token == JsonToken.NOT_AVAILABLE;
+            token = null;
+            if (malformed) {
+                done = true;
+                return IngestRecord.error(index, "Malformed JSON");
+            }
+            // each element is read as a tree first, so that a value that does not bind leaves the parser positioned
+            // at the next element
+            ObjectNode node;
+            try {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    return IngestRecord.error(index, "Expected a JSON object");
+                }
+                node = parser.readValueAsTree();
+            } catch (JsonProcessingException e) {
+                done = true;
+                return IngestRecord.error(index, e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                return IngestRecord.of(index, reader.readValue(node));
+            } catch (JsonProcessingException e) {
+                return IngestRecord.error(index, e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
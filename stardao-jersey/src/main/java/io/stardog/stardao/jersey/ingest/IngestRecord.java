@@ -0,0 +1,45 @@
+package io.stardog.stardao.jersey.ingest;
+
+/**
+ * One record read from a bulk upload: either a partial, or the reason it could not be read.
+ * @param <P>   partial class
+ */
+public class IngestRecord<P> {
+    private final int line;
+    private final P partial;
+    private final String error;
+
+    private IngestRecord(int line, P partial, String error) {
+        this.line = line;
+        this.partial = partial;
+        this.error = error;
+    }
+
+    public static <P> IngestRecord<P> of(int line, P partial) {
+        return new IngestRecord<>(line, partial, null);
+    }
+
+    public static <P> IngestRecord<P> error(int line, String error) {
+        return new IngestRecord<>(line, null, error);
+    }
+
+    /**
+     * The line number of the record for NDJSON, or its position (starting at 1) in a JSON array.
+     * @return  line number
+     */
+    public int getLine() {
+        return line;
+    }
+
+    public P getPartial() {
+        return partial;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+}
@@ -0,0 +1,26 @@
+package io.stardog.stardao.jersey.ingest;
+
+import java.util.Iterator;
+
+/**
+ * The records of a bulk upload, read lazily from the request body as they are iterated, so that the whole body is
+ * never held in memory. It can only be iterated once.
+ * @param <P>   partial class
+ */
+public class IngestRequest<P> implements Iterable<IngestRecord<P>> {
+    private Iterator<IngestRecord<P>> records;
+
+    public IngestRequest(Iterator<IngestRecord<P>> records) {
+        this.records = records;
+    }
+
+    @Override
+    public synchronized Iterator<IngestRecord<P>> iterator() {
+        if (records == null) {
+            throw new IllegalStateException("IngestRequest can only be iterated once");
+        }
+        Iterator<IngestRecord<P>> iterator = records;
+        records = null;
+        return iterator;
+    }
+}
@@ -0,0 +1,44 @@
+package io.stardog.stardao.jersey.ingest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.collect.ImmutableList;
+import io.stardog.stardao.validation.ValidationError;
+
+import java.util.List;
+
+/**
+ * The outcome of one record of a bulk upload: the created object, or the errors that kept it from being created.
+ * @param <M>   model class
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IngestResult<M> {
+    private final int line;
+    private final M created;
+    private final List<ValidationError> errors;
+
+    private IngestResult(int line, M created, List<ValidationError> errors) {
+        this.line = line;
+        this.created = created;
+        this.errors = errors;
+    }
+
+    public static <M> IngestResult<M> created(int line, M created) {
+        return new IngestResult<>(line, created, ImmutableList.of());
+    }
+
+    public static <M> IngestResult<M> failed(int line, List<ValidationError> errors) {
+        return new IngestResult<>(line, null, errors);
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public M getCreated() {
+        return created;
+    }
+
+    public List<ValidationError> getErrors() {
+        return errors;
+    }
+}
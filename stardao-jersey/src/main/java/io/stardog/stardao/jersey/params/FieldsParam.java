@@ -0,0 +1,59 @@
+package io.stardog.stardao.jersey.params;
+
+import com.google.common.collect.ImmutableList;
+import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.field.FieldSet;
+import io.stardog.stardao.exceptions.DataValidationException;
+import io.stardog.stardao.validation.ValidationError;
+
+import java.util.List;
+
+/**
+ * A ?fields= query parameter: a comma-separated list of the top-level fields a client wants back, such as
+ * "?fields=name,email". Convert it with toFieldSet() and pass the result to loadOpt(id, fields) or to a projected
+ * query method, and return the partials: since partials leave out absent fields, the response holds only the
+ * selected fields, and only those are read from the database.
+ */
+public class FieldsParam {
+    private final List<String> fields;
+
+    public FieldsParam(String value) {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (String field : value.split(",")) {
+            String trimmed = field.trim();
+            if (!trimmed.isEmpty()) {
+                builder.add(trimmed);
+            }
+        }
+        this.fields = builder.build();
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Validate the fields against the model of a Dao. The id field is always included.
+     * @param dao   dao of the model
+     * @return  field set holding the selected fields
+     * @throws DataValidationException if a field is not a field of the model, with an error for each unknown field
+     */
+    public FieldSet toFieldSet(AbstractDao<?,?,?,?> dao) {
+        ImmutableList.Builder<ValidationError> errors = ImmutableList.builder();
+        for (String field : fields) {
+            if (!dao.getFieldData().getMap().containsKey(field)) {
+                errors.add(ValidationError.of("fields", "unknown field: " + field));
+            }
+        }
+        List<ValidationError> unknown = errors.build();
+        if (!unknown.isEmpty()) {
+            throw new DataValidationException(unknown);
+        }
+        return dao.selectFields(fields);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", fields);
+    }
+}
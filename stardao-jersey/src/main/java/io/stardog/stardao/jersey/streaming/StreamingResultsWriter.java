@@ -0,0 +1,160 @@
+package io.stardog.stardao.jersey.streaming;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.stardog.stardao.core.DaoIterable;
+import io.stardog.stardao.core.Results;
+import io.stardog.stardao.core.StreamingResults;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Writes StreamingResults, and lazy DaoIterables such as Dao.iterateAll(), straight to the response as each object is
+ * read, so that large result sets are never held in memory. The output is flushed every so many objects, and any
+ * cursor behind the iterable is closed once writing finishes or fails (for instance because the client disconnected).
+ *
+ * As application/json, StreamingResults are written in the same shape as Results, with "next" at the end, and a
+ * DaoIterable as an array. Other Iterables (such as a JsonNode) are left to the normal JSON provider. As application/x-ndjson, each object is written on its own line, followed by a final
+ * {"next": ...} line if there is a next value; Results and collections can also be written as NDJSON.
+ */
+@Produces({MediaType.APPLICATION_JSON, StreamingResultsWriter.APPLICATION_NDJSON})
+public class StreamingResultsWriter implements MessageBodyWriter<Object> {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON_TYPE = new MediaType("application", "x-ndjson");
+    public static final int DEFAULT_FLUSH_EVERY = 100;
+
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final int flushEvery;
+
+    public StreamingResultsWriter(ObjectMapper mapper) {
+        this(mapper, DEFAULT_FLUSH_EVERY);
+    }
+
+    public StreamingResultsWriter(ObjectMapper mapper, int flushEvery) {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be at least 1");
+        }
+        this.mapper = mapper;
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (StreamingResults.class.isAssignableFrom(type)) {
+            return isJson(mediaType) || isNdjson(mediaType);
+        }
+        if (DaoIterable.class.isAssignableFrom(type)) {
+            return isJson(mediaType) || isNdjson(mediaType);
+        }
+        return isNdjson(mediaType) && (Results.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type));
+    }
+
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream out) throws IOException, WebApplicationException {
+        Iterable<?> data;
+        boolean results = true;
+        if (entity instanceof StreamingResults) {
+            data = ((StreamingResults<?,?>)entity).getData();
+        } else if (entity instanceof Results) {
+            data = ((Results<?,?>)entity).getData();
+        } else {
+            data = (Iterable<?>)entity;
+            results = false;
+        }
+        boolean ndjson = isNdjson(mediaType);
+
+        JsonGenerator gen = mapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null);
+
+        if (!ndjson && results) {
+            gen.writeStartObject();
+            gen.writeFieldName("data");
+        }
+        if (!ndjson) {
+            gen.writeStartArray();
+        }
+        Iterator<?> iterator = data.iterator();
+        try {
+            int count = 0;
+            while (iterator.hasNext()) {
+                writer.writeValue(gen, iterator.next());
+                if (ndjson) {
+                    gen.writeRaw('\n');
+                }
+                if (++count % flushEvery == 0) {
+                    gen.flush();
+                }
+            }
+        } finally {
+            close(iterator);
+        }
+        if (!ndjson) {
+            gen.writeEndArray();
+        }
+
+        // the next value is only asked for now, since it may depend on the last object read
+        Optional<?> next = Optional.empty();
+        if (entity instanceof StreamingResults) {
+            next = ((StreamingResults<?,?>)entity).getNext();
+        } else if (entity instanceof Results) {
+            next = ((Results<?,?>)entity).getNext();
+        }
+        if (ndjson && next.isPresent()) {
+            gen.writeStartObject();
+            gen.writeFieldName("next");
+            writer.writeValue(gen, next.get());
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        } else if (!ndjson && results) {
+            if (next.isPresent()) {
+                gen.writeFieldName("next");
+                writer.writeValue(gen, next.get());
+            }
+            gen.writeEndObject();
+        }
+        gen.flush();
+    }
+
+    /**
+     * Close the cursor behind an iterator, if it has one.
+     */
+    private void close(Iterator<?> iterator) {
+        if (iterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable)iterator).close();
+            } catch (Exception e) {
+                // the response is already written (or has failed), so there is nothing more to do
+            }
+        }
+    }
+
+    private boolean isJson(MediaType mediaType) {
+        return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    private boolean isNdjson(MediaType mediaType) {
+        return mediaType.isCompatible(APPLICATION_NDJSON_TYPE);
+    }
+}
@@ -0,0 +1,124 @@
+package io.stardog.stardao.jersey.timing;
+
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Accounts for the Dao operations made by each request: the number of calls, time spent in the database, time spent
+ * mapping and the number of objects read, per Dao. For a sample of requests the totals are sent back in a
+ * Server-Timing header, where browser developer tools will show them, and requests that take longer than the slow
+ * threshold are logged with their totals.
+ *
+ * Operations are collected on the request's thread, from this request filter until the resource method returns, so
+ * work done by asynchronous resources on other threads is not counted; nor is any lazy iterable that is only read
+ * while the response body is being written. The filter is also a Jersey event listener, so that the thread's listener
+ * is removed on the request thread even when the response filters never run, such as for an unmapped exception or
+ * an asynchronous response.
+ */
+public class DaoTimingFilter implements ContainerRequestFilter, ContainerResponseFilter, ApplicationEventListener {
+    public static final String SERVER_TIMING = "Server-Timing";
+    public static final String STATS_PROPERTY = DaoTimingFilter.class.getName() + ".stats";
+    private static final String SCOPE_PROPERTY = DaoTimingFilter.class.getName() + ".scope";
+    private static final String START_PROPERTY = DaoTimingFilter.class.getName() + ".start";
+    private static final String SAMPLED_PROPERTY = DaoTimingFilter.class.getName() + ".sampled";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoTimingFilter.class);
+
+    private final double sampleRate;
+    private final Duration slowThreshold;
+
+    /**
+     * Create a filter that adds a Server-Timing header to every request, without logging slow requests.
+     */
+    public DaoTimingFilter() {
+        this(1.0, null);
+    }
+
+    /**
+     * Create a filter.
+     * @param sampleRate    fraction of requests, from 0 to 1, that get a Server-Timing header
+     * @param slowThreshold requests taking longer than this are logged, or null to not log slow requests
+     */
+    public DaoTimingFilter(double sampleRate, Duration slowThreshold) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+        this.slowThreshold = slowThreshold;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        boolean sampled = sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        if (!sampled && slowThreshold == null) {
+            return;
+        }
+        RequestDaoStats stats = new RequestDaoStats();
+        request.setProperty(STATS_PROPERTY, stats);
+        request.setProperty(SAMPLED_PROPERTY, sampled);
+        request.setProperty(START_PROPERTY, System.nanoTime());
+        request.setProperty(SCOPE_PROPERTY, DaoMetrics.listen(stats));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        RequestDaoStats stats = (RequestDaoStats)request.getProperty(STATS_PROPERTY);
+        if (stats == null) {
+            return;
+        }
+        closeScope(request);
+        long elapsed = System.nanoTime() - (Long)request.getProperty(START_PROPERTY);
+
+        if (Boolean.TRUE.equals(request.getProperty(SAMPLED_PROPERTY)) && !stats.isEmpty()) {
+            response.getHeaders().add(SERVER_TIMING, stats.toServerTiming());
+        }
+        if (slowThreshold != null && elapsed > slowThreshold.toNanos()) {
+            LOGGER.warn("Slow request: {} /{} took {}ms ({})", request.getMethod(), request.getUriInfo().getPath(),
+                    RequestDaoStats.toMillis(elapsed), stats);
+        }
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        return requestEvent -> {
+            if (requestEvent.getType() == RequestEvent.Type.RESOURCE_METHOD_FINISHED
+                    || requestEvent.getType() == RequestEvent.Type.FINISHED) {
+                closeScope(requestEvent.getContainerRequest());
+            }
+        };
+    }
+
+    /**
+     * Remove the request's listener from the current thread. This does nothing if the scope is already closed, or
+     * was opened on another thread.
+     */
+    private void closeScope(ContainerRequestContext request) {
+        DaoMetrics.Scope scope = (DaoMetrics.Scope)request.getProperty(SCOPE_PROPERTY);
+        if (scope != null) {
+            scope.close();
+        }
+    }
+}
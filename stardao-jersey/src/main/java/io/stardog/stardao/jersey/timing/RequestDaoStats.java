@@ -0,0 +1,116 @@
+package io.stardog.stardao.jersey.timing;
+
+import io.stardog.stardao.core.metrics.DaoListener;
+import io.stardog.stardao.core.metrics.DaoOperation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Accumulates the Dao operations made while handling a single request, totalled per Dao in the order the Daos were
+ * first used. It is registered for the request's thread by DaoTimingFilter, but can be used with DaoMetrics.listen()
+ * anywhere else a unit of work should be accounted for.
+ */
+public class RequestDaoStats implements DaoListener {
+    private final Map<String,DaoTotals> totals = new LinkedHashMap<>();
+
+    @Override
+    public void onOperation(DaoOperation operation) {
+        DaoTotals dao = getOrCreate(operation.getDaoName());
+        dao.calls++;
+        dao.backendNanos += operation.getBackendNanos();
+        dao.mapperNanos += operation.getMapperNanos();
+        dao.itemCount += operation.getItemCount();
+    }
+
+    @Override
+    public void onMapping(String daoName, long nanos, int itemCount) {
+        DaoTotals dao = getOrCreate(daoName);
+        dao.mapperNanos += nanos;
+        dao.itemCount += itemCount;
+    }
+
+    /**
+     * The totals for each Dao used, by Dao name.
+     * @return  totals by dao name
+     */
+    public Map<String,DaoTotals> getTotals() {
+        return Collections.unmodifiableMap(totals);
+    }
+
+    public boolean isEmpty() {
+        return totals.isEmpty();
+    }
+
+    /**
+     * Format the totals as the value of a Server-Timing header, with a database and a mapping entry per Dao, such as:
+     *    UserDao-db;dur=12.5;desc="3 calls, 40 items", UserDao-map;dur=1.2
+     * @return  header value
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,DaoTotals> e : totals.entrySet()) {
+            DaoTotals dao = e.getValue();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append("-db;dur=").append(toMillis(dao.backendNanos))
+                    .append(";desc=\"").append(dao.calls).append(dao.calls == 1 ? " call, " : " calls, ")
+                    .append(dao.itemCount).append(dao.itemCount == 1 ? " item\"" : " items\"");
+            sb.append(", ").append(e.getKey()).append("-map;dur=").append(toMillis(dao.mapperNanos));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,DaoTotals> e : totals.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    private DaoTotals getOrCreate(String daoName) {
+        return totals.computeIfAbsent(daoName, n -> new DaoTotals());
+    }
+
+    static String toMillis(long nanos) {
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+
+    /**
+     * The totals for one Dao.
+     */
+    public static class DaoTotals {
+        private int calls;
+        private long backendNanos;
+        private long mapperNanos;
+        private long itemCount;
+
+        public int getCalls() {
+            return calls;
+        }
+
+        public long getBackendNanos() {
+            return backendNanos;
+        }
+
+        public long getMapperNanos() {
+            return mapperNanos;
+        }
+
+        public long getItemCount() {
+            return itemCount;
+        }
+
+        @Override
+        public String toString() {
+            return calls + " calls, " + itemCount + " items, db " + toMillis(backendNanos) + "ms, map " + toMillis(mapperNanos) + "ms";
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.stardog.stardao.jersey;
+
+import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.Condition;
+import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.UpsertResult;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public class TestDao extends AbstractDao<TestModel,TestModel,String,String> {
+    public TestDao() {
+        super(TestModel.class, TestModel.class);
+    }
+
+    @Override
+    public TestModel load(String id) {
+        return null;
+    }
+
+    @Override
+    public Optional<TestModel> loadOpt(String id) {
+        return null;
+    }
+
+    @Override
+    public Optional<TestModel> loadOpt(String id, Iterable<String> fields) {
+        return null;
+    }
+
+    @Override
+    public TestModel create(TestModel model, Instant createAt, String createBy) {
+        return null;
+    }
+
+    @Override
+    public void update(String id, Update<TestModel> update, Instant updateAt, String updateBy) {
+
+    }
+
+    @Override
+    public TestModel updateAndReturn(String id, Update<TestModel> update, Instant updateAt, String updateBy) {
+        return null;
+    }
+
+    @Override
+    public TestModel updateAndReturnNew(String id, Update<TestModel> update, Instant updateAt, String updateBy) {
+        return null;
+    }
+
+    @Override
+    public TestModel updateAndReturnUpdated(String id, Update<TestModel> update, Instant updateAt, String updateBy) {
+        return null;
+    }
+
+    @Override
+    public boolean updateIf(String id, Condition condition, Update<TestModel> update, Instant updateAt, String updateBy) {
+        return false;
+    }
+
+    @Override
+    public UpsertResult<TestModel> upsert(String id, TestModel partial, Update<TestModel> update, Instant upsertAt, String upsertBy) {
+        return null;
+    }
+
+    @Override
+    public void delete(String id) {
+
+    }
+
+    @Override
+    public Iterable<TestModel> iterateAll() {
+        return null;
+    }
+
+    @Override
+    public void initTable() {
+
+    }
+
+    @Override
+    public void dropTable() {
+
+    }
+}
@@ -0,0 +1,28 @@
+package io.stardog.stardao.jersey;
+
+import io.stardog.stardao.annotations.Id;
+
+public class TestModel {
+    @Id
+    private final String id;
+    private final String name;
+    private final String email;
+
+    public TestModel(String id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
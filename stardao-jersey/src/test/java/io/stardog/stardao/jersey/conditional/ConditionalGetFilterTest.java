@@ -0,0 +1,103 @@
+package io.stardog.stardao.jersey.conditional;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.Test;
+
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConditionalGetFilterTest {
+    private static final Instant UPDATED_AT = Instant.parse("2019-01-02T03:04:05.678Z");
+
+    private final ConditionalGetFilter filter = new ConditionalGetFilter();
+
+    @Test
+    public void testAddsHeaders() throws Exception {
+        ContainerResponseContext response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT));
+        filter.filter(request("GET", null, null), response);
+
+        assertEquals(ConditionalRequests.getEntityTag(UPDATED_AT), response.getHeaders().getFirst(HttpHeaders.ETAG));
+        assertEquals(ConditionalRequests.getLastModified(UPDATED_AT), response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+        verify(response, never()).setStatus(anyInt());
+        verify(response, never()).setEntity(any());
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+        String tag = "W/\"" + UPDATED_AT + "\"";
+        ContainerResponseContext response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT));
+        filter.filter(request("GET", HttpHeaders.IF_NONE_MATCH, tag), response);
+        verify(response).setStatus(304);
+        verify(response).setEntity(null);
+
+        // a tag from an older version of the object
+        response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT.plusMillis(1)));
+        filter.filter(request("GET", HttpHeaders.IF_NONE_MATCH, tag), response);
+        verify(response, never()).setStatus(anyInt());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws Exception {
+        // HTTP dates have a precision of one second, so the milliseconds of the update timestamp are ignored
+        ContainerResponseContext response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT));
+        filter.filter(request("GET", HttpHeaders.IF_MODIFIED_SINCE, httpDate(Instant.parse("2019-01-02T03:04:05Z"))), response);
+        verify(response).setStatus(304);
+        verify(response).setEntity(null);
+
+        response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT));
+        filter.filter(request("GET", HttpHeaders.IF_MODIFIED_SINCE, httpDate(Instant.parse("2019-01-02T03:04:04Z"))), response);
+        verify(response, never()).setStatus(anyInt());
+    }
+
+    @Test
+    public void testIgnored() throws Exception {
+        String tag = "W/\"" + UPDATED_AT + "\"";
+        ContainerResponseContext response = response(ConditionalRequestsTest.TestModel.of(UPDATED_AT));
+        filter.filter(request("PUT", HttpHeaders.IF_NONE_MATCH, tag), response);
+        assertTrue(response.getHeaders().isEmpty());
+        verify(response, never()).setStatus(anyInt());
+
+        response = response("not a model");
+        filter.filter(request("GET", HttpHeaders.IF_NONE_MATCH, tag), response);
+        assertTrue(response.getHeaders().isEmpty());
+        verify(response, never()).setStatus(anyInt());
+    }
+
+    private ContainerRequest request(String method, String header, String value) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+                URI.create("http://localhost/users/1"), method, null, new MapPropertiesDelegate());
+        if (header != null) {
+            request.header(header, value);
+        }
+        return request;
+    }
+
+    private ContainerResponseContext response(Object entity) {
+        MultivaluedMap<String,Object> headers = new MultivaluedHashMap<>();
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        when(response.getStatus()).thenReturn(200);
+        when(response.hasEntity()).thenReturn(true);
+        when(response.getEntity()).thenReturn(entity);
+        when(response.getHeaders()).thenReturn(headers);
+        return response;
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,116 @@
+package io.stardog.stardao.jersey.conditional;
+
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.annotations.UpdatedAt;
+import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.Condition;
+import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.field.FieldScanner;
+import io.stardog.stardao.exceptions.DataNotFoundException;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConditionalRequestsTest {
+    private static final Instant UPDATED_AT = Instant.parse("2019-01-02T03:04:05.678Z");
+
+    @Test
+    public void testGetUpdatedAt() {
+        assertEquals(Optional.of(UPDATED_AT), ConditionalRequests.getUpdatedAt(TestModel.of(UPDATED_AT)));
+        assertEquals(Optional.empty(), ConditionalRequests.getUpdatedAt(TestModel.of(null)));
+        assertEquals(Optional.empty(), ConditionalRequests.getUpdatedAt("not a model"));
+
+        // a model that cannot be scanned gets no ETag rather than failing the request
+        assertEquals(Optional.empty(), ConditionalRequests.getUpdatedAt(new InvalidModel()));
+    }
+
+    @Test
+    public void testEntityTag() {
+        EntityTag tag = ConditionalRequests.getEntityTag(UPDATED_AT);
+        assertTrue(tag.isWeak());
+        assertEquals(Optional.of(UPDATED_AT), ConditionalRequests.parseEntityTag("W/\"" + tag.getValue() + "\""));
+        assertEquals(Optional.of(UPDATED_AT), ConditionalRequests.parseEntityTag("\"" + tag.getValue() + "\""));
+        assertEquals(Optional.empty(), ConditionalRequests.parseEntityTag("\"abc\""));
+        assertEquals(Optional.empty(), ConditionalRequests.parseEntityTag(tag.getValue()));
+    }
+
+    @Test
+    public void testGetLastModified() {
+        assertEquals(Date.from(Instant.parse("2019-01-02T03:04:05Z")), ConditionalRequests.getLastModified(UPDATED_AT));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdateIfMatch() {
+        AbstractDao<TestModel,TestModel,String,String> dao = mock(AbstractDao.class);
+        when(dao.getFieldData()).thenReturn(FieldScanner.getFieldData(TestModel.class));
+        when(dao.getDisplayModelName()).thenReturn("TestModel");
+        Update<TestModel> update = Update.of(TestModel.of(null), ImmutableSet.of());
+        String tag = "W/\"" + UPDATED_AT + "\"";
+
+        when(dao.updateIf(eq("current"), eq(Condition.equalTo("updatedAt", UPDATED_AT)), eq(update), eq("bob"))).thenReturn(true);
+        ConditionalRequests.updateIfMatch(tag, dao, "current", update, "bob");
+
+        // the object has changed since the client loaded it
+        when(dao.loadOpt(eq("changed"), any())).thenReturn(Optional.of(TestModel.of(UPDATED_AT.plusMillis(1))));
+        try {
+            ConditionalRequests.updateIfMatch(tag, dao, "changed", update, "bob");
+            fail("Expected WebApplicationException");
+        } catch (WebApplicationException e) {
+            assertEquals(412, e.getResponse().getStatus());
+        }
+
+        // the object does not exist
+        when(dao.loadOpt(eq("missing"), any())).thenReturn(Optional.empty());
+        try {
+            ConditionalRequests.updateIfMatch(tag, dao, "missing", update, "bob");
+            fail("Expected DataNotFoundException");
+        } catch (DataNotFoundException e) {
+            assertEquals("TestModel not found: missing", e.getMessage());
+        }
+
+        // without an If-Match header the update is unconditional
+        ConditionalRequests.updateIfMatch(null, dao, "missing", update, "bob");
+        verify(dao).update("missing", update, "bob");
+    }
+
+    /**
+     * Laid out like an AutoValue model: the annotated getter is abstract, and implemented by a subclass.
+     */
+    public abstract static class TestModel {
+        @UpdatedAt
+        public abstract Instant getUpdatedAt();
+
+        public static TestModel of(Instant updatedAt) {
+            return new TestModel() {
+                @Override
+                public Instant getUpdatedAt() {
+                    return updatedAt;
+                }
+            };
+        }
+    }
+
+    public static class InvalidModel {
+        @UpdatedAt
+        public Instant getUpdatedAt() {
+            return UPDATED_AT;
+        }
+
+        @UpdatedAt
+        public Instant getModifiedAt() {
+            return UPDATED_AT;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.stardog.stardao.jersey.exceptionmappers;
+
+import io.stardog.stardao.exceptions.DataConflictException;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DataConflictExceptionMapperTest {
+    @Test
+    public void toResponse() throws Exception {
+        DataConflictExceptionMapper mapper = new DataConflictExceptionMapper();
+        Response response = mapper.toResponse(new DataConflictException("version conflict"));
+        assertEquals(409, response.getStatus());
+        assertEquals("application/json", response.getMediaType().toString());
+        @SuppressWarnings("unchecked")
+        Map<String,Object> map = (Map<String,Object>)response.getEntity();
+        assertEquals(409, map.get("code"));
+        assertEquals("version conflict", map.get("message"));
+    }
+}
@@ -0,0 +1,66 @@
+package io.stardog.stardao.jersey.ingest;
+
+import com.google.common.collect.ImmutableList;
+import io.stardog.stardao.exceptions.DataConflictException;
+import io.stardog.stardao.jersey.TestDao;
+import io.stardog.stardao.jersey.TestModel;
+import io.stardog.stardao.validation.ModelValidator;
+import io.stardog.stardao.validation.ValidationError;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BulkIngesterTest {
+    private final TestDao dao = new TestDao() {
+        @Override
+        public TestModel create(TestModel model, Instant createAt, String createBy) {
+            if (model.getName().startsWith("dup")) {
+                throw new DataConflictException("Duplicate " + model.getName());
+            }
+            return new TestModel("id-" + model.getName(), model.getName(), model.getEmail());
+        }
+    };
+
+    @Test
+    public void testIngestMixedBatch() throws Exception {
+        ModelValidator validator = mock(ModelValidator.class);
+        when(validator.getCreateValidationErrors(any(), any())).thenReturn(ImmutableList.of());
+        when(validator.getCreateValidationErrors(argThat(p -> p != null && ((TestModel)p).getEmail() == null), any()))
+                .thenReturn(ImmutableList.of(ValidationError.of("email", "may not be null")));
+
+        List<IngestRecord<TestModel>> records = ImmutableList.of(
+                IngestRecord.of(1, new TestModel(null, "a", "a@example.com")),
+                IngestRecord.error(2, "Unexpected end of input"),
+                IngestRecord.of(3, new TestModel(null, "b", null)),
+                IngestRecord.of(5, new TestModel(null, "dup1", "dup1@example.com")),
+                IngestRecord.of(6, new TestModel(null, "c", "c@example.com")),
+                IngestRecord.of(7, new TestModel(null, "dup2", "dup2@example.com")),
+                IngestRecord.of(8, new TestModel(null, "d", "d@example.com")));
+        BulkIngester<TestModel,TestModel,String> ingester = new BulkIngester<>(dao, validator, 5);
+        List<IngestResult<TestModel>> results = new ArrayList<>();
+        for (IngestResult<TestModel> result : ingester.ingest(new IngestRequest<>(records.iterator()), null)) {
+            results.add(result);
+        }
+
+        assertEquals(records.size(), results.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getLine(), results.get(i).getLine());
+        }
+        assertEquals("id-a", results.get(0).getCreated().getId());
+        assertEquals(ImmutableList.of(ValidationError.of("", "Unexpected end of input")), results.get(1).getErrors());
+        assertEquals(ImmutableList.of(ValidationError.of("email", "may not be null")), results.get(2).getErrors());
+        assertNull(results.get(3).getCreated());
+        assertEquals(ImmutableList.of(ValidationError.of("", "Duplicate dup1")), results.get(3).getErrors());
+        assertEquals("id-c", results.get(4).getCreated().getId());
+        assertEquals(ImmutableList.of(ValidationError.of("", "Duplicate dup2")), results.get(5).getErrors());
+        assertEquals("id-d", results.get(6).getCreated().getId());
+    }
+}
@@ -0,0 +1,91 @@
+package io.stardog.stardao.jersey.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.stardog.stardao.jersey.streaming.StreamingResultsWriter;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IngestReaderTest {
+    private static final Type MAP_REQUEST = TypeFactory.defaultInstance()
+            .constructParametricType(IngestRequest.class, Map.class);
+
+    private final IngestReader reader = new IngestReader(new ObjectMapper());
+
+    @Test
+    public void testIsReadable() {
+        assertTrue(reader.isReadable(IngestRequest.class, MAP_REQUEST, null, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(reader.isReadable(IngestRequest.class, MAP_REQUEST, null, StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+        assertFalse(reader.isReadable(IngestRequest.class, MAP_REQUEST, null, MediaType.TEXT_PLAIN_TYPE));
+        assertFalse(reader.isReadable(Map.class, Map.class, null, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testReadNdjson() throws Exception {
+        List<IngestRecord<?>> records = read("{\"name\":\"a\"}\n\n{\"name\":\n{\"name\":\"c\"}\n",
+                StreamingResultsWriter.APPLICATION_NDJSON_TYPE);
+        assertEquals(3, records.size());
+        assertEquals(1, records.get(0).getLine());
+        assertEquals("a", ((Map<?,?>)records.get(0).getPartial()).get("name"));
+        assertEquals(3, records.get(1).getLine());
+        assertTrue(records.get(1).isError());
+        assertEquals(4, records.get(2).getLine());
+        assertEquals("c", ((Map<?,?>)records.get(2).getPartial()).get("name"));
+    }
+
+    @Test
+    public void testReadJsonArray() throws Exception {
+        List<IngestRecord<?>> records = read("[{\"name\":\"a\"}, 5, {\"name\":\"c\"}]", MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(3, records.size());
+        assertEquals("a", ((Map<?,?>)records.get(0).getPartial()).get("name"));
+        assertEquals(2, records.get(1).getLine());
+        assertEquals("Expected a JSON object", records.get(1).getError());
+        assertEquals(3, records.get(2).getLine());
+        assertEquals("c", ((Map<?,?>)records.get(2).getPartial()).get("name"));
+    }
+
+    @Test
+    public void testReadMalformedJsonArray() throws Exception {
+        List<IngestRecord<?>> records = read("[{\"name\":\"a\"}, {\"name\" 1}, {\"name\":\"c\"}]", MediaType.APPLICATION_JSON_TYPE);
+        assertEquals(2, records.size());
+        assertFalse(records.get(0).isError());
+        assertTrue(records.get(1).isError());
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testReadNotArray() throws Exception {
+        read("{\"name\":\"a\"}", MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIterateOnce() throws Exception {
+        IngestRequest<?> request = readRequest("{}\n", StreamingResultsWriter.APPLICATION_NDJSON_TYPE);
+        request.iterator();
+        request.iterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private IngestRequest<?> readRequest(String body, MediaType mediaType) throws Exception {
+        Class<IngestRequest<?>> type = (Class)IngestRequest.class;
+        return reader.readFrom(type, MAP_REQUEST, null, mediaType, null,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<IngestRecord<?>> read(String body, MediaType mediaType) throws Exception {
+        List<IngestRecord<?>> records = new ArrayList<>();
+        for (IngestRecord<?> record : readRequest(body, mediaType)) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,37 @@
+package io.stardog.stardao.jersey.params;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.stardog.stardao.exceptions.DataValidationException;
+import io.stardog.stardao.jersey.TestDao;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FieldsParamTest {
+    private final TestDao dao = new TestDao();
+
+    @Test
+    public void testParse() {
+        assertEquals(ImmutableList.of("name", "email"), new FieldsParam("name, email,").getFields());
+        assertEquals(ImmutableList.of(), new FieldsParam("").getFields());
+        assertEquals("name,email", new FieldsParam(" name ,email").toString());
+    }
+
+    @Test
+    public void testToFieldSet() {
+        assertEquals(ImmutableSet.of("id", "email"), new FieldsParam("email").toFieldSet(dao));
+    }
+
+    @Test
+    public void testToFieldSetUnknown() {
+        try {
+            new FieldsParam("name,password,secret").toFieldSet(dao);
+            fail("Expected DataValidationException");
+        } catch (DataValidationException e) {
+            assertEquals(2, e.getErrors().size());
+            assertEquals("fields", e.getErrors().get(0).getField());
+            assertEquals("unknown field: password", e.getErrors().get(0).getMessage());
+        }
+    }
+}
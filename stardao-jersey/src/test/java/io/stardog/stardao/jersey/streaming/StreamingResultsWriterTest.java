@@ -0,0 +1,97 @@
+package io.stardog.stardao.jersey.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.stardog.stardao.core.DaoIterable;
+import io.stardog.stardao.core.Results;
+import io.stardog.stardao.core.StreamingResults;
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StreamingResultsWriterTest {
+    private final StreamingResultsWriter writer = new StreamingResultsWriter(new ObjectMapper().registerModule(new Jdk8Module()), 1);
+
+    @Test
+    public void testIsWriteable() throws Exception {
+        assertTrue(writer.isWriteable(StreamingResults.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writer.isWriteable(DaoIterable.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writer.isWriteable(DaoIterable.class, null, null, StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+        assertFalse(writer.isWriteable(Iterable.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(JsonNode.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(ObjectNode.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(writer.isWriteable(Results.class, null, null, StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+        assertFalse(writer.isWriteable(Results.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(List.class, null, null, MediaType.APPLICATION_JSON_TYPE));
+        assertFalse(writer.isWriteable(DaoIterable.class, null, null, MediaType.TEXT_PLAIN_TYPE));
+    }
+
+    @Test
+    public void testWriteJson() throws Exception {
+        List<Map<String,Object>> data = ImmutableList.of(ImmutableMap.of("id", 1), ImmutableMap.of("id", 2));
+        StreamingResults<Map<String,Object>,Integer> results = StreamingResults.of(data, () -> 3);
+        assertEquals("{\"data\":[{\"id\":1},{\"id\":2}],\"next\":3}", write(results, MediaType.APPLICATION_JSON_TYPE));
+
+        assertEquals("{\"data\":[{\"id\":1},{\"id\":2}]}", write(StreamingResults.of(data), MediaType.APPLICATION_JSON_TYPE));
+
+        Iterable<Map<String,Object>> iterable = DaoIterable.of(data);
+        assertEquals("[{\"id\":1},{\"id\":2}]", write(iterable, MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    @Test
+    public void testWriteNdjson() throws Exception {
+        List<Map<String,Object>> data = ImmutableList.of(ImmutableMap.of("id", 1), ImmutableMap.of("id", 2));
+        assertEquals("{\"id\":1}\n{\"id\":2}\n{\"next\":3}\n",
+                write(StreamingResults.of(data, () -> 3), StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+        assertEquals("{\"id\":1}\n{\"id\":2}\n", write(Results.of(data), StreamingResultsWriter.APPLICATION_NDJSON_TYPE));
+    }
+
+    @Test
+    public void testClosesCursor() throws Exception {
+        ClosingIterator iterator = new ClosingIterator(ImmutableList.of("a", "b").iterator());
+        Iterable<String> iterable = new DaoIterable<>(() -> iterator);
+        assertEquals("[\"a\",\"b\"]", write(iterable, MediaType.APPLICATION_JSON_TYPE));
+        assertTrue(iterator.closed);
+    }
+
+    private String write(Object entity, MediaType mediaType) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(entity, entity.getClass(), null, null, mediaType, null, out);
+        return out.toString("UTF-8");
+    }
+
+    private static class ClosingIterator implements Iterator<String>, Closeable {
+        private final Iterator<String> iterator;
+        private boolean closed;
+
+        ClosingIterator(Iterator<String> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public String next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
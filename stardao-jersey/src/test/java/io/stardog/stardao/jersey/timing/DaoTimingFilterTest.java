@@ -0,0 +1,144 @@
+package io.stardog.stardao.jersey.timing;
+
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.DaoOperation;
+import io.stardog.stardao.core.metrics.OperationType;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.junit.Test;
+
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DaoTimingFilterTest {
+    @Test
+    public void testServerTiming() throws Exception {
+        DaoTimingFilter filter = new DaoTimingFilter();
+        ContainerRequest request = request();
+        filter.filter(request);
+        assertTrue(DaoMetrics.isEnabled());
+
+        try (AutoCloseable timer = DaoMetrics.startOperation("UserDao", OperationType.QUERY, "findByQuery")) {
+            DaoMetrics.recordMapping("UserDao", 1500000, 2);
+        }
+        DaoMetrics.recordMapping("UserDao", 500000, 1);
+
+        MultivaluedMap<String,Object> headers = new MultivaluedHashMap<>();
+        filter.filter(request, response(headers));
+        assertFalse(DaoMetrics.isEnabled());
+
+        String timing = (String)headers.getFirst(DaoTimingFilter.SERVER_TIMING);
+        assertTrue(timing, timing.startsWith("UserDao-db;dur="));
+        assertTrue(timing, timing.contains(";desc=\"1 call, 3 items\", UserDao-map;dur=2.0"));
+    }
+
+    @Test
+    public void testNotSampled() throws Exception {
+        DaoTimingFilter filter = new DaoTimingFilter(0, null);
+        ContainerRequest request = request();
+        filter.filter(request);
+        assertFalse(DaoMetrics.isEnabled());
+
+        MultivaluedMap<String,Object> headers = new MultivaluedHashMap<>();
+        filter.filter(request, response(headers));
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void testSlowThresholdOnly() throws Exception {
+        DaoTimingFilter filter = new DaoTimingFilter(0, Duration.ofSeconds(5));
+        ContainerRequest request = request();
+        filter.filter(request);
+        assertTrue(DaoMetrics.isEnabled());
+
+        MultivaluedMap<String,Object> headers = new MultivaluedHashMap<>();
+        filter.filter(request, response(headers));
+        assertTrue(headers.isEmpty());
+        assertFalse(DaoMetrics.isEnabled());
+        assertNotNull(request.getProperty(DaoTimingFilter.STATS_PROPERTY));
+    }
+
+    @Test
+    public void testListenerRemovedOnRequestThread() throws Exception {
+        DaoTimingFilter filter = new DaoTimingFilter();
+        ContainerRequest request = request();
+        RequestEventListener events = filter.onRequest(event(RequestEvent.Type.START, request));
+        filter.filter(request);
+        events.onEvent(event(RequestEvent.Type.REQUEST_FILTERED, request));
+        assertTrue(DaoMetrics.isEnabled());
+
+        // the listener is removed once the resource method returns, even if the response filters never run here
+        events.onEvent(event(RequestEvent.Type.RESOURCE_METHOD_FINISHED, request));
+        assertFalse(DaoMetrics.isEnabled());
+        events.onEvent(event(RequestEvent.Type.FINISHED, request));
+        assertFalse(DaoMetrics.isEnabled());
+
+        // a request that is aborted before its resource method is cleaned up when it finishes
+        request = request();
+        events = filter.onRequest(event(RequestEvent.Type.START, request));
+        filter.filter(request);
+        events.onEvent(event(RequestEvent.Type.FINISHED, request));
+        assertFalse(DaoMetrics.isEnabled());
+
+        // response filters on another thread leave the request thread's listeners alone
+        request = request();
+        filter.filter(request);
+        ContainerRequest asyncRequest = request;
+        MultivaluedMap<String,Object> headers = new MultivaluedHashMap<>();
+        Thread responseThread = new Thread(() -> filter.filter(asyncRequest, response(headers)));
+        responseThread.start();
+        responseThread.join();
+        assertTrue(DaoMetrics.isEnabled());
+        filter.filter(request, response(headers));
+        assertFalse(DaoMetrics.isEnabled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSampleRate() throws Exception {
+        new DaoTimingFilter(1.5, null);
+    }
+
+    @Test
+    public void testRequestDaoStats() throws Exception {
+        RequestDaoStats stats = new RequestDaoStats();
+        stats.onOperation(DaoOperation.builder()
+                .daoName("UserDao").type(OperationType.LOAD).name("loadOpt")
+                .nanos(3000000).mapperNanos(1000000).itemCount(1)
+                .build());
+        stats.onOperation(DaoOperation.builder()
+                .daoName("OrderDao").type(OperationType.CREATE).name("create")
+                .nanos(2000000)
+                .build());
+
+        assertEquals("UserDao-db;dur=2.0;desc=\"1 call, 1 item\", UserDao-map;dur=1.0, "
+                + "OrderDao-db;dur=2.0;desc=\"1 call, 0 items\", OrderDao-map;dur=0.0", stats.toServerTiming());
+        assertEquals(1, stats.getTotals().get("UserDao").getCalls());
+    }
+
+    private ContainerRequest request() {
+        return new ContainerRequest(URI.create("http://localhost/"), URI.create("http://localhost/users"), "GET",
+                null, new MapPropertiesDelegate());
+    }
+
+    private ContainerResponseContext response(MultivaluedMap<String,Object> headers) {
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        when(response.getHeaders()).thenReturn(headers);
+        return response;
+    }
+
+    private RequestEvent event(RequestEvent.Type type, ContainerRequest request) {
+        RequestEvent event = mock(RequestEvent.class);
+        when(event.getType()).thenReturn(type);
+        when(event.getContainerRequest()).thenReturn(request);
+        return event;
+    }
+}
@@ -1,31 +1,66 @@
 package io.stardog.stardao.mongodb;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.result.UpdateResult;
 import io.stardog.stardao.core.AbstractDao;
+import io.stardog.stardao.core.Condition;
 import io.stardog.stardao.core.Results;
 import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.UpsertResult;
 import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.guard.ResultGuard;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.OperationTimer;
+import io.stardog.stardao.core.metrics.OperationType;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.exceptions.DataConflictException;
 import io.stardog.stardao.exceptions.DataNotFoundException;
 import io.stardog.stardao.mongodb.mapper.DocumentMapper;
+import io.stardog.stardao.mongodb.mapper.MeasuredDocumentMapper;
 import io.stardog.stardao.mongodb.mapper.jackson.JacksonDocumentMapper;
+import io.stardog.stardao.mongodb.monitor.QueryMonitor;
+import io.stardog.stardao.mongodb.monitor.QueryShape;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
     private final MongoCollection<Document> collection;
     private final DocumentMapper<M> modelMapper;
     private final DocumentMapper<P> partialMapper;
+    private final AtomicInteger openCursorCount = new AtomicInteger();
+    private QueryMonitor queryMonitor;
     public static final String ID_FIELD = "_id";
 
     public AbstractMongoDao(Class<M> modelClass, Class<P> partialClass, MongoCollection<Document> collection) {
@@ -33,6 +68,8 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         this.collection = collection;
         this.modelMapper = new JacksonDocumentMapper<>(modelClass, getFieldData());
         this.partialMapper = new JacksonDocumentMapper<>(partialClass, getFieldData());
+
+        recordStartup();
     }
 
     public AbstractMongoDao(Class<M> modelClass, Class<P> partialClass, MongoCollection<Document> collection, ObjectMapper objectMapper, ObjectMapper extendedJsonMapper) {
@@ -40,6 +77,8 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         this.collection = collection;
         this.modelMapper = new JacksonDocumentMapper<>(modelClass, getFieldData(), objectMapper, extendedJsonMapper);
         this.partialMapper = new JacksonDocumentMapper<>(partialClass, getFieldData(), objectMapper, extendedJsonMapper);
+
+        recordStartup();
     }
 
     public AbstractMongoDao(Class<M> modelClass, Class<P> partialClass, MongoCollection<Document> collection,
@@ -48,6 +87,8 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         this.collection = collection;
         this.modelMapper = modelMapper;
         this.partialMapper = partialMapper;
+
+        recordStartup();
     }
 
     /**
@@ -60,7 +101,7 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         Field id = fieldData.getId();
         if (id != null) {
             id = id.toBuilder().storageName(ID_FIELD).build();
-            Map<String,Field> fieldMap = new HashMap<>();
+            Map<String,Field> fieldMap = new LinkedHashMap<>();
             fieldMap.putAll(fieldData.getMap());
             fieldMap.put(id.getName(), id);
             fieldData = fieldData.toBuilder().id(id).map(fieldMap).build();
@@ -84,10 +125,59 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         return partialMapper;
     }
 
+    /**
+     * Wrap a mapper to report its mapping time, and the number of documents read, to DaoMetrics, if anything is
+     * listening. The mappers themselves are kept as given, so getModelMapper() returns the mapper passed in.
+     */
+    private <T> DocumentMapper<T> measured(DocumentMapper<T> mapper) {
+        return DaoMetrics.isEnabled() ? new MeasuredDocumentMapper<>(mapper, getMetricsName()) : mapper;
+    }
+
     protected Object generateId() {
         return new ObjectId();
     }
 
+    /**
+     * Monitor the ad hoc queries of this dao (loadByQuery, iterateByQuery and findByQuery) by query shape,
+     * explaining any that are slow.
+     * @param queryMonitor  monitor, or null to stop monitoring
+     */
+    public void setQueryMonitor(QueryMonitor queryMonitor) {
+        this.queryMonitor = queryMonitor;
+    }
+
+    public QueryMonitor getQueryMonitor() {
+        return queryMonitor;
+    }
+
+    /**
+     * Find the query shapes seen by the query monitor that none of the indexes in getIndexes() can serve.
+     * @return  query shapes without a usable index, or an empty list if there is no query monitor
+     */
+    public List<QueryShape> getUnindexedQueryShapes() {
+        if (queryMonitor == null) {
+            return ImmutableList.of();
+        }
+        return queryMonitor.getUnindexedShapes(getCollectionName(), getIndexes());
+    }
+
+    /**
+     * Read the first document found by a query, reporting the query to the query monitor if there is one.
+     * @param find  documents found by the query
+     * @param query MongoDB query
+     * @param sort  MongoDB sort, or null
+     * @return  first document, or null if none was found
+     */
+    protected Document findFirst(FindIterable<Document> find, Bson query, Bson sort) {
+        if (queryMonitor == null) {
+            return find.limit(1).first();
+        }
+        long start = System.nanoTime();
+        Document doc = find.limit(1).first();
+        queryMonitor.record(getCollection(), query, sort, null, 1, System.nanoTime() - start);
+        return doc;
+    }
+
     /**
      * Load an object that might not exist by id. Will return empty Optional if the document is not present.
      * @param id    primary key value
@@ -95,9 +185,11 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      */
     @Override
     public Optional<M> loadOpt(K id) {
-        Document query = new Document(ID_FIELD, id);
-        Document doc = getCollection().find(query).limit(1).first();
-        return Optional.ofNullable(modelMapper.toObject(doc));
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadOpt")) {
+            Document query = new Document(ID_FIELD, id);
+            Document doc = getCollection().find(query).limit(1).first();
+            return Optional.ofNullable(measured(modelMapper).toObject(doc));
+        }
     }
 
     /**
@@ -107,7 +199,21 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return
      */
     public Optional<P> loadOpt(K id, Iterable<String> fields) {
-        Document query = new Document(ID_FIELD, id);
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadOpt")) {
+            Document query = new Document(ID_FIELD, id);
+            Document doc = getCollection().find(query).projection(toProjection(fields)).limit(1).first();
+            return Optional.ofNullable(measured(partialMapper).toObject(doc));
+        }
+    }
+
+    /**
+     * Convert a set of model field names, such as the result of selectFields(), into a MongoDB projection that can
+     * be passed to the projected query methods.
+     * @param fields    names of top-level fields
+     * @return  MongoDB projection including the storage names of the fields
+     * @throws IllegalArgumentException if a name is not a field of the model
+     */
+    protected Document toProjection(Iterable<String> fields) {
         Document project = new Document();
         FieldData fieldData = getFieldData();
         for (String fieldName : fields) {
@@ -118,8 +224,7 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
             String storageName = internalField.getStorageName();
             project.append(storageName, 1);
         }
-        Document doc = getCollection().find(query).projection(project).limit(1).first();
-        return Optional.ofNullable(partialMapper.toObject(doc));
+        return project;
     }
 
     /**
@@ -140,15 +245,17 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @throws DataNotFoundException    if there is no object matching the query
      */
     protected M loadByQuery(Bson query, Bson sort) {
-        FindIterable<Document> find = getCollection().find(query);
-        if (sort != null) {
-            find.sort(sort);
-        }
-        Document doc = find.limit(1).first();
-        if (doc == null) {
-            throw new DataNotFoundException(getDisplayModelName() + " not found");
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadByQuery")) {
+            FindIterable<Document> find = getCollection().find(query);
+            if (sort != null) {
+                find.sort(sort);
+            }
+            Document doc = findFirst(find, query, sort);
+            if (doc == null) {
+                throw new DataNotFoundException(getDisplayModelName() + " not found");
+            }
+            return measured(modelMapper).toObject(doc);
         }
-        return modelMapper.toObject(doc);
     }
 
     /**
@@ -169,15 +276,17 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  Optional containing the found object
      */
     protected Optional<M> loadByQueryOpt(Bson query, Bson sort) {
-        FindIterable<Document> find = getCollection().find(query);
-        if (sort != null) {
-            find.sort(sort);
-        }
-        Document doc = find.limit(1).first();
-        if (doc == null) {
-            return Optional.empty();
+        try (OperationTimer timer = startOperation(OperationType.LOAD, "loadByQueryOpt")) {
+            FindIterable<Document> find = getCollection().find(query);
+            if (sort != null) {
+                find.sort(sort);
+            }
+            Document doc = findFirst(find, query, sort);
+            if (doc == null) {
+                return Optional.empty();
+            }
+            return Optional.of(measured(modelMapper).toObject(doc));
         }
-        return Optional.of(modelMapper.toObject(doc));
     }
 
     /**
@@ -187,7 +296,10 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results of model objects
      */
     protected Results<M,K> findByQuery(Bson query, Bson sort) {
-        return Results.of(iterateByQuery(query, sort));
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findByQuery")) {
+            checkQueryScan(query, "findByQuery");
+            return readResults(iterateByQuery(query, sort, null, measured(getModelMapper()), guardResults("findByQuery")));
+        }
     }
 
     /**
@@ -197,11 +309,8 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  iterable of model objects
      */
     protected Iterable<M> iterateByQuery(Bson query, Bson sort) {
-        FindIterable<Document> iterable = getCollection().find(query);
-        if (sort != null) {
-            iterable = iterable.sort(sort);
-        }
-        return iterable.map(doc -> getModelMapper().toObject(doc));
+        return timeIteration(OperationType.QUERY, "iterateByQuery",
+                iterateByQuery(query, sort, null, measured(getModelMapper()), ResultGuard.NONE));
     }
 
     /**
@@ -213,7 +322,10 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results of partial objects
      */
     protected Results<P,K> findByQuery(Bson query, Bson sort, Bson projection) {
-        return Results.of(iterateByQuery(query, sort, projection));
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findByQuery")) {
+            checkQueryScan(query, "findByQuery");
+            return readResults(iterateByQuery(query, sort, projection, measured(getPartialMapper()), guardResults("findByQuery")));
+        }
     }
 
     /**
@@ -225,6 +337,11 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  iterable of partial objects
      */
     protected Iterable<P> iterateByQuery(Bson query, Bson sort, Bson projection) {
+        return timeIteration(OperationType.QUERY, "iterateByQuery",
+                iterateByQuery(query, sort, projection, measured(getPartialMapper()), ResultGuard.NONE));
+    }
+
+    private <T> Iterable<T> iterateByQuery(Bson query, Bson sort, Bson projection, DocumentMapper<T> mapper, ResultGuard guard) {
         FindIterable<Document> iterable = getCollection().find(query);
         if (sort != null) {
             iterable = iterable.sort(sort);
@@ -232,12 +349,195 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
         if (projection != null) {
             iterable = iterable.projection(projection);
         }
-        return iterable.map(doc -> getPartialMapper().toObject(doc));
+        ToLongFunction<Document> sizer = this::getDocumentSize;
+        Function<Document,T> map = doc -> {
+            guard.add(doc, sizer);
+            return mapper.toObject(doc);
+        };
+        if (queryMonitor != null) {
+            return queryMonitor.iterate(getCollection(), iterable, query, sort, projection, map);
+        }
+        return iterable.map(map::apply);
+    }
+
+    /**
+     * Read every object found by a query into Results. The cursor is closed even if reading fails part way, for
+     * instance because the Guardrails reject the results, so that it is not left open on the server.
+     */
+    private <T> Results<T,K> readResults(Iterable<T> iterable) {
+        List<T> results = new ArrayList<>();
+        Iterator<T> iterator = iterable.iterator();
+        try {
+            while (iterator.hasNext()) {
+                results.add(iterator.next());
+            }
+        } finally {
+            if (iterator instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable)iterator).close();
+                } catch (Exception e) {
+                    // a cursor that cannot be closed here is closed by the server once it times out
+                }
+            }
+        }
+        return Results.of(results);
+    }
+
+    /**
+     * Check the Guardrails before running a query with an empty filter, which reads the whole collection.
+     * @param query MongoDB query
+     * @param operation name of the dao method
+     */
+    protected void checkQueryScan(Bson query, String operation) {
+        if (query == null
+                || (query instanceof Document && ((Document)query).isEmpty())
+                || (query instanceof BsonDocument && ((BsonDocument)query).isEmpty())) {
+            checkFullScan(operation);
+        }
+    }
+
+    /**
+     * Measure the stored size of a document, for the maxResultBytes of the Guardrails. This encodes the document,
+     * so it is only called when there is a byte limit.
+     * @param document  document
+     * @return  size in bytes
+     */
+    protected long getDocumentSize(Document document) {
+        return new RawBsonDocument(document, getCollection().getCodecRegistry().get(Document.class)).getByteBuffer().remaining();
+    }
+
+    /**
+     * Given a query and a sort, stream all documents that match the query in sorted order. The stream holds an open
+     * server cursor, so it must be closed, normally with try-with-resources:
+     *
+     *    try (Stream&lt;User&gt; users = streamByQuery(query, sort, CursorOptions.builder().batchSize(500).build())) {
+     *        users.limit(10).forEach(...);
+     *    }
+     *
+     * The cursor is also closed automatically once the stream has been fully consumed.
+     * @param query MongoDB query
+     * @param sort  MongoDB sort order
+     * @param options   cursor options (batch size, max time, cursor timeout)
+     * @return  stream of model objects
+     */
+    protected Stream<M> streamByQuery(Bson query, Bson sort, CursorOptions options) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "streamByQuery")) {
+            return stream(applyCursorOptions(getCollection().find(query), sort, null, options), measured(getModelMapper()));
+        }
+    }
+
+    /**
+     * Given a query, a sort, and a projection of fields to return, stream all documents as partials that match the
+     * query in sorted order. The stream must be closed; see streamByQuery(Bson, Bson, CursorOptions).
+     * @param query MongoDB query
+     * @param sort  MongoDB sort order
+     * @param projection    MongoDB projection
+     * @param options   cursor options (batch size, max time, cursor timeout)
+     * @return  stream of partial objects
+     */
+    protected Stream<P> streamByQuery(Bson query, Bson sort, Bson projection, CursorOptions options) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "streamByQuery")) {
+            return stream(applyCursorOptions(getCollection().find(query), sort, projection, options), measured(getPartialMapper()));
+        }
+    }
+
+    /**
+     * Stream through all objects in the collection. The stream must be closed; see
+     * streamByQuery(Bson, Bson, CursorOptions).
+     * @param options   cursor options (batch size, max time, cursor timeout)
+     * @return  stream of all model objects
+     */
+    public Stream<M> streamAll(CursorOptions options) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "streamAll")) {
+            checkFullScan("streamAll");
+            Stream<M> stream = stream(applyCursorOptions(getCollection().find(), null, null, options), measured(getModelMapper()));
+            return getGuardrails().getMaxScanRate() != null ? stream.peek(m -> throttleScan()) : stream;
+        }
+    }
+
+    /**
+     * Returns the number of cursors opened by the stream methods of this Dao that have not yet been closed.
+     * Useful for monitoring cursor leaks.
+     * @return  number of open cursors
+     */
+    public int getOpenCursorCount() {
+        return openCursorCount.get();
+    }
+
+    protected FindIterable<Document> applyCursorOptions(FindIterable<Document> iterable, Bson sort, Bson projection, CursorOptions options) {
+        if (sort != null) {
+            iterable = iterable.sort(sort);
+        }
+        if (projection != null) {
+            iterable = iterable.projection(projection);
+        }
+        if (options.getBatchSize() != null) {
+            iterable = iterable.batchSize(options.getBatchSize());
+        }
+        if (options.getMaxTime() != null) {
+            iterable = iterable.maxTime(options.getMaxTime().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (options.isNoCursorTimeout()) {
+            iterable = iterable.noCursorTimeout(true);
+        }
+        return iterable;
+    }
+
+    protected <T> Stream<T> stream(FindIterable<Document> iterable, DocumentMapper<T> mapper) {
+        MongoCursor<Document> cursor = iterable.iterator();
+        openCursorCount.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Runnable close = () -> {
+            if (closed.compareAndSet(false, true)) {
+                openCursorCount.decrementAndGet();
+                cursor.close();
+            }
+        };
+        Iterator<T> iterator = new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                if (closed.get()) {
+                    return false;
+                }
+                boolean hasNext = cursor.hasNext();
+                if (!hasNext) {
+                    close.run();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                if (closed.get()) {
+                    throw new NoSuchElementException();
+                }
+                return mapper.toObject(cursor.next());
+            }
+        };
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(close);
     }
 
     @Override
     public Iterable<M> iterateAll() {
-        return getCollection().find().map((d) -> modelMapper.toObject(d));
+        checkFullScan("iterateAll");
+        return timeIteration(OperationType.QUERY, "iterateAll", getCollection().find().map((d) -> {
+            throttleScan();
+            return measured(modelMapper).toObject(d);
+        }));
+    }
+
+    /**
+     * Iterate through all objects in the collection, reading only some of their fields.
+     * @param fields    names of the fields to read
+     * @return  iterable of partial objects
+     */
+    public Iterable<P> iterateAll(Iterable<String> fields) {
+        checkFullScan("iterateAll");
+        return timeIteration(OperationType.QUERY, "iterateAll", getCollection().find().projection(toProjection(fields)).map((d) -> {
+            throttleScan();
+            return measured(partialMapper).toObject(d);
+        }));
     }
 
     /**
@@ -249,26 +549,45 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results containing up to limit objects found in the query
      */
     protected Results<M, Integer> findWithSkipLimitPagination(FindIterable<Document> iterable, int skip, int limit) {
-        ImmutableList.Builder<M> builder = ImmutableList.builder();
-        M mostRecentObject = null;
+        return findWithSkipLimitPagination(iterable, skip, limit, modelMapper);
+    }
 
-        // query for one more object than we actually need, in order to determine whether there is a "next" page
-        int foundCount = 0;
-        for (Document doc : iterable.skip(skip).limit(limit+1)) {
-            if (mostRecentObject != null) {
-                builder.add(mostRecentObject);
+    /**
+     * Given a FindIterable query, paginate by using skip and limit, returning partials holding only the fields in
+     * a projection.
+     * @param iterable  query
+     * @param skip  number of results to skip
+     * @param limit number of results to limit
+     * @param projection    MongoDB projection
+     * @return  results containing up to limit partials found in the query
+     */
+    protected Results<P, Integer> findWithSkipLimitPagination(FindIterable<Document> iterable, int skip, int limit, Bson projection) {
+        return findWithSkipLimitPagination(iterable.projection(projection), skip, limit, partialMapper);
+    }
+
+    private <T> Results<T, Integer> findWithSkipLimitPagination(FindIterable<Document> iterable, int skip, int limit, DocumentMapper<T> mapper) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findWithSkipLimitPagination")) {
+            ImmutableList.Builder<T> builder = ImmutableList.builder();
+            T mostRecentObject = null;
+
+            // query for one more object than we actually need, in order to determine whether there is a "next" page
+            int foundCount = 0;
+            for (Document doc : iterable.skip(skip).limit(limit+1)) {
+                if (mostRecentObject != null) {
+                    builder.add(mostRecentObject);
+                }
+                mostRecentObject = mapper.toObject(doc);
+                foundCount++;
             }
-            mostRecentObject = modelMapper.toObject(doc);
-            foundCount++;
-        }
 
-        if (foundCount <= 0) {
-            return Results.of(builder.build());
-        } else if (foundCount <= limit) {
-            builder.add(mostRecentObject);
-            return Results.of(builder.build());
-        } else {
-            return Results.of(builder.build(), skip+limit);
+            if (foundCount <= 0) {
+                return Results.of(builder.build());
+            } else if (foundCount <= limit) {
+                builder.add(mostRecentObject);
+                return Results.of(builder.build());
+            } else {
+                return Results.of(builder.build(), skip+limit);
+            }
         }
     }
 
@@ -292,29 +611,229 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  results containing up to limit results in the query, and the value of the "next" field
      */
     protected <N> Results<M, N> findWithRangedPagination(FindIterable<Document> iterable, String nextField, Class<N> nextFieldType, int limit) {
-        ImmutableList.Builder<M> builder = ImmutableList.builder();
-        M mostRecentObject = null;
-        N mostRecentNext = null;
-
-        // query for one more object than we actually need, in order to determine whether there is a "next" page
-        int foundCount = 0;
-        for (Document doc : iterable.limit(limit + 1)) {
-            if (mostRecentObject != null) {
+        return findWithRangedPagination(iterable, nextField, nextFieldType, limit, modelMapper);
+    }
+
+    /**
+     * Given a FindIterable query, paginate by using a field value as the "next", returning partials holding only the
+     * fields in a projection. The next field is added to the projection, so the projection should be an inclusion
+     * projection, such as one returned by toProjection().
+     * @param iterable  query
+     * @param nextField the name of the field to extract as the "next" item
+     * @param nextFieldType the class of the expected value of the "next" field (*as it is stored in MongoDB*)
+     * @param limit number of results to limit
+     * @param projection    MongoDB projection
+     * @return  results containing up to limit partials in the query, and the value of the "next" field
+     */
+    protected <N> Results<P, N> findWithRangedPagination(FindIterable<Document> iterable, String nextField, Class<N> nextFieldType, int limit, Bson projection) {
+        Bson withNext = Projections.fields(projection, Projections.include(nextField));
+        return findWithRangedPagination(iterable.projection(withNext), nextField, nextFieldType, limit, partialMapper);
+    }
+
+    private <T,N> Results<T, N> findWithRangedPagination(FindIterable<Document> iterable, String nextField, Class<N> nextFieldType, int limit, DocumentMapper<T> mapper) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findWithRangedPagination")) {
+            ImmutableList.Builder<T> builder = ImmutableList.builder();
+            T mostRecentObject = null;
+            N mostRecentNext = null;
+
+            // query for one more object than we actually need, in order to determine whether there is a "next" page
+            int foundCount = 0;
+            for (Document doc : iterable.limit(limit + 1)) {
+                if (mostRecentObject != null) {
+                    builder.add(mostRecentObject);
+                }
+                mostRecentNext = getFieldValue(doc, nextField, nextFieldType);
+                mostRecentObject = mapper.toObject(doc);
+                foundCount++;
+            }
+
+            if (foundCount <= 0) {
+                return Results.of(builder.build());
+            } else if (foundCount <= limit) {
                 builder.add(mostRecentObject);
+                return Results.of(builder.build());
+            } else {
+                return Results.of(builder.build(), mostRecentNext);
             }
-            mostRecentNext = getFieldValue(doc, nextField, nextFieldType);
-            mostRecentObject = modelMapper.toObject(doc);
-            foundCount++;
         }
+    }
 
-        if (foundCount <= 0) {
-            return Results.of(builder.build());
-        } else if (foundCount <= limit) {
-            builder.add(mostRecentObject);
-            return Results.of(builder.build());
-        } else {
-            return Results.of(builder.build(), mostRecentNext);
+    /**
+     * Paginate a query by keyset, using the values of the sort fields of the last returned document as the "next".
+     * The _id field is always appended to the sort as a tie-breaker (unless it is already present), so pages are
+     * stable even when the sort values are not unique. Both ascending and descending sorts are supported, and each
+     * sort field may have its own direction.
+     *
+     * The "next" value is an opaque cursor token that should be passed back in as the cursor to retrieve the following
+     * page. Pass a null cursor to retrieve the first page.
+     *
+     * Like ranged pagination, this avoids "skip", so it stays fast for deep pages as long as there is an index that
+     * matches the query and sort. Sort fields should be present on every document that matches the query.
+     *
+     * For example:
+     *    Document query = new Document("active", true);
+     *    Document sort = new Document("name", 1);
+     *    Results&lt;User,String&gt; page1 = findWithKeysetPagination(query, sort, null, 20);
+     *    Results&lt;User,String&gt; page2 = findWithKeysetPagination(query, sort, page1.getNext().get(), 20);
+     *
+     * @param query MongoDB query
+     * @param sort  MongoDB sort order, using storage field names
+     * @param cursor    cursor token returned as the "next" of the previous page, or null for the first page
+     * @param limit number of results to limit
+     * @return  results containing up to limit objects found in the query, and the cursor for the next page
+     */
+    protected Results<M, String> findWithKeysetPagination(Bson query, Bson sort, String cursor, int limit) {
+        return findWithKeysetPagination(query, sort, cursor, limit, null, modelMapper);
+    }
+
+    /**
+     * Paginate a query by keyset, returning partials holding only the fields in a projection. The sort fields are
+     * added to the projection, so the projection should be an inclusion projection, such as one returned by
+     * toProjection().
+     * @param query MongoDB query
+     * @param sort  MongoDB sort order, using storage field names
+     * @param cursor    cursor token returned as the "next" of the previous page, or null for the first page
+     * @param limit number of results to limit
+     * @param projection    MongoDB projection
+     * @return  results containing up to limit partials found in the query, and the cursor for the next page
+     */
+    protected Results<P, String> findWithKeysetPagination(Bson query, Bson sort, String cursor, int limit, Bson projection) {
+        return findWithKeysetPagination(query, sort, cursor, limit, projection, partialMapper);
+    }
+
+    private <T> Results<T, String> findWithKeysetPagination(Bson query, Bson sort, String cursor, int limit, Bson projection,
+                                                            DocumentMapper<T> mapper) {
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "findWithKeysetPagination")) {
+            Document keysetSort = toKeysetSort(sort);
+            Bson find = query != null ? query : new Document();
+            if (cursor != null) {
+                find = new Document("$and", ImmutableList.of(find, toKeysetQuery(keysetSort, decodeKeysetCursor(cursor, keysetSort.size()))));
+            }
+
+            FindIterable<Document> iterable = getCollection().find(find).sort(keysetSort);
+            if (projection != null) {
+                iterable = iterable.projection(Projections.fields(projection, Projections.include(new ArrayList<>(keysetSort.keySet()))));
+            }
+
+            ImmutableList.Builder<T> builder = ImmutableList.builder();
+            Document lastDoc = null;
+
+            // query for one more object than we actually need, in order to determine whether there is a "next" page
+            int foundCount = 0;
+            for (Document doc : iterable.limit(limit + 1)) {
+                foundCount++;
+                if (foundCount > limit) {
+                    break;
+                }
+                builder.add(mapper.toObject(doc));
+                lastDoc = doc;
+            }
+
+            if (foundCount <= limit || lastDoc == null) {
+                return Results.of(builder.build());
+            }
+            List<Object> lastValues = new ArrayList<>();
+            for (String field : keysetSort.keySet()) {
+                lastValues.add(getPathValue(lastDoc, field));
+            }
+            return Results.of(builder.build(), encodeKeysetCursor(lastValues));
+        }
+    }
+
+    /**
+     * Convert a sort into a keyset sort, by appending the _id field as a tie-breaker if it is not already present.
+     * The tie-breaker uses the same direction as the last sort field.
+     * @param sort  MongoDB sort order
+     * @return  sort order ending with the _id field
+     */
+    protected Document toKeysetSort(Bson sort) {
+        Document keysetSort = new Document();
+        int lastDirection = 1;
+        if (sort != null) {
+            BsonDocument sortDoc = sort.toBsonDocument(Document.class, getCollection().getCodecRegistry());
+            for (Map.Entry<String, BsonValue> e : sortDoc.entrySet()) {
+                if (!e.getValue().isNumber()) {
+                    throw new IllegalArgumentException("Keyset pagination does not support sort on " + e.getKey() + ": " + e.getValue());
+                }
+                lastDirection = e.getValue().asNumber().intValue() < 0 ? -1 : 1;
+                keysetSort.append(e.getKey(), lastDirection);
+            }
+        }
+        if (!keysetSort.containsKey(ID_FIELD)) {
+            keysetSort.append(ID_FIELD, lastDirection);
         }
+        return keysetSort;
+    }
+
+    /**
+     * Build a query that matches only documents that sort after the given values, i.e. for a sort of (a, b, _id):
+     *    { $or: [ {a: {$gt: va}}, {a: va, b: {$gt: vb}}, {a: va, b: vb, _id: {$gt: vid}} ] }
+     * with $lt substituted for $gt on any descending sort fields.
+     * @param keysetSort    keyset sort order, as returned by toKeysetSort()
+     * @param values    values of the sort fields for the last document on the previous page
+     * @return  MongoDB query
+     */
+    protected Document toKeysetQuery(Document keysetSort, List<Object> values) {
+        List<Document> or = new ArrayList<>();
+        List<String> fields = new ArrayList<>(keysetSort.keySet());
+        for (int i = 0; i < fields.size(); i++) {
+            Document clause = new Document();
+            for (int j = 0; j < i; j++) {
+                clause.append(fields.get(j), values.get(j));
+            }
+            String op = ((Number)keysetSort.get(fields.get(i))).intValue() < 0 ? "$lt" : "$gt";
+            clause.append(fields.get(i), new Document(op, values.get(i)));
+            or.add(clause);
+        }
+        return new Document("$or", or);
+    }
+
+    /**
+     * Encode the sort values of a document as an opaque, URL-safe cursor token.
+     * @param values    values of the keyset sort fields
+     * @return  cursor token
+     */
+    protected String encodeKeysetCursor(List<Object> values) {
+        String json = new Document("k", values).toJson();
+        return BaseEncoding.base64Url().omitPadding().encode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor token created by encodeKeysetCursor().
+     * @param cursor    cursor token
+     * @param size  number of fields in the keyset sort
+     * @return  values of the keyset sort fields
+     * @throws IllegalArgumentException if the cursor is malformed or does not match the sort
+     */
+    protected List<Object> decodeKeysetCursor(String cursor, int size) {
+        List<?> values;
+        try {
+            String json = new String(BaseEncoding.base64Url().omitPadding().decode(cursor), StandardCharsets.UTF_8);
+            values = Document.parse(json).get("k", List.class);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        if (values == null || values.size() != size) {
+            throw new IllegalArgumentException("Cursor does not match sort order: " + cursor);
+        }
+        return new ArrayList<>(values);
+    }
+
+    /**
+     * Extract a value from a document, given a dotted path such as "address.city".
+     * @param doc   document
+     * @param path  dotted path
+     * @return  value, or null if any part of the path is not present
+     */
+    protected Object getPathValue(Document doc, String path) {
+        Object value = doc;
+        for (String part : path.split("\\.")) {
+            if (!(value instanceof Document)) {
+                return null;
+            }
+            value = ((Document)value).get(part);
+        }
+        return value;
     }
 
     protected <T> T getFieldValue(Document doc, String field, Class<T> type) {
@@ -336,18 +855,76 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
      * @return  true if
      */
     protected boolean exists(Document query, K excludeId) {
-        FindIterable<Document> find = getCollection().find(query).projection(new Document("_id", 1)).limit(2);
-        for (Document doc : find) {
-            if (!doc.get("_id").equals(excludeId)) {
-                return true;
+        try (OperationTimer timer = startOperation(OperationType.QUERY, "exists")) {
+            FindIterable<Document> find = getCollection().find(query).projection(new Document("_id", 1)).limit(2);
+            for (Document doc : find) {
+                if (!doc.get("_id").equals(excludeId)) {
+                    return true;
+                }
             }
+            return false;
         }
-        return false;
     }
 
     @Override
     public M create(P partial, Instant createAt, I createBy) {
-        Document doc = partialMapper.toDocument(partial);
+        try (OperationTimer timer = startOperation(OperationType.CREATE, "create")) {
+            Document doc = toCreateDocument(partial, createAt, createBy);
+            M model = measured(modelMapper).toObject(doc);
+            getCollection().insertOne(doc);
+            return model;
+        }
+    }
+
+    /**
+     * Create several objects with a single unordered insertMany().
+     * @param partials  objects to create
+     * @param createAt  create timestamp
+     * @param createBy  creator id, or null
+     * @return  the newly created objects, in the same order
+     * @throws DataBulkCreateException if any of the objects could not be inserted; the others still are
+     */
+    @Override
+    public List<M> createAll(List<P> partials, Instant createAt, I createBy) {
+        try (OperationTimer timer = startOperation(OperationType.CREATE, "createAll")) {
+            if (partials.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Document> docs = new ArrayList<>(partials.size());
+            List<M> models = new ArrayList<>(partials.size());
+            for (P partial : partials) {
+                Document doc = toCreateDocument(partial, createAt, createBy);
+                docs.add(doc);
+                models.add(measured(modelMapper).toObject(doc));
+            }
+            try {
+                getCollection().insertMany(docs, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                Map<Integer,String> errors = new LinkedHashMap<>();
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    errors.put(error.getIndex(), error.getMessage());
+                }
+                List<M> created = new ArrayList<>();
+                for (int i = 0; i < models.size(); i++) {
+                    if (!errors.containsKey(i)) {
+                        created.add(models.get(i));
+                    }
+                }
+                throw new DataBulkCreateException(errors, created);
+            }
+            return models;
+        }
+    }
+
+    /**
+     * Return the document to insert for a partial, adding the id, timestamp, user id and version fields.
+     * @param partial   partial to create
+     * @param createAt  create timestamp, or null
+     * @param createBy  creator id, or null
+     * @return  document to insert
+     */
+    protected Document toCreateDocument(P partial, Instant createAt, I createBy) {
+        Document doc = measured(partialMapper).toDocument(partial);
         if (doc.get(ID_FIELD) == null) {
             doc.put(ID_FIELD, generateId());
         }
@@ -371,33 +948,315 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
                 && doc.get(fieldData.getUpdatedBy().getStorageName()) == null) {
             doc.put(fieldData.getUpdatedBy().getStorageName(), createBy);
         }
-        M model = modelMapper.toObject(doc);
-        getCollection().insertOne(doc);
-        return model;
+        // objects start at version 1, so that the first update can be checked
+        if (fieldData.getVersion() != null && doc.get(fieldData.getVersion().getStorageName()) == null) {
+            doc.put(fieldData.getVersion().getStorageName(), 1L);
+        }
+        return doc;
     }
 
     @Override
     public void update(K id, Update<P> update, Instant updateAt, I updateBy) {
-        Document query = new Document(ID_FIELD, id);
-        Document upDoc = toUpdateDocument(update, updateAt, updateBy);
-        getCollection().updateOne(query, upDoc);
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "update")) {
+            Document query = toUpdateQuery(id, update);
+            Document upDoc = toUpdateDocument(update, updateAt, updateBy);
+            UpdateResult result = getCollection().updateOne(query, upDoc);
+            if (update.getExpectedVersion() != null && result.getMatchedCount() == 0) {
+                throw toConflictException(id, update);
+            }
+        }
     }
 
     @Override
     public M updateAndReturn(K id, Update<P> update, Instant updateAt, I updateBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturn")) {
+            Document found = findOneAndUpdate(id, update, updateAt, updateBy, new FindOneAndUpdateOptions());
+            return measured(modelMapper).toObject(found);
+        }
+    }
+
+    @Override
+    public M updateAndReturnNew(K id, Update<P> update, Instant updateAt, I updateBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturnNew")) {
+            FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                    .returnDocument(ReturnDocument.AFTER);
+            Document found = findOneAndUpdate(id, update, updateAt, updateBy, options);
+            return measured(modelMapper).toObject(found);
+        }
+    }
+
+    @Override
+    public P updateAndReturnUpdated(K id, Update<P> update, Instant updateAt, I updateBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateAndReturnUpdated")) {
+            FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                    .returnDocument(ReturnDocument.AFTER)
+                    .projection(toUpdatedProjection(update));
+            Document found = findOneAndUpdate(id, update, updateAt, updateBy, options);
+            return measured(partialMapper).toObject(found);
+        }
+    }
+
+    private Document findOneAndUpdate(K id, Update<P> update, Instant updateAt, I updateBy, FindOneAndUpdateOptions options) {
         Document upDoc = toUpdateDocument(update, updateAt, updateBy);
+        Document query = toUpdateQuery(id, update);
+        Document found = getCollection().findOneAndUpdate(query, upDoc, options);
+        if (update.getExpectedVersion() != null && found == null) {
+            throw toConflictException(id, update);
+        }
+        return found;
+    }
+
+    /**
+     * Build a projection of just the fields that an update changes, including the automatically maintained
+     * @UpdatedAt, @UpdatedBy and @Version fields. The _id is excluded.
+     * @param update    update data
+     * @return  MongoDB projection
+     */
+    protected Document toUpdatedProjection(Update<P> update) {
+        Document projection = new Document(ID_FIELD, 0);
+        for (String field : update.getUpdateFields()) {
+            projection.put(toStorageName(field), 1);
+        }
+        FieldData fieldData = getFieldData();
+        for (Field field : Arrays.asList(fieldData.getUpdatedAt(), fieldData.getUpdatedBy(), fieldData.getVersion())) {
+            if (field != null) {
+                projection.put(field.getStorageName(), 1);
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * Build the query that selects the object to update: its id, plus the version check if the update carries an
+     * expected version. An expected version of Update.UNVERSIONED requires the version field to be absent.
+     * @param id    id of object
+     * @param update    update data
+     * @return  MongoDB query
+     */
+    protected Document toUpdateQuery(K id, Update<P> update) {
         Document query = new Document(ID_FIELD, id);
-        Document found = getCollection().findOneAndUpdate(query, upDoc);
-        return modelMapper.toObject(found);
+        query.putAll(toVersionFilter(update));
+        return query;
+    }
+
+    /**
+     * Build the version check for an update: empty if the update carries no expected version or the model has no
+     * @Version field.
+     * @param update    update data
+     * @return  MongoDB filter on the version field
+     */
+    private Document toVersionFilter(Update<P> update) {
+        Document filter = new Document();
+        Field versionField = getFieldData().getVersion();
+        if (versionField != null && update.getExpectedVersion() != null) {
+            if (update.getExpectedVersion() == Update.UNVERSIONED) {
+                filter.put(versionField.getStorageName(), new Document("$exists", false));
+            } else {
+                filter.put(versionField.getStorageName(), update.getExpectedVersion());
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Read the value of the @Version field from a model through the model mapper, so that it is found however the
+     * model names its getter.
+     * @param model model object
+     * @param versionField  the @Version field
+     * @return  version, or null if it is not set
+     */
+    @Override
+    protected Long getVersionValue(M model, Field versionField) {
+        Object value = measured(modelMapper).toDocument(model).get(versionField.getStorageName());
+        return value != null ? ((Number)value).longValue() : null;
+    }
+
+    private DataConflictException toConflictException(K id, Update<P> update) {
+        return new DataConflictException(getDisplayModelName() + " " + id + " does not exist or is not at version "
+                + update.getExpectedVersion());
+    }
+
+    @Override
+    public boolean updateIf(K id, Condition condition, Update<P> update, Instant updateAt, I updateBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateIf")) {
+            Document query = new Document("$and", ImmutableList.of(toUpdateQuery(id, update), toConditionFilter(condition)));
+            Document upDoc = toUpdateDocument(update, updateAt, updateBy);
+            return getCollection().updateOne(query, upDoc).getMatchedCount() > 0;
+        }
+    }
+
+    /**
+     * Compile a backend-neutral condition into a MongoDB filter, using the storage names of the fields.
+     * @param condition condition
+     * @return  MongoDB filter
+     */
+    protected Document toConditionFilter(Condition condition) {
+        checkConditionFields(condition);
+        switch (condition.getOperator()) {
+            case EQUAL_TO:
+                return new Document(toStorageName(condition.getField()), toStorageValue(condition.getValue()));
+            case LESS_THAN:
+                return new Document(toStorageName(condition.getField()), new Document("$lt", toStorageValue(condition.getValue())));
+            case EXISTS:
+                return new Document(toStorageName(condition.getField()), new Document("$exists", true));
+            case NOT_EXISTS:
+                return new Document(toStorageName(condition.getField()), new Document("$exists", false));
+            case AND:
+                List<Document> filters = new ArrayList<>();
+                for (Condition c : condition.getConditions()) {
+                    filters.add(toConditionFilter(c));
+                }
+                return new Document("$and", filters);
+            default:
+                throw new IllegalArgumentException("Unsupported condition: " + condition.getOperator());
+        }
+    }
+
+    /**
+     * Convert a model value, such as an Instant or a UUID, into the value that MongoDB stores for it, using the same
+     * extended JSON conversion as the default document mapper.
+     * @param value model value
+     * @return  storage value
+     */
+    protected Object toStorageValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            String json = JacksonDocumentMapper.DEFAULT_EXTENDED_JSON_MAPPER.writeValueAsString(Collections.singletonMap("v", value));
+            return Document.parse(json).get("v");
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unable to convert " + value, e);
+        }
+    }
+
+    @Override
+    public UpsertResult<M> upsert(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPSERT, "upsert")) {
+            Document query = new Document(ID_FIELD, id);
+            Document upDoc = toUpsertDocument(partial, update, upsertAt, upsertBy);
+            UpdateResult result = getCollection().updateOne(query, upDoc, new UpdateOptions().upsert(true));
+            return UpsertResult.of(result.getUpsertedId() != null);
+        }
+    }
+
+    /**
+     * Upsert an object, and return the state of the object after the upsert, as written rather than read back
+     * afterwards. An existing object is updated and returned by a single findOneAndUpdate; only if there is none is
+     * the upsert sent, again returning the new document. An object created by another client between the two
+     * calls is updated by the upsert, but reported as inserted.
+     * @param id    id of the object
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update to apply, whether or not the object exists
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  result indicating whether the object was inserted, containing the model
+     */
+    @Override
+    public UpsertResult<M> upsertAndReturn(K id, P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPSERT, "upsertAndReturn")) {
+            Document query = new Document(ID_FIELD, id);
+            Document upDoc = toUpsertDocument(partial, update, upsertAt, upsertBy);
+            FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                    .returnDocument(ReturnDocument.AFTER);
+            Document found = getCollection().findOneAndUpdate(query, upDoc, options);
+            if (found != null) {
+                return UpsertResult.of(false, measured(modelMapper).toObject(found));
+            }
+            found = getCollection().findOneAndUpdate(query, upDoc, options.upsert(true));
+            return UpsertResult.of(true, measured(modelMapper).toObject(found));
+        }
+    }
+
+    /**
+     * Convert an upsert into an update document. The update is converted as usual, and the partial's fields (other
+     * than the id and any fields touched by the update), along with @CreatedAt and @CreatedBy, go into $setOnInsert.
+     * @param partial   data to create the object with, if it does not exist
+     * @param update    update data
+     * @param upsertAt  timestamp of the upsert
+     * @param upsertBy  user id of the user who performed the upsert
+     * @return  update document
+     */
+    protected Document toUpsertDocument(P partial, Update<P> update, Instant upsertAt, I upsertBy) {
+        Document doc = toUpdateDocument(update, upsertAt, upsertBy);
+        Document set = doc.get("$set", new Document());
+        Document inc = doc.get("$inc", new Document());
+        Document setOnInsert = new Document();
+        Document partialDoc = partial != null ? measured(partialMapper).toDocument(partial) : new Document();
+        for (Map.Entry<String,Object> e : partialDoc.entrySet()) {
+            if (!e.getKey().equals(ID_FIELD) && !set.containsKey(e.getKey()) && !inc.containsKey(e.getKey())
+                    && !isTouchedByUpdate(update, e.getKey())) {
+                setOnInsert.put(e.getKey(), e.getValue());
+            }
+        }
+        FieldData fieldData = getFieldData();
+        if (upsertAt != null && fieldData.getCreatedAt() != null
+                && setOnInsert.get(fieldData.getCreatedAt().getStorageName()) == null) {
+            setOnInsert.put(fieldData.getCreatedAt().getStorageName(), Date.from(upsertAt));
+        }
+        if (upsertBy != null && fieldData.getCreatedBy() != null
+                && setOnInsert.get(fieldData.getCreatedBy().getStorageName()) == null) {
+            setOnInsert.put(fieldData.getCreatedBy().getStorageName(), upsertBy);
+        }
+        if (!setOnInsert.isEmpty()) {
+            doc.put("$setOnInsert", setOnInsert);
+        }
+        return doc;
+    }
+
+    /**
+     * Apply an update to every document matching a query, in a single updateMany command on the server.
+     * @param query MongoDB query
+     * @param update    update data
+     * @return  result containing the matched and modified counts
+     */
+    protected UpdateResult updateByQuery(Bson query, Update<P> update) {
+        return updateByQuery(query, update, Instant.now(), null);
+    }
+
+    /**
+     * Apply an update to every document matching a query, in a single updateMany command on the server. The
+     * @UpdatedAt and @UpdatedBy fields are set on every matched document, just as with update(). If the update
+     * carries an expected version, only the matching documents at that version are updated; check the matched count
+     * to find out how many were.
+     * @param query MongoDB query
+     * @param update    update data
+     * @param updateAt  timestamp of the update
+     * @param updateBy  user id of the user who performed the update
+     * @return  result containing the matched and modified counts
+     */
+    protected UpdateResult updateByQuery(Bson query, Update<P> update, Instant updateAt, I updateBy) {
+        try (OperationTimer timer = startOperation(OperationType.UPDATE, "updateByQuery")) {
+            Document versionFilter = toVersionFilter(update);
+            if (!versionFilter.isEmpty()) {
+                query = new Document("$and", ImmutableList.of(query, versionFilter));
+            }
+            Document upDoc = toUpdateDocument(update, updateAt, updateBy);
+            return getCollection().updateMany(query, upDoc);
+        }
+    }
+
+    /**
+     * Delete every document matching a query, in a single deleteMany command on the server.
+     * @param query MongoDB query
+     * @return  number of documents deleted
+     */
+    protected long deleteByQuery(Bson query) {
+        try (OperationTimer timer = startOperation(OperationType.DELETE, "deleteByQuery")) {
+            return getCollection().deleteMany(query).getDeletedCount();
+        }
     }
 
     protected Document toUpdateDocument(Update<P> update, Instant updateAt, I updateBy) {
+        checkUpdatePaths(update);
+        checkVersionNotUpdated(update);
         Document doc = new Document();
 
-        Document setFields = partialMapper.toDocument(update.getPartial());
+        Document setFields = measured(partialMapper).toDocument(update.getPartial());
         Document set = new Document();
         for (String field : update.getSetFields()) {
-            set.put(field, setFields.get(field));
+            String storageName = toStorageName(field);
+            set.put(storageName, getPathValue(setFields, storageName));
         }
 
         FieldData fieldData = getFieldData();
@@ -410,7 +1269,34 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
 
         Document unset = new Document();
         for (String field : update.getRemoveFields()) {
-            unset.put(field, 1);
+            unset.put(toStorageName(field), 1);
+        }
+
+        Document inc = new Document();
+        for (String field : update.getIncrementFields()) {
+            String storageName = toStorageName(field);
+            inc.put(storageName, getPathValue(setFields, storageName));
+        }
+        if (fieldData.getVersion() != null) {
+            inc.put(fieldData.getVersion().getStorageName(), 1L);
+        }
+
+        Document push = new Document();
+        for (String field : update.getAppendFields()) {
+            String storageName = toStorageName(field);
+            push.put(storageName, new Document("$each", getPathValue(setFields, storageName)));
+        }
+
+        Document addToSet = new Document();
+        for (String field : update.getAddToSetFields()) {
+            String storageName = toStorageName(field);
+            addToSet.put(storageName, new Document("$each", getPathValue(setFields, storageName)));
+        }
+
+        Document pull = new Document();
+        for (String field : update.getPullFields()) {
+            String storageName = toStorageName(field);
+            pull.put(storageName, new Document("$in", getPathValue(setFields, storageName)));
         }
 
         if (!set.isEmpty()) {
@@ -421,13 +1307,31 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
             doc.put("$unset", unset);
         }
 
+        if (!inc.isEmpty()) {
+            doc.put("$inc", inc);
+        }
+
+        if (!push.isEmpty()) {
+            doc.put("$push", push);
+        }
+
+        if (!addToSet.isEmpty()) {
+            doc.put("$addToSet", addToSet);
+        }
+
+        if (!pull.isEmpty()) {
+            doc.put("$pull", pull);
+        }
+
         return doc;
     }
 
     @Override
     public void delete(K id) {
-        Document query = new Document(ID_FIELD, id);
-        getCollection().deleteOne(query);
+        try (OperationTimer timer = startOperation(OperationType.DELETE, "delete")) {
+            Document query = new Document(ID_FIELD, id);
+            getCollection().deleteOne(query);
+        }
     }
 
     @Override
@@ -449,7 +1353,7 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
     public Update<P> updateOf(P object) {
         ImmutableSet.Builder<String> attribs = ImmutableSet.builder();
         if (object != null) {
-            Document doc = partialMapper.toDocument(object);
+            Document doc = measured(partialMapper).toDocument(object);
             for (String key : doc.keySet()) {
                 attribs.add(key);
             }
@@ -460,11 +1364,25 @@ public abstract class AbstractMongoDao<M,P,K,I> extends AbstractDao<M,P,K,I> {
     public Update<P> updateOf(P object, Iterable<String> removeFields) {
         ImmutableSet.Builder<String> attribs = ImmutableSet.builder();
         if (object != null) {
-            Document doc = partialMapper.toDocument(object);
+            Document doc = measured(partialMapper).toDocument(object);
             for (String key : doc.keySet()) {
                 attribs.add(key);
             }
         }
         return Update.of(object, attribs.build(), ImmutableSet.copyOf(removeFields));
     }
+
+    /**
+     * Build an update containing only the fields that differ between the current state of an object and its new
+     * state, instead of rewriting every field as updateOf() does. Fields missing from the new state are removed, and
+     * embedded documents are compared field by field.
+     * @param before    current state of the object
+     * @param after new state of the object
+     * @return  minimal update
+     */
+    public Update<P> diff(M before, P after) {
+        Document beforeDoc = before != null ? measured(modelMapper).toDocument(before) : new Document();
+        Document afterDoc = after != null ? measured(partialMapper).toDocument(after) : new Document();
+        return toDiffUpdate(after, beforeDoc, afterDoc);
+    }
 }
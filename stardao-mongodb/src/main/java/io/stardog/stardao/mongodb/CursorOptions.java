@@ -0,0 +1,35 @@
+package io.stardog.stardao.mongodb;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Per-call cursor settings for the streaming query methods on AbstractMongoDao. Unset values fall back to the
+ * driver / server defaults.
+ */
+@AutoValue
+public abstract class CursorOptions {
+    public static final CursorOptions DEFAULT = CursorOptions.builder().build();
+
+    @Nullable
+    public abstract Integer getBatchSize();
+    @Nullable
+    public abstract Duration getMaxTime();
+    public abstract boolean isNoCursorTimeout();
+
+    public abstract Builder toBuilder();
+    public static CursorOptions.Builder builder() {
+        return new AutoValue_CursorOptions.Builder()
+                .noCursorTimeout(false);
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder batchSize(Integer batchSize);
+        public abstract Builder maxTime(Duration maxTime);
+        public abstract Builder noCursorTimeout(boolean noCursorTimeout);
+        public abstract CursorOptions build();
+    }
+}
@@ -0,0 +1,45 @@
+package io.stardog.stardao.mongodb.mapper;
+
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import org.bson.Document;
+
+/**
+ * Wraps the mappers of a Dao to report mapping time, and the number of documents read, to DaoMetrics. The Dao only
+ * wraps its mappers while something is listening, and getModelMapper() still returns the mapper it was given.
+ * @param <M>   class being mapped
+ */
+public class MeasuredDocumentMapper<M> implements DocumentMapper<M> {
+    private final DocumentMapper<M> mapper;
+    private final String daoName;
+
+    public MeasuredDocumentMapper(DocumentMapper<M> mapper, String daoName) {
+        this.mapper = mapper;
+        this.daoName = daoName;
+    }
+
+    public DocumentMapper<M> getMapper() {
+        return mapper;
+    }
+
+    @Override
+    public M toObject(Document document) {
+        if (!DaoMetrics.isEnabled()) {
+            return mapper.toObject(document);
+        }
+        long start = System.nanoTime();
+        M object = mapper.toObject(document);
+        DaoMetrics.recordMapping(daoName, System.nanoTime() - start, object != null ? 1 : 0);
+        return object;
+    }
+
+    @Override
+    public Document toDocument(M object) {
+        if (!DaoMetrics.isEnabled()) {
+            return mapper.toDocument(object);
+        }
+        long start = System.nanoTime();
+        Document document = mapper.toDocument(object);
+        DaoMetrics.recordMapping(daoName, System.nanoTime() - start, 0);
+        return document;
+    }
+}
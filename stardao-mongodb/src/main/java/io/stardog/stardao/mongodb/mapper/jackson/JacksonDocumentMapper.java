@@ -8,14 +8,12 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.common.collect.ImmutableMap;
 import com.mongodb.MongoException;
-import io.stardog.stardao.core.field.Field;
 import io.stardog.stardao.core.field.FieldData;
 import io.stardog.stardao.mongodb.mapper.DocumentMapper;
 import io.stardog.stardao.mongodb.mapper.jackson.modules.ExtendedJsonModule;
 import io.stardog.stardao.mongodb.mapper.jackson.modules.MongoModule;
 import org.bson.Document;
 
-import java.util.HashMap;
 import java.util.Map;
 
 public class JacksonDocumentMapper<M> implements DocumentMapper<M> {
@@ -53,14 +51,8 @@ public class JacksonDocumentMapper<M> implements DocumentMapper<M> {
         this.modelClass = modelClass;
         this.objectMapper = objectMapper;
         this.extendedJsonMapper = extendedJsonMapper;
-        this.objectToDocumentFieldRenames = new HashMap<>();
-        this.documentToObjectFieldRenames = new HashMap<>();
-        for (Field field : fieldData.getMap().values()) {
-            if (!field.getStorageName().equals(field.getName())) {
-                objectToDocumentFieldRenames.put(field.getName(), field.getStorageName());
-                documentToObjectFieldRenames.put(field.getStorageName(), field.getName());
-            }
-        }
+        this.objectToDocumentFieldRenames = fieldData.getStorageRenames();
+        this.documentToObjectFieldRenames = fieldData.getFieldRenames();
     }
 
     /**
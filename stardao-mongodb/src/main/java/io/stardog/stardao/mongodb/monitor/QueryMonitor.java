@@ -0,0 +1,305 @@
+package io.stardog.stardao.mongodb.monitor;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.IndexModel;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * An opt-in monitor for the ad hoc queries of Mongo daos (loadByQuery, iterateByQuery and findByQuery), set on each
+ * dao with setQueryMonitor(). It times every query by its shape (the filter with values stripped, plus sort and
+ * projection). The first time a query of a shape is slower than the threshold, the monitor runs explain() on it and
+ * logs a warning if the plan scans the whole collection, or examines many more documents than it returns. The
+ * explain runs once per shape, on the thread that made the slow query.
+ *
+ * Explain needs the database the collections belong to, so a monitor is shared by the daos of one database.
+ */
+public class QueryMonitor {
+    public static final double DEFAULT_MAX_EXAMINED_RATIO = 10;
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMonitor.class);
+
+    private final MongoDatabase database;
+    private final Duration slowThreshold;
+    private final double maxExaminedRatio;
+    private final Map<QueryShape,ShapeStats> stats = new ConcurrentHashMap<>();
+
+    public QueryMonitor(MongoDatabase database, Duration slowThreshold) {
+        this(database, slowThreshold, DEFAULT_MAX_EXAMINED_RATIO);
+    }
+
+    /**
+     * Create a monitor.
+     * @param database  database of the monitored collections
+     * @param slowThreshold queries that take longer than this are explained
+     * @param maxExaminedRatio  plans that examine more than this many documents per document returned are flagged
+     */
+    public QueryMonitor(MongoDatabase database, Duration slowThreshold, double maxExaminedRatio) {
+        if (maxExaminedRatio < 1) {
+            throw new IllegalArgumentException("maxExaminedRatio must be at least 1");
+        }
+        this.database = database;
+        this.slowThreshold = slowThreshold;
+        this.maxExaminedRatio = maxExaminedRatio;
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    public double getMaxExaminedRatio() {
+        return maxExaminedRatio;
+    }
+
+    /**
+     * Record a query that has completed.
+     * @param collection    collection queried
+     * @param filter    query filter
+     * @param sort  sort, or null
+     * @param projection    projection, or null
+     * @param limit limit of the query, or 0 for none
+     * @param nanos time spent reading from the database, in nanoseconds
+     */
+    public void record(MongoCollection<Document> collection, Bson filter, Bson sort, Bson projection, int limit, long nanos) {
+        QueryShape shape = QueryShape.of(collection.getNamespace().getCollectionName(), filter, sort, projection,
+                collection.getCodecRegistry());
+        ShapeStats shapeStats = stats.computeIfAbsent(shape, ShapeStats::new);
+        boolean slow = nanos > slowThreshold.toNanos();
+        shapeStats.add(nanos, slow);
+        if (slow && shapeStats.explained.compareAndSet(false, true)) {
+            QueryPlan plan = explain(collection, filter, sort, projection, limit);
+            if (plan != null) {
+                shapeStats.setPlan(plan);
+                if (isPoorPlan(plan)) {
+                    LOGGER.warn("Slow query took {}ms: {}; plan {} examined {} documents to return {}",
+                            nanos / 1000000, shape, plan.getStages(), plan.getDocsExamined(), plan.getReturned());
+                }
+            }
+        }
+    }
+
+    /**
+     * Wrap the documents found by a query so that the time spent reading them from the database is recorded once
+     * they have all been read, or the iterator is closed. The iterators of the returned iterable are AutoCloseable,
+     * closing the cursor.
+     * @param collection    collection queried
+     * @param find  documents found by the query
+     * @param filter    query filter
+     * @param sort  sort, or null
+     * @param projection    projection, or null
+     * @param mapper    function to map the documents to objects
+     * @param <T>   type of object
+     * @return  iterable of mapped objects
+     */
+    public <T> Iterable<T> iterate(MongoCollection<Document> collection, MongoIterable<Document> find,
+                                   Bson filter, Bson sort, Bson projection, Function<Document,T> mapper) {
+        return () -> new MonitoredIterator<>(collection, find, filter, sort, projection, mapper);
+    }
+
+    /**
+     * Check whether a plan should be flagged: it scans the collection, or examines too many documents.
+     * @param plan  query plan
+     * @return  true if the plan is poor
+     */
+    public boolean isPoorPlan(QueryPlan plan) {
+        return plan.isCollectionScan() || plan.getExaminedRatio() > maxExaminedRatio;
+    }
+
+    /**
+     * Snapshot the statistics of every query shape seen, slowest in total first.
+     * @return  statistics by shape
+     */
+    public List<QueryShapeStats> getStats() {
+        List<QueryShapeStats> list = new ArrayList<>();
+        for (ShapeStats shapeStats : stats.values()) {
+            list.add(shapeStats.toSnapshot());
+        }
+        list.sort(Comparator.comparingLong(QueryShapeStats::getTotalNanos).reversed());
+        return list;
+    }
+
+    /**
+     * Snapshot the statistics of the query shapes whose captured plan was flagged by isPoorPlan().
+     * @return  statistics of poorly planned shapes
+     */
+    public List<QueryShapeStats> getPoorlyPlannedStats() {
+        List<QueryShapeStats> list = new ArrayList<>();
+        for (QueryShapeStats shapeStats : getStats()) {
+            if (shapeStats.getPlan() != null && isPoorPlan(shapeStats.getPlan())) {
+                list.add(shapeStats);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Find the query shapes seen on a collection that none of its declared indexes can serve: neither the _id index
+     * nor any index whose first key is one of the fields the shape filters on. Normally called through
+     * AbstractMongoDao.getUnindexedQueryShapes(), which passes the dao's getIndexes().
+     * @param collectionName    name of the collection
+     * @param indexes   indexes declared for the collection
+     * @return  query shapes without a usable index
+     */
+    public List<QueryShape> getUnindexedShapes(String collectionName, List<IndexModel> indexes) {
+        List<String> leadingKeys = new ArrayList<>();
+        leadingKeys.add("_id");
+        for (IndexModel index : indexes) {
+            BsonDocument keys = index.getKeys().toBsonDocument(BsonDocument.class, database.getCodecRegistry());
+            if (!keys.isEmpty()) {
+                leadingKeys.add(keys.getFirstKey());
+            }
+        }
+        List<QueryShape> unindexed = new ArrayList<>();
+        for (QueryShape shape : stats.keySet()) {
+            if (shape.getCollectionName().equals(collectionName)
+                    && shape.getFilterFields().stream().noneMatch(leadingKeys::contains)) {
+                unindexed.add(shape);
+            }
+        }
+        return unindexed;
+    }
+
+    /**
+     * Forget all statistics and captured plans.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Explain a query, returning null if the server cannot explain it.
+     */
+    protected QueryPlan explain(MongoCollection<Document> collection, Bson filter, Bson sort, Bson projection, int limit) {
+        Document find = new Document("find", collection.getNamespace().getCollectionName());
+        if (filter != null) {
+            find.append("filter", filter.toBsonDocument(BsonDocument.class, collection.getCodecRegistry()));
+        }
+        if (sort != null) {
+            find.append("sort", sort.toBsonDocument(BsonDocument.class, collection.getCodecRegistry()));
+        }
+        if (projection != null) {
+            find.append("projection", projection.toBsonDocument(BsonDocument.class, collection.getCodecRegistry()));
+        }
+        if (limit > 0) {
+            find.append("limit", limit);
+        }
+        try {
+            return QueryPlan.of(database.runCommand(new Document("explain", find).append("verbosity", "executionStats")));
+        } catch (MongoException e) {
+            LOGGER.debug("Could not explain query on " + collection.getNamespace() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class ShapeStats {
+        private final QueryShape shape;
+        private final AtomicBoolean explained = new AtomicBoolean(false);
+        private long count;
+        private long slowCount;
+        private long totalNanos;
+        private long maxNanos;
+        private QueryPlan plan;
+
+        ShapeStats(QueryShape shape) {
+            this.shape = shape;
+        }
+
+        synchronized void add(long nanos, boolean slow) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (slow) {
+                slowCount++;
+            }
+        }
+
+        synchronized void setPlan(QueryPlan plan) {
+            this.plan = plan;
+        }
+
+        synchronized QueryShapeStats toSnapshot() {
+            return QueryShapeStats.builder()
+                    .shape(shape)
+                    .count(count)
+                    .slowCount(slowCount)
+                    .totalNanos(totalNanos)
+                    .maxNanos(maxNanos)
+                    .plan(plan)
+                    .build();
+        }
+    }
+
+    /**
+     * Times the cursor reads of a query, leaving out the time the caller spends between reads.
+     */
+    private class MonitoredIterator<T> implements Iterator<T>, AutoCloseable {
+        private final MongoCollection<Document> collection;
+        private final Bson filter;
+        private final Bson sort;
+        private final Bson projection;
+        private final Function<Document,T> mapper;
+        private final MongoCursor<Document> cursor;
+        private long nanos;
+        private boolean recorded;
+
+        MonitoredIterator(MongoCollection<Document> collection, MongoIterable<Document> find,
+                          Bson filter, Bson sort, Bson projection, Function<Document,T> mapper) {
+            this.collection = collection;
+            this.filter = filter;
+            this.sort = sort;
+            this.projection = projection;
+            this.mapper = mapper;
+            long start = System.nanoTime();
+            this.cursor = find.iterator();
+            this.nanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            boolean hasNext = cursor.hasNext();
+            nanos += System.nanoTime() - start;
+            if (!hasNext) {
+                finish();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            long start = System.nanoTime();
+            Document doc = cursor.next();
+            nanos += System.nanoTime() - start;
+            return mapper.apply(doc);
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+            finish();
+        }
+
+        private void finish() {
+            if (!recorded) {
+                recorded = true;
+                record(collection, filter, sort, projection, 0, nanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.stardog.stardao.mongodb.monitor;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * The parts of an explain() result that matter for spotting a bad query: the stages and indexes of the winning plan,
+ * and how many index keys and documents the server examined to return its results.
+ */
+@AutoValue
+public abstract class QueryPlan {
+    /**
+     * The stages of the winning plan, outermost first, such as [FETCH, IXSCAN] or [SORT, COLLSCAN].
+     * @return  stage names
+     */
+    public abstract ImmutableList<String> getStages();
+    public abstract ImmutableList<String> getIndexNames();
+    public abstract long getReturned();
+    public abstract long getKeysExamined();
+    public abstract long getDocsExamined();
+
+    /**
+     * Whether the plan reads the whole collection instead of using an index.
+     * @return  true if the plan has a COLLSCAN stage
+     */
+    public boolean isCollectionScan() {
+        return getStages().contains("COLLSCAN");
+    }
+
+    /**
+     * The number of documents examined for each document returned. An ideal query examines only the documents it
+     * returns, for a ratio of 1; a query that returns nothing but examined documents has a ratio of docsExamined.
+     * @return  ratio of documents examined to returned
+     */
+    public double getExaminedRatio() {
+        return (double)getDocsExamined() / Math.max(1, getReturned());
+    }
+
+    public static QueryPlan.Builder builder() {
+        return new AutoValue_QueryPlan.Builder()
+                .indexNames(ImmutableList.of())
+                .returned(0)
+                .keysExamined(0)
+                .docsExamined(0);
+    }
+
+    /**
+     * Read a plan from the result of an explain command run with the executionStats verbosity.
+     * @param explain   explain result
+     * @return  query plan
+     */
+    public static QueryPlan of(Document explain) {
+        ImmutableList.Builder<String> stages = ImmutableList.builder();
+        ImmutableList.Builder<String> indexNames = ImmutableList.builder();
+        Document planner = (Document)explain.get("queryPlanner");
+        if (planner != null) {
+            addStages(planner.get("winningPlan"), stages, indexNames);
+        }
+        QueryPlan.Builder builder = builder()
+                .stages(stages.build())
+                .indexNames(indexNames.build());
+        Document stats = (Document)explain.get("executionStats");
+        if (stats != null) {
+            builder.returned(toLong(stats.get("nReturned")))
+                    .keysExamined(toLong(stats.get("totalKeysExamined")))
+                    .docsExamined(toLong(stats.get("totalDocsExamined")));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Walk a plan stage and its input stages (or, for a sharded collection, the plans of each shard).
+     */
+    private static void addStages(Object plan, ImmutableList.Builder<String> stages, ImmutableList.Builder<String> indexNames) {
+        if (plan instanceof List) {
+            for (Object item : (List<?>)plan) {
+                addStages(item, stages, indexNames);
+            }
+            return;
+        }
+        if (!(plan instanceof Document)) {
+            return;
+        }
+        Document doc = (Document)plan;
+        if (doc.get("stage") instanceof String) {
+            stages.add(doc.getString("stage"));
+        }
+        if (doc.get("indexName") instanceof String) {
+            indexNames.add(doc.getString("indexName"));
+        }
+        addStages(doc.get("inputStage"), stages, indexNames);
+        addStages(doc.get("inputStages"), stages, indexNames);
+        addStages(doc.get("shards"), stages, indexNames);
+        addStages(doc.get("winningPlan"), stages, indexNames);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number)value).longValue() : 0;
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder stages(List<String> stages);
+        public abstract Builder indexNames(List<String> indexNames);
+        public abstract Builder returned(long returned);
+        public abstract Builder keysExamined(long keysExamined);
+        public abstract Builder docsExamined(long docsExamined);
+        public abstract QueryPlan build();
+    }
+}
@@ -0,0 +1,120 @@
+package io.stardog.stardao.mongodb.monitor;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The shape of a query: its filter with every value replaced by "?", along with its sort and projection. Queries
+ * that differ only in their values, such as finding users by two different emails, have the same shape, and so
+ * are planned the same way by the server.
+ */
+@AutoValue
+public abstract class QueryShape {
+    private static final BsonString PLACEHOLDER = new BsonString("?");
+    private static final Set<String> LOGICAL_OPERATORS = ImmutableSet.of("$and", "$or", "$nor");
+
+    public abstract String getCollectionName();
+
+    /**
+     * The filter with its values stripped, as JSON, such as {"email": "?", "age": {"$gt": "?"}}.
+     * @return  filter shape
+     */
+    public abstract String getFilter();
+
+    @Nullable
+    public abstract String getSort();
+
+    @Nullable
+    public abstract String getProjection();
+
+    /**
+     * The names of the fields the filter matches on, including those within $and, $or and $nor.
+     * @return  field names
+     */
+    public abstract ImmutableSet<String> getFilterFields();
+
+    /**
+     * Get the shape of a query.
+     * @param collectionName    name of the collection queried
+     * @param filter    query filter
+     * @param sort  sort, or null
+     * @param projection    projection, or null
+     * @param registry  codec registry of the collection, used to convert the filter to BSON
+     * @return  query shape
+     */
+    public static QueryShape of(String collectionName, Bson filter, Bson sort, Bson projection, CodecRegistry registry) {
+        ImmutableSet.Builder<String> fields = ImmutableSet.builder();
+        BsonDocument shape = filter != null ? strip(filter.toBsonDocument(BsonDocument.class, registry), fields) : new BsonDocument();
+        return new AutoValue_QueryShape(
+                collectionName,
+                shape.toJson(),
+                sort != null ? sort.toBsonDocument(BsonDocument.class, registry).toJson() : null,
+                projection != null ? projection.toBsonDocument(BsonDocument.class, registry).toJson() : null,
+                fields.build());
+    }
+
+    private static BsonDocument strip(BsonDocument filter, ImmutableSet.Builder<String> fields) {
+        BsonDocument shape = new BsonDocument();
+        for (Map.Entry<String,BsonValue> e : filter.entrySet()) {
+            String key = e.getKey();
+            BsonValue value = e.getValue();
+            if (LOGICAL_OPERATORS.contains(key) && value.isArray()) {
+                BsonArray clauses = new BsonArray();
+                for (BsonValue clause : value.asArray()) {
+                    clauses.add(clause.isDocument() ? strip(clause.asDocument(), fields) : PLACEHOLDER);
+                }
+                shape.put(key, clauses);
+            } else if (key.startsWith("$")) {
+                shape.put(key, PLACEHOLDER);
+            } else {
+                fields.add(key);
+                shape.put(key, stripValue(value));
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Strip the value a field is matched against. Operator documents such as {"$gt": 5} keep their operators, and
+     * $elemMatch and $not keep the shape of the condition within them; anything else becomes "?".
+     */
+    private static BsonValue stripValue(BsonValue value) {
+        if (!value.isDocument() || value.asDocument().isEmpty()
+                || !value.asDocument().getFirstKey().startsWith("$")) {
+            return PLACEHOLDER;
+        }
+        BsonDocument shape = new BsonDocument();
+        for (Map.Entry<String,BsonValue> e : value.asDocument().entrySet()) {
+            if (e.getKey().equals("$elemMatch") && e.getValue().isDocument()) {
+                shape.put(e.getKey(), strip(e.getValue().asDocument(), ImmutableSet.builder()));
+            } else if (e.getKey().equals("$not")) {
+                shape.put(e.getKey(), stripValue(e.getValue()));
+            } else {
+                shape.put(e.getKey(), PLACEHOLDER);
+            }
+        }
+        return shape;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getCollectionName()).append(" ").append(getFilter());
+        if (getSort() != null) {
+            sb.append(" sort ").append(getSort());
+        }
+        if (getProjection() != null) {
+            sb.append(" projection ").append(getProjection());
+        }
+        return sb.toString();
+    }
+}
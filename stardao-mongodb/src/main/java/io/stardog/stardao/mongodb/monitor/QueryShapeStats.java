@@ -0,0 +1,48 @@
+package io.stardog.stardao.mongodb.monitor;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * A snapshot of the timings recorded for one query shape by a QueryMonitor.
+ */
+@AutoValue
+public abstract class QueryShapeStats {
+    public abstract QueryShape getShape();
+    public abstract long getCount();
+
+    /**
+     * Number of queries of this shape that took longer than the monitor's slow threshold.
+     * @return  slow count
+     */
+    public abstract long getSlowCount();
+    public abstract long getTotalNanos();
+    public abstract long getMaxNanos();
+
+    /**
+     * The plan captured with explain() the first time a query of this shape was slow.
+     * @return  query plan, or null if no query of this shape has been slow (or the explain failed)
+     */
+    @Nullable
+    public abstract QueryPlan getPlan();
+
+    public long getMeanNanos() {
+        return getCount() > 0 ? getTotalNanos() / getCount() : 0;
+    }
+
+    public static QueryShapeStats.Builder builder() {
+        return new AutoValue_QueryShapeStats.Builder();
+    }
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder shape(QueryShape shape);
+        public abstract Builder count(long count);
+        public abstract Builder slowCount(long slowCount);
+        public abstract Builder totalNanos(long totalNanos);
+        public abstract Builder maxNanos(long maxNanos);
+        public abstract Builder plan(QueryPlan plan);
+        public abstract QueryShapeStats build();
+    }
+}
@@ -2,10 +2,38 @@ package io.stardog.stardao.mongodb;
 
 import com.github.fakemongo.Fongo;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.WriteRequest;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.UpdateResult;
+import io.stardog.stardao.core.Condition;
+import io.stardog.stardao.core.DaoIterable;
 import io.stardog.stardao.core.Results;
 import io.stardog.stardao.core.Update;
+import io.stardog.stardao.core.UpsertResult;
+import io.stardog.stardao.core.field.FieldData;
+import io.stardog.stardao.core.guard.Guardrails;
+import io.stardog.stardao.core.metrics.DaoMetrics;
+import io.stardog.stardao.core.metrics.DaoOperation;
+import io.stardog.stardao.core.metrics.OperationCounter;
+import io.stardog.stardao.core.metrics.OperationType;
+import io.stardog.stardao.exceptions.DataBulkCreateException;
+import io.stardog.stardao.exceptions.DataConflictException;
+import io.stardog.stardao.exceptions.DataLimitException;
 import io.stardog.stardao.exceptions.DataNotFoundException;
+import io.stardog.stardao.mongodb.mapper.DocumentMapper;
+import io.stardog.stardao.mongodb.mapper.jackson.JacksonDocumentMapper;
+import io.stardog.stardao.mongodb.monitor.QueryMonitor;
+import io.stardog.stardao.mongodb.monitor.QueryShape;
+import io.stardog.stardao.mongodb.monitor.QueryShapeStats;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.geojson.Point;
@@ -13,12 +41,23 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.Date;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 
 public class AbstractMongoDaoTest {
     private TestUserDao dao;
@@ -195,6 +234,66 @@ public class AbstractMongoDaoTest {
         assertFalse(nomatch.getNext().isPresent());
     }
 
+    @Test
+    public void testFindWithFieldPaginationProjection() throws Exception {
+        for (int i=0; i < 20; i++) {
+            dao.create(TestUser.builder().name("Bob " + String.format("%02d", i)).email("bob" + i + "@example.com").active(true).build());
+        }
+        Document query = new Document("active", true);
+        Document sort = new Document("name", 1);
+        Document projection = dao.toProjection(dao.selectFields(ImmutableList.of("email")));
+
+        Results<TestUser,String> page1 = dao.findWithRangedPagination(dao.getCollection().find(query).sort(sort), "name", String.class, 10, projection);
+        assertEquals(10, page1.getData().size());
+        assertEquals("bob0@example.com", page1.getData().get(0).getEmail());
+        assertNotNull(page1.getData().get(0).getId());
+        assertNull(page1.getData().get(0).getActive());
+        assertEquals("Bob 10", page1.getNext().get());
+    }
+
+    @Test
+    public void testFindWithKeysetPagination() throws Exception {
+        // only 10 distinct names, so the sort values are not unique
+        for (int i=0; i < 100; i++) {
+            dao.create(TestUser.builder().name("Bob " + (i % 10)).active(true).build());
+        }
+        Document query = new Document("active", true);
+
+        for (int direction : new int[] { 1, -1 }) {
+            Document sort = new Document("name", direction);
+            Set<ObjectId> seen = new HashSet<>();
+            List<TestUser> all = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                Results<TestUser,String> page = dao.findWithKeysetPagination(query, sort, cursor, 15);
+                all.addAll(page.getData());
+                for (TestUser user : page.getData()) {
+                    assertTrue(seen.add(user.getId()));
+                }
+                cursor = page.getNext().orElse(null);
+                pages++;
+            } while (cursor != null);
+
+            assertEquals(7, pages);
+            assertEquals(100, all.size());
+            assertEquals(direction > 0 ? "Bob 0" : "Bob 9", all.get(0).getName());
+            for (int i=1; i < all.size(); i++) {
+                int compare = all.get(i-1).getName().compareTo(all.get(i).getName());
+                assertTrue(direction > 0 ? compare <= 0 : compare >= 0);
+            }
+        }
+
+        Results<TestUser,String> nomatch = dao.findWithKeysetPagination(new Document("active", false), new Document("name", 1), null, 15);
+        assertEquals(0, nomatch.getData().size());
+        assertFalse(nomatch.getNext().isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindWithKeysetPaginationInvalidCursor() throws Exception {
+        dao.findWithKeysetPagination(new Document(), new Document("name", 1), "not-a-cursor", 10);
+    }
+
     @Test
     public void testIterateByQuery() {
         dao.create(TestUser.builder().name("Bob 01").active(true).build());
@@ -210,6 +309,56 @@ public class AbstractMongoDaoTest {
         assertEquals("Bob 02", user2.getName());
     }
 
+    @Test
+    public void testStreamByQuery() throws Exception {
+        for (int i=0; i < 10; i++) {
+            dao.create(TestUser.builder().name("Bob " + i).email("bob" + i + "@example.com").active(true).build());
+        }
+        CursorOptions options = CursorOptions.builder().batchSize(3).maxTime(Duration.ofSeconds(5)).build();
+
+        try (Stream<TestUser> stream = dao.streamByQuery(new Document("active", true), new Document("name", 1), options)) {
+            assertEquals(1, dao.getOpenCursorCount());
+            List<String> names = stream.limit(2).map(TestUser::getName).collect(Collectors.toList());
+            assertEquals(ImmutableList.of("Bob 0", "Bob 1"), names);
+        }
+        assertEquals(0, dao.getOpenCursorCount());
+
+        try (Stream<TestUser> stream = dao.streamByQuery(new Document("active", true), new Document("name", -1), new Document("name", 1), options)) {
+            TestUser first = stream.findFirst().get();
+            assertEquals("Bob 9", first.getName());
+            assertNull(first.getEmail());
+        }
+        assertEquals(0, dao.getOpenCursorCount());
+
+        // a fully consumed stream releases its cursor even before close
+        Stream<TestUser> all = dao.streamAll(CursorOptions.DEFAULT);
+        assertEquals(10, all.count());
+        assertEquals(0, dao.getOpenCursorCount());
+        all.close();
+        assertEquals(0, dao.getOpenCursorCount());
+    }
+
+    @Test
+    public void testQueryMonitor() throws Exception {
+        Fongo fongo = new Fongo("fake-mongo");
+        QueryMonitor monitor = new QueryMonitor(fongo.getMongo().getDatabase("test-mongo"), Duration.ofMinutes(1));
+        dao.setQueryMonitor(monitor);
+        dao.create(TestUser.builder().name("Ian").email("ian@example.com").build());
+
+        dao.findByQuery(new Document("name", "Ian"), null);
+        dao.findByQuery(new Document("name", "Bob"), null);
+        dao.loadByQuery(new Document("email", "ian@example.com"));
+
+        List<QueryShapeStats> stats = monitor.getStats();
+        assertEquals(2, stats.size());
+        long findCount = stats.stream().filter(s -> s.getShape().getFilterFields().contains("name")).findFirst().get().getCount();
+        assertEquals(2, findCount);
+
+        List<QueryShape> unindexed = dao.getUnindexedQueryShapes();
+        assertEquals(1, unindexed.size());
+        assertEquals("{ \"email\" : \"?\" }", unindexed.get(0).getFilter());
+    }
+
     @Test
     public void testExists() throws Exception {
         TestUser created = dao.create(TestUser.builder().name("Ian").build());
@@ -230,6 +379,36 @@ public class AbstractMongoDaoTest {
         assertEquals(now.toEpochMilli(), created.getCreateAt().toEpochMilli());
     }
 
+    @Test
+    public void testCreateAll() throws Exception {
+        ObjectId creatorId = new ObjectId();
+        List<TestUser> created = dao.createAll(ImmutableList.of(
+                TestUser.builder().name("Ian").build(),
+                TestUser.builder().name("Bob").build()), creatorId);
+        assertEquals(2, created.size());
+        assertEquals("Bob", dao.load(created.get(1).getId()).getName());
+        assertEquals(creatorId, created.get(0).getCreateId());
+
+        // Fongo does not report unordered insert errors the way the server does, so fake the server's exception
+        @SuppressWarnings("unchecked")
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        doThrow(new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(WriteRequest.Type.INSERT, 1, ImmutableList.of()),
+                ImmutableList.of(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0)),
+                null, new ServerAddress()))
+                .when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        try {
+            new TestUserDao(collection).createAll(ImmutableList.of(
+                    TestUser.builder().id(created.get(0).getId()).name("Duplicate").build(),
+                    TestUser.builder().name("Jim").build()));
+            fail("Expected DataBulkCreateException");
+        } catch (DataBulkCreateException e) {
+            assertEquals(ImmutableMap.of(0, "E11000 duplicate key error"), e.getErrors());
+            assertEquals(1, e.getCreated().size());
+            assertEquals("Jim", ((TestUser)e.getCreated().get(0)).getName());
+        }
+    }
+
     @Test
     public void testCreateWithFieldsInPlace() throws Exception {
         Instant now = Instant.now();
@@ -281,6 +460,319 @@ public class AbstractMongoDaoTest {
         assertEquals(now.toEpochMilli(), load.getUpdateAt().toEpochMilli());
     }
 
+    @Test
+    public void testUpdateAndReturnNew() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").email("ian@example.com").build());
+
+        ObjectId updateBy = new ObjectId();
+        Update<TestUser> update = Update.of(
+                TestUser.builder().name("Bob").build(),
+                ImmutableSet.of("name"));
+        TestUser next = dao.updateAndReturnNew(created.getId(), update, updateBy);
+
+        assertEquals(dao.load(created.getId()), next);
+        assertEquals("Bob", next.getName());
+        assertEquals("ian@example.com", next.getEmail());
+        assertEquals(updateBy, next.getUpdateId());
+    }
+
+    @Test
+    public void testUpdateAndReturnUpdated() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").email("ian@example.com").count(5).build());
+
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().count(2).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .removeFields(ImmutableSet.of("email"))
+                .build();
+        TestUser updated = dao.updateAndReturnUpdated(created.getId(), update);
+
+        assertEquals(new Integer(7), updated.getCount());
+        assertNotNull(updated.getUpdateAt());
+        assertNull(updated.getId());
+        assertNull(updated.getName());
+        assertNull(updated.getEmail());
+    }
+
+    @Test
+    public void testUpdateByQuery() throws Exception {
+        for (int i=0; i < 5; i++) {
+            dao.create(TestUser.builder().name("Bob " + i).active(i < 3).build());
+        }
+        ObjectId updateBy = new ObjectId();
+        Instant now = Instant.now();
+        Update<TestUser> update = Update.of(
+                TestUser.builder().type(TestUser.Type.ADMIN).build(),
+                ImmutableSet.of("type"));
+
+        UpdateResult result = dao.updateByQuery(new Document("active", true), update, now, updateBy);
+        assertEquals(3, result.getMatchedCount());
+        assertEquals(3, result.getModifiedCount());
+
+        for (TestUser user : dao.iterateAll()) {
+            if (user.getActive()) {
+                assertEquals(TestUser.Type.ADMIN, user.getType());
+                assertEquals(updateBy, user.getUpdateId());
+                assertEquals(now.toEpochMilli(), user.getUpdateAt().toEpochMilli());
+            } else {
+                assertNull(user.getType());
+                assertNull(user.getUpdateId());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteByQuery() throws Exception {
+        for (int i=0; i < 5; i++) {
+            dao.create(TestUser.builder().name("Bob " + i).active(i < 3).build());
+        }
+        assertEquals(3, dao.deleteByQuery(new Document("active", true)));
+        assertEquals(2, dao.getCollection().count());
+        assertEquals(0, dao.deleteByQuery(new Document("active", true)));
+    }
+
+    @Test
+    public void testUpdateIf() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").count(5).type(TestUser.Type.NORMAL).build());
+        Update<TestUser> update = Update.of(TestUser.builder().name("Changed").build(), ImmutableSet.of("name"));
+
+        assertFalse(dao.updateIf(created.getId(), Condition.equalTo("type", TestUser.Type.ADMIN), update));
+        assertEquals("Ian", dao.load(created.getId()).getName());
+
+        assertTrue(dao.updateIf(created.getId(), Condition.and(
+                Condition.equalTo("type", TestUser.Type.NORMAL),
+                Condition.lessThan("count", 10),
+                Condition.notExists("email")), update));
+        assertEquals("Changed", dao.load(created.getId()).getName());
+
+        assertFalse(dao.updateIf(new ObjectId(), Condition.exists("name"), update));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateIfUnknownField() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").build());
+        Update<TestUser> update = Update.of(TestUser.builder().name("Changed").build(), ImmutableSet.of("name"));
+        dao.updateIf(created.getId(), Condition.exists("bogus"), update);
+    }
+
+    @Test
+    public void testUpdateWithVersion() throws Exception {
+        // treat count as if it were annotated with @Version
+        TestUserDao versionDao = new TestUserDao(dao.getCollection()) {
+            @Override
+            protected FieldData generateFieldData() {
+                FieldData fieldData = super.generateFieldData();
+                return fieldData.toBuilder().version(fieldData.getMap().get("count")).build();
+            }
+        };
+        TestUser created = versionDao.create(TestUser.builder().name("Ian").build());
+        assertEquals(new Integer(1), created.getCount());
+
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().name("Changed").build())
+                .setFields(ImmutableSet.of("name"))
+                .expectedVersion(1L)
+                .build();
+        versionDao.update(created.getId(), update);
+        assertEquals(new Integer(2), versionDao.load(created.getId()).getCount());
+
+        try {
+            versionDao.update(created.getId(), update);
+            fail("Expected DataConflictException");
+        } catch (DataConflictException e) {
+            assertEquals("Changed", versionDao.load(created.getId()).getName());
+        }
+
+        TestUser before = versionDao.update(created.getId(),
+                user -> Update.of(TestUser.builder().name(user.getName() + "!").build(), ImmutableSet.of("name")));
+        assertEquals("Changed", before.getName());
+        TestUser after = versionDao.load(created.getId());
+        assertEquals("Changed!", after.getName());
+        assertEquals(new Integer(3), after.getCount());
+
+        // objects stored before the version field existed are updated only while they have no version
+        TestUser legacy = dao.create(TestUser.builder().name("Legacy").build());
+        assertNull(legacy.getCount());
+        Update<TestUser> unversioned = update.toBuilder().expectedVersion(Update.UNVERSIONED).build();
+        assertEquals(new Document("_id", legacy.getId()).append("count", new Document("$exists", false)),
+                versionDao.toUpdateQuery(legacy.getId(), unversioned));
+        versionDao.update(legacy.getId(),
+                user -> Update.of(TestUser.builder().name(user.getName() + "!").build(), ImmutableSet.of("name")));
+        assertEquals(new Integer(1), versionDao.load(legacy.getId()).getCount());
+        try {
+            versionDao.update(legacy.getId(), unversioned);
+            fail("Expected DataConflictException");
+        } catch (DataConflictException e) {
+            assertEquals("Legacy!", versionDao.load(legacy.getId()).getName());
+        }
+    }
+
+    @Test
+    public void testUpdateByQueryWithVersion() throws Exception {
+        // treat count as if it were annotated with @Version
+        TestUserDao versionDao = new TestUserDao(dao.getCollection()) {
+            @Override
+            protected FieldData generateFieldData() {
+                FieldData fieldData = super.generateFieldData();
+                return fieldData.toBuilder().version(fieldData.getMap().get("count")).build();
+            }
+        };
+        TestUser first = versionDao.create(TestUser.builder().name("Ian").active(true).build());
+        TestUser second = versionDao.create(TestUser.builder().name("Bob").active(true).build());
+        versionDao.update(second.getId(), Update.of(TestUser.builder().name("Bob").build(), ImmutableSet.of("name")));
+
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().type(TestUser.Type.ADMIN).build())
+                .setFields(ImmutableSet.of("type"))
+                .expectedVersion(1L)
+                .build();
+        UpdateResult result = versionDao.updateByQuery(new Document("active", true), update);
+        assertEquals(1, result.getMatchedCount());
+        assertEquals(TestUser.Type.ADMIN, versionDao.load(first.getId()).getType());
+        assertEquals(new Integer(2), versionDao.load(first.getId()).getCount());
+        assertNull(versionDao.load(second.getId()).getType());
+    }
+
+    @Test
+    public void testUpsert() throws Exception {
+        ObjectId id = new ObjectId();
+        ObjectId creator = new ObjectId();
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().count(1).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+
+        UpsertResult<TestUser> result = dao.upsertAndReturn(id, TestUser.builder().name("Ian").build(), update, Instant.now(), creator);
+        assertTrue(result.isInserted());
+        TestUser user = result.getModel().get();
+        assertEquals(id, user.getId());
+        assertEquals("Ian", user.getName());
+        assertEquals(new Integer(1), user.getCount());
+        assertEquals(creator, user.getCreateId());
+        assertNotNull(user.getCreateAt());
+
+        result = dao.upsert(id, TestUser.builder().name("Other").build(), update, new ObjectId());
+        assertFalse(result.isInserted());
+        assertFalse(result.getModel().isPresent());
+        user = dao.load(id);
+        assertEquals("Ian", user.getName());
+        assertEquals(new Integer(2), user.getCount());
+        assertEquals(creator, user.getCreateId());
+
+        // the existing object is updated and returned by the same call
+        result = dao.upsertAndReturn(id, TestUser.builder().name("Other").build(), update, Instant.now(), new ObjectId());
+        assertFalse(result.isInserted());
+        user = result.getModel().get();
+        assertEquals("Ian", user.getName());
+        assertEquals(new Integer(3), user.getCount());
+        assertEquals(creator, user.getCreateId());
+        assertEquals(user, dao.load(id));
+    }
+
+    @Test
+    public void testUpdateIncrement() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").count(5).build());
+
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().count(3).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+        dao.update(created.getId(), update);
+        assertEquals(new Integer(8), dao.load(created.getId()).getCount());
+
+        update = Update.<TestUser>builder()
+                .partial(TestUser.builder().count(-10).build())
+                .incrementFields(ImmutableSet.of("count"))
+                .build();
+        dao.update(created.getId(), update);
+        assertEquals(new Integer(-2), dao.load(created.getId()).getCount());
+    }
+
+    @Test
+    public void testUpdateCollectionOperations() throws Exception {
+        ObjectId friend1 = new ObjectId();
+        ObjectId friend2 = new ObjectId();
+        ObjectId friend3 = new ObjectId();
+        TestUser created = dao.create(TestUser.builder().name("Ian").friends(ImmutableList.of(friend1)).build());
+
+        Update<TestUser> update = Update.<TestUser>builder()
+                .partial(TestUser.builder().friends(ImmutableList.of(friend2, friend2)).build())
+                .appendFields(ImmutableSet.of("friends"))
+                .build();
+        dao.update(created.getId(), update);
+        assertEquals(ImmutableList.of(friend1, friend2, friend2), dao.load(created.getId()).getFriends());
+
+        update = Update.<TestUser>builder()
+                .partial(TestUser.builder().friends(ImmutableList.of(friend2)).build())
+                .pullFields(ImmutableSet.of("friends"))
+                .build();
+        dao.update(created.getId(), update);
+        assertEquals(ImmutableList.of(friend1), dao.load(created.getId()).getFriends());
+
+        update = Update.<TestUser>builder()
+                .partial(TestUser.builder().friends(ImmutableList.of(friend1, friend3)).build())
+                .addToSetFields(ImmutableSet.of("friends"))
+                .build();
+        dao.update(created.getId(), update);
+        assertEquals(ImmutableList.of(friend1, friend3), dao.load(created.getId()).getFriends());
+    }
+
+    @Test
+    public void testUpdateNestedPath() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian")
+                .addressesByRegion(ImmutableMap.of("west", TestAddress.builder().city("Seattle").state("WA").build()))
+                .build());
+
+        TestAddress partialAddress = TestAddress.builder().city("Portland").build();
+        Update<TestUser> update = Update.of(
+                TestUser.builder().addressesByRegion(ImmutableMap.of("west", partialAddress)).build(),
+                ImmutableSet.of("addressesByRegion.west.city"));
+        assertEquals(new Document("$set", new Document("addressesByRegion.west.city", "Portland")),
+                dao.toUpdateDocument(update, null, null));
+
+        dao.update(created.getId(), update);
+        TestAddress address = dao.load(created.getId()).getAddressesByRegion().get("west");
+        assertEquals("Portland", address.getCity());
+        assertEquals("WA", address.getState());
+
+        update = Update.of(TestUser.builder().build(), ImmutableSet.of(), ImmutableSet.of("addressesByRegion.west.state"));
+        dao.update(created.getId(), update);
+        address = dao.load(created.getId()).getAddressesByRegion().get("west");
+        assertEquals("Portland", address.getCity());
+        assertNull(address.getState());
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        TestUser created = dao.create(TestUser.builder().name("Ian").email("ian@example.com").count(1)
+                .addressesByRegion(ImmutableMap.of("west", TestAddress.builder().city("Seattle").state("WA").build()))
+                .build());
+
+        TestUser changed = created.toBuilder()
+                .email(null)
+                .count(2)
+                .addressesByRegion(ImmutableMap.of("west", TestAddress.builder().city("Portland").state("WA").build()))
+                .build();
+        Update<TestUser> update = dao.diff(created, changed);
+        assertEquals(ImmutableSet.of("count", "addressesByRegion.west.city"), update.getSetFields());
+        assertEquals(ImmutableSet.of("email"), update.getRemoveFields());
+
+        dao.update(created.getId(), update);
+        TestUser load = dao.load(created.getId());
+        assertEquals("Ian", load.getName());
+        assertNull(load.getEmail());
+        assertEquals(new Integer(2), load.getCount());
+        assertEquals("Portland", load.getAddressesByRegion().get("west").getCity());
+
+        assertTrue(dao.diff(load, load).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateNestedPathNotOnModel() throws Exception {
+        Update<TestUser> update = Update.of(TestUser.builder().build(), ImmutableSet.of(), ImmutableSet.of("addressesByRegion.west.zip"));
+        dao.toUpdateDocument(update, null, null);
+    }
+
     @Test
     public void testToUpdateDocument() throws Exception {
         Update<TestUser> update = Update.of(
@@ -325,6 +817,105 @@ public class AbstractMongoDaoTest {
             count++;
         }
         assertEquals(1, count);
+        assertTrue(dao.iterateAll() instanceof DaoIterable);
+    }
+
+    @Test
+    public void testOperationCounter() throws Exception {
+        for (int i=0; i < 3; i++) {
+            dao.create(TestUser.builder().name("Ian").email("ian" + i + "@example.com").build());
+        }
+        try (OperationCounter counter = OperationCounter.start()) {
+            Results<TestUser,ObjectId> results = dao.findByQuery(new Document("name", "Ian"), null);
+            for (TestUser user : results.getData()) {
+                dao.load(user.getId());
+            }
+            dao.update(results.getData().get(0).getId(), Update.of(TestUser.builder().name("Bob").build(), ImmutableSet.of("name")),
+                    Instant.now(), new ObjectId());
+
+            assertEquals(5, counter.getCount());
+            assertEquals(1, counter.getCount(OperationType.QUERY));
+            assertEquals(3, counter.getCount("TestUserDao", OperationType.LOAD));
+            assertEquals(4, counter.getReads());
+            assertEquals(1, counter.getWrites());
+            assertEquals(3, counter.getOperations().get(0).getItemCount());
+            counter.assertMaxWrites(1);
+            try {
+                counter.assertMaxReads(2);
+                fail("expected AssertionError");
+            } catch (AssertionError e) {
+                assertTrue(e.getMessage().contains("TestUserDao.loadOpt"));
+            }
+        }
+        assertFalse(DaoMetrics.isEnabled());
+    }
+
+    @Test
+    public void testIterateAllTimed() throws Exception {
+        for (int i=0; i < 3; i++) {
+            dao.create(TestUser.builder().name("Ian").email("ian" + i + "@example.com").build());
+        }
+        try (OperationCounter counter = OperationCounter.start()) {
+            Iterable<TestUser> users = dao.iterateAll();
+            assertEquals(0, counter.getCount());
+            for (TestUser user : users) {
+                dao.load(user.getId());
+            }
+
+            // the reads are reported once the iterator is exhausted, separately from the loads made in between
+            assertEquals(4, counter.getCount());
+            DaoOperation iterate = counter.getOperations().get(3);
+            assertEquals("iterateAll", iterate.getName());
+            assertEquals(OperationType.QUERY, iterate.getType());
+            assertEquals(3, iterate.getItemCount());
+        }
+    }
+
+    @Test
+    public void testGetMappers() throws Exception {
+        DocumentMapper<TestUser> mapper = new JacksonDocumentMapper<>(TestUser.class, dao.getFieldData());
+        AbstractMongoDao<TestUser,TestUser,ObjectId,ObjectId> custom = new AbstractMongoDao<TestUser,TestUser,ObjectId,ObjectId>(
+                TestUser.class, TestUser.class, dao.getCollection(), mapper, mapper) { };
+        assertSame(mapper, custom.getModelMapper());
+        assertSame(mapper, custom.getPartialMapper());
+    }
+
+    @Test
+    public void testGuardrails() throws Exception {
+        for (int i=0; i < 3; i++) {
+            dao.create(TestUser.builder().name("Ian").email("ian" + i + "@example.com").build());
+        }
+        dao.setGuardrails(Guardrails.production(2));
+        try {
+            dao.findByQuery(new Document("name", "Ian"), null);
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("TestUserDao.findByQuery read more than 2 items at "
+                    + AbstractMongoDaoTest.class.getName() + ".testGuardrails("));
+        }
+        try {
+            dao.iterateAll();
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage().startsWith("Full scan by TestUserDao.iterateAll"));
+        }
+        assertEquals(2, dao.findWithSkipLimitPagination(dao.getCollection().find(), 0, 2).getData().size());
+
+        // a rejected query still closes its cursor, which the query monitor records, and names the caller
+        QueryMonitor monitor = new QueryMonitor(new Fongo("fake-mongo").getMongo().getDatabase("test-mongo"), Duration.ofHours(1));
+        dao.setQueryMonitor(monitor);
+        try {
+            dao.findByQuery(new Document("name", "Ian"), null);
+            fail("expected DataLimitException");
+        } catch (DataLimitException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(AbstractMongoDaoTest.class.getName() + ".testGuardrails("));
+        }
+        assertEquals(1, monitor.getStats().get(0).getCount());
+        dao.setQueryMonitor(null);
+
+        dao.setGuardrails(Guardrails.builder().maxResultBytes(1000L).build());
+        assertEquals(3, dao.findByQuery(new Document("name", "Ian"), null).getData().size());
+        assertEquals(3, Iterables.size(dao.iterateAll()));
     }
 
     @Test
@@ -0,0 +1,125 @@
+package io.stardog.stardao.mongodb.monitor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryMonitorTest {
+    private static final Document COLLSCAN_EXPLAIN = Document.parse("{"
+            + "queryPlanner: {winningPlan: {stage: 'SORT', inputStage: {stage: 'COLLSCAN'}}},"
+            + "executionStats: {nReturned: 1, totalKeysExamined: 0, totalDocsExamined: 5000}}");
+    private static final Document IXSCAN_EXPLAIN = Document.parse("{"
+            + "queryPlanner: {winningPlan: {stage: 'FETCH', inputStage: {stage: 'IXSCAN', indexName: 'email_1'}}},"
+            + "executionStats: {nReturned: 1, totalKeysExamined: 1, totalDocsExamined: 1}}");
+
+    @Test
+    public void testQueryShape() throws Exception {
+        QueryShape shape = QueryShape.of("users",
+                Filters.and(Filters.eq("email", "ian@example.com"), Filters.gt("age", 21),
+                        Filters.or(Filters.eq("status", "active"), Filters.in("role", "admin", "owner"))),
+                Sorts.ascending("name"), null, MongoClient.getDefaultCodecRegistry());
+        assertEquals("{ \"email\" : \"?\", \"age\" : { \"$gt\" : \"?\" }, "
+                + "\"$or\" : [{ \"status\" : \"?\" }, { \"role\" : { \"$in\" : \"?\" } }] }", shape.getFilter());
+        assertEquals("{ \"name\" : 1 }", shape.getSort());
+        assertEquals(ImmutableSet.of("email", "age", "status", "role"), shape.getFilterFields());
+
+        QueryShape other = QueryShape.of("users",
+                Filters.and(Filters.eq("email", "bob@example.com"), Filters.gt("age", 30),
+                        Filters.or(Filters.eq("status", "inactive"), Filters.in("role", "user"))),
+                Sorts.ascending("name"), null, MongoClient.getDefaultCodecRegistry());
+        assertEquals(shape, other);
+
+        QueryShape elemMatch = QueryShape.of("users",
+                new Document("tags", new Document("$elemMatch", new Document("name", "x").append("count", new Document("$gte", 2)))),
+                null, null, MongoClient.getDefaultCodecRegistry());
+        assertEquals("{ \"tags\" : { \"$elemMatch\" : { \"name\" : \"?\", \"count\" : { \"$gte\" : \"?\" } } } }",
+                elemMatch.getFilter());
+    }
+
+    @Test
+    public void testQueryPlan() throws Exception {
+        QueryPlan plan = QueryPlan.of(COLLSCAN_EXPLAIN);
+        assertEquals(ImmutableList.of("SORT", "COLLSCAN"), plan.getStages());
+        assertTrue(plan.isCollectionScan());
+        assertEquals(5000, plan.getExaminedRatio(), 0.001);
+
+        plan = QueryPlan.of(IXSCAN_EXPLAIN);
+        assertEquals(ImmutableList.of("email_1"), plan.getIndexNames());
+        assertFalse(plan.isCollectionScan());
+        assertEquals(1, plan.getExaminedRatio(), 0.001);
+    }
+
+    @Test
+    public void testRecord() throws Exception {
+        MongoDatabase database = database(COLLSCAN_EXPLAIN);
+        QueryMonitor monitor = new QueryMonitor(database, Duration.ofMillis(100));
+        MongoCollection<Document> collection = collection("users");
+
+        monitor.record(collection, Filters.eq("name", "Ian"), null, null, 0, 1000000);
+        verify(database, never()).runCommand(any(Bson.class));
+        monitor.record(collection, Filters.eq("name", "Bob"), null, null, 1, 200000000);
+        monitor.record(collection, Filters.eq("name", "Joe"), null, null, 0, 300000000);
+        ArgumentCaptor<Bson> command = ArgumentCaptor.forClass(Bson.class);
+        verify(database).runCommand(command.capture());
+        Document explain = (Document)((Document)command.getValue()).get("explain");
+        assertEquals("users", explain.get("find"));
+        assertEquals(1, explain.get("limit"));
+
+        monitor.record(collection, Filters.eq("email", "ian@example.com"), null, null, 0, 1000000);
+
+        List<QueryShapeStats> stats = monitor.getStats();
+        assertEquals(2, stats.size());
+        assertEquals(3, stats.get(0).getCount());
+        assertEquals(2, stats.get(0).getSlowCount());
+        assertEquals(300000000, stats.get(0).getMaxNanos());
+        assertTrue(stats.get(0).getPlan().isCollectionScan());
+        assertNull(stats.get(1).getPlan());
+        assertEquals(1, monitor.getPoorlyPlannedStats().size());
+
+        List<QueryShape> unindexed = monitor.getUnindexedShapes("users", ImmutableList.of(new IndexModel(Indexes.ascending("email", "name"))));
+        assertEquals(1, unindexed.size());
+        assertEquals(ImmutableSet.of("name"), unindexed.get(0).getFilterFields());
+        assertTrue(monitor.getUnindexedShapes("orgs", ImmutableList.of()).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRatio() throws Exception {
+        new QueryMonitor(database(IXSCAN_EXPLAIN), Duration.ofMillis(100), 0.5);
+    }
+
+    private MongoDatabase database(Document explain) {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.runCommand(any(Bson.class))).thenReturn(explain);
+        when(database.getCodecRegistry()).thenReturn(MongoClient.getDefaultCodecRegistry());
+        return database;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoCollection<Document> collection(String name) {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(collection.getNamespace()).thenReturn(new MongoNamespace("test", name));
+        when(collection.getCodecRegistry()).thenReturn(MongoClient.getDefaultCodecRegistry());
+        return collection;
+    }
+}